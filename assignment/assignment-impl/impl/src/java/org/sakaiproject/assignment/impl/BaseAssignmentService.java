@@ -108,6 +108,11 @@ import java.text.Normalizer;
 import java.text.NumberFormat;
 import java.util.*;
 import java.util.Map.Entry;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Deflater;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
@@ -740,6 +745,15 @@ public abstract class BaseAssignmentService implements AssignmentService, Entity
 	/** Dependency: allowSubmitByInstructor setting */
 	protected boolean m_allowSubmitByInstructor = true;
 
+	/** Reads attachment bodies ahead of the zip writer in the download all, null if disabled */
+	protected ExecutorService m_zipPrefetchExecutor = null;
+
+	/** Maximum number of attachment bodies read at once ahead of the zip writer for one download, this many memory thresholds may be held in memory */
+	protected int m_zipPrefetchMaxBodies = 8;
+
+	/** Prefetched attachment bodies larger than this are spooled to disk rather than held in memory */
+	protected int m_zipPrefetchMemoryThreshold = 1024 * 1024;
+
 	/**
 	 * Dependency: allowSubmitByInstructor
 	 * 
@@ -832,6 +846,20 @@ public abstract class BaseAssignmentService implements AssignmentService, Entity
             M_log.info("Instructor submission of assignments is enabled");
         }
 
+		int zipPrefetchThreads = m_serverConfigurationService.getInt("assignment.zip.prefetch.threads", 4);
+		if (zipPrefetchThreads > 0)
+		{
+			final AtomicInteger threadCount = new AtomicInteger();
+			ThreadFactory threadFactory = runnable -> {
+				Thread thread = new Thread(runnable, "assignment-zip-prefetch-" + threadCount.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			};
+			m_zipPrefetchExecutor = Executors.newFixedThreadPool(zipPrefetchThreads, threadFactory);
+		}
+		m_zipPrefetchMaxBodies = m_serverConfigurationService.getInt("assignment.zip.prefetch.maxBodies", m_zipPrefetchMaxBodies);
+		m_zipPrefetchMemoryThreshold = m_serverConfigurationService.getInt("assignment.zip.prefetch.memoryThreshold", m_zipPrefetchMemoryThreshold);
+
 		// register as an entity producer
 		m_entityManager.registerEntityProducer(this, REFERENCE_ROOT);
 
@@ -867,6 +895,12 @@ public abstract class BaseAssignmentService implements AssignmentService, Entity
 		m_submissionStorage.close();
 		m_submissionStorage = null;
 
+		if (m_zipPrefetchExecutor != null)
+		{
+			m_zipPrefetchExecutor.shutdownNow();
+			m_zipPrefetchExecutor = null;
+		}
+
 		M_log.info(this + " destroy()");
 	}
 
@@ -3644,21 +3678,17 @@ public abstract class BaseAssignmentService implements AssignmentService, Entity
 		try
 		{
 			Site _site = siteService.getSite(a.getContext());
+			Map<User, Collection<Group>> userGroups = new HashMap<>();
+			Set<String> groupIds = new HashSet<>();
 			for (User user : users)
 			{
-				AssignmentSubmission submission = null;
 				Collection<Group> groups = (Collection<Group>) _site.getGroupsWithMember(user.getId());
 				if (groups != null)
 				{
+					userGroups.put(user, groups);
 					for (Group _g : groups)
 					{
-						M_log.debug("Checking submission for group: " + _g.getTitle());
-						submission = getSubmission(a.getReference(), _g.getId());
-						if (submission != null && allowGetSubmission(submission.getReference()))
-						{
-							userSubmissionMap.put(user, submission);
-							break;
-						}
+						groupIds.add(_g.getId());
 					}
 				}
 				else
@@ -3666,6 +3696,23 @@ public abstract class BaseAssignmentService implements AssignmentService, Entity
 					M_log.info("Assignment {} is grouped but {} is not in any of the site groups", a.getId(), user.getId());
 				}
 			}
+
+			// one query for all the groups rather than one per group per user
+			Map<String, AssignmentSubmission> groupSubmissions = m_submissionStorage.getSubmitterSubmissionMap(a.getId(), groupIds);
+			Map<String, Boolean> allowed = new HashMap<>();
+			for (Map.Entry<User, Collection<Group>> entry : userGroups.entrySet())
+			{
+				for (Group _g : entry.getValue())
+				{
+					M_log.debug("Checking submission for group: " + _g.getTitle());
+					AssignmentSubmission submission = groupSubmissions.get(_g.getId());
+					if (submission != null && allowed.computeIfAbsent(_g.getId(), id -> allowGetGroupSubmission(submission)))
+					{
+						userSubmissionMap.put(entry.getKey(), submission);
+						break;
+					}
+				}
+			}
 		}
 		catch (IdUnusedException e)
 		{
@@ -3675,6 +3722,23 @@ public abstract class BaseAssignmentService implements AssignmentService, Entity
 		return userSubmissionMap;
 	}
 
+	/**
+	 * The same checks as getSubmission(String, String) followed by allowGetSubmission, for a submission that has already been read.
+	 */
+	private boolean allowGetGroupSubmission(AssignmentSubmission submission)
+	{
+		try
+		{
+			unlock2(SECURE_ACCESS_ASSIGNMENT_SUBMISSION, SECURE_ACCESS_ASSIGNMENT, submission.getReference());
+		}
+		catch (PermissionException e)
+		{
+			M_log.debug(e.getMessage());
+			return false;
+		}
+		return allowGetSubmission(submission.getReference());
+	}
+
 	/**
          * 
 	 * Access a Group or User's AssignmentSubmission to a particular Assignment.
@@ -3781,6 +3845,18 @@ public abstract class BaseAssignmentService implements AssignmentService, Entity
 		
 	}
 
+	/**
+	 * Get the submitted, graded, ungraded, late and returned counts for an assignment in one pass.
+	 * 
+	 * @param assignmentRef
+	 *        The assignment reference.
+	 * @return The counts for the submitters still in the site.
+	 */
+	public SubmissionStatusCounts getSubmissionStatusCounts(String assignmentRef)
+	{
+		return m_submissionStorage.getSubmissionStatusCounts(assignmentRef);
+	}
+
 	/**
 	 * Access the AssignmentSubmission with the specified id.
 	 * 
@@ -5333,6 +5409,7 @@ public abstract class BaseAssignmentService implements AssignmentService, Entity
 	protected void zipSubmissions(String assignmentReference, String assignmentTitle, String gradeTypeString, int typeOfSubmission, Iterator submissions, OutputStream outputStream, StringBuilder exceptionMessage, boolean withStudentSubmissionText, boolean withStudentSubmissionAttachment, boolean withGradeFile, boolean withFeedbackText, boolean withFeedbackComment, boolean withFeedbackAttachment, boolean withoutFolders,String gradeFileFormat, boolean includeNotSubmitted, String siteId)
 	{
 		ZipOutputStream out = null;
+		SubmissionAttachmentPrefetcher prefetcher = null;
 
 		boolean isAdditionalNotesEnabled = false;
 		Site st = null;
@@ -5368,8 +5445,32 @@ public abstract class BaseAssignmentService implements AssignmentService, Entity
 						rb.getString("grades.submissionTime"),rb.getString("grades.late"));
 			}
 
-			// allow add assignment members
-			List allowAddSubmissionUsers = allowAddSubmissionUsers(assignmentReference);
+			// allow add assignment members, as a set of ids so the check is not a scan of the site per submission
+			Set<String> allowAddSubmissionUserIds = new HashSet<String>();
+			for (Object allowed : allowAddSubmissionUsers(assignmentReference))
+			{
+				allowAddSubmissionUserIds.add(((User) allowed).getId());
+			}
+
+			// the attachment bodies of the next few submissions are read in the background while the current one is written
+			List<AssignmentSubmission> submissionList = new ArrayList<AssignmentSubmission>();
+			Set<String> submitterIds = new HashSet<String>();
+			while (submissions.hasNext())
+			{
+				AssignmentSubmission submission = (AssignmentSubmission) submissions.next();
+				submissionList.add(submission);
+				submitterIds.add(submission.getSubmitterId());
+			}
+			// look the submitters up in one go rather than one user per submission
+			Map<String, User> submitterUsers = new HashMap<String, User>();
+			for (Object submitter : userDirectoryService.getUsers(submitterIds))
+			{
+				submitterUsers.put(((User) submitter).getId(), (User) submitter);
+			}
+			boolean prefetchSubmittedAttachments = withStudentSubmissionAttachment
+					&& typeOfSubmission != Assignment.TEXT_ONLY_ASSIGNMENT_SUBMISSION && typeOfSubmission != Assignment.NON_ELECTRONIC_ASSIGNMENT_SUBMISSION;
+			prefetcher = new SubmissionAttachmentPrefetcher(m_zipPrefetchExecutor, m_zipPrefetchMaxBodies, m_zipPrefetchMemoryThreshold);
+			int prefetchedUpTo = 0;
 			
 			// Create the ZIP file
 			String submittersName = "";
@@ -5377,10 +5478,27 @@ public abstract class BaseAssignmentService implements AssignmentService, Entity
 			String caughtStackTrace = null;
 			String submittersAdditionalNotesHtml = "";
 
-			while (submissions.hasNext())
+			for (int index = 0; index < submissionList.size(); index++)
 			{
-				AssignmentSubmission s = (AssignmentSubmission) submissions.next();
+				AssignmentSubmission s = submissionList.get(index);
 				boolean isAnon = assignmentUsesAnonymousGrading( s );
+
+				for (; prefetchedUpTo < submissionList.size() && prefetchedUpTo <= index + m_zipPrefetchMaxBodies; prefetchedUpTo++)
+				{
+					AssignmentSubmission next = submissionList.get(prefetchedUpTo);
+					if (((next.getSubmitted() && next.isUserSubmission()) || includeNotSubmitted) && allowAddSubmissionUserIds.contains(next.getSubmitterId()))
+					{
+						if (prefetchSubmittedAttachments)
+						{
+							prefetchAttachments(prefetcher, next.getSubmittedAttachments());
+						}
+						if (withFeedbackAttachment)
+						{
+							prefetchAttachments(prefetcher, next.getFeedbackAttachments());
+						}
+					}
+				}
+
 				//SAK-29314 added a new value where it's by default submitted but is marked when the user submits
 				if ((s.getSubmitted() && s.isUserSubmission())|| includeNotSubmitted)
 				{
@@ -5388,8 +5506,12 @@ public abstract class BaseAssignmentService implements AssignmentService, Entity
 					String userId = s.getSubmitterId();
 					try
 					{
-						User u = userDirectoryService.getUser(userId);
-						if (allowAddSubmissionUsers.contains(u))
+						User u = submitterUsers.get(userId);
+						if (u == null)
+						{
+							throw new UserNotDefinedException(userId);
+						}
+						if (allowAddSubmissionUserIds.contains(u.getId()))
 						{
 							submittersName = root;
 							
@@ -5550,7 +5672,7 @@ public abstract class BaseAssignmentService implements AssignmentService, Entity
 										}
 
 										// add all submission attachment into the submission attachment folder
-										zipAttachments(out, submittersName, sSubAttachmentFolder, s.getSubmittedAttachments());
+										zipAttachments(out, submittersName, sSubAttachmentFolder, s.getSubmittedAttachments(), prefetcher);
 										out.closeEntry();
 									}
 								}
@@ -5582,7 +5704,7 @@ public abstract class BaseAssignmentService implements AssignmentService, Entity
 									}
 								
 									// add all feedback attachment folder
-									zipAttachments(out, submittersName, feedbackSubAttachmentFolder, s.getFeedbackAttachments());
+									zipAttachments(out, submittersName, feedbackSubAttachmentFolder, s.getFeedbackAttachments(), prefetcher);
 									out.closeEntry();
 								}
 							} // if
@@ -5611,7 +5733,7 @@ public abstract class BaseAssignmentService implements AssignmentService, Entity
 					}
 				} // if the user is still in site
 
-			} // while -- there is submission
+			} // for -- there is submission
 
 			if (caughtException == null)
 			{
@@ -5655,6 +5777,9 @@ public abstract class BaseAssignmentService implements AssignmentService, Entity
 		{
 			exceptionMessage.append("IOException for creating submission zip file for assignment " + "\"" + assignmentTitle + "\" exception: " + e + "\n");
 		} finally {
+		    if (prefetcher != null) {
+		        prefetcher.close();
+		    }
 		    // Complete the ZIP file
 		    if (out != null) {
 		        try {
@@ -5723,6 +5848,50 @@ public abstract class BaseAssignmentService implements AssignmentService, Entity
 	}
 
 	private void zipAttachments(ZipOutputStream out, String submittersName, String sSubAttachmentFolder, List attachments) {
+		zipAttachments(out, submittersName, sSubAttachmentFolder, attachments, null);
+	}
+
+	/**
+	 * Start reading the bodies of the attachments in the background. The resources are resolved here, on the request thread, so the
+	 * usual permission checks apply.
+	 */
+	private void prefetchAttachments(SubmissionAttachmentPrefetcher prefetcher, List attachments) {
+		for (Object attachment : attachments)
+		{
+			Reference r = (Reference) attachment;
+			try
+			{
+				ContentResource resource = m_contentHostingService.getResource(r.getId());
+				if (!ResourceProperties.TYPE_URL.equalsIgnoreCase(resource.getContentType()))
+				{
+					prefetcher.prefetch(resource);
+				}
+			}
+			catch (PermissionException | IdUnusedException | TypeException e)
+			{
+				// reported when the attachment is zipped
+				M_log.debug("prefetchAttachments: skipping " + r + " " + e);
+			}
+		}
+	}
+
+	/**
+	 * Content types that are already compressed, deflating them again costs time and saves nothing
+	 */
+	private boolean isCompressedContentType(String contentType) {
+		if (contentType == null)
+		{
+			return false;
+		}
+		String type = contentType.toLowerCase();
+		return type.startsWith("image/jpeg") || type.startsWith("image/png") || type.startsWith("image/gif")
+				|| type.startsWith("video/") || type.startsWith("audio/")
+				|| type.startsWith("application/zip") || type.startsWith("application/x-zip") || type.startsWith("application/gzip")
+				|| type.startsWith("application/x-7z") || type.startsWith("application/x-rar")
+				|| type.startsWith("application/vnd.openxmlformats") || type.startsWith("application/vnd.oasis.opendocument");
+	}
+
+	private void zipAttachments(ZipOutputStream out, String submittersName, String sSubAttachmentFolder, List attachments, SubmissionAttachmentPrefetcher prefetcher) {
 		int attachedUrlCount = 0;
 		InputStream content = null;
 		HashMap<String, Integer> done = new HashMap<String, Integer> ();
@@ -5747,7 +5916,8 @@ public abstract class BaseAssignmentService implements AssignmentService, Entity
 				}
 
 				// buffered stream input
-				content = resource.streamContent();
+				content = (prefetcher != null) ? prefetcher.open(resource) : resource.streamContent();
+				out.setLevel(isCompressedContentType(contentType) ? Deflater.NO_COMPRESSION : Deflater.DEFAULT_COMPRESSION);
 				byte data[] = new byte[1024 * 10];
 				BufferedInputStream bContent = null;
 				try
@@ -5786,6 +5956,10 @@ public abstract class BaseAssignmentService implements AssignmentService, Entity
 					{
 						M_log.warn(":zipAttachments: problem closing zip entry " + ioException);
 					}
+					finally
+					{
+						out.setLevel(Deflater.DEFAULT_COMPRESSION);
+					}
 				}
 				catch (IllegalArgumentException iException)
 				{
@@ -13110,6 +13284,17 @@ public abstract class BaseAssignmentService implements AssignmentService, Entity
 		 * NB: This method does not support gorup assignments - it's intended for perfromance in retrieving submissions for non-group assignments (e. where 1 submission has 1 submitterId)
 		 */
 		public Map<User, AssignmentSubmission> getUserSubmissionMap(Assignment assignment, List<User> users);
+
+		/**
+		 * Gets the submissions to an assignment for a set of submitters, user ids or group ids, with a single indexed query per batch.
+		 * 
+		 * @param assignmentId
+		 *        The Assignment id.
+		 * @param submitterIds
+		 *        The user or group ids.
+		 * @return The submissions that exist, keyed by submitter id.
+		 */
+		public Map<String, AssignmentSubmission> getSubmitterSubmissionMap(String assignmentId, Collection<String> submitterIds);
 		
 		/**
 		 * Get the number of submissions which has been submitted.
@@ -13129,6 +13314,15 @@ public abstract class BaseAssignmentService implements AssignmentService, Entity
 		 */
 		public int getUngradedSubmissionsCount(String assignmentId);
 
+		/**
+		 * Get the submitted, graded, ungraded, late and returned counts for an assignment, only counting current submitters.
+		 * 
+		 * @param assignmentRef -
+		 *        the reference of the Assignment.
+		 * @return The counts, read without loading the submissions.
+		 */
+		public SubmissionStatusCounts getSubmissionStatusCounts(String assignmentRef);
+
 		/**
 		 * Get all AssignmentSubmissions.
 		 * 
@@ -13753,8 +13947,8 @@ public abstract class BaseAssignmentService implements AssignmentService, Entity
 		 */
 		public Object[] storageFields(Entity r)
 		{
-			/*"context", "SUBMITTER_ID", "SUBMIT_TIME", "SUBMITTED", "GRADED"*/
-			Object rv[] = new Object[5];
+			/*"context", "SUBMITTER_ID", "SUBMIT_TIME", "SUBMITTED", "GRADED", "RETURNED"*/
+			Object rv[] = new Object[6];
 			rv[0] = ((AssignmentSubmission) r).getAssignmentId();
 			
                         rv[1] = ((AssignmentSubmission) r).getSubmitterId();
@@ -13766,6 +13960,8 @@ public abstract class BaseAssignmentService implements AssignmentService, Entity
 			
 			rv[4] = Boolean.valueOf(((AssignmentSubmission) r).getGraded()).toString();
 			
+			rv[5] = Boolean.valueOf(((AssignmentSubmission) r).getReturned()).toString();
+			
 			return rv;
 		}
 
@@ -21,14 +21,18 @@
 
 package org.sakaiproject.assignment.impl;
 
+import java.io.Serializable;
 import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Observable;
+import java.util.Observer;
 
 import org.apache.commons.collections.CollectionUtils;
 import org.slf4j.Logger;
@@ -39,12 +43,16 @@ import org.sakaiproject.assignment.api.AssignmentContentEdit;
 import org.sakaiproject.assignment.api.AssignmentEdit;
 import org.sakaiproject.assignment.api.AssignmentSubmission;
 import org.sakaiproject.assignment.api.AssignmentSubmissionEdit;
+import org.sakaiproject.assignment.api.AssignmentConstants;
 import org.sakaiproject.authz.api.Member;
 import org.sakaiproject.site.api.Site;
 import org.sakaiproject.site.api.Group;
 import org.sakaiproject.db.api.SqlReader;
 import org.sakaiproject.db.api.SqlService;
 import org.sakaiproject.entity.api.Entity;
+import org.sakaiproject.event.api.Event;
+import org.sakaiproject.memory.api.Cache;
+import org.sakaiproject.time.api.Time;
 import org.sakaiproject.user.api.User;
 import org.sakaiproject.util.BaseDbSingleStorage;
 import org.sakaiproject.util.Xml;
@@ -77,7 +85,7 @@ public class DbAssignmentService extends BaseAssignmentService
 	protected static final String[] FIELDS = { "CONTEXT"};
 	
 	/** Extra fields to store in the db with the XML in ASSIGNMENT_SUBMISSION table */
-	protected static final String[] SUBMISSION_FIELDS = { "CONTEXT", "SUBMITTER_ID", "SUBMIT_TIME", "SUBMITTED", "GRADED"};
+	protected static final String[] SUBMISSION_FIELDS = { "CONTEXT", "SUBMITTER_ID", "SUBMIT_TIME", "SUBMITTED", "GRADED", "RETURNED"};
 
 	/** Oracle in clause limit */
 	protected static final int MAX_IN_CLAUSE_SIZE = 1000;
@@ -387,9 +395,12 @@ public class DbAssignmentService extends BaseAssignmentService
 	/**
 	 * Covers for the BaseDbSingleStorage, providing AssignmentSubmission and AssignmentSubmissionEdit parameters
 	 */
-	protected class DbCachedAssignmentSubmissionStorage extends BaseDbSingleStorage implements AssignmentSubmissionStorage
+	protected class DbCachedAssignmentSubmissionStorage extends BaseDbSingleStorage implements AssignmentSubmissionStorage, Observer
 	{
-		/*FIELDS: "CONTEXT", "SUBMITTER_ID", "SUBMIT_TIME", "SUBMITTED", "GRADED"*/
+		/*FIELDS: "CONTEXT", "SUBMITTER_ID", "SUBMIT_TIME", "SUBMITTED", "GRADED", "RETURNED"*/
+
+		/** The status columns of the submissions, by assignment id. The cache is local to this node, so entries are also dropped on submission events from the other nodes. */
+		protected Cache<String, List<SubmissionStatusRow>> m_submissionStatusCache = null;
 		
 		/**
 		 * Construct.
@@ -400,9 +411,52 @@ public class DbAssignmentService extends BaseAssignmentService
 		public DbCachedAssignmentSubmissionStorage(AssignmentSubmissionStorageUser submission)
 		{
 			super(m_submissionsTableName, "SUBMISSION_ID", SUBMISSION_FIELDS, m_locksInDb, "submission", submission, m_sqlService);
+			m_submissionStatusCache = m_memoryService.getCache("org.sakaiproject.assignment.impl.DbAssignmentService.submissionStatusCache");
 
 		} // DbCachedAssignmentSubmissionStorage
 
+		public void open()
+		{
+			super.open();
+			if (eventTrackingService != null)
+			{
+				eventTrackingService.addObserver(this);
+			}
+		}
+
+		public void close()
+		{
+			if (eventTrackingService != null)
+			{
+				eventTrackingService.deleteObserver(this);
+			}
+			super.close();
+		}
+
+		/**
+		 * Drop the cached status rows of an assignment when any node adds, saves, submits, grades or removes one of its submissions.
+		 */
+		public void update(Observable o, Object arg)
+		{
+			if (!(arg instanceof Event)) return;
+			Event event = (Event) arg;
+			String function = event.getEvent();
+			if (AssignmentConstants.EVENT_ADD_ASSIGNMENT_SUBMISSION.equals(function)
+					|| AssignmentConstants.EVENT_UPDATE_ASSIGNMENT_SUBMISSION.equals(function)
+					|| AssignmentConstants.EVENT_SAVE_ASSIGNMENT_SUBMISSION.equals(function)
+					|| AssignmentConstants.EVENT_SUBMIT_ASSIGNMENT_SUBMISSION.equals(function)
+					|| AssignmentConstants.EVENT_GRADE_ASSIGNMENT_SUBMISSION.equals(function)
+					|| AssignmentConstants.EVENT_REMOVE_ASSIGNMENT_SUBMISSION.equals(function))
+			{
+				// /assignment/s/context/assignmentId/submissionId
+				String[] parts = event.getResource() == null ? new String[0] : event.getResource().split(Entity.SEPARATOR);
+				if (parts.length == 6)
+				{
+					invalidateSubmissionStatus(parts[4]);
+				}
+			}
+		}
+
 		public boolean check(String id)
 		{
 			return super.checkResource(id);
@@ -457,12 +511,49 @@ public class DbAssignmentService extends BaseAssignmentService
 				return userSubmissionMap;
 			}
 
-			// Work in batches of 1000 users (due to Oracle's in clause limit)
-			int minUser = 0;
-			int maxUser = Math.min(users.size(), MAX_IN_CLAUSE_SIZE);
-			while (minUser < users.size())
+			// This map will be useful to retrieve Users from submission.getSubmitterId()
+			Map<String, User> userIdUserMap = new HashMap<>();
+			for (User u : users)
 			{
-				List<User> userSublist = users.subList(minUser, maxUser);
+				userIdUserMap.put(u.getId(), u);
+			}
+
+			for (AssignmentSubmission submission : getSubmitterSubmissionMap(assignment.getId(), userIdUserMap.keySet()).values())
+			{
+				String submitterId = submission.getSubmitterId();
+				User u = userIdUserMap.get(submitterId);
+				if (u == null)
+				{
+					M_log.warn("getUserSubmissionMap() - submission's submitterId not found in the original user list");
+				}
+				else
+				{
+					userSubmissionMap.put(u, submission);
+				}
+			}
+
+			return userSubmissionMap;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		public Map<String, AssignmentSubmission> getSubmitterSubmissionMap(String assignmentId, Collection<String> submitterIds)
+		{
+			Map<String, AssignmentSubmission> submitterSubmissionMap = new HashMap<>();
+
+			if (CollectionUtils.isEmpty(submitterIds))
+			{
+				return submitterSubmissionMap;
+			}
+
+			// Work in batches of 1000 submitters (due to Oracle's in clause limit)
+			List<String> submitters = new ArrayList<>(submitterIds);
+			int minSubmitter = 0;
+			int maxSubmitter = Math.min(submitters.size(), MAX_IN_CLAUSE_SIZE);
+			while (minSubmitter < submitters.size())
+			{
+				List<String> submitterSublist = submitters.subList(minSubmitter, maxSubmitter);
 
 				/* 
 				 * Build a query like: 
@@ -470,28 +561,22 @@ public class DbAssignmentService extends BaseAssignmentService
 				 */
 				// The sql string
 				StringBuilder sql = new StringBuilder();
-				// fields are the values to be passed in. 1st param is assignment ID, the rest are userIDs
-				String fields[] = new String[1 + userSublist.size()];
+				// fields are the values to be passed in. 1st param is assignment ID, the rest are submitter ids
+				String fields[] = new String[1 + submitterSublist.size()];
 
 				String param = "?";
 				sql.append("select XML from ").append(m_submissionsTableName)
 					.append(" where (").append(SUBMISSION_FIELDS[0]).append(" = ").append(param).append(" AND ")
 					.append(SUBMISSION_FIELDS[1]).append(" in (");
-				fields[0] = caseId(assignment.getId());
+				fields[0] = caseId(assignmentId);
 
-				// This map will be useful to retrieve Users from submission.getSubmitterId()
-				Map<String, User> userIdUserMap = new HashMap<>();
-				for (int i = 0; i < userSublist.size(); i++)
+				for (int i = 0; i < submitterSublist.size(); i++)
 				{
-					User u = userSublist.get(i);
-					String userId = u.getId();
-					userIdUserMap.put(userId, u);
-
 					sql.append(param);
 					// compiler optimizes this (first iteration appends "?", subsequent iterations append ",?")
 					param = ",?";
-					// first field is assignmentId, all userId fields' indices are shifted up 1
-					fields[i + 1] = userId;
+					// first field is assignmentId, all submitter fields' indices are shifted up 1
+					fields[i + 1] = submitterSublist.get(i);
 				}
 				// append "))" to close "in (" and "where("
 				sql.append("))");
@@ -500,66 +585,76 @@ public class DbAssignmentService extends BaseAssignmentService
 				for (Object xml : xmlResources)
 				{
 					AssignmentSubmission submission = (AssignmentSubmission) readResource((String) xml);
-					String submitterId = submission.getSubmitterId();
-					User u = userIdUserMap.get(submitterId);
-					if (u == null)
-					{
-						M_log.warn("getUserSubmissionMap() - submission's submitterId not found in the original user list");
-					}
-					else
-					{
-						userSubmissionMap.put(u, submission);
-					}
+					submitterSubmissionMap.put(submission.getSubmitterId(), submission);
 				}
 
-				minUser += MAX_IN_CLAUSE_SIZE;
-				maxUser = Math.min(users.size(), minUser + MAX_IN_CLAUSE_SIZE);
+				minSubmitter += MAX_IN_CLAUSE_SIZE;
+				maxSubmitter = Math.min(submitters.size(), minSubmitter + MAX_IN_CLAUSE_SIZE);
 			}
 
-			return userSubmissionMap;
+			return submitterSubmissionMap;
 		}
 		
 		/**
-		 * Helper method to exclude inactive site members from submissions count
-		 * @param sqlWhere where clause from sql query 
-		 * @param assignmentId assignment id relating to query
-		 * @return
+		 * Read the status columns for all the submissions to an assignment, no XML is read. These are cached per assignment and dropped
+		 * whenever a submission to the assignment is added, committed or removed, here or on another node (see update()).
+		 *
+		 * @param assignmentId the assignment id
+		 * @return the status rows
 		 */
-		private int getSubmissionsCountWhere(String queryType, String assignmentRef) {
-			int count = 0;
+		private List<SubmissionStatusRow> getSubmissionStatusRows(String assignmentId)
+		{
+			List<SubmissionStatusRow> rows = m_submissionStatusCache.get(assignmentId);
+			if (rows == null)
+			{
+				String sql = "select " + SUBMISSION_FIELDS[1] + ", " + SUBMISSION_FIELDS[2] + ", " + SUBMISSION_FIELDS[3] + ", " + SUBMISSION_FIELDS[4]
+						+ ", " + SUBMISSION_FIELDS[5] + " from " + m_submissionsTableName + " where " + SUBMISSION_FIELDS[0] + " = ?";
+				Object fields[] = new Object[1];
+				fields[0] = caseId(assignmentId);
+				rows = m_sql.dbRead(sql, fields, new SqlReader<SubmissionStatusRow>()
+				{
+					public SubmissionStatusRow readSqlResultRecord(ResultSet result)
+					{
+						try
+						{
+							return new SubmissionStatusRow(result.getString(1), result.getString(2), result.getString(3), result.getString(4),
+									result.getString(5));
+						}
+						catch (SQLException e)
+						{
+							M_log.warn(this + ".getSubmissionStatusRows: " + e.getMessage());
+							return null;
+						}
+					}
+				});
+				m_submissionStatusCache.put(assignmentId, rows);
+			}
+			return rows;
+		}
+
+		private void invalidateSubmissionStatus(String assignmentId)
+		{
+			if (assignmentId != null)
+			{
+				m_submissionStatusCache.remove(assignmentId);
+			}
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		public SubmissionStatusCounts getSubmissionStatusCounts(String assignmentRef)
+		{
+			SubmissionStatusCounts counts = new SubmissionStatusCounts();
 			Site site = null;
 			Collection asgGroups = null;
-			String sqlWhere = null;
 			
 			try {
 				Assignment a = getAssignment(assignmentRef);
 				
 				// is this a non-electronice submission type assignment
 				boolean isNonElectronicSubmission = a.NON_ELECTRONIC_ASSIGNMENT_SUBMISSION == a.getContent().getTypeOfSubmission();
-				
-				if ("submitted".equals(queryType))
-				{
-					if (isNonElectronicSubmission)
-					{
-						sqlWhere ="where context='" + assignmentId(assignmentRef) + "' AND " + SUBMISSION_FIELDS[3] + "='" + Boolean.TRUE.toString() + "'";
-					}
-					else
-					{
-						sqlWhere ="where context='" + assignmentId(assignmentRef) + "' AND " + SUBMISSION_FIELDS[2] + " IS NOT NULL AND " + SUBMISSION_FIELDS[3] + "='" + Boolean.TRUE.toString() + "'";
-					}
-					
-				}
-				else if ("ungraded".equals(queryType))
-				{
-					if (isNonElectronicSubmission)
-					{
-						sqlWhere = "where context='" + assignmentId(assignmentRef) + "' AND " + SUBMISSION_FIELDS[3] + "='" + Boolean.TRUE.toString() + "' AND " + SUBMISSION_FIELDS[4] + "='" + Boolean.FALSE.toString() + "'";
-					}
-					else
-					{
-						sqlWhere ="where context='" + assignmentId(assignmentRef) + "' AND " + SUBMISSION_FIELDS[2] + " IS NOT NULL AND " + SUBMISSION_FIELDS[3] + "='" + Boolean.TRUE.toString() + "' AND " + SUBMISSION_FIELDS[4] + "='" + Boolean.FALSE.toString() + "'";
-					}
-				}
+				Time dueTime = a.getDueTime();
 				
 				if (a.getAccess().equals(Assignment.AssignmentAccess.GROUPED))
 				{
@@ -567,62 +662,70 @@ public class DbAssignmentService extends BaseAssignmentService
 				}
 				
 				site = siteService.getSite(a.getContext());
-				List l = super.getSelectedResourcesWhere(sqlWhere);
 				
-				if (a.isGroup()) {
-                                    for (Object o : l) {
-                                        AssignmentSubmission assignmentSubmission = (AssignmentSubmission)o;
-                                        Group _gg = site.getGroup(assignmentSubmission.getSubmitterId());
-                                        if (_gg != null) count++;
-                                    }
-				} else {
-				// check whether the submitter is an active member of the site
-				for (Object o : l) {
-					AssignmentSubmission assignmentSubmission = (AssignmentSubmission)o;
-					String userId = assignmentSubmission.getSubmitterIdString();
-					Member member = site != null ? site.getMember(userId) : null;
-					if(member != null && member.isActive()) 
-					{	
-						if (asgGroups != null)
-						{
-							// for group based assignment: check whether member is in any group if the assignment is for groups
-							boolean inGroup = false;
-							for (Iterator iAsgGroups=asgGroups.iterator(); site!=null && !inGroup && iAsgGroups.hasNext();)
-							{
-								String groupId = (String) iAsgGroups.next();
-								try
-								{
-									Group group = site.getGroup(groupId);
-									if ( group != null && group.getUserRole(userId) != null)
-									{
-										// in one of the group, hence increase the count
-										inGroup = true;
-										count++;
-									}
-								}
-								catch (Exception ee)
-								{
-									M_log.warn(this + " getSubmissionsCountWhere " + ee.getMessage() + " sqlWhere = " + sqlWhere + " assignmentRef=" + assignmentRef);
-								}
-							}
-						}
-						else
-						{
-							// for site based assignment
-							count++;
-						}
+				for (SubmissionStatusRow row : getSubmissionStatusRows(assignmentId(assignmentRef)))
+				{
+					if (row == null || !isCurrentSubmitter(a, site, asgGroups, row.submitterId))
+					{
+						continue;
 					}
-				}
+					boolean isSubmitted = row.submitted && (isNonElectronicSubmission || row.submitTime != null);
+					boolean isLate = dueTime != null && row.submitTime != null && row.submitTime > dueTime.getTime();
+					counts.add(isSubmitted, Boolean.TRUE.equals(row.graded), Boolean.FALSE.equals(row.graded), isLate, row.returned);
 				}
 			} catch (Exception e)
 			{
-				M_log.warn(this + ".getSubmissionsCountWhere(): assignmentRef=" + assignmentRef + " " + e.getMessage());
+				M_log.warn(this + ".getSubmissionStatusCounts(): assignmentRef=" + assignmentRef + " " + e.getMessage());
 			} catch (Throwable t) {
-				M_log.warn(this + ".getSubmissionsCountWhere(): ", t);
+				M_log.warn(this + ".getSubmissionStatusCounts(): ", t);
 				throw new IllegalArgumentException(t);
 			}
 			
-			return count;
+			return counts;
+		}
+
+		/**
+		 * Helper method to exclude inactive site members from submissions count
+		 * @return true if the submitter is a group in the site for group submissions, otherwise an active member of the site and of one of
+		 *         the assignment's groups if it is released to groups
+		 */
+		private boolean isCurrentSubmitter(Assignment a, Site site, Collection asgGroups, String submitterId)
+		{
+			if (a.isGroup())
+			{
+				return site.getGroup(submitterId) != null;
+			}
+			
+			// check whether the submitter is an active member of the site
+			Member member = site != null ? site.getMember(submitterId) : null;
+			if (member == null || !member.isActive())
+			{
+				return false;
+			}
+			if (asgGroups == null)
+			{
+				// for site based assignment
+				return true;
+			}
+			
+			// for group based assignment: check whether member is in any group if the assignment is for groups
+			for (Iterator iAsgGroups = asgGroups.iterator(); iAsgGroups.hasNext();)
+			{
+				String groupId = (String) iAsgGroups.next();
+				try
+				{
+					Group group = site.getGroup(groupId);
+					if (group != null && group.getUserRole(submitterId) != null)
+					{
+						return true;
+					}
+				}
+				catch (Exception ee)
+				{
+					M_log.warn(this + " isCurrentSubmitter " + ee.getMessage() + " assignment=" + a.getId() + " groupId=" + groupId);
+				}
+			}
+			return false;
 		}
 		
 		/**
@@ -630,7 +733,7 @@ public class DbAssignmentService extends BaseAssignmentService
 		 */
 		public int getSubmittedSubmissionsCount(String assignmentRef)
 		{
-			return getSubmissionsCountWhere("submitted", assignmentRef);
+			return getSubmissionStatusCounts(assignmentRef).getSubmitted();
 		}
 		
 		/**
@@ -638,7 +741,7 @@ public class DbAssignmentService extends BaseAssignmentService
 		 */
 		public int getUngradedSubmissionsCount(String assignmentRef)
 		{
-			return getSubmissionsCountWhere("ungraded", assignmentRef );
+			return getSubmissionStatusCounts(assignmentRef).getUngraded();
 		}
 		
 
@@ -657,7 +760,9 @@ public class DbAssignmentService extends BaseAssignmentService
 			others[3] = submitted;
 			others[4] = graded;
 			
-			return (AssignmentSubmissionEdit) super.putResource(id, others);
+			AssignmentSubmissionEdit edit = (AssignmentSubmissionEdit) super.putResource(id, others);
+			invalidateSubmissionStatus(assignmentId);
+			return edit;
 		}
 
 		public AssignmentSubmissionEdit edit(String id)
@@ -668,6 +773,7 @@ public class DbAssignmentService extends BaseAssignmentService
 		public void commit(AssignmentSubmissionEdit edit)
 		{
 			super.commitResource(edit);
+			invalidateSubmissionStatus(edit.getAssignmentId());
 		}
 
 		public void cancel(AssignmentSubmissionEdit edit)
@@ -678,10 +784,59 @@ public class DbAssignmentService extends BaseAssignmentService
 		public void remove(AssignmentSubmissionEdit edit)
 		{
 			super.removeResource(edit);
+			invalidateSubmissionStatus(edit.getAssignmentId());
 		}
 
 	} // DbCachedAssignmentSubmissionStorage
 
+	/**
+	 * The indexed status columns of one submission row
+	 */
+	protected static class SubmissionStatusRow implements Serializable
+	{
+		private static final long serialVersionUID = 1L;
+
+		protected final String submitterId;
+		protected final Long submitTime;
+		protected final boolean submitted;
+		/** null if the row has no GRADED value */
+		protected final Boolean graded;
+		protected final boolean returned;
+
+		protected SubmissionStatusRow(String submitterId, String submitTime, String submitted, String graded, String returned)
+		{
+			this.submitterId = submitterId;
+			Long time = null;
+			if (submitTime != null)
+			{
+				try
+				{
+					time = Long.valueOf(submitTime);
+				}
+				catch (NumberFormatException e)
+				{
+					// still counts as having a submit time
+					time = Long.MIN_VALUE;
+				}
+			}
+			this.submitTime = time;
+			this.submitted = Boolean.TRUE.toString().equals(submitted);
+			this.returned = Boolean.TRUE.toString().equals(returned);
+			if (Boolean.TRUE.toString().equals(graded))
+			{
+				this.graded = Boolean.TRUE;
+			}
+			else if (Boolean.FALSE.toString().equals(graded))
+			{
+				this.graded = Boolean.FALSE;
+			}
+			else
+			{
+				this.graded = null;
+			}
+		}
+	}
+
 	/**
 	 * fill in the context field for any record missing it
 	 */
@@ -0,0 +1,243 @@
+package org.sakaiproject.assignment.impl;
+
+import org.apache.commons.io.IOUtils;
+import org.sakaiproject.content.api.ContentResource;
+import org.sakaiproject.exception.ServerOverloadException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Reads attachment bodies ahead of the zip writer for the submissions download. The zip itself has to be written sequentially, but
+ * reading the bodies from the content store can happen in parallel while earlier entries are being written.
+ * <p>
+ * The resources must be resolved (and so permission checked) by the calling thread; only the body reads happen on the worker threads.
+ * At most {@code maxBodies} bodies are read at once, if none can be started the body is simply streamed directly when it is needed.
+ * Memory is bounded by the bytes held rather than the number of bodies: bodies up to {@code memoryThreshold} bytes are kept in memory
+ * while the total held stays under {@code maxBodies * memoryThreshold}, anything else is spooled to a temp file. So bodies that are
+ * never opened only cost disk until the prefetcher is closed.
+ * </p>
+ * Not thread safe, one instance per download.
+ */
+public class SubmissionAttachmentPrefetcher implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(SubmissionAttachmentPrefetcher.class);
+
+    private final ExecutorService executor;
+    private final Semaphore permits;
+    private final int memoryThreshold;
+    private final long maxMemory;
+    private final AtomicLong memoryHeld = new AtomicLong();
+    private final Map<String, Future<PrefetchedBody>> pending = new HashMap<>();
+    // every body read and not yet discarded, so close can free the ones that finish after it
+    private final Set<PrefetchedBody> held = ConcurrentHashMap.newKeySet();
+    private volatile boolean closed = false;
+
+    /**
+     * @param executor the pool to read bodies on, may be null to disable prefetching
+     * @param maxBodies maximum number of bodies read ahead at any one time
+     * @param memoryThreshold bodies larger than this many bytes are spooled to disk
+     */
+    public SubmissionAttachmentPrefetcher(ExecutorService executor, int maxBodies, int memoryThreshold) {
+        this.executor = executor;
+        this.permits = new Semaphore(Math.max(0, maxBodies));
+        this.memoryThreshold = Math.max(0, memoryThreshold);
+        this.maxMemory = (long) Math.max(0, maxBodies) * this.memoryThreshold;
+    }
+
+    /**
+     * Start reading the body of a resource in the background, if there is capacity to do so.
+     *
+     * @param resource an already resolved resource
+     */
+    public void prefetch(final ContentResource resource) {
+        if (executor == null || closed || resource == null || pending.containsKey(resource.getId())) {
+            return;
+        }
+        if (!permits.tryAcquire()) {
+            return;
+        }
+        try {
+            pending.put(resource.getId(), executor.submit(() -> read(resource)));
+        } catch (RejectedExecutionException e) {
+            permits.release();
+            log.debug("Prefetch rejected for {}", resource.getId());
+        }
+    }
+
+    /**
+     * Open the body of a resource, using the prefetched copy if there is one.
+     * The returned stream must be closed, this frees the prefetched copy.
+     *
+     * @param resource the resource
+     * @return the body
+     * @throws ServerOverloadException if the body cannot be read
+     */
+    public InputStream open(final ContentResource resource) throws ServerOverloadException {
+        Future<PrefetchedBody> future = pending.remove(resource.getId());
+        if (future != null) {
+            try {
+                return future.get().open();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                log.warn("Interrupted waiting for the prefetched body of {}", resource.getId());
+            } catch (ExecutionException | IOException e) {
+                log.warn("Could not use the prefetched body of {}, reading it directly: {}", resource.getId(), e.toString());
+            }
+        }
+        return resource.streamContent();
+    }
+
+    /**
+     * Cancel anything not started yet and remove any bodies that were read but never used. Reads still in progress remove their
+     * body when they finish.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        for (Future<PrefetchedBody> future : pending.values()) {
+            future.cancel(false);
+        }
+        pending.clear();
+        for (PrefetchedBody body : held) {
+            body.discard();
+        }
+    }
+
+    /**
+     * @return the bytes of prefetched bodies currently held in memory
+     */
+    long getMemoryHeld() {
+        return memoryHeld.get();
+    }
+
+    private PrefetchedBody read(final ContentResource resource) throws ServerOverloadException, IOException {
+        PrefetchedBody body;
+        try {
+            body = readBody(resource);
+        } finally {
+            // the permit only limits the reads running at once, what is held afterwards is bounded by memoryHeld
+            permits.release();
+        }
+        held.add(body);
+        if (closed) {
+            body.discard();
+        }
+        return body;
+    }
+
+    private PrefetchedBody readBody(final ContentResource resource) throws ServerOverloadException, IOException {
+        long length = resource.getContentLength();
+        if (length >= 0 && length <= memoryThreshold && reserve(length)) {
+            boolean kept = false;
+            InputStream in = resource.streamContent();
+            try {
+                byte[] bytes = new byte[(int) length];
+                if (IOUtils.read(in, bytes) == bytes.length && in.read() == -1) {
+                    kept = true;
+                    return new PrefetchedBody(bytes, null);
+                }
+            } finally {
+                IOUtils.closeQuietly(in);
+                if (!kept) {
+                    memoryHeld.addAndGet(-length);
+                }
+            }
+            log.debug("Body of {} is not its recorded length, spooling it", resource.getId());
+        }
+        return new PrefetchedBody(null, spool(resource));
+    }
+
+    private boolean reserve(long length) {
+        while (true) {
+            long current = memoryHeld.get();
+            if (current + length > maxMemory) {
+                return false;
+            }
+            if (memoryHeld.compareAndSet(current, current + length)) {
+                return true;
+            }
+        }
+    }
+
+    private File spool(final ContentResource resource) throws ServerOverloadException, IOException {
+        File file = File.createTempFile("assignment-zip-", ".tmp");
+        boolean spooled = false;
+        InputStream in = resource.streamContent();
+        try (OutputStream out = new FileOutputStream(file)) {
+            IOUtils.copyLarge(in, out);
+            spooled = true;
+            return file;
+        } finally {
+            IOUtils.closeQuietly(in);
+            if (!spooled && !file.delete()) {
+                log.warn("Could not delete temp file {}", file);
+            }
+        }
+    }
+
+    /**
+     * A body held in memory or in a temp file, freed when the stream opened on it is closed or it is discarded.
+     */
+    private class PrefetchedBody {
+        private byte[] bytes;
+        private File file;
+        private boolean released = false;
+
+        private PrefetchedBody(byte[] bytes, File file) {
+            this.bytes = bytes;
+            this.file = file;
+        }
+
+        private synchronized InputStream open() throws IOException {
+            if (released) {
+                throw new IOException("Prefetched body already discarded");
+            }
+            InputStream in = (file == null) ? new ByteArrayInputStream(bytes) : new FileInputStream(file);
+            return new FilterInputStream(in) {
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        discard();
+                    }
+                }
+            };
+        }
+
+        private synchronized void discard() {
+            if (released) {
+                return;
+            }
+            released = true;
+            held.remove(this);
+            if (file != null && !file.delete()) {
+                log.warn("Could not delete temp file {}", file);
+            }
+            if (bytes != null) {
+                memoryHeld.addAndGet(-bytes.length);
+            }
+            file = null;
+            bytes = null;
+        }
+    }
+}
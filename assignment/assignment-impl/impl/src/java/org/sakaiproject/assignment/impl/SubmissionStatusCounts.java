@@ -0,0 +1,77 @@
+package org.sakaiproject.assignment.impl;
+
+/**
+ * Status counts for the submissions to one assignment, counting only the submitters that are still active in the site (and in one of the
+ * assignment's groups for a grouped assignment). Built from the indexed columns of the submission table, not the submission XML.
+ */
+public class SubmissionStatusCounts {
+
+    private int submitted;
+    private int graded;
+    private int ungraded;
+    private int late;
+    private int returned;
+
+    /**
+     * Count a submission from a current submitter
+     *
+     * @param isSubmitted true if it counts as submitted for the type of assignment
+     * @param isGraded true if the GRADED flag is set
+     * @param isUngraded true if the GRADED flag is explicitly unset, older rows may have neither
+     * @param isLate true if it was submitted after the due date
+     * @param isReturned true if the RETURNED flag is set
+     */
+    void add(boolean isSubmitted, boolean isGraded, boolean isUngraded, boolean isLate, boolean isReturned) {
+        if (!isSubmitted) {
+            return;
+        }
+        submitted++;
+        if (isGraded) {
+            graded++;
+        }
+        if (isUngraded) {
+            ungraded++;
+        }
+        if (isLate) {
+            late++;
+        }
+        if (isReturned) {
+            returned++;
+        }
+    }
+
+    /**
+     * @return the number of submissions that have been submitted
+     */
+    public int getSubmitted() {
+        return submitted;
+    }
+
+    /**
+     * @return the number of submitted submissions that have been graded
+     */
+    public int getGraded() {
+        return graded;
+    }
+
+    /**
+     * @return the number of submitted submissions that have not been graded
+     */
+    public int getUngraded() {
+        return ungraded;
+    }
+
+    /**
+     * @return the number of submitted submissions that came in after the due date
+     */
+    public int getLate() {
+        return late;
+    }
+
+    /**
+     * @return the number of submitted submissions that have been returned to the submitter
+     */
+    public int getReturned() {
+        return returned;
+    }
+}
@@ -44,6 +44,7 @@ CREATE TABLE ASSIGNMENT_SUBMISSION
 	SUBMIT_TIME VARCHAR(99),
 	SUBMITTED VARCHAR(6),
 	GRADED VARCHAR(6),
+	RETURNED VARCHAR(6),
 	XML LONGVARCHAR,
     CONSTRAINT ASSIGNMENT_SUBMISSION_INDEX UNIQUE (SUBMISSION_ID),
 	CONSTRAINT ASSIGNMENT_SUBMISSION_SUBMITTER_INDEX UNIQUE (CONTEXT,SUBMITTER_ID)
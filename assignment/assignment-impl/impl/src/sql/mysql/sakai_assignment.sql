@@ -52,6 +52,7 @@ CREATE TABLE ASSIGNMENT_SUBMISSION
 	SUBMIT_TIME VARCHAR(99),
 	SUBMITTED VARCHAR(6),
 	GRADED VARCHAR(6),
+	RETURNED VARCHAR(6),
     XML LONGTEXT
 );
 
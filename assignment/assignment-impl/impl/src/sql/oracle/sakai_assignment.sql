@@ -52,6 +52,7 @@ CREATE TABLE ASSIGNMENT_SUBMISSION
 	SUBMIT_TIME VARCHAR2 (99),
 	SUBMITTED VARCHAR2 (6),
 	GRADED VARCHAR2 (6),
+	RETURNED VARCHAR2 (6),
     XML LONG
 );
 
@@ -0,0 +1,208 @@
+package org.sakaiproject.assignment.impl;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.sakaiproject.assignment.api.Assignment;
+import org.sakaiproject.assignment.api.AssignmentConstants;
+import org.sakaiproject.assignment.api.AssignmentContent;
+import org.sakaiproject.authz.api.Member;
+import org.sakaiproject.db.api.SqlReader;
+import org.sakaiproject.db.api.SqlService;
+import org.sakaiproject.event.api.Event;
+import org.sakaiproject.memory.api.Cache;
+import org.sakaiproject.memory.api.MemoryService;
+import org.sakaiproject.site.api.Site;
+import org.sakaiproject.site.api.SiteService;
+import org.sakaiproject.time.api.Time;
+
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.*;
+
+public class DbAssignmentServiceTest {
+
+	private static final String CONTEXT = "site1";
+	private static final String ASSIGNMENT_ID = "a1";
+	private static final String ASSIGNMENT_REF = "/assignment/a/" + CONTEXT + "/" + ASSIGNMENT_ID;
+	private static final long DUE = 1000000L;
+
+	private SqlService sqlService;
+	private Map<String, Object> cached;
+	private List<Object[]> statusRows;
+	private DbAssignmentService.DbCachedAssignmentSubmissionStorage storage;
+
+	@Before
+	@SuppressWarnings("unchecked")
+	public void setUp() throws Exception {
+		sqlService = mock(SqlService.class);
+		when(sqlService.getVendor()).thenReturn("hsqldb");
+
+		// a cache backed by a map, so the tests can see what is held
+		cached = new HashMap<>();
+		Cache cache = mock(Cache.class);
+		when(cache.get(anyString())).thenAnswer(i -> cached.get(i.getArgument(0)));
+		doAnswer(i -> cached.put(i.getArgument(0), i.getArgument(1))).when(cache).put(anyString(), any());
+		when(cache.remove(anyString())).thenAnswer(i -> cached.remove(i.getArgument(0)) != null);
+		MemoryService memoryService = mock(MemoryService.class);
+		when(memoryService.getCache(anyString())).thenReturn(cache);
+
+		AssignmentContent content = mock(AssignmentContent.class);
+		when(content.getTypeOfSubmission()).thenReturn(Assignment.TEXT_ONLY_ASSIGNMENT_SUBMISSION);
+		Time dueTime = mock(Time.class);
+		when(dueTime.getTime()).thenReturn(DUE);
+		Assignment assignment = mock(Assignment.class);
+		when(assignment.getId()).thenReturn(ASSIGNMENT_ID);
+		when(assignment.getContext()).thenReturn(CONTEXT);
+		when(assignment.getContent()).thenReturn(content);
+		when(assignment.getDueTime()).thenReturn(dueTime);
+		when(assignment.getAccess()).thenReturn(Assignment.AssignmentAccess.SITE);
+
+		// u1 to u4 are active members, u5 has left the site
+		Site site = mock(Site.class);
+		for (int i = 1; i <= 4; i++) {
+			Member member = mock(Member.class);
+			when(member.isActive()).thenReturn(true);
+			when(site.getMember("u" + i)).thenReturn(member);
+		}
+		SiteService siteService = mock(SiteService.class);
+		when(siteService.getSite(CONTEXT)).thenReturn(site);
+
+		// submitter, submit time, submitted, graded, returned
+		statusRows = new ArrayList<>();
+		statusRows.add(new Object[] {"u1", String.valueOf(DUE - 1), "true", "true", "true"});
+		statusRows.add(new Object[] {"u2", String.valueOf(DUE + 1), "true", "false", "false"});
+		statusRows.add(new Object[] {"u3", null, "false", "false", "false"});
+		statusRows.add(new Object[] {"u4", String.valueOf(DUE - 1), "true", null, null});
+		statusRows.add(new Object[] {"u5", String.valueOf(DUE - 1), "true", "false", "false"});
+		when(sqlService.dbRead(startsWith("select SUBMITTER_ID"), any(Object[].class), any(SqlReader.class))).thenAnswer(i -> {
+			SqlReader reader = i.getArgument(2);
+			List<Object> rval = new ArrayList<>();
+			for (Object[] row : statusRows) {
+				ResultSet result = mock(ResultSet.class);
+				for (int c = 0; c < row.length; c++) {
+					when(result.getString(c + 1)).thenReturn((String) row[c]);
+				}
+				rval.add(reader.readSqlResultRecord(result));
+			}
+			return rval;
+		});
+		when(sqlService.dbRead(startsWith("select XML"), any(Object[].class), isNull())).thenReturn(Collections.emptyList());
+
+		DbAssignmentService service = new DbAssignmentService() {
+			@Override
+			public Assignment getAssignment(String assignmentReference) {
+				return assignment;
+			}
+		};
+		service.setSqlService(sqlService);
+		service.setMemoryService(memoryService);
+		service.setSiteService(siteService);
+		storage = (DbAssignmentService.DbCachedAssignmentSubmissionStorage) service.newSubmissionStorage();
+	}
+
+	@SuppressWarnings("unchecked")
+	private int statusReads() {
+		return mockingDetails(sqlService).getInvocations().stream()
+				.filter(i -> i.getMethod().getName().equals("dbRead") && ((String) i.getArgument(0)).startsWith("select SUBMITTER_ID"))
+				.mapToInt(i -> 1).sum();
+	}
+
+	private Event event(String function, String resource) {
+		Event event = mock(Event.class);
+		when(event.getEvent()).thenReturn(function);
+		when(event.getResource()).thenReturn(resource);
+		return event;
+	}
+
+	@Test
+	public void testStatusCounts() {
+		SubmissionStatusCounts counts = storage.getSubmissionStatusCounts(ASSIGNMENT_REF);
+		// u3 hasn't submitted and u5 isn't in the site any more
+		assertEquals(3, counts.getSubmitted());
+		assertEquals(1, counts.getGraded());
+		// u4 has no GRADED value, so is neither graded nor ungraded
+		assertEquals(1, counts.getUngraded());
+		assertEquals(1, counts.getLate());
+		assertEquals(1, counts.getReturned());
+		assertEquals(3, storage.getSubmittedSubmissionsCount(ASSIGNMENT_REF));
+		assertEquals(1, storage.getUngradedSubmissionsCount(ASSIGNMENT_REF));
+	}
+
+	@Test
+	public void testStatusRowsCached() {
+		storage.getSubmissionStatusCounts(ASSIGNMENT_REF);
+		storage.getSubmissionStatusCounts(ASSIGNMENT_REF);
+		assertEquals(1, statusReads());
+	}
+
+	@Test
+	public void testEventDropsStatusRows() {
+		assertEquals(1, storage.getSubmissionStatusCounts(ASSIGNMENT_REF).getGraded());
+
+		// u2 is graded on another node
+		statusRows.get(1)[3] = "true";
+		storage.update(null, event(AssignmentConstants.EVENT_GRADE_ASSIGNMENT_SUBMISSION, "/assignment/s/" + CONTEXT + "/" + ASSIGNMENT_ID + "/s2"));
+		assertEquals(2, storage.getSubmissionStatusCounts(ASSIGNMENT_REF).getGraded());
+		assertEquals(0, storage.getSubmissionStatusCounts(ASSIGNMENT_REF).getUngraded());
+		assertEquals(2, statusReads());
+	}
+
+	@Test
+	public void testOtherEventsKeepStatusRows() {
+		storage.getSubmissionStatusCounts(ASSIGNMENT_REF);
+		storage.update(null, event(AssignmentConstants.EVENT_GRADE_ASSIGNMENT_SUBMISSION, "/assignment/s/" + CONTEXT + "/a2/s9"));
+		storage.update(null, event(AssignmentConstants.EVENT_ACCESS_ASSIGNMENT_SUBMISSION, "/assignment/s/" + CONTEXT + "/" + ASSIGNMENT_ID + "/s2"));
+		storage.update(null, "not an event");
+		storage.getSubmissionStatusCounts(ASSIGNMENT_REF);
+		assertEquals(1, statusReads());
+	}
+
+	private List<Object[]> submitterQueries(int submitters) {
+		List<String> ids = new ArrayList<>();
+		for (int i = 0; i < submitters; i++) {
+			ids.add("u" + i);
+		}
+		storage.getSubmitterSubmissionMap(ASSIGNMENT_ID, ids);
+
+		ArgumentCaptor<Object[]> fields = ArgumentCaptor.forClass(Object[].class);
+		verify(sqlService, atLeast(0)).dbRead(startsWith("select XML"), fields.capture(), isNull());
+		return fields.getAllValues();
+	}
+
+	@Test
+	public void testSubmitterQueryOneBatch() {
+		List<Object[]> queries = submitterQueries(DbAssignmentService.MAX_IN_CLAUSE_SIZE);
+		assertEquals(1, queries.size());
+		// the assignment id and then the submitters
+		assertEquals(DbAssignmentService.MAX_IN_CLAUSE_SIZE + 1, queries.get(0).length);
+		assertEquals(ASSIGNMENT_ID, queries.get(0)[0]);
+	}
+
+	@Test
+	public void testSubmitterQueryBatchBoundary() {
+		List<Object[]> queries = submitterQueries(DbAssignmentService.MAX_IN_CLAUSE_SIZE + 1);
+		assertEquals(2, queries.size());
+		assertEquals(DbAssignmentService.MAX_IN_CLAUSE_SIZE + 1, queries.get(0).length);
+		assertEquals(2, queries.get(1).length);
+		assertEquals(ASSIGNMENT_ID, queries.get(1)[0]);
+	}
+
+	@Test
+	public void testSubmitterQueryFullBatches() {
+		List<Object[]> queries = submitterQueries(2 * DbAssignmentService.MAX_IN_CLAUSE_SIZE);
+		assertEquals(2, queries.size());
+		assertEquals(DbAssignmentService.MAX_IN_CLAUSE_SIZE + 1, queries.get(1).length);
+	}
+
+	@Test
+	public void testNoSubmittersNoQuery() {
+		assertEquals(0, submitterQueries(0).size());
+	}
+}
@@ -0,0 +1,204 @@
+package org.sakaiproject.assignment.impl;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.sakaiproject.content.api.ContentResource;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.*;
+
+public class SubmissionAttachmentPrefetcherTest {
+
+	/**
+	 * Runs each read straight away on the calling thread, so the tests know when a prefetch has finished.
+	 */
+	private static class DirectExecutorService extends AbstractExecutorService {
+		private boolean shutdown = false;
+
+		public void execute(Runnable command) {
+			command.run();
+		}
+
+		public void shutdown() {
+			shutdown = true;
+		}
+
+		public List<Runnable> shutdownNow() {
+			shutdown = true;
+			return null;
+		}
+
+		public boolean isShutdown() {
+			return shutdown;
+		}
+
+		public boolean isTerminated() {
+			return shutdown;
+		}
+
+		public boolean awaitTermination(long timeout, TimeUnit unit) {
+			return true;
+		}
+	}
+
+	private ExecutorService executor;
+
+	private Set<String> tempFilesBefore;
+
+	@Before
+	public void setUp() {
+		executor = new DirectExecutorService();
+		tempFilesBefore = tempFiles();
+	}
+
+	@After
+	public void tearDown() {
+		executor.shutdown();
+	}
+
+	private static Set<String> tempFiles() {
+		String[] names = new File(System.getProperty("java.io.tmpdir")).list((dir, name) -> name.startsWith("assignment-zip-"));
+		return new HashSet<>(Arrays.asList(names == null ? new String[0] : names));
+	}
+
+	private int newTempFiles() {
+		Set<String> files = tempFiles();
+		files.removeAll(tempFilesBefore);
+		return files.size();
+	}
+
+	private static ContentResource resource(String id, String body, long length) throws Exception {
+		byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+		ContentResource resource = mock(ContentResource.class);
+		when(resource.getId()).thenReturn(id);
+		when(resource.getContentLength()).thenReturn(length);
+		when(resource.streamContent()).thenAnswer(invocation -> new ByteArrayInputStream(bytes));
+		return resource;
+	}
+
+	private static ContentResource resource(String id, String body) throws Exception {
+		return resource(id, body, body.getBytes(StandardCharsets.UTF_8).length);
+	}
+
+	private static String read(InputStream in) throws Exception {
+		try {
+			return IOUtils.toString(in, StandardCharsets.UTF_8);
+		} finally {
+			in.close();
+		}
+	}
+
+	@Test
+	public void testSkippedBodyDoesNotHoldPermit() throws Exception {
+		ContentResource skipped = resource("skipped", "skipped body");
+		ContentResource used = resource("used", "used body");
+		SubmissionAttachmentPrefetcher prefetcher = new SubmissionAttachmentPrefetcher(executor, 1, 1024);
+
+		prefetcher.prefetch(skipped);
+		// the first read has finished, so its permit is free again even though the body is never opened
+		prefetcher.prefetch(used);
+		verify(used, times(1)).streamContent();
+
+		assertEquals("used body", read(prefetcher.open(used)));
+		verify(used, times(1)).streamContent();
+		assertEquals("skipped body".length(), prefetcher.getMemoryHeld());
+
+		prefetcher.close();
+		assertEquals(0, prefetcher.getMemoryHeld());
+	}
+
+	@Test
+	public void testMemoryBoundedByBytesHeld() throws Exception {
+		ContentResource first = resource("first", "12345678");
+		ContentResource second = resource("second", "abcdefgh");
+		// room for 10 bytes in memory
+		SubmissionAttachmentPrefetcher prefetcher = new SubmissionAttachmentPrefetcher(executor, 1, 10);
+
+		prefetcher.prefetch(first);
+		assertEquals(8, prefetcher.getMemoryHeld());
+		prefetcher.prefetch(second);
+		assertEquals(8, prefetcher.getMemoryHeld());
+		assertEquals(1, newTempFiles());
+
+		assertEquals("abcdefgh", read(prefetcher.open(second)));
+		assertEquals(0, newTempFiles());
+		assertEquals("12345678", read(prefetcher.open(first)));
+		assertEquals(0, prefetcher.getMemoryHeld());
+		prefetcher.close();
+	}
+
+	@Test
+	public void testLargeBodySpooled() throws Exception {
+		ContentResource large = resource("large", "a body larger than the threshold");
+		SubmissionAttachmentPrefetcher prefetcher = new SubmissionAttachmentPrefetcher(executor, 4, 8);
+
+		prefetcher.prefetch(large);
+		assertEquals(0, prefetcher.getMemoryHeld());
+		assertEquals(1, newTempFiles());
+		assertEquals("a body larger than the threshold", read(prefetcher.open(large)));
+		assertEquals(0, newTempFiles());
+		prefetcher.close();
+	}
+
+	@Test
+	public void testWrongContentLength() throws Exception {
+		ContentResource longer = resource("longer", "longer than recorded", 4);
+		ContentResource shorter = resource("shorter", "short", 100);
+		SubmissionAttachmentPrefetcher prefetcher = new SubmissionAttachmentPrefetcher(executor, 4, 1024);
+
+		prefetcher.prefetch(longer);
+		prefetcher.prefetch(shorter);
+		assertEquals(0, prefetcher.getMemoryHeld());
+		assertEquals("longer than recorded", read(prefetcher.open(longer)));
+		assertEquals("short", read(prefetcher.open(shorter)));
+		prefetcher.close();
+	}
+
+	@Test
+	public void testCloseDiscardsUnusedBodies() throws Exception {
+		ContentResource small = resource("small", "small");
+		ContentResource large = resource("large", "a body larger than the threshold");
+		SubmissionAttachmentPrefetcher prefetcher = new SubmissionAttachmentPrefetcher(executor, 4, 8);
+
+		prefetcher.prefetch(small);
+		prefetcher.prefetch(large);
+		assertEquals(5, prefetcher.getMemoryHeld());
+		assertEquals(1, newTempFiles());
+
+		prefetcher.close();
+		assertEquals(0, prefetcher.getMemoryHeld());
+		assertEquals(0, newTempFiles());
+
+		// after closing the bodies are read directly
+		assertEquals("small", read(prefetcher.open(small)));
+		verify(small, times(2)).streamContent();
+	}
+
+	@Test
+	public void testDirectWhenNoPermit() throws Exception {
+		ContentResource body = resource("body", "body");
+		SubmissionAttachmentPrefetcher prefetcher = new SubmissionAttachmentPrefetcher(executor, 0, 1024);
+
+		prefetcher.prefetch(body);
+		verify(body, never()).streamContent();
+		byte[] bytes = IOUtils.toByteArray(prefetcher.open(body));
+		assertArrayEquals("body".getBytes(StandardCharsets.UTF_8), bytes);
+		assertEquals(0, prefetcher.getMemoryHeld());
+		prefetcher.close();
+	}
+}
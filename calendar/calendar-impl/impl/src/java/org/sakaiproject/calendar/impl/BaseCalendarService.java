@@ -143,6 +143,9 @@ public abstract class BaseCalendarService implements CalendarService, DoubleStor
 	public static final String SAKAI = "Sakai";
 	
 	private Cache cache = null;
+
+	/** The instances of recurring events, see BaseCalendarEventEdit.generateInstances(). */
+	private Cache recurrenceCache = null;
 	
 	/**
 	 * Access this service from the inner classes.
@@ -708,6 +711,11 @@ public abstract class BaseCalendarService implements CalendarService, DoubleStor
 		SimpleConfiguration cacheConfig = new SimpleConfiguration(0);
 		cacheConfig.setStatisticsEnabled(true);
 		cache = this.m_memoryService.createCache("org.sakaiproject.calendar.cache", cacheConfig);
+
+		// the keys hold everything the instances depend on, so entries never go stale, they only expire to free memory
+		SimpleConfiguration recurrenceCacheConfig = new SimpleConfiguration(10000, 3600, 0);
+		recurrenceCacheConfig.setStatisticsEnabled(true);
+		recurrenceCache = this.m_memoryService.createCache("org.sakaiproject.calendar.recurrence.cache", recurrenceCacheConfig);
 	}
 
 	/**
@@ -4012,7 +4020,7 @@ public abstract class BaseCalendarService implements CalendarService, DoubleStor
 				{
 					timezone = TimeZone.getTimeZone(timeZoneID);
 				}
-				List instances = m_singleRule.generateInstances(this.getRange(), range, timezone);
+				List instances = generateInstances(range, timezone);
 
 				// remove any excluded
 				getExclusionRule().excludeInstances(instances);
@@ -4032,6 +4040,60 @@ public abstract class BaseCalendarService implements CalendarService, DoubleStor
 
 		} // resolve
 
+		/**
+		 * Generate the instances of this recurring event in the time range, before any are excluded. They are the same every
+		 * time the same range is viewed in the same time zone, so they are cached rather than worked out again on each view.
+		 * 
+		 * @param range
+		 *        The time range bounds for the instances.
+		 * @param timezone
+		 *        The time zone the event was created in.
+		 * @return a List (RecurrenceInstance) of the instances, which the caller may change.
+		 */
+		protected List generateInstances(TimeRange range, TimeZone timezone)
+		{
+			// other rules may not depend only on what goes into the key
+			if (recurrenceCache == null || !(m_singleRule instanceof RecurrenceRuleBase))
+			{
+				return m_singleRule.generateInstances(this.getRange(), range, timezone);
+			}
+
+			// the instances are worked out in the user's time zone as well as the event's
+			Time until = m_singleRule.getUntil();
+			String key = m_singleRule.getClass().getName() + "/" + m_singleRule.getInterval() + "/" + m_singleRule.getCount() + "/"
+					+ ((until == null) ? "" : Long.toString(until.getTime())) + "/" + getRange().toString() + "/" + range.toString() + "/"
+					+ timezone.getID() + "/" + m_timeService.getLocalTimeZone().getID();
+
+			// kept as first time, last time and sequence number of each instance
+			long[] cached = (long[]) recurrenceCache.get(key);
+			if (cached == null)
+			{
+				List instances = m_singleRule.generateInstances(this.getRange(), range, timezone);
+				cached = new long[instances.size() * 3];
+				for (int i = 0; i < instances.size(); i++)
+				{
+					RecurrenceInstance ri = (RecurrenceInstance) instances.get(i);
+					cached[i * 3] = ri.getRange().firstTime().getTime();
+					cached[i * 3 + 1] = ri.getRange().lastTime().getTime();
+					cached[i * 3 + 2] = ri.getSequence().intValue();
+				}
+				recurrenceCache.put(key, cached);
+				return instances;
+			}
+
+			// made the same way as RecurrenceRuleBase.generateInstances()
+			boolean singleTime = getRange().isSingleTime();
+			List instances = new Vector(cached.length / 3);
+			for (int i = 0; i < cached.length; i += 3)
+			{
+				TimeRange instanceRange = singleTime ? m_timeService.newTimeRange(m_timeService.newTime(cached[i]))
+						: m_timeService.newTimeRange(m_timeService.newTime(cached[i]), m_timeService.newTime(cached[i + 1]), true, false);
+				instances.add(new RecurrenceInstance(instanceRange, (int) cached[i + 2]));
+			}
+			return instances;
+
+		} // generateInstances
+
 		/**
 		 * Get the value of an "extra" event field.
 		 * 
@@ -42,6 +42,7 @@ import org.sakaiproject.memory.api.SimpleConfiguration;
 import org.sakaiproject.site.api.Site;
 import org.sakaiproject.site.api.SiteService;
 import org.sakaiproject.site.api.ToolConfiguration;
+import org.sakaiproject.thread_local.api.ThreadLocalManager;
 import org.sakaiproject.time.api.Time;
 import org.sakaiproject.time.api.TimeRange;
 import org.sakaiproject.time.api.TimeService;
@@ -54,16 +55,28 @@ import org.w3c.dom.Element;
 
 import java.io.BufferedInputStream;
 import java.io.IOException;
+import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLConnection;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.time.Clock;
+import java.time.Duration;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.time.temporal.TemporalUnit;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import static org.sakaiproject.calendar.api.ExternalSubscriptionDetails.*;
 
@@ -85,6 +98,15 @@ public class BaseExternalCalendarSubscriptionService implements
 	/** Default connect timeout when retrieving external subscriptions */
 	private final static int TIMEOUT = 30000;
 
+	/** Default minutes before a subscription is refreshed */
+	private final static int DEFAULT_CACHETIME = 120;
+
+	/** sakai.properties: number of threads refreshing subscriptions in the background */
+	private final static String SAK_PROP_EXTSUBSCRIPTIONS_REFRESH_THREADS = "calendar.external.subscriptions.refresh.threads";
+
+	/** sakai.properties: number of refreshes that can wait for a thread, any more are dropped */
+	private final static String SAK_PROP_EXTSUBSCRIPTIONS_REFRESH_QUEUE = "calendar.external.subscriptions.refresh.queue";
+
 	/** iCal external subscription enable flag */
 	private boolean enabled = false;
 	
@@ -100,6 +122,12 @@ public class BaseExternalCalendarSubscriptionService implements
 	/** Cache map of user Calendars: <String url, Calendar cal> */
 	private SubscriptionCache usersSubscriptionCache = null;
 
+	/** Refreshes stale subscriptions while the stale calendar is still shown */
+	private Executor refreshExecutor = null;
+
+	/** The fetch in progress for each url, so requests for the same calendar wait for one download */
+	final ConcurrentMap<String, FutureTask<BaseExternalSubscriptionDetails>> fetches = new ConcurrentHashMap<>();
+
 	private Clock clock;
 
 	// ######################################################
@@ -136,6 +164,9 @@ public class BaseExternalCalendarSubscriptionService implements
 	/** Dependency: SiteService. */
 	protected SiteService m_siteService = null;
 
+	/** Dependency: ThreadLocalManager. */
+	protected ThreadLocalManager m_threadLocalManager = null;
+
 	protected MemoryService m_memoryService = null;
 
 	public void setMemoryService(MemoryService memoryService) {
@@ -218,10 +249,28 @@ public class BaseExternalCalendarSubscriptionService implements
 		this.m_idManager = idManager;
 	}
 
+	/**
+	 * Dependency: ThreadLocalManager.
+	 * @param threadLocalManager
+	 *        The ThreadLocalManager, cleared after each background refresh.
+	 */
+	public void setThreadLocalManager(ThreadLocalManager threadLocalManager)
+	{
+		this.m_threadLocalManager = threadLocalManager;
+	}
+
 	public void setClock(Clock clock) {
 		this.clock = clock;
 	}
 
+	/**
+	 * @param refreshExecutor
+	 *        Runs the background refreshes, if not set a pool of calendar.external.subscriptions.refresh.threads threads is created.
+	 */
+	public void setRefreshExecutor(Executor refreshExecutor) {
+		this.refreshExecutor = refreshExecutor;
+	}
+
 	public void init()
 	{
 		// external calendar subscriptions: enable?
@@ -231,20 +280,40 @@ public class BaseExternalCalendarSubscriptionService implements
 
 		if (enabled)
 		{
-			// INIT the caches
-			long cacheRefreshRate = 43200; // 12 hours
-			SimpleConfiguration<String, BaseExternalSubscriptionDetails> cacheConfig = new SimpleConfiguration<>(1000, cacheRefreshRate, 0); // 12 hours
-			cacheConfig.setStatisticsEnabled(true);
+			// INIT the caches, a calendar is refreshed after the cache time but kept for as long again
+			// so the refresh can ask the server whether it has changed.
+			long institutionalRefreshRate = getCacheTime(SAK_PROP_EXTSUBSCRIPTIONS_INST_CACHETIME);
+			long usersRefreshRate = getCacheTime(SAK_PROP_EXTSUBSCRIPTIONS_USER_CACHETIME);
+			SimpleConfiguration<String, BaseExternalSubscriptionDetails> institutionalConfig = new SimpleConfiguration<>(1000, institutionalRefreshRate * 2, 0);
+			institutionalConfig.setStatisticsEnabled(true);
+			SimpleConfiguration<String, BaseExternalSubscriptionDetails> usersConfig = new SimpleConfiguration<>(1000, usersRefreshRate * 2, 0);
+			usersConfig.setStatisticsEnabled(true);
 			institutionalSubscriptionCache = new SubscriptionCache(
-					m_memoryService.createCache("org.sakaiproject.calendar.impl.BaseExternalCacheSubscriptionService.institutionalCache", cacheConfig), clock);
+					m_memoryService.createCache("org.sakaiproject.calendar.impl.BaseExternalCacheSubscriptionService.institutionalCache", institutionalConfig),
+					clock, Duration.ofSeconds(institutionalRefreshRate));
 			usersSubscriptionCache = new SubscriptionCache(
-					m_memoryService.createCache("org.sakaiproject.calendar.impl.BaseExternalCacheSubscriptionService.userCache", cacheConfig), clock);
+					m_memoryService.createCache("org.sakaiproject.calendar.impl.BaseExternalCacheSubscriptionService.userCache", usersConfig),
+					clock, Duration.ofSeconds(usersRefreshRate));
 			// TODO replace this with a real solution for when the caches are distributed by disabling the timer and using jobscheduler
 			if (institutionalSubscriptionCache.getCache().isDistributed()) {
-				m_log.error(institutionalSubscriptionCache.getCache().getName()+" is distributed but calendar subscription caches have a local timer refresh which means they will cause cache replication storms once every "+cacheRefreshRate+" seconds, do NOT distribute this cache");
+				m_log.error(institutionalSubscriptionCache.getCache().getName()+" is distributed but calendar subscription caches have a local timer refresh which means they will cause cache replication storms once every "+institutionalRefreshRate+" seconds, do NOT distribute this cache");
 			}
 			if (usersSubscriptionCache.getCache().isDistributed()) {
-				m_log.error(usersSubscriptionCache.getCache().getName()+" is distributed but calendar subscription caches have a local timer refresh which means they will cause cache replication storms once every "+cacheRefreshRate+" seconds, do NOT distribute this cache");
+				m_log.error(usersSubscriptionCache.getCache().getName()+" is distributed but calendar subscription caches have a local timer refresh which means they will cause cache replication storms once every "+usersRefreshRate+" seconds, do NOT distribute this cache");
+			}
+
+			if (refreshExecutor == null)
+			{
+				int threads = m_configurationService.getInt(SAK_PROP_EXTSUBSCRIPTIONS_REFRESH_THREADS, 2);
+				int queue = m_configurationService.getInt(SAK_PROP_EXTSUBSCRIPTIONS_REFRESH_QUEUE, 100);
+				ThreadPoolExecutor pool = new ThreadPoolExecutor(Math.max(threads, 1), Math.max(threads, 1), 60, TimeUnit.SECONDS,
+						new LinkedBlockingQueue<>(Math.max(queue, 1)), r -> {
+							Thread thread = new Thread(r, "calendar-subscription-refresh");
+							thread.setDaemon(true);
+							return thread;
+						});
+				pool.allowCoreThreadTimeOut(true);
+				refreshExecutor = pool;
 			}
 
 			// iCal column map
@@ -265,7 +334,19 @@ public class BaseExternalCalendarSubscriptionService implements
 
 	public void destroy()
 	{
-		// Nothing to clean up for now.
+		if (refreshExecutor instanceof ExecutorService)
+		{
+			((ExecutorService) refreshExecutor).shutdownNow();
+		}
+	}
+
+	/**
+	 * @return The seconds before a subscription is refreshed, the property is in minutes.
+	 */
+	private long getCacheTime(String property)
+	{
+		int minutes = m_configurationService.getInt(property, DEFAULT_CACHETIME);
+		return TimeUnit.MINUTES.toSeconds(minutes > 0 ? minutes : DEFAULT_CACHETIME);
 	}
 
 	public boolean isEnabled()
@@ -334,12 +415,91 @@ public class BaseExternalCalendarSubscriptionService implements
 		// Did we get it?
 		if (subscription == null)
 		{
-			subscription = loadCalendarSubscriptionFromUrl(subscriptionUrl, context);
-			cache.put(subscription);
+			subscription = fetch(cache, subscriptionUrl, context, null);
+		}
+		else if (cache.isStale(subscription))
+		{
+			// Show what we have while it's refreshed.
+			fetch(cache, subscriptionUrl, subscription.getContext(), subscription);
 		}
 		return subscription;
 	}
 
+	/**
+	 * Loads a subscription into the cache, joining the load already in progress for the url if there is one.
+	 * @param previous The stale subscription to refresh in the background, or <code>null</code> to load it now.
+	 * @return The loaded subscription, or <code>null</code> when refreshing in the background.
+	 */
+	private BaseExternalSubscriptionDetails fetch(SubscriptionCache cache, String url, String context,
+			BaseExternalSubscriptionDetails previous)
+	{
+		FutureTask<BaseExternalSubscriptionDetails> task = new FutureTask<BaseExternalSubscriptionDetails>(() -> {
+			BaseExternalSubscriptionDetails loaded = loadCalendarSubscriptionFromUrl(url, context, previous);
+			if (previous != null && !State.LOADED.equals(loaded.getState()))
+			{
+				// Keep showing the calendar we have and don't try again until it is next stale.
+				m_log.info("Failed to refresh calendar subscription, keeping the previous calendar: " + url);
+				loaded = new BaseExternalSubscriptionDetails(previous.getSubscriptionName(), url, previous.getContext(),
+						previous.getCalendar(), previous.isInstitutional(), true, null, Instant.now(clock));
+				loaded.setEtag(previous.getEtag());
+				loaded.setLastModified(previous.getLastModified());
+			}
+			cache.put(loaded);
+			return loaded;
+		}) {
+			@Override
+			protected void done() {
+				fetches.remove(url, this);
+			}
+		};
+		FutureTask<BaseExternalSubscriptionDetails> running = fetches.putIfAbsent(url, task);
+		if (previous != null)
+		{
+			if (running == null)
+			{
+				try
+				{
+					refreshExecutor.execute(() -> {
+						try
+						{
+							task.run();
+						}
+						finally
+						{
+							// Nothing set while loading the calendar is left on the pooled thread.
+							m_threadLocalManager.clear();
+						}
+					});
+				}
+				catch (RejectedExecutionException e)
+				{
+					// The stale calendar is kept and the refresh is tried again on the next request.
+					fetches.remove(url, task);
+					m_log.debug("Too many calendar subscriptions waiting to refresh, not refreshing: " + url);
+				}
+			}
+			return null;
+		}
+		if (running == null)
+		{
+			running = task;
+			running.run();
+		}
+		try
+		{
+			return running.get();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+		catch (ExecutionException e)
+		{
+			m_log.warn("Failed to load calendar subscription: " + url, e.getCause());
+		}
+		return null;
+	}
+
 	public Set<String> getCalendarSubscriptionChannelsForChannels(
 			String primaryCalendarReference,
 			Collection<Object> channels)
@@ -633,6 +793,16 @@ public class BaseExternalCalendarSubscriptionService implements
 
 	BaseExternalSubscriptionDetails loadCalendarSubscriptionFromUrl(String url,
 																	String context)
+	{
+		return loadCalendarSubscriptionFromUrl(url, context, null);
+	}
+
+	/**
+	 * @param previous When refreshing a loaded subscription the server is asked whether it has changed
+	 *                 and the previous calendar is kept if it hasn't.
+	 */
+	BaseExternalSubscriptionDetails loadCalendarSubscriptionFromUrl(String url,
+																	String context, BaseExternalSubscriptionDetails previous)
 	{
 		InsitutionalSubscription sub = getInstitutionalSubscription(url);
 		String name = null;
@@ -642,11 +812,12 @@ public class BaseExternalCalendarSubscriptionService implements
 			name = sub.name;
 			forcedEventType = sub.eventType;
 		}
-		return loadCalendarSubscriptionFromUrl(url, context, name, forcedEventType);
+		return loadCalendarSubscriptionFromUrl(url, context, name, forcedEventType, previous);
 	}
 
 	BaseExternalSubscriptionDetails loadCalendarSubscriptionFromUrl(String url,
-																	String context, String calendarName, String forcedEventType)
+																	String context, String calendarName, String forcedEventType,
+																	BaseExternalSubscriptionDetails previous)
 	{
 		boolean institutional = INSTITUTIONAL_CONTEXT.equals(context);
 		String error = null;
@@ -663,8 +834,24 @@ public class BaseExternalCalendarSubscriptionService implements
 			conn.addRequestProperty("User-Agent", m_calendarService.getUserAgent());
 			conn.setConnectTimeout(TIMEOUT);
 			conn.setReadTimeout(TIMEOUT);
+			boolean conditional = previous != null && previous.getCalendar() != null && conn instanceof HttpURLConnection
+					&& (previous.getEtag() != null || previous.getLastModified() != null);
+			if (conditional)
+			{
+				if (previous.getEtag() != null) conn.setRequestProperty("If-None-Match", previous.getEtag());
+				if (previous.getLastModified() != null) conn.setRequestProperty("If-Modified-Since", previous.getLastModified());
+			}
 			// Now make the connection.
 			conn.connect();
+			if (conditional && ((HttpURLConnection) conn).getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED)
+			{
+				// Unchanged, so keep the events we already have.
+				BaseExternalSubscriptionDetails subscription = new BaseExternalSubscriptionDetails(calendarName, url, context, previous.getCalendar(), institutional, true, null, Instant.now(clock));
+				subscription.setEtag(previous.getEtag());
+				subscription.setLastModified(previous.getLastModified());
+				m_log.debug("Calendar subscription not modified: " + subscription.toString());
+				return subscription;
+			}
 			try (BufferedInputStream stream =  new BufferedInputStream(conn.getInputStream())) {
 				// import
 				events = m_importerService.doImport(CalendarImporterService.ICALENDAR_IMPORT,
@@ -684,6 +871,8 @@ public class BaseExternalCalendarSubscriptionService implements
 			}
 			calendar.setName(calendarName);
 			BaseExternalSubscriptionDetails subscription = new BaseExternalSubscriptionDetails(calendarName, url, context, calendar, institutional, true, null, Instant.now(clock));
+			subscription.setEtag(conn.getHeaderField("ETag"));
+			subscription.setLastModified(conn.getHeaderField("Last-Modified"));
 			m_log.info("Loaded calendar subscription: " + subscription.toString());
 			return subscription;
 		}
@@ -26,6 +26,11 @@ public class BaseExternalSubscriptionDetails implements ExternalSubscriptionDeta
 
 	private Status status;
 
+	/** The validators the server sent with the calendar, so a refresh can ask if it has changed. */
+	private String etag;
+
+	private String lastModified;
+
 	public BaseExternalSubscriptionDetails() {
 	}
 
@@ -40,6 +45,8 @@ public class BaseExternalSubscriptionDetails implements ExternalSubscriptionDeta
 		this.calendar = other.calendar;
 		this.isInstitutional = other.isInstitutional;
 		this.status = other.status;
+		this.etag = other.etag;
+		this.lastModified = other.lastModified;
 	}
 
 	/**
@@ -123,6 +130,22 @@ public class BaseExternalSubscriptionDetails implements ExternalSubscriptionDeta
 		return status != null? status.getRefreshed(): null;
 	}
 
+	public String getEtag() {
+		return etag;
+	}
+
+	public void setEtag(String etag) {
+		this.etag = etag;
+	}
+
+	public String getLastModified() {
+		return lastModified;
+	}
+
+	public void setLastModified(String lastModified) {
+		this.lastModified = lastModified;
+	}
+
 	@Override
 	public boolean equals(Object o) {
 		if (o instanceof BaseExternalSubscriptionDetails)
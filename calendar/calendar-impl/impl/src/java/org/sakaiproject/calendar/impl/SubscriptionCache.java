@@ -4,6 +4,7 @@ import org.sakaiproject.calendar.api.ExternalSubscriptionDetails;
 import org.sakaiproject.memory.api.Cache;
 
 import java.time.Clock;
+import java.time.Duration;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 
@@ -30,6 +31,9 @@ public class SubscriptionCache {
 
 	private Clock clock;
 
+	// How long a loaded calendar is used before it should be refreshed, null if it is used until it expires.
+	private Duration refresh;
+
 	// Although using EhCache directly we could have TTLs on each Element this is outside the
 	// JSR-107 spec so ties us to EhCache too tightly.
 	private Cache<String, BaseExternalSubscriptionDetails> cache;
@@ -39,8 +43,22 @@ public class SubscriptionCache {
 	}
 
 	SubscriptionCache(Cache<String, BaseExternalSubscriptionDetails> cache, Clock clock) {
+		this(cache, clock, null);
+	}
+
+	SubscriptionCache(Cache<String, BaseExternalSubscriptionDetails> cache, Clock clock, Duration refresh) {
 		this.cache = cache;
 		this.clock = clock;
+		this.refresh = refresh;
+	}
+
+	/**
+	 * A stale calendar can still be shown but should be refreshed, the cache keeps it for longer than
+	 * the refresh time so the refresh can check whether it has changed rather than download it again.
+	 */
+	public boolean isStale(BaseExternalSubscriptionDetails sub) {
+		return refresh != null && sub.getState().equals(ExternalSubscriptionDetails.State.LOADED)
+				&& Instant.now(clock).minus(refresh).isAfter(sub.getRefreshed());
 	}
 
 	public BaseExternalSubscriptionDetails get(String url) {
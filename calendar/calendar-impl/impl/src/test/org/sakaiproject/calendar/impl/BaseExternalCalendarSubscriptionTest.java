@@ -24,6 +24,7 @@ import org.sakaiproject.memory.impl.EhcacheMemoryService;
 import org.sakaiproject.site.api.Site;
 import org.sakaiproject.site.api.SiteService;
 import org.sakaiproject.site.api.ToolConfiguration;
+import org.sakaiproject.thread_local.api.ThreadLocalManager;
 import org.sakaiproject.time.api.Time;
 import org.sakaiproject.time.api.TimeRange;
 import org.sakaiproject.time.api.TimeService;
@@ -74,6 +75,8 @@ public class BaseExternalCalendarSubscriptionTest {
     private SessionManager sessionManager;
     @Mock
     private TimeService timeService;
+    @Mock
+    private ThreadLocalManager threadLocalManager;
 
     private CacheManager cacheManager;
 
@@ -99,7 +102,10 @@ public class BaseExternalCalendarSubscriptionTest {
         service.setCalendarService(calendarService);
         service.setTimeService(timeService);
         service.setSessionManager(sessionManager);
+        service.setThreadLocalManager(threadLocalManager);
         service.setClock(Clock.systemUTC());
+        // Background refreshes run straight away, so the tests know when they have finished.
+        service.setRefreshExecutor(Runnable::run);
 
         Time time = mock(Time.class);
         when(time.toString()).thenReturn(new Date().toString());
@@ -156,6 +162,43 @@ public class BaseExternalCalendarSubscriptionTest {
         verify(importer, times(1)).doImport(any(), any(), any(), any());
     }
 
+    @Test
+    public void testFailedRefreshKeepsCalendar() throws Exception {
+        String url = getClass().getResource("/simple.ics").toExternalForm();
+        String packedUrl = BaseExternalSubscriptionDetails.getIdFromSubscriptionUrl(url);
+        String referenceString = BaseExternalSubscriptionDetails.calendarSubscriptionReference("siteId", packedUrl);
+        {
+            Reference ref = mock(Reference.class);
+            when(ref.getContext()).thenReturn("siteId");
+            when(ref.getId()).thenReturn(packedUrl);
+            when(entityManager.newReference(referenceString)).thenReturn(ref);
+        }
+        TimeRange range = mock(TimeRange.class);
+        when(range.clone()).thenReturn(range);
+        CalendarEventEdit event = mock(CalendarEventEdit.class);
+        when(event.getRange()).thenReturn(range);
+        when(event.getDisplayName()).thenReturn("Display Name");
+
+        when(importer.doImport(any(), any(), any(), any()))
+                .thenReturn(Collections.singletonList(event))
+                .thenThrow(new ImportException("Broken feed"));
+
+        // Loaded long enough ago that it needs refreshing.
+        service.setClock(Clock.offset(Clock.systemUTC(), Duration.ofHours(-3)));
+        assertNotNull(service.getCalendarSubscription(referenceString));
+        service.setClock(Clock.systemUTC());
+
+        // The stale calendar is shown while the refresh fails in the background.
+        assertNotNull(service.getCalendarSubscription(referenceString));
+        assertTrue(service.fetches.isEmpty());
+        // The refresh thread is left clean.
+        verify(threadLocalManager).clear();
+
+        // The failure didn't replace it and it isn't refreshed again straight away.
+        assertNotNull(service.getCalendarSubscription(referenceString));
+        verify(importer, times(2)).doImport(any(), any(), any(), any());
+    }
+
     @Test
     public void testGetCalendarSubscriptionMissing() throws Exception {
         // Doesn't actually get parsed as we mock out the parser
@@ -9,12 +9,15 @@ import org.mockito.junit.MockitoRule;
 import org.sakaiproject.memory.api.Cache;
 
 import java.time.Clock;
+import java.time.Duration;
 import java.time.Instant;
 import java.time.ZoneId;
 import java.time.temporal.ChronoUnit;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -80,4 +83,19 @@ public class SubscriptionCacheTest {
         assertNull(subscriptionCache.get("http://example.com/"));
     }
 
+    @Test
+    public void testStale() {
+        subscriptionCache = new SubscriptionCache(cache, clock, Duration.ofMinutes(10));
+        BaseExternalSubscriptionDetails fresh = new BaseExternalSubscriptionDetails(
+                "test", "http://example.com/", "siteId", null, false, true, null, Instant.now(clock).minus(5, ChronoUnit.MINUTES));
+        BaseExternalSubscriptionDetails old = new BaseExternalSubscriptionDetails(
+                "test", "http://example.com/", "siteId", null, false, true, null, Instant.now(clock).minus(15, ChronoUnit.MINUTES));
+        BaseExternalSubscriptionDetails failed = new BaseExternalSubscriptionDetails(
+                "test", "http://example.com/", "siteId", null, false, false, null, Instant.now(clock).minus(15, ChronoUnit.MINUTES));
+        assertFalse(subscriptionCache.isStale(fresh));
+        assertTrue(subscriptionCache.isStale(old));
+        // Failures aren't refreshed in the background, they expire instead.
+        assertFalse(subscriptionCache.isStale(failed));
+    }
+
 }
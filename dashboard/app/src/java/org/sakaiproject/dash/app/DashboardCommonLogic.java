@@ -21,6 +21,7 @@
 
 package org.sakaiproject.dash.app;
 
+import java.util.Date;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -117,4 +118,11 @@ public interface DashboardCommonLogic extends DashboardLogic, DashboardUserLogic
 	 * Synchronize the dashboard links table users with current site users
 	 */
 	public void syncDashboardUsersWithSiteUsers();
+
+	/**
+	 * Synchronize the dashboard links table users with current site users, only for the sites 
+	 * whose membership has changed since a time
+	 * @param since the time of the last sync, or null to check every site
+	 */
+	public void syncDashboardUsersWithSiteUsers(Date since);
 }
@@ -21,6 +21,7 @@
 
 package org.sakaiproject.dash.dao;
 
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 import java.util.Set;
@@ -217,6 +218,14 @@ public interface DashboardDao {
 	 */
 	public Person getPersonBySakaiId(String sakaiId);
 
+	/**
+	 * Get the people for many users at once, users without a person are left out.
+	 * @param sakaiIds
+	 * @return
+	 * @throws org.springframework.dao.DataAccessException if the people cannot be read, rather than returning only some of them
+	 */
+	public List<Person> getPeopleBySakaiIds(Collection<String> sakaiIds);
+
 	/**
 	 * @param entityReference
 	 * @return
@@ -88,6 +88,9 @@ public class DashboardDaoImpl extends JdbcDaoSupport implements DashboardDao {
 	private static final int MAX_LENGTH_SUBTYPE_FIELD = 255;
 
 	private static final int ALWAYS_ACCESS_PERMISSION_SIZE = 1024;
+
+	// oracle allows no more than 1000 values in an in-list
+	private static final int MAX_IN_LIST_SIZE = 1000;
 	
 	protected ServerConfigurationService serverConfigurationService;
 	public void setServerConfigurationService(ServerConfigurationService serverConfigurationService) {
@@ -1603,6 +1606,40 @@ public class DashboardDaoImpl extends JdbcDaoSupport implements DashboardDao {
            return null;
 		}
 	}
+
+	/* (non-Javadoc)
+	 * @see org.sakaiproject.dash.dao.DashboardDao#getPeopleBySakaiIds(java.util.Collection)
+	 */
+	public List<Person> getPeopleBySakaiIds(Collection<String> sakaiIds) {
+		if(log.isDebugEnabled()) {
+			log.debug("getPeopleBySakaiIds(" + sakaiIds.size() + ")");
+		}
+		
+		List<Person> people = new ArrayList<Person>();
+		List<String> ids = new ArrayList<String>(sakaiIds);
+		// the statement ends with the in-list, which is added here for each chunk of ids
+		String sql = getStatement("select.People.by.sakaiIds");
+		try {
+			for(int start = 0; start < ids.size(); start += MAX_IN_LIST_SIZE) {
+				List<String> chunk = ids.subList(start, Math.min(start + MAX_IN_LIST_SIZE, ids.size()));
+				StringBuilder buf = new StringBuilder(sql);
+				buf.append(" (");
+				for(int i = 0; i < chunk.size(); i++) {
+					if(i > 0) {
+						buf.append(",");
+					}
+					buf.append("?");
+				}
+				buf.append(")");
+				people.addAll(getJdbcTemplate().query(buf.toString(), chunk.toArray(), new PersonMapper()));
+			}
+		} catch (DataAccessException ex) {
+			// a partial list would have the missing people created again, so let the caller fail
+			log.error("getPeopleBySakaiIds: Error executing query: " + ex.getClass() + ":" + ex.getMessage());
+			throw ex;
+		}
+		return people;
+	}
 	
 	/*
 	 * (non-Javadoc)
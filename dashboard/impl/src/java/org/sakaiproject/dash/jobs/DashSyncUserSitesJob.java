@@ -19,6 +19,9 @@
 package org.sakaiproject.dash.jobs;
 
 
+import java.util.Date;
+
+import org.apache.commons.lang.time.DateUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.quartz.JobExecutionContext;
@@ -28,6 +31,9 @@ import org.quartz.JobExecutionException;
  * this job is to find out the up-to-date user enrolled sites
  * remove site dashboard items if the user no longer belongs to the site
  * or add site dashboard items if the user is added to the site
+ * Only the sites whose membership changed since the last run are checked, except on the first 
+ * run of each day, as realms refreshed from a provider don't always change their modified date.
+ * Set dashboard_syncUserSites_deltas=false to check every site on every run.
  * Admin user can schedule the job inside Admin Job Scheduler tool, 
  * and create trigger with desired frequency
  * @author zqian
@@ -55,7 +61,14 @@ public class DashSyncUserSitesJob extends DashQuartzJob {
     		logger.info(this + " execute: " + getConfigMessage());
             
     		try {
-    			dashboardCommonLogic.syncDashboardUsersWithSiteUsers();
+    			Date since = null;
+    			Date previous = jobExecutionContext.getPreviousFireTime();
+    			if (previous != null && DateUtils.isSameDay(previous, new Date()) 
+    					&& sakaiProxy.getConfigParam("dashboard_syncUserSites_deltas", true))
+    			{
+    				since = previous;
+    			}
+    			dashboardCommonLogic.syncDashboardUsersWithSiteUsers(since);
 			} catch (Exception e) {
 				logger.warn(this + " execute error: " , e);
 			}
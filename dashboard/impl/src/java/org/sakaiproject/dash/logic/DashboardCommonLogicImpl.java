@@ -1760,7 +1760,16 @@ public class DashboardCommonLogicImpl implements DashboardCommonLogic, Observer
 	 */
 	public void syncDashboardUsersWithSiteUsers()
 	{
-		logger.info(this + ".syncDashboardUsersWithSiteUsers start " + serverId);
+		syncDashboardUsersWithSiteUsers(null);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.sakaiproject.dash.app.DashboardCommonLogic#syncDashboardUsersWithSiteUsers(java.util.Date)
+	 */
+	public void syncDashboardUsersWithSiteUsers(Date since)
+	{
+		logger.info(this + ".syncDashboardUsersWithSiteUsers start " + serverId + (since == null ? "" : " changed since " + since));
 		
 		HashMap<String, Set<String>> calendarLinksUserMap = dao.getDashboardCalendarContextUserMap();
 		HashMap<String, Set<String>> newsLinksUserMap =  dao.getDashboardNewsContextUserMap();
@@ -1774,8 +1783,14 @@ public class DashboardCommonLogicImpl implements DashboardCommonLogic, Observer
 		logger.info(this + ".syncDashboardUsersWithSiteUsers total site set size " + combinedContextIdSet.size());
 
 		// now that we have a hashmap, we will check the current site member list
+		int checked = 0;
 		for(String context_id: combinedContextIdSet)
 		{
+			if (since != null && !isSiteMembershipChangedSince(context_id, since))
+			{
+				continue;
+			}
+			checked++;
 			HashSet<String> siteUserSet = new HashSet<String>();
 			Collection<String> siteMembersCollection = getSiteUserIdList(context_id);
 			if (siteMembersCollection != null)
@@ -1795,7 +1810,28 @@ public class DashboardCommonLogicImpl implements DashboardCommonLogic, Observer
 				addOrRemoveDashboardLinksBasedOnUsersSetComp(context_id, newsLinksUserMap.get(context_id), siteUserSet, NEWS_LINK_TYPE);
 			}
 		}
-		logger.info(this + ".syncDashboardUsersWithSiteUsers end " + serverId);
+		logger.info(this + ".syncDashboardUsersWithSiteUsers end " + serverId + " checked " + checked + " sites");
+	}
+	
+	/**
+	 * Whether the site's realm has been changed since a time. Sites whose realm can't be read are treated 
+	 * as changed, so their links are checked against the members.
+	 * @param siteId
+	 * @param since
+	 * @return
+	 */
+	private boolean isSiteMembershipChangedSince(String siteId, Date since)
+	{
+		try
+		{
+			Date modified = this.authzGroupService.getAuthzGroup(sakaiProxy.getSiteReference(siteId)).getModifiedDate();
+			return modified == null || modified.after(since);
+		}
+		catch (Exception e)
+		{
+			logger.debug(this + ".isSiteMembershipChangedSince unable to get the realm for site " + siteId, e);
+			return true;
+		}
 	}
 	
 	
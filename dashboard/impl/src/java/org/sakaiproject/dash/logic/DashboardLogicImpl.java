@@ -23,6 +23,7 @@ package org.sakaiproject.dash.logic;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -478,18 +479,17 @@ public class DashboardLogicImpl implements DashboardLogic {
 				Set<String> usersWithLinks = dao.listUsersWithLinks(calendarItem);
 				
 				List<CalendarLink> calendarLinks = new ArrayList<CalendarLink>();
-				List<String> sakaiIds = dashboardEntityInfo.getUsersWithAccess(calendarItem.getEntityReference());
+				List<String> sakaiIds = new ArrayList<String>(dashboardEntityInfo.getUsersWithAccess(calendarItem.getEntityReference()));
+				// do nothing for users whose link already exists
+				sakaiIds.removeAll(usersWithLinks);
+				Map<String, Person> people = getOrCreatePeople(sakaiIds);
 				for(String sakaiId : sakaiIds) {
-					if(usersWithLinks.contains(sakaiId)) {
-						// do nothing -- link already exists
+					Person person = people.get(sakaiId);
+					if(person == null) {
+						logger.warn("Error retrieving user " + sakaiId);
 					} else {
-						Person person = getOrCreatePerson(sakaiId);
-						if(person == null) {
-							logger.warn("Error retrieving user " + sakaiId);
-						} else {
-							CalendarLink link = new CalendarLink(person, calendarItem, calendarItem.getContext(), false, false);
-							calendarLinks.add(link);
-						}
+						CalendarLink link = new CalendarLink(person, calendarItem, calendarItem.getContext(), false, false);
+						calendarLinks.add(link);
 					}
 				}
 				if(calendarLinks.size() > 0) {
@@ -566,15 +566,12 @@ public class DashboardLogicImpl implements DashboardLogic {
 			List<String> sakaiIds = dashboardEntityInfo.getUsersWithAccess(newsItem.getEntityReference());
 			if(sakaiIds != null && sakaiIds.size() > 0) {
 				List<NewsLink> newsLinks = new ArrayList<NewsLink>();
+				Map<String, Person> people = getOrCreatePeople(sakaiIds);
 				for(String sakaiId : sakaiIds) {
-					try {
-						Person person = getOrCreatePerson(sakaiId);
-						if(person != null) {
-							NewsLink link = new NewsLink(person, newsItem, newsItem.getContext(), false, false);
-							newsLinks.add(link);
-						}
-					} catch(Exception e) {
-						logger.warn("Error trying to retrieve or add person " + sakaiId + " for news-item " + newsItem, e);
+					Person person = people.get(sakaiId);
+					if(person != null) {
+						NewsLink link = new NewsLink(person, newsItem, newsItem.getContext(), false, false);
+						newsLinks.add(link);
 					}
 				}
 				if(newsLinks.size() > 0) {
@@ -1268,6 +1265,33 @@ public class DashboardLogicImpl implements DashboardLogic {
 		return person;
 	}
 
+	/**
+	 * Get the people for all the users with access to an item in a few queries rather than one per user, 
+	 * only creating the people not found.
+	 * @param sakaiIds
+	 * @return the people keyed by sakaiId, without the users who could not be retrieved or added
+	 */
+	@Transactional
+	protected Map<String, Person> getOrCreatePeople(Collection<String> sakaiIds) {
+		Map<String, Person> people = new HashMap<String, Person>();
+		for(Person person : dao.getPeopleBySakaiIds(sakaiIds)) {
+			people.put(person.getSakaiId(), person);
+		}
+		for(String sakaiId : sakaiIds) {
+			if(! people.containsKey(sakaiId)) {
+				try {
+					Person person = getOrCreatePerson(sakaiId);
+					if(person != null) {
+						people.put(sakaiId, person);
+					}
+				} catch(Exception e) {
+					logger.warn("Error trying to retrieve or add person " + sakaiId, e);
+				}
+			}
+		}
+		return people;
+	}
+
 	/**
 	 * Verify that all properties of a CalendarItem correspond to the values of a RepeatingCalendarItem, 
 	 * a sequenceNumber and a calendarTime.  Update any incorrect values in the database.  
@@ -22,6 +22,7 @@
 package org.sakaiproject.dash.mock;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
@@ -56,6 +57,8 @@ public class DashboardDaoMock implements DashboardDao {
 	protected Map<String,Context> contextId2contextMap = new HashMap<String,Context>(); 
 	protected Map<Long,Context> id2contextMap = new HashMap<Long,Context>();
 	
+	protected Map<String,Person> sakaiId2personMap = new HashMap<String,Person>();
+	
 	protected Map<String,SortedSet<TaskLock>> taskLocksTaskIndex = new HashMap<String,SortedSet<TaskLock>>();
 	protected Map<String,Map<String, TaskLock>> taslLocksTaskServerIdIndex = new HashMap<String,Map<String, TaskLock>>();
 	protected Map<Long, TaskLock> taskLocksIdIndex = new HashMap<Long, TaskLock>();
@@ -124,8 +127,13 @@ public class DashboardDaoMock implements DashboardDao {
 	 * @see org.sakaiproject.dash.dao.DashboardDao#addPerson(org.sakaiproject.dash.model.Person)
 	 */
 	public boolean addPerson(Person person) {
-		// TODO Auto-generated method stub
-		return false;
+		if(person == null || sakaiId2personMap.containsKey(person.getSakaiId())) {
+			return false;
+		}
+		Person saved = new Person(person);
+		saved.setId(idSequence.incrementAndGet());
+		sakaiId2personMap.put(saved.getSakaiId(), saved);
+		return true;
 	}
 
 	/* (non-Javadoc)
@@ -276,8 +284,21 @@ public class DashboardDaoMock implements DashboardDao {
 	 * @see org.sakaiproject.dash.dao.DashboardDao#getPersonBySakaiId(java.lang.String)
 	 */
 	public Person getPersonBySakaiId(String sakaiId) {
-		// TODO Auto-generated method stub
-		return null;
+		return sakaiId2personMap.get(sakaiId);
+	}
+
+	/* (non-Javadoc)
+	 * @see org.sakaiproject.dash.dao.DashboardDao#getPeopleBySakaiIds(java.util.Collection)
+	 */
+	public List<Person> getPeopleBySakaiIds(Collection<String> sakaiIds) {
+		List<Person> people = new ArrayList<Person>();
+		for(String sakaiId : sakaiIds) {
+			Person person = sakaiId2personMap.get(sakaiId);
+			if(person != null) {
+				people.add(person);
+			}
+		}
+		return people;
 	}
 
 	/* (non-Javadoc)
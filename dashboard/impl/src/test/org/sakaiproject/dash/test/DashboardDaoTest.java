@@ -400,6 +400,26 @@ public class DashboardDaoTest extends AbstractJUnit4SpringContextTests {
 		Assert.assertEquals(userId,person.getUserId());
 	}
 	
+	@Test
+	public void testGetPeopleBySakaiIds() {
+		List<String> sakaiIds = new ArrayList<String>();
+		for(int i = 0; i < 3; i++) {
+			String sakaiId = getUniqueIdentifier();
+			dao.addPerson(new Person(sakaiId, getUniqueIdentifier()));
+			sakaiIds.add(sakaiId);
+		}
+		// a user without a person is left out
+		sakaiIds.add(getUniqueIdentifier());
+		
+		List<Person> people = dao.getPeopleBySakaiIds(sakaiIds);
+		Assert.assertNotNull(people);
+		Assert.assertEquals(3, people.size());
+		for(Person person : people) {
+			Assert.assertNotNull(person.getId());
+			Assert.assertTrue(sakaiIds.contains(person.getSakaiId()));
+		}
+	}
+	
 	@Test
 	public void testAddRepeatingCalendarItem() {
 		String title = getUniqueIdentifier();
@@ -21,13 +21,22 @@
 
 package org.sakaiproject.dash.test;
 
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Assert;
 import org.junit.Test;
 import org.mockito.Mock;
 import org.mockito.Mockito;
+import org.sakaiproject.authz.api.AuthzGroup;
+import org.sakaiproject.authz.api.AuthzGroupService;
 import org.sakaiproject.dash.app.DashboardCommonLogic;
 import org.sakaiproject.dash.app.DashboardConfig;
 import org.sakaiproject.dash.app.SakaiProxy;
@@ -42,10 +51,12 @@ import org.sakaiproject.dash.mock.SakaiProxyMock;
 import org.sakaiproject.dash.model.CalendarItem;
 import org.sakaiproject.dash.model.Context;
 import org.sakaiproject.dash.model.NewsItem;
+import org.sakaiproject.dash.model.Person;
 import org.sakaiproject.dash.model.RepeatingCalendarItem;
 import org.sakaiproject.dash.model.SourceType;
 import org.sakaiproject.site.api.Site;
 import org.sakaiproject.site.api.SiteService;
+import org.sakaiproject.user.api.User;
 import org.springframework.transaction.PlatformTransactionManager;
 
 /**
@@ -173,6 +184,90 @@ public class DashboardLogicTest
 		Assert.assertNull(c2);
 	}
 
+	/**
+	 * Exposes the people lookup used when links are created
+	 */
+	private static class PeopleDashboardLogic extends DashboardLogicImpl {
+		private PeopleDashboardLogic() {
+			super(new MockTransactionManager());
+		}
+		private Map<String, Person> people(Collection<String> sakaiIds) {
+			return getOrCreatePeople(sakaiIds);
+		}
+	}
+
+	@Test
+	public void testGetOrCreatePeople() {
+		DashboardDao dao = Mockito.spy(new DashboardDaoMock());
+		String existing1 = getUniqueIdentifier();
+		String existing2 = getUniqueIdentifier();
+		dao.addPerson(new Person(existing1, getUniqueIdentifier()));
+		dao.addPerson(new Person(existing2, getUniqueIdentifier()));
+		
+		// a user without a person yet, and one who can't be found
+		String newUser = getUniqueIdentifier();
+		String missingUser = getUniqueIdentifier();
+		User user = Mockito.mock(User.class);
+		Mockito.when(user.getEid()).thenReturn("eid-" + newUser);
+		SakaiProxy proxy = Mockito.mock(SakaiProxy.class);
+		Mockito.when(proxy.getUser(newUser)).thenReturn(user);
+		
+		PeopleDashboardLogic dashboardLogic = new PeopleDashboardLogic();
+		dashboardLogic.setDao(dao);
+		dashboardLogic.setSakaiProxy(proxy);
+		
+		Map<String, Person> people = dashboardLogic.people(Arrays.asList(existing1, existing2, newUser, missingUser));
+		Assert.assertEquals(3, people.size());
+		Assert.assertEquals(existing1, people.get(existing1).getSakaiId());
+		Assert.assertEquals(existing2, people.get(existing2).getSakaiId());
+		Assert.assertEquals("eid-" + newUser, people.get(newUser).getUserId());
+		Assert.assertNotNull(people.get(newUser).getId());
+		Assert.assertFalse(people.containsKey(missingUser));
+		
+		// the people who exist come from the one bulk lookup, only the others are looked up on their own
+		Mockito.verify(dao, Mockito.times(1)).getPeopleBySakaiIds(Mockito.anyCollection());
+		Mockito.verify(dao, Mockito.never()).getPersonBySakaiId(existing1);
+		Mockito.verify(dao, Mockito.never()).getPersonBySakaiId(existing2);
+		Mockito.verify(proxy, Mockito.never()).getUser(existing1);
+	}
+
+	@Test
+	public void testSyncOnlyChangedSites() throws Exception {
+		Date lastSync = new Date(System.currentTimeMillis() - ONE_HOUR);
+		Set<String> users = new HashSet<String>(Arrays.asList("user1", "user2"));
+		HashMap<String, Set<String>> linkUsers = new HashMap<String, Set<String>>();
+		linkUsers.put("unchanged", users);
+		linkUsers.put("changed", users);
+		
+		DashboardDao dao = Mockito.mock(DashboardDao.class);
+		Mockito.when(dao.getDashboardCalendarContextUserMap()).thenReturn(linkUsers);
+		Mockito.when(dao.getDashboardNewsContextUserMap()).thenReturn(new HashMap<String, Set<String>>());
+		SakaiProxy proxy = Mockito.mock(SakaiProxy.class);
+		Mockito.when(proxy.getSiteReference(Mockito.anyString())).thenAnswer(i -> "/site/" + i.getArguments()[0]);
+		
+		AuthzGroup unchanged = Mockito.mock(AuthzGroup.class);
+		Mockito.when(unchanged.getModifiedDate()).thenReturn(new Date(lastSync.getTime() - ONE_DAY));
+		AuthzGroup changed = Mockito.mock(AuthzGroup.class);
+		Mockito.when(changed.getModifiedDate()).thenReturn(new Date(lastSync.getTime() + ONE_MINUTE));
+		AuthzGroupService authzGroupService = Mockito.mock(AuthzGroupService.class);
+		Mockito.when(authzGroupService.getAuthzGroup("/site/unchanged")).thenReturn(unchanged);
+		Mockito.when(authzGroupService.getAuthzGroup("/site/changed")).thenReturn(changed);
+		Mockito.when(authzGroupService.getAuthzUsersInGroups(Mockito.anySet())).thenReturn(users);
+		
+		DashboardCommonLogicImpl commonLogic = new DashboardCommonLogicImpl();
+		commonLogic.setDao(dao);
+		commonLogic.setSakaiProxy(proxy);
+		commonLogic.setAuthzGroupService(authzGroupService);
+		
+		commonLogic.syncDashboardUsersWithSiteUsers(lastSync);
+		Mockito.verify(authzGroupService).getAuthzUsersInGroups(Collections.singleton("/site/changed"));
+		Mockito.verify(authzGroupService, Mockito.never()).getAuthzUsersInGroups(Collections.singleton("/site/unchanged"));
+		
+		// without a last sync every site is checked
+		commonLogic.syncDashboardUsersWithSiteUsers(null);
+		Mockito.verify(authzGroupService).getAuthzUsersInGroups(Collections.singleton("/site/unchanged"));
+	}
+
 	@Test
 	public void testCreateNewsItem() {
 		String title;
@@ -80,11 +80,14 @@ package org.sakaiproject.dav;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
+import java.io.RandomAccessFile;
 import java.io.StringWriter;
 import java.io.Writer;
 import java.security.MessageDigest;
@@ -104,7 +107,13 @@ import java.util.Locale;
 import java.util.Properties;
 import java.util.Stack;
 import java.util.TimeZone;
+import java.util.Timer;
+import java.util.TimerTask;
 import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import javax.naming.NamingException;
 import javax.naming.directory.DirContext;
@@ -218,6 +227,11 @@ public class DavServlet extends HttpServlet
 	 */
 	private static final int INFINITY = 3; // To limit tree browsing a bit
 
+	/**
+	 * Content-Range of a PUT sending part of a file, "bytes first-last/length", or "bytes * /length" without the space to ask how much has arrived.
+	 */
+	private static final Pattern PUT_CONTENT_RANGE = Pattern.compile("bytes\\s+(?:(\\d+)-(\\d+)|\\*)/(\\d+)");
+
 	/**
 	 * PROPFIND - Specify a property mask.
 	 */
@@ -547,6 +561,31 @@ public class DavServlet extends HttpServlet
 	 */
 	private String[] nonDavUserAgent = null;
 
+	/**
+	 * Where the parts of files sent with Content-Range are kept until the last part arrives
+	 */
+	private File partialUploadDir = null;
+
+	/**
+	 * How long a file that is only partly uploaded is kept, in milliseconds
+	 */
+	private long partialUploadExpiry = 0;
+
+	/**
+	 * The largest file that can be sent in parts, in bytes
+	 */
+	private long partialUploadMax = 0;
+
+	/**
+	 * The names of the part files being written or committed, so only one request at a time uses each
+	 */
+	private final ConcurrentMap<String, Boolean> partialUploadsInUse = new ConcurrentHashMap<String, Boolean>();
+
+	/**
+	 * Removes the expired part files
+	 */
+	private Timer partialUploadCleaner = null;
+
 	private ContentHostingService contentHostingService;
 
 	private CitationService citationService;
@@ -631,6 +670,37 @@ public class DavServlet extends HttpServlet
 		if (nonDavUserAgent == null) {
 		    nonDavUserAgent = new String[] {  "Mozilla", "Opera", "BlackBerry" };
 		}
+
+		// Uploads sent in parts are put together on this server, so a cluster needs sticky sessions for them
+		partialUploadDir = new File(ServerConfigurationService.getString("webdav.upload.partial.dir",
+				new File(ServerConfigurationService.getSakaiHomePath(), "dav-uploads").getPath()));
+		partialUploadExpiry = ServerConfigurationService.getInt("webdav.upload.partial.expire", 24) * 60L * 60L * 1000L;
+		// the same limit as uploads to resources, in megabytes
+		String uploadMax = ServerConfigurationService.getString("content.upload.ceiling",
+				ServerConfigurationService.getString("content.upload.max", "20"));
+		try
+		{
+			partialUploadMax = Long.parseLong(uploadMax.trim()) * 1024L * 1024L;
+		}
+		catch (NumberFormatException e)
+		{
+			M_log.warn("Invalid upload limit: " + uploadMax + ", using 20MB");
+			partialUploadMax = 20L * 1024L * 1024L;
+		}
+		partialUploadCleaner = new Timer("dav-partial-upload-cleaner", true);
+		partialUploadCleaner.schedule(new TimerTask()
+		{
+			public void run()
+			{
+				removeExpiredUploads();
+			}
+		}, 60L * 1000L, 60L * 60L * 1000L);
+	}
+
+	public void destroy()
+	{
+		if (partialUploadCleaner != null) partialUploadCleaner.cancel();
+		super.destroy();
 	}
 
 	/** create the info */
@@ -1559,14 +1629,7 @@ public class DavServlet extends HttpServlet
 					props = mbr.getProperties();
 					eTag = our_path;
 				}
-				modificationDate = props.getTimeProperty(ResourceProperties.PROP_MODIFIED_DATE).getTime();
-				eTag = modificationDate + "+" + eTag;
-				// SAK-26593 if you don't clean the eTag you may send invalid XML to client
-				// SAK-29338 Cyberduck started to see our md5 etag as an AWS s3-like checksum so let's add a prefix
-				eTag = "sakai-" + MD5Encoder.encode(md5Helper.digest(eTag.getBytes()));
-				if (M_log.isDebugEnabled()) M_log.debug("Path=" + path + " eTag=" + eTag);
-				creationDate = props.getTimeProperty(ResourceProperties.PROP_CREATION_DATE).getTime();
-				resourceLink = mbr.getUrl();
+				setDates(props, mbr);
 
 			}
 			catch (PermissionException e)
@@ -1594,6 +1657,80 @@ public class DavServlet extends HttpServlet
 			if (creationDate == 0) creationDate = modificationDate;
 			date = modificationDate;
 		}
+
+		/**
+		 * The information of a member already listed from its collection, so it doesn't need looking up again
+		 */
+		public ResourceInfoSAKAI(String our_path, ContentEntity mbr)
+		{
+			path = our_path;
+			exists = true;
+			collection = mbr.isCollection();
+
+			ResourceProperties props = mbr.getProperties();
+			resourceName = props.getProperty(ResourceProperties.PROP_DISPLAY_NAME);
+			displayName = props.getPropertyFormatted(ResourceProperties.PROP_DISPLAY_NAME);
+			try
+			{
+				if (!collection)
+				{
+					length = ((ContentResource) mbr).getContentLength();
+					MIMEType = ((ContentResource) mbr).getContentType();
+					eTag = mbr.getId();
+				}
+				else
+				{
+					if (!path.endsWith("/")) path += "/";
+					eTag = our_path;
+				}
+				setDates(props, mbr);
+			}
+			catch (EntityPropertyNotDefinedException e)
+			{
+				M_log.warn("ResourceInfoSAKAI - This resource is empty" + path);
+			}
+			catch (EntityPropertyTypeException e)
+			{
+				M_log.warn("ResourceInfoSAKAI - EntityPropertyType Exception " + path);
+			}
+
+			httpDate = getHttpDate(modificationDate);
+			if (creationDate == 0) creationDate = modificationDate;
+			date = modificationDate;
+		}
+
+		private void setDates(ResourceProperties props, Entity mbr) throws EntityPropertyNotDefinedException, EntityPropertyTypeException
+		{
+			modificationDate = props.getTimeProperty(ResourceProperties.PROP_MODIFIED_DATE).getTime();
+			eTag = modificationDate + "+" + eTag;
+			// SAK-26593 if you don't clean the eTag you may send invalid XML to client
+			// SAK-29338 Cyberduck started to see our md5 etag as an AWS s3-like checksum so let's add a prefix
+			eTag = "sakai-" + MD5Encoder.encode(md5Helper.digest(eTag.getBytes()));
+			if (M_log.isDebugEnabled()) M_log.debug("Path=" + path + " eTag=" + eTag);
+			creationDate = props.getTimeProperty(ResourceProperties.PROP_CREATION_DATE).getTime();
+			resourceLink = mbr.getUrl();
+		}
+	}
+
+	/**
+	 * A collection or resource waiting to be written out by PROPFIND
+	 */
+	private static class PropfindEntry
+	{
+		private final String path;
+
+		// null until it has been listed from its collection
+		private final ContentEntity entity;
+
+		// how many more levels to go below it
+		private final int depth;
+
+		private PropfindEntry(String path, ContentEntity entity, int depth)
+		{
+			this.path = path;
+			this.entity = entity;
+			this.depth = depth;
+		}
 	}
 
 	public DirContextSAKAI getResourcesSAKAI()
@@ -2274,44 +2411,53 @@ public class DavServlet extends HttpServlet
 		}
 		else
 		{
-			// The stack always contains the object of the current level
-			Stack<String> stack = new Stack<String>();
-			stack.push(path);
+			// Walk the tree depth first, so only the members of the collections above the current one are held
+			// rather than a whole level of the tree. The members come back from their collection with their
+			// properties, so they are written out as they are without looking each one up again.
+			Stack<PropfindEntry> stack = new Stack<PropfindEntry>();
+			stack.push(new PropfindEntry(path, null, depth));
 
-			// Stack of the objects one level below
-			Stack<String> stackBelow = new Stack<String>();
-
-			while ((!stack.isEmpty()) && (depth >= 0))
+			while (!stack.isEmpty())
 			{
+				PropfindEntry current = stack.pop();
+				String currentPath = current.path;
+				ContentCollection collection = null;
 
-				String currentPath = (String) stack.pop();
-
-				try
+				if (current.entity == null)
 				{
-					// if (M_log.isDebugEnabled()) M_log.debug("Lookup currentPath="+currentPath);
-					resources.lookup(currentPath);
+					try
+					{
+						// if (M_log.isDebugEnabled()) M_log.debug("Lookup currentPath="+currentPath);
+						resources.lookup(currentPath);
+					}
+					catch (NamingException e)
+					{
+						continue;
+					}
+
+					parseProperties(req, resources, generatedXML, currentPath, type, properties);
+					if (resources.isCollection) collection = resources.collection;
 				}
-				catch (NamingException e)
+				else
 				{
-					continue;
+					parseProperties(req, new ResourceInfoSAKAI(currentPath, current.entity), generatedXML, currentPath, type, properties);
+					if (current.entity.isCollection()) collection = (ContentCollection) current.entity;
 				}
 
-				parseProperties(req, resources, generatedXML, currentPath, type, properties);
-
-				if ((resources.isCollection) && (depth > 0))
+				if ((collection != null) && (current.depth > 0))
 				{
-
-					Iterator<ContentEntity> it = resources.list(currentPath);
-					while (it.hasNext())
+					if (M_log.isDebugEnabled()) M_log.debug("SAKAIDAV.propfind() listing members of " + currentPath);
+					for (ContentEntity mbr : collection.getMemberResources())
 					{
-						Entity mbr = it.next();
 						String resourceName = getResourceNameSAKAI(mbr);
 
 						String newPath = currentPath;
 						if (!(newPath.endsWith("/"))) newPath += "/";
 						newPath += resourceName;
-						if (!(newPath.toLowerCase().indexOf("/protected") >= 0 && !contentHostingService.allowAddCollection(newPath)))
-						stackBelow.push(newPath);
+						if (newPath.toLowerCase().indexOf("/protected") >= 0 && !contentHostingService.allowAddCollection(newPath)) continue;
+						// the members are listed whether or not this user can read them, lookup used to skip those
+						if (mbr.isCollection() ? !contentHostingService.allowGetCollection(mbr.getId()) : !contentHostingService.allowGetResource(mbr.getId())) continue;
+						stack.push(new PropfindEntry(newPath, mbr, current.depth - 1));
 						// if (M_log.isDebugEnabled()) M_log.debug("SAKAI found resource " + newPath);
 					}
 
@@ -2333,13 +2479,6 @@ public class DavServlet extends HttpServlet
 
 				}
 
-				if (stack.isEmpty())
-				{
-					depth--;
-					stack = stackBelow;
-
-					stackBelow = new Stack<String>();
-				}
 				// if (M_log.isDebugEnabled()) M_log.debug("SAKAIDAV.propfind() " + generatedXML.toString());
 				generatedXML.sendData();
 			}
@@ -2708,12 +2847,8 @@ public class DavServlet extends HttpServlet
 			return;
 		}
 
-		// Looking for a Content-Range header
-		if (req.getHeader("Content-Range") != null)
-		{
-			// No content range header is supported
-			resp.sendError(SakaidavStatus.SC_NOT_IMPLEMENTED);
-		}
+		// Looking for a Content-Range header, which sends the file in parts
+		String contentRange = req.getHeader("Content-Range");
 
 		String name = justName(path);
 
@@ -2736,6 +2871,30 @@ public class DavServlet extends HttpServlet
 
 		String contentType = "";
 		InputStream inputStream = req.getInputStream();
+		File partialUpload = null;
+		if (contentRange != null)
+		{
+			partialUpload = getPartialUpload(path);
+			if (partialUploadsInUse.putIfAbsent(partialUpload.getName(), Boolean.TRUE) != null)
+			{
+				// another part of the same file is being sent
+				resp.sendError(SakaidavStatus.SC_CONFLICT);
+				return;
+			}
+			boolean complete = false;
+			try
+			{
+				complete = putPart(req, resp, path, partialUpload, contentRange);
+			}
+			finally
+			{
+				if (!complete) partialUploadsInUse.remove(partialUpload.getName());
+			}
+			// not the last part, or it went wrong, either way the response has been sent
+			if (!complete) return;
+		}
+		// set when saving the file failed in a way that sending the last part again could fix
+		boolean keepPartialUpload = false;
 		contentType = req.getContentType();
 
 		// For MS office, ignore the supplied content type if we can figure out one from file type
@@ -2768,6 +2927,7 @@ public class DavServlet extends HttpServlet
 
 		try
 		{
+			if (partialUpload != null) inputStream = new FileInputStream(partialUpload);
 
 			ContentResourceEdit edit;
 
@@ -2860,9 +3020,11 @@ public class DavServlet extends HttpServlet
 		catch (ServerOverloadException e)
 		{
 			M_log.warn("SAKAIDavServlet.doPut() ServerOverloadException:" + e.getMessage());
+			keepPartialUpload = true;
 			resp.setStatus(SakaidavStatus.SC_SERVICE_UNAVAILABLE);
 			return;
 		} catch (InUseException e) {
+			keepPartialUpload = true;
 			resp.sendError(SakaidavStatus.SC_FORBIDDEN);
 			return;
 		} catch (TypeException e) {
@@ -2874,6 +3036,15 @@ public class DavServlet extends HttpServlet
 			resp.sendError(HttpServletResponse.SC_FORBIDDEN);
 			return;
 		}
+		finally
+		{
+			if (partialUpload != null)
+			{
+				inputStream.close();
+				if (!keepPartialUpload) deletePartialUpload(partialUpload);
+				partialUploadsInUse.remove(partialUpload.getName());
+			}
+		}
 
 		resp.setStatus(HttpServletResponse.SC_CREATED);
 
@@ -2882,6 +3053,175 @@ public class DavServlet extends HttpServlet
 
 	}
 
+	/**
+	 * Adds a part of a file sent with "Content-Range: bytes first-last/length" to the parts that have arrived. A client whose
+	 * upload was cut off finds out how much has arrived with "Content-Range: bytes * /length" and no body, then carries on
+	 * from there. Each part must start where the previous ones end, or earlier to send a part again.
+	 *
+	 * The user must be able to save the file, and it must fit within the upload limit and the quota, before any of it is
+	 * written. The caller holds the part file for the request.
+	 *
+	 * @return true once the last part has arrived, otherwise false once the response has been sent: 308 with a Range
+	 *         header giving what has arrived so far, or an error.
+	 */
+	private boolean putPart(HttpServletRequest req, HttpServletResponse resp, String path, File part, String contentRange) throws IOException
+	{
+		Matcher matcher = PUT_CONTENT_RANGE.matcher(contentRange.trim());
+		if (!matcher.matches())
+		{
+			resp.sendError(SakaidavStatus.SC_BAD_REQUEST);
+			return false;
+		}
+
+		long received = part.length(); // 0 if there is none
+		long length = Long.parseLong(matcher.group(3));
+
+		if (matcher.group(1) == null)
+		{
+			sendReceived(resp, SakaidavStatus.SC_RESUME_INCOMPLETE, received);
+			return false;
+		}
+
+		String resourcePath = adjustId(path);
+		// as in doUnlock we don't know whether the file exists, so check both
+		if (!(contentHostingService.allowAddResource(resourcePath) || contentHostingService.allowUpdateResource(resourcePath)))
+		{
+			deletePartialUpload(part);
+			resp.sendError(SakaidavStatus.SC_FORBIDDEN);
+			return false;
+		}
+		if (length > partialUploadMax)
+		{
+			deletePartialUpload(part);
+			resp.sendError(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE);
+			return false;
+		}
+
+		long first = Long.parseLong(matcher.group(1));
+		long last = Long.parseLong(matcher.group(2));
+		if (last < first || last >= length || first > received)
+		{
+			sendReceived(resp, SakaidavStatus.SC_REQUESTED_RANGE_NOT_SATISFIABLE, received);
+			return false;
+		}
+
+		if (first == 0 && overQuota(resourcePath, length))
+		{
+			deletePartialUpload(part);
+			// the same response as when the commit is over quota
+			resp.sendError(SakaidavStatus.SC_FORBIDDEN);
+			return false;
+		}
+
+		if (!partialUploadDir.isDirectory() && !partialUploadDir.mkdirs())
+		{
+			M_log.warn("SAKAIDavServlet.doPut() unable to create " + partialUploadDir);
+			resp.sendError(SakaidavStatus.SC_INTERNAL_SERVER_ERROR);
+			return false;
+		}
+
+		// Written straight to the file, so whatever arrives before a connection drops is kept
+		try (RandomAccessFile out = new RandomAccessFile(part, "rw"))
+		{
+			out.setLength(first);
+			out.seek(first);
+			InputStream in = req.getInputStream();
+			byte[] buffer = new byte[STREAM_BUFFER_SIZE];
+			long remaining = last - first + 1;
+			int n;
+			while (remaining > 0 && (n = in.read(buffer, 0, (int) Math.min(buffer.length, remaining))) != -1)
+			{
+				out.write(buffer, 0, n);
+				remaining -= n;
+			}
+			received = out.length();
+		}
+
+		if (received < length)
+		{
+			sendReceived(resp, SakaidavStatus.SC_RESUME_INCOMPLETE, received);
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Whether a file of this length would take the site or user's resources over their quota. Like the check when the
+	 * file is committed it leaves out the file it replaces, and if the quota can't be found the commit decides.
+	 */
+	private boolean overQuota(String resourcePath, long length)
+	{
+		if (!(resourcePath.startsWith(ContentHostingService.COLLECTION_USER) || resourcePath.startsWith(ContentHostingService.COLLECTION_SITE))) return false;
+		String[] parts = StringUtil.split(resourcePath, Entity.SEPARATOR);
+		if (parts.length <= 2) return false;
+		try
+		{
+			ContentCollection collection = contentHostingService.getCollection(Entity.SEPARATOR + parts[1] + Entity.SEPARATOR + parts[2] + Entity.SEPARATOR);
+			long quota = contentHostingService.getQuota(collection);
+			if (quota == 0) return false;
+			long size = collection.getBodySizeK() + length / 1024;
+			try
+			{
+				size -= contentHostingService.getResource(resourcePath).getContentLength() / 1024;
+			}
+			catch (IdUnusedException e)
+			{
+				// a new file
+			}
+			return size >= quota;
+		}
+		catch (IdUnusedException | TypeException | PermissionException e)
+		{
+			return false;
+		}
+	}
+
+	private void deletePartialUpload(File part)
+	{
+		if (part.exists() && !part.delete())
+		{
+			M_log.warn("SAKAIDavServlet.doPut() unable to delete " + part);
+		}
+	}
+
+	/**
+	 * The parts of a file are kept per user and path
+	 */
+	private File getPartialUpload(String path)
+	{
+		String key = UserDirectoryService.getCurrentUser().getId() + ":" + path;
+		try
+		{
+			return new File(partialUploadDir, MD5Encoder.encode(MessageDigest.getInstance("MD5").digest(key.getBytes("UTF-8"))) + ".part");
+		}
+		catch (NoSuchAlgorithmException e)
+		{
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private void sendReceived(HttpServletResponse resp, int status, long received)
+	{
+		resp.setStatus(status);
+		if (received > 0) resp.setHeader("Range", "bytes=0-" + (received - 1));
+		resp.setContentLength(0);
+	}
+
+	private void removeExpiredUploads()
+	{
+		File[] parts = partialUploadDir.listFiles();
+		if (parts == null) return;
+		long expired = System.currentTimeMillis() - partialUploadExpiry;
+		for (File part : parts)
+		{
+			if (part.getName().endsWith(".part") && part.lastModified() < expired
+					&& !partialUploadsInUse.containsKey(part.getName()) && !part.delete())
+			{
+				M_log.warn("SAKAIDavServlet.doPut() unable to delete expired upload " + part);
+			}
+		}
+	}
+
 	/**
 	 * COPY Method.
 	 */
@@ -4351,8 +4691,15 @@ public class DavServlet extends HttpServlet
 		// (the "toUpperCase()" avoids problems on Windows systems)
 		if (path.toUpperCase().startsWith("/WEB-INF") || path.toUpperCase().startsWith("/META-INF")) return;
 
-		ResourceInfoSAKAI resourceInfo = new ResourceInfoSAKAI(path, resources);
+		parseProperties(req, new ResourceInfoSAKAI(path, resources), generatedXML, path, type, propertiesVector);
+	}
 
+	/**
+	 * Propfind helper method, for a resource that has already been looked up.
+	 */
+	private void parseProperties(HttpServletRequest req, ResourceInfoSAKAI resourceInfo, XMLWriter generatedXML, String path, int type,
+			Vector<String> propertiesVector)
+	{
 		generatedXML.writeElement("D", "response", XMLWriter.OPENING);
 		String status = new String("HTTP/1.1 " + SakaidavStatus.SC_OK + " " + SakaidavStatus.getStatusText(SakaidavStatus.SC_OK));
 
@@ -5196,6 +5543,16 @@ class SakaidavStatus
 	 */
 	public static final int SC_UNSUPPORTED_MEDIA_TYPE = 415;
 
+	/**
+	 * Status code (416) indicating a part of a file doesn't follow on from the parts that have been received.
+	 */
+	public static final int SC_REQUESTED_RANGE_NOT_SATISFIABLE = HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE;
+
+	/**
+	 * Status code (308) indicating a part of a file has been received, and more are expected.
+	 */
+	public static final int SC_RESUME_INCOMPLETE = 308;
+
 	// -------------------------------------------- Extended Sakaidav status code
 
 	/**
@@ -5258,6 +5615,8 @@ class SakaidavStatus
 		addStatusCodeMap(SC_PRECONDITION_FAILED, "Precondition Failed");
 		addStatusCodeMap(SC_REQUEST_TOO_LONG, "Request Too Long");
 		addStatusCodeMap(SC_UNSUPPORTED_MEDIA_TYPE, "Unsupported Media Type");
+		addStatusCodeMap(SC_REQUESTED_RANGE_NOT_SATISFIABLE, "Requested Range Not Satisfiable");
+		addStatusCodeMap(SC_RESUME_INCOMPLETE, "Resume Incomplete");
 		// dav Status Codes
 		addStatusCodeMap(SC_MULTI_STATUS, "Multi-Status");
 		addStatusCodeMap(SC_UNPROCESSABLE_ENTITY, "Unprocessable Entity");
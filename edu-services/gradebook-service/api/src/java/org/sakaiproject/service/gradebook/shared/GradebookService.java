@@ -595,6 +595,21 @@ public interface GradebookService {
 	 * or if gradableObjectIds contains items that are not members of the gradebook with uid = gradebookUid
 	 */
 	public Map<Long, List<GradeDefinition>> getGradesWithoutCommentsForStudentsForItems(String gradebookUid, List<Long> gradableOjbectIds, List<String> studentIds);
+
+	/**
+	 * Get the grade records, including comments, for the given list of students for several gradebook items at once. This applies the
+	 * same per item permission filtering as {@link #getGradesForStudentsForItem} but fetches the grades and comments for all of the
+	 * items in bulk rather than one item at a time.
+	 *
+	 * @param gradebookUid
+	 * @param gradableObjectIds
+	 * @param studentIds
+	 * @return a Map of gradableObjectIds to a List of GradeDefinitions for the given students. If a student has neither a grade nor a
+	 *         comment on a gradableObject, the GradeDefinition will be omitted
+	 * @throws SecurityException if the current user is not authorized to grade in this gradebook
+	 * @throws IllegalArgumentException if gradableObjectIds is null
+	 */
+	public Map<Long, List<GradeDefinition>> getGradesForStudentsForItems(String gradebookUid, List<Long> gradableObjectIds, List<String> studentIds);
 	
 	/**
 	 * 
@@ -654,6 +669,21 @@ public interface GradebookService {
 	public void saveGradesAndComments(String gradebookUid, Long assignmentId, List<GradeDefinition> gradeDefList)
 		throws InvalidGradeException, GradebookNotFoundException, AssessmentNotFoundException;
 
+	/**
+	 * Save a block of scores and comments for several gradebook items at once. All of the grades are validated before anything is
+	 * written and the whole block is saved in a single transaction. One event is posted per gradebook item rather than per grade.
+	 * Scores must be in a format according to the gradebook's grade entry type (ie points, %, letter).
+	 * @param gradebookUid
+	 * @param gradeDefsByItem map of gradebook item id to the GradeDefinitions to save for that item
+	 * @throws InvalidGradeException if any of the grades are not valid - none will be saved
+	 * @throws SecurityException if the user does not have access to a student in the list -
+	 * no grades or comments will be saved for any student
+	 * @throws GradebookNotFoundException
+	 * @throws AssessmentNotFoundException if any of the items do not exist - none will be saved
+	 */
+	public void saveGradesAndComments(String gradebookUid, Map<Long, List<GradeDefinition>> gradeDefsByItem)
+		throws InvalidGradeException, GradebookNotFoundException, AssessmentNotFoundException;
+
 	/**
 	 * 
 	 * @param gradebookUid
@@ -1191,6 +1191,24 @@ public abstract class BaseHibernateManager extends HibernateDaoSupport {
     	return getHibernateTemplate().execute(hc);
     }
 
+    /**
+     * Get the comments for several assignments at once
+     *
+     * @param assignments the assignments to fetch comments for. Should be kept to a reasonable batch size by the caller.
+     * @param studentIds the students to fetch comments for
+     * @return the comments for any of the assignments and students
+     */
+    public List<Comment> getCommentsForItems(final Collection<Assignment> assignments, final Collection studentIds) {
+    	if (assignments.isEmpty() || studentIds.isEmpty()) {
+    		return new ArrayList<>();
+    	}
+        HibernateCallback<List<Comment>> hc = session -> session.createCriteria(Comment.class)
+                        .add(Restrictions.in("gradableObject", assignments))
+                        .add(HibernateCriterionUtils.CriterionInRestrictionSplitter("studentId", studentIds))
+                        .list();
+    	return getHibernateTemplate().execute(hc);
+    }
+
     protected Map<String, Set<Assignment>> getVisibleExternalAssignments(Gradebook gradebook, Collection<String> studentIds, List<Assignment> assignments) {
         String gradebookUid = gradebook.getUid();
         Map<String, List<String>> allExternals = externalAssessmentService.getVisibleExternalAssignments(gradebookUid, studentIds);
@@ -1870,6 +1870,157 @@ public class GradebookServiceHibernateImpl extends BaseHibernateManager implemen
 		return gradesMap;
 	}
 
+	@Override
+	public Map<Long, List<GradeDefinition>> getGradesForStudentsForItems(final String gradebookUid, final List<Long> gradableObjectIds, final List<String> studentIds)
+	{
+		if (gradableObjectIds == null)
+		{
+			throw new IllegalArgumentException("null gradableObjectIds passed to getGradesForStudentsForItems");
+		}
+
+		final Map<Long, List<GradeDefinition>> gradesMap = new HashMap<>();
+		if (gradableObjectIds.isEmpty() || studentIds == null || studentIds.isEmpty())
+		{
+			return gradesMap;
+		}
+
+		if (!authz.isUserAbleToGrade(gradebookUid))
+		{
+			throw new SecurityException("User " + authn.getUserUid() +
+					" attempted to access grade information without permission in gb " +
+					gradebookUid + " using gradebookService.getGradesForStudentsForItems");
+		}
+
+		final Gradebook gradebook = getGradebook(gradebookUid);
+
+		// resolve the requested items in one query, skipping any that are removed or not in this gradebook
+		final Set<Long> requestedIds = new HashSet<>(gradableObjectIds);
+		final List<Assignment> allItems = getHibernateTemplate().execute(session -> getAssignments(gradebook.getId()));
+		final Map<Long, Assignment> gbItems = new HashMap<>();
+		for (final Assignment gbItem : allItems)
+		{
+			if (requestedIds.contains(gbItem.getId()))
+			{
+				gbItems.put(gbItem.getId(), gbItem);
+			}
+		}
+		if (gbItems.isEmpty())
+		{
+			return gradesMap;
+		}
+
+		// the students the current user may view depends only on the item category, so work that out once per category
+		final Map<Long, Set<String>> viewableStudentsByCategory = new HashMap<>();
+		final Set<String> viewableStudents = new HashSet<>();
+		for (final Assignment gbItem : gbItems.values())
+		{
+			final Long categoryId = gbItem.getCategory() != null ? gbItem.getCategory().getId() : null;
+			if (!viewableStudentsByCategory.containsKey(categoryId))
+			{
+				final Map<EnrollmentRecord, String> enrRecFunctionMap = authz.findMatchingEnrollmentsForItem(gradebookUid, categoryId, gradebook.getCategory_type(), null, null);
+				final Set<String> studentUids = new HashSet<>();
+				for (final EnrollmentRecord enr : enrRecFunctionMap.keySet())
+				{
+					if (enr != null)
+					{
+						studentUids.add(enr.getUser().getUserUid());
+					}
+				}
+				studentUids.retainAll(studentIds);
+				viewableStudentsByCategory.put(categoryId, studentUids);
+				viewableStudents.addAll(studentUids);
+			}
+		}
+		if (viewableStudents.isEmpty())
+		{
+			return gradesMap;
+		}
+		final List<String> viewableStudentList = new ArrayList<>(viewableStudents);
+
+		// retrieve the grading comments for all of the items and students, keyed by item then student
+		final Map<Long, Map<String, String>> commentsByItem = new HashMap<>();
+		for (final Comment comment : getCommentsForItems(gbItems.values(), viewableStudentList))
+		{
+			final Long gboId = comment.getGradableObject().getId();
+			Map<String, String> studentComments = commentsByItem.get(gboId);
+			if (studentComments == null)
+			{
+				studentComments = new HashMap<>();
+				commentsByItem.put(gboId, studentComments);
+			}
+			studentComments.put(comment.getStudentId(), comment.getCommentText());
+		}
+
+		// now fetch and convert all of the grade records in one go
+		final List<AssignmentGradeRecord> gradeRecords = getAllAssignmentGradeRecordsForGbItems(new ArrayList<>(gbItems.keySet()), viewableStudentList);
+		if (gradebook.getGrade_type() == GradebookService.GRADE_TYPE_LETTER)
+		{
+			convertPointsToLetterGrade(gradebook, gradeRecords);
+		}
+		else if (gradebook.getGrade_type() == GradebookService.GRADE_TYPE_PERCENTAGE)
+		{
+			convertPointsToPercentage(gradebook, gradeRecords);
+		}
+
+		final Map<Long, Set<String>> studentsWithGradeRec = new HashMap<>();
+		for (final AssignmentGradeRecord gradeRecord : gradeRecords)
+		{
+			final Assignment gbItem = gbItems.get(gradeRecord.getAssignment().getId());
+			if (gbItem == null || !isViewableForItem(viewableStudentsByCategory, gbItem, gradeRecord.getStudentId()))
+			{
+				continue;
+			}
+			final Map<String, String> studentComments = commentsByItem.get(gbItem.getId());
+			final String commentText = studentComments != null ? studentComments.get(gradeRecord.getStudentId()) : null;
+
+			addGradeDefinition(gradesMap, gbItem.getId(), convertGradeRecordToGradeDefinition(gradeRecord, gbItem, gradebook, commentText));
+
+			Set<String> graded = studentsWithGradeRec.get(gbItem.getId());
+			if (graded == null)
+			{
+				graded = new HashSet<>();
+				studentsWithGradeRec.put(gbItem.getId(), graded);
+			}
+			graded.add(gradeRecord.getStudentId());
+		}
+
+		// if student has a comment but no grade add an empty grade definition with the comment
+		for (final Map.Entry<Long, Map<String, String>> entry : commentsByItem.entrySet())
+		{
+			final Assignment gbItem = gbItems.get(entry.getKey());
+			final Set<String> graded = studentsWithGradeRec.get(entry.getKey());
+			for (final Map.Entry<String, String> comment : entry.getValue().entrySet())
+			{
+				final String studentId = comment.getKey();
+				if ((graded == null || !graded.contains(studentId)) && isViewableForItem(viewableStudentsByCategory, gbItem, studentId))
+				{
+					final AssignmentGradeRecord emptyGradeRecord = new AssignmentGradeRecord(gbItem, studentId, null);
+					addGradeDefinition(gradesMap, gbItem.getId(), convertGradeRecordToGradeDefinition(emptyGradeRecord, gbItem, gradebook, comment.getValue()));
+				}
+			}
+		}
+
+		return gradesMap;
+	}
+
+	private boolean isViewableForItem(final Map<Long, Set<String>> viewableStudentsByCategory, final Assignment gbItem, final String studentId)
+	{
+		final Long categoryId = gbItem.getCategory() != null ? gbItem.getCategory().getId() : null;
+		final Set<String> viewable = viewableStudentsByCategory.get(categoryId);
+		return viewable != null && viewable.contains(studentId);
+	}
+
+	private void addGradeDefinition(final Map<Long, List<GradeDefinition>> gradesMap, final Long gboId, final GradeDefinition gradeDef)
+	{
+		List<GradeDefinition> gradeList = gradesMap.get(gboId);
+		if (gradeList == null)
+		{
+			gradeList = new ArrayList<>();
+			gradesMap.put(gboId, gradeList);
+		}
+		gradeList.add(gradeDef);
+	}
+
 	/**
 	 * Converts an AssignmentGradeRecord into a GradeDefinition object.
 	 * @param gradeRecord
@@ -2067,174 +2218,250 @@ public class GradebookServiceHibernateImpl extends BaseHibernateManager implemen
 			  throw new SecurityException("Current user is not authorized to save grades or comments in gradebook " + gradebookUid);
 		  }
 
-		  // let's identify all of the students being updated first
-		  Map<String, GradeDefinition> studentIdGradeDefMap = new HashMap<String, GradeDefinition>();
-		  Map<String, String> studentIdToGradeMap = new HashMap<String, String>();
+		  // check for invalid grades
+		  validateGrades(gradebookUid, gradeDefList);
+
+		  saveGradesAndCommentsForItem(gradebook, assignment, gradeDefList, currentUserHasGradeAllPerm(gradebookUid), new Date());
+	  }
+  }
+
+  @Override
+  public void saveGradesAndComments(final String gradebookUid, final Map<Long, List<GradeDefinition>> gradeDefsByItem) {
+	  if (gradebookUid == null || gradeDefsByItem == null) {
+		  throw new IllegalArgumentException("Null gradebookUid or gradeDefsByItem passed to saveGradesAndComments");
+	  }
 
-		  for (GradeDefinition gradeDef: gradeDefList) {
-			  studentIdGradeDefMap.put(gradeDef.getStudentUid(), gradeDef);
-			  studentIdToGradeMap.put(gradeDef.getStudentUid(), gradeDef.getGrade());
+	  if (gradeDefsByItem.isEmpty()) {
+		  return;
+	  }
+
+	  Gradebook gradebook;
+	  try {
+		  gradebook = getGradebook(gradebookUid);
+	  } catch (GradebookNotFoundException gnfe) {
+		  throw new GradebookNotFoundException("No gradebook exists with the given gradebookUid: " +
+				  gradebookUid + "Error: " + gnfe.getMessage());
+	  }
+
+	  if (!currentUserHasGradingPerm(gradebookUid)) {
+		  log.warn("User attempted to save grades and comments without authorization");
+		  throw new SecurityException("Current user is not authorized to save grades or comments in gradebook " + gradebookUid);
+	  }
+
+	  // resolve all of the items in one query
+	  final Long gradebookId = gradebook.getId();
+	  final List<Assignment> allItems = getHibernateTemplate().execute(session -> getAssignments(gradebookId));
+	  final Map<Long, Assignment> gbItems = new HashMap<>();
+	  for (final Assignment gbItem : allItems) {
+		  gbItems.put(gbItem.getId(), gbItem);
+	  }
+
+	  // validate the whole block before anything is written
+	  for (final Map.Entry<Long, List<GradeDefinition>> entry : gradeDefsByItem.entrySet()) {
+		  if (!gbItems.containsKey(entry.getKey())) {
+			  throw new AssessmentNotFoundException("No gradebook item exists with gradable object id = " + entry.getKey());
 		  }
+		  validateGrades(gradebookUid, entry.getValue());
+	  }
 
-		  // check for invalid grades
-		  List invalidStudents = identifyStudentsWithInvalidGrades(gradebookUid, studentIdToGradeMap);
-		  if (invalidStudents != null && !invalidStudents.isEmpty()) {
-			  throw new InvalidGradeException ("At least one grade passed to be updated is " +
-			  "invalid. No grades or comments were updated.");
+	  final boolean userHasGradeAllPerm = currentUserHasGradeAllPerm(gradebookUid);
+	  final Date now = new Date();
+
+	  for (final Map.Entry<Long, List<GradeDefinition>> entry : gradeDefsByItem.entrySet()) {
+		  final Assignment assignment = gbItems.get(entry.getKey());
+		  final int updated = saveGradesAndCommentsForItem(gradebook, assignment, entry.getValue(), userHasGradeAllPerm, now);
+
+		  // one event per item rather than one per grade
+		  if (updated > 0) {
+			  postEvent("gradebook.updateItemScores", "/gradebook/" + gradebookUid + "/" + assignment.getName() + "/" + updated);
 		  }
+	  }
+  }
+
+  /**
+   * Throws {@link InvalidGradeException} if any of the grades are not valid for the gradebook
+   */
+  private void validateGrades(final String gradebookUid, final List<GradeDefinition> gradeDefList) {
+	  Map<String, String> studentIdToGradeMap = new HashMap<String, String>();
+	  for (GradeDefinition gradeDef: gradeDefList) {
+		  studentIdToGradeMap.put(gradeDef.getStudentUid(), gradeDef.getGrade());
+	  }
 
-		  boolean userHasGradeAllPerm = currentUserHasGradeAllPerm(gradebookUid);
+	  List invalidStudents = identifyStudentsWithInvalidGrades(gradebookUid, studentIdToGradeMap);
+	  if (invalidStudents != null && !invalidStudents.isEmpty()) {
+		  throw new InvalidGradeException ("At least one grade passed to be updated is " +
+		  "invalid. No grades or comments were updated.");
+	  }
+  }
 
-		  // let's retrieve all of the existing grade recs for the given students
-		  // and assignments
-		  List<AssignmentGradeRecord> allGradeRecs = 
-			  getAllAssignmentGradeRecordsForGbItem(gradableObjectId, studentIdGradeDefMap.keySet());
+  /**
+   * Save the grades and comments for one gradebook item. The caller must already have checked that the gradebook and item exist, that
+   * the user can grade and that the grades are valid.
+   *
+   * @return the number of grade records that were changed
+   */
+  private int saveGradesAndCommentsForItem(final Gradebook gradebook, final Assignment assignment, final List<GradeDefinition> gradeDefList,
+		  final boolean userHasGradeAllPerm, final Date now) {
 
+	  final String gradebookUid = gradebook.getUid();
+	  final Long gradableObjectId = assignment.getId();
 
-		  // put in map for easier accessibility
-		  Map<String, AssignmentGradeRecord> studentIdToAgrMap = new HashMap<String, AssignmentGradeRecord>();
-		  if (allGradeRecs != null) {
-			  for (AssignmentGradeRecord rec : allGradeRecs) {
-				  studentIdToAgrMap.put(rec.getStudentId(), rec);
-			  }
-		  }
+	  // let's identify all of the students being updated first
+	  Map<String, GradeDefinition> studentIdGradeDefMap = new HashMap<String, GradeDefinition>();
+	  for (GradeDefinition gradeDef: gradeDefList) {
+		  studentIdGradeDefMap.put(gradeDef.getStudentUid(), gradeDef);
+	  }
 
-		  // set up the grader and grade time
-		  String graderId = getAuthn().getUserUid();
-		  Date now = new Date();
+	  // let's retrieve all of the existing grade recs for the given students
+	  // and assignments
+	  List<AssignmentGradeRecord> allGradeRecs = 
+		  getAllAssignmentGradeRecordsForGbItem(gradableObjectId, studentIdGradeDefMap.keySet());
 
-		  // get grade mapping, if nec, to convert grades to points
-		  LetterGradePercentMapping mapping = null;
-		  if (gradebook.getGrade_type() == GradebookService.GRADE_TYPE_LETTER) {
-			  mapping = getLetterGradePercentMapping(gradebook);
+
+	  // put in map for easier accessibility
+	  Map<String, AssignmentGradeRecord> studentIdToAgrMap = new HashMap<String, AssignmentGradeRecord>();
+	  if (allGradeRecs != null) {
+		  for (AssignmentGradeRecord rec : allGradeRecs) {
+			  studentIdToAgrMap.put(rec.getStudentId(), rec);
 		  }
+	  }
 
-		  // get all of the comments, as well
-		  List<Comment> allComments = getComments(assignment, studentIdGradeDefMap.keySet());
-		  // put in a map for easier accessibility
-		  Map<String, Comment> studentIdCommentMap = new HashMap<String, Comment>();
-		  if (allComments != null) {
-			  for (Comment comment : allComments) {
-				  studentIdCommentMap.put(comment.getStudentId(), comment);
-			  }
+	  // set up the grader
+	  String graderId = getAuthn().getUserUid();
+
+	  // get grade mapping, if nec, to convert grades to points
+	  LetterGradePercentMapping mapping = null;
+	  if (gradebook.getGrade_type() == GradebookService.GRADE_TYPE_LETTER) {
+		  mapping = getLetterGradePercentMapping(gradebook);
+	  }
+
+	  // get all of the comments, as well
+	  List<Comment> allComments = getComments(assignment, studentIdGradeDefMap.keySet());
+	  // put in a map for easier accessibility
+	  Map<String, Comment> studentIdCommentMap = new HashMap<String, Comment>();
+	  if (allComments != null) {
+		  for (Comment comment : allComments) {
+			  studentIdCommentMap.put(comment.getStudentId(), comment);
 		  }
+	  }
 
-		  // these are the records that will need to be updated. iterate through
-		  // everything and then we'll save it all at once
-		  Set<AssignmentGradeRecord> agrToUpdate = new HashSet<AssignmentGradeRecord>();
-		  // do not use a HashSet b/c you may have multiple Comments with null id and the same comment at this point.
-		  // the Comment object defines objects as equal if they have the same id, comment text, and gb item. the
-		  // only difference may be the student ids
-		  List<Comment> commentsToUpdate = new ArrayList<Comment>();
-		  Set<GradingEvent> eventsToAdd = new HashSet<GradingEvent>();
-
-		  for (GradeDefinition gradeDef : gradeDefList) {
-
-			  String studentId = gradeDef.getStudentUid();
-
-			  // use the grader ID from the definition if it is not null, otherwise use the current user ID
-			  String graderUid = gradeDef.getGraderUid() != null ? gradeDef.getGraderUid() : graderId;
-			  // use the grade date from the definition if it is not null, otherwise use the current date
-			  Date gradedDate = gradeDef.getDateRecorded() != null ? gradeDef.getDateRecorded() : now;
-
-			  // check specific grading privileges if user does not have
-			  // grade all perm
-			  if (!userHasGradeAllPerm) {
-				  if (!isUserAbleToGradeItemForStudent(gradebookUid, gradableObjectId, studentId)) {
-					  log.warn("User " + graderId + " attempted to save a grade for " + studentId + 
-					  " without authorization");
-
-					  throw new SecurityException("User " + graderId + " attempted to save a grade for " + 
-							  studentId + " without authorization");
-				  }
+	  // these are the records that will need to be updated. iterate through
+	  // everything and then we'll save it all at once
+	  Set<AssignmentGradeRecord> agrToUpdate = new HashSet<AssignmentGradeRecord>();
+	  // do not use a HashSet b/c you may have multiple Comments with null id and the same comment at this point.
+	  // the Comment object defines objects as equal if they have the same id, comment text, and gb item. the
+	  // only difference may be the student ids
+	  List<Comment> commentsToUpdate = new ArrayList<Comment>();
+	  Set<GradingEvent> eventsToAdd = new HashSet<GradingEvent>();
+
+	  for (GradeDefinition gradeDef : gradeDefList) {
+
+		  String studentId = gradeDef.getStudentUid();
+
+		  // use the grader ID from the definition if it is not null, otherwise use the current user ID
+		  String graderUid = gradeDef.getGraderUid() != null ? gradeDef.getGraderUid() : graderId;
+		  // use the grade date from the definition if it is not null, otherwise use the current date
+		  Date gradedDate = gradeDef.getDateRecorded() != null ? gradeDef.getDateRecorded() : now;
+
+		  // check specific grading privileges if user does not have
+		  // grade all perm
+		  if (!userHasGradeAllPerm) {
+			  if (!isUserAbleToGradeItemForStudent(gradebookUid, gradableObjectId, studentId)) {
+				  log.warn("User " + graderId + " attempted to save a grade for " + studentId + 
+				  " without authorization");
+
+				  throw new SecurityException("User " + graderId + " attempted to save a grade for " + 
+						  studentId + " without authorization");
 			  }
+		  }
 
-			  Double convertedGrade = convertInputGradeToPoints(gradebook.getGrade_type(), mapping, assignment.getPointsPossible(), gradeDef.getGrade());
-
-			  // let's see if this agr needs to be updated
-			  AssignmentGradeRecord gradeRec = studentIdToAgrMap.get(studentId);
-			  if (gradeRec != null) {
-				  if ((convertedGrade == null && gradeRec.getPointsEarned() != null) || 
-						  (convertedGrade != null && gradeRec.getPointsEarned() == null) ||
-						  (convertedGrade != null && gradeRec.getPointsEarned() != null && 
-								  !convertedGrade.equals(gradeRec.getPointsEarned()))) {
-					  
-					  gradeRec.setPointsEarned(convertedGrade);
-					  gradeRec.setGraderId(graderUid);
-					  gradeRec.setDateRecorded(gradedDate);
-
-					  agrToUpdate.add(gradeRec);
-
-					  // we also need to add a GradingEvent
-					  // the event stores the actual input grade, not the converted one
-					  GradingEvent event = new GradingEvent(assignment, graderUid, studentId, gradeDef.getGrade());
-					  eventsToAdd.add(event);
-				  }
-			  } else {
-				  // if the grade is something other than null, add a new AGR
-				  if (gradeDef.getGrade() != null && !gradeDef.getGrade().trim().equals("")) {
-					  gradeRec =  new AssignmentGradeRecord(assignment, studentId, convertedGrade);
-					  gradeRec.setPointsEarned(convertedGrade);
-					  gradeRec.setGraderId(graderUid);
-					  gradeRec.setDateRecorded(gradedDate);
-
-					  agrToUpdate.add(gradeRec);
-
-					  // we also need to add a GradingEvent
-					  // the event stores the actual input grade, not the converted one
-					  GradingEvent event = new GradingEvent(assignment, graderUid, studentId, gradeDef.getGrade());
-					  eventsToAdd.add(event);
-				  }
-			  }
+		  Double convertedGrade = convertInputGradeToPoints(gradebook.getGrade_type(), mapping, assignment.getPointsPossible(), gradeDef.getGrade());
 
-			  // let's see if the comment needs to be updated
-			  Comment comment = studentIdCommentMap.get(studentId);
-			  if (comment != null) {
-				  boolean oldCommentIsNull = comment.getCommentText() == null || comment.getCommentText().equals("");
-				  boolean newCommentIsNull = gradeDef.getGradeComment() == null || gradeDef.getGradeComment().equals("");
+		  // let's see if this agr needs to be updated
+		  AssignmentGradeRecord gradeRec = studentIdToAgrMap.get(studentId);
+		  if (gradeRec != null) {
+			  if ((convertedGrade == null && gradeRec.getPointsEarned() != null) || 
+					  (convertedGrade != null && gradeRec.getPointsEarned() == null) ||
+					  (convertedGrade != null && gradeRec.getPointsEarned() != null && 
+							  !convertedGrade.equals(gradeRec.getPointsEarned()))) {
 				  
-				  if ((oldCommentIsNull && !newCommentIsNull) || 
-						  (!oldCommentIsNull && newCommentIsNull) ||
-						  (!oldCommentIsNull && !newCommentIsNull && 
-								  !gradeDef.getGradeComment().equals(comment.getCommentText()))) {
-					  // update this comment
-					  comment.setCommentText(gradeDef.getGradeComment());
-					  comment.setGraderId(graderUid);
-					  comment.setDateRecorded(gradedDate);
-
-					  commentsToUpdate.add(comment);
-				  }
-			  } else {
-				  // if there is a comment, add it
-				  if (gradeDef.getGradeComment() != null && !gradeDef.getGradeComment().trim().equals("")) {
-					  comment = new Comment(studentId, gradeDef.getGradeComment(), assignment);
-					  comment.setGraderId(graderUid);
-					  comment.setDateRecorded(gradedDate);
+				  gradeRec.setPointsEarned(convertedGrade);
+				  gradeRec.setGraderId(graderUid);
+				  gradeRec.setDateRecorded(gradedDate);
 
-					  commentsToUpdate.add(comment);
-				  }
+				  agrToUpdate.add(gradeRec);
+
+				  // we also need to add a GradingEvent
+				  // the event stores the actual input grade, not the converted one
+				  GradingEvent event = new GradingEvent(assignment, graderUid, studentId, gradeDef.getGrade());
+				  eventsToAdd.add(event);
+			  }
+		  } else {
+			  // if the grade is something other than null, add a new AGR
+			  if (gradeDef.getGrade() != null && !gradeDef.getGrade().trim().equals("")) {
+				  gradeRec =  new AssignmentGradeRecord(assignment, studentId, convertedGrade);
+				  gradeRec.setPointsEarned(convertedGrade);
+				  gradeRec.setGraderId(graderUid);
+				  gradeRec.setDateRecorded(gradedDate);
+
+				  agrToUpdate.add(gradeRec);
+
+				  // we also need to add a GradingEvent
+				  // the event stores the actual input grade, not the converted one
+				  GradingEvent event = new GradingEvent(assignment, graderUid, studentId, gradeDef.getGrade());
+				  eventsToAdd.add(event);
 			  }
 		  }
 
-		  // now let's save them
-		  try {
-			for (AssignmentGradeRecord assignmentGradeRecord : agrToUpdate) {
-				getHibernateTemplate().saveOrUpdate(assignmentGradeRecord);
-			}
-			for (Comment comment : commentsToUpdate) {
-				getHibernateTemplate().saveOrUpdate(comment);
-			}
-			for (GradingEvent gradingEvent : eventsToAdd) {
-				getHibernateTemplate().saveOrUpdate(gradingEvent);
-			}
-		  }	catch (HibernateOptimisticLockingFailureException holfe) {
-			  if(log.isInfoEnabled()) log.info("An optimistic locking failure occurred while attempting to save scores and comments for gb Item " + gradableObjectId);
-			  throw new StaleObjectModificationException(holfe);
-		  } catch (StaleObjectStateException sose) {
-			  if(log.isInfoEnabled()) log.info("An optimistic locking failure occurred while attempting to save scores and comments for gb Item " + gradableObjectId);
-			  throw new StaleObjectModificationException(sose);
+		  // let's see if the comment needs to be updated
+		  Comment comment = studentIdCommentMap.get(studentId);
+		  if (comment != null) {
+			  boolean oldCommentIsNull = comment.getCommentText() == null || comment.getCommentText().equals("");
+			  boolean newCommentIsNull = gradeDef.getGradeComment() == null || gradeDef.getGradeComment().equals("");
+			  
+			  if ((oldCommentIsNull && !newCommentIsNull) || 
+					  (!oldCommentIsNull && newCommentIsNull) ||
+					  (!oldCommentIsNull && !newCommentIsNull && 
+							  !gradeDef.getGradeComment().equals(comment.getCommentText()))) {
+				  // update this comment
+				  comment.setCommentText(gradeDef.getGradeComment());
+				  comment.setGraderId(graderUid);
+				  comment.setDateRecorded(gradedDate);
+
+				  commentsToUpdate.add(comment);
+			  }
+		  } else {
+			  // if there is a comment, add it
+			  if (gradeDef.getGradeComment() != null && !gradeDef.getGradeComment().trim().equals("")) {
+				  comment = new Comment(studentId, gradeDef.getGradeComment(), assignment);
+				  comment.setGraderId(graderUid);
+				  comment.setDateRecorded(gradedDate);
+
+				  commentsToUpdate.add(comment);
+			  }
 		  }
 	  }
+
+	  // now let's save them
+	  try {
+		for (AssignmentGradeRecord assignmentGradeRecord : agrToUpdate) {
+			getHibernateTemplate().saveOrUpdate(assignmentGradeRecord);
+		}
+		for (Comment comment : commentsToUpdate) {
+			getHibernateTemplate().saveOrUpdate(comment);
+		}
+		for (GradingEvent gradingEvent : eventsToAdd) {
+			getHibernateTemplate().saveOrUpdate(gradingEvent);
+		}
+	  }	catch (HibernateOptimisticLockingFailureException holfe) {
+		  if(log.isInfoEnabled()) log.info("An optimistic locking failure occurred while attempting to save scores and comments for gb Item " + gradableObjectId);
+		  throw new StaleObjectModificationException(holfe);
+	  } catch (StaleObjectStateException sose) {
+		  if(log.isInfoEnabled()) log.info("An optimistic locking failure occurred while attempting to save scores and comments for gb Item " + gradableObjectId);
+		  throw new StaleObjectModificationException(sose);
+	  }
+
+	  return agrToUpdate.size();
   }
 
   /**
@@ -33,9 +33,13 @@ public class CourseGradeComparator implements Comparator<GbStudentGradeInfo> {
 
 	@Override
 	public int compare(final GbStudentGradeInfo g1, final GbStudentGradeInfo g2) {
-		final CourseGrade cg1 = g1.getCourseGrade().getCourseGrade();
-		final CourseGrade cg2 = g2.getCourseGrade().getCourseGrade();
+		return compareCourseGrades(g1.getCourseGrade().getCourseGrade(), g2.getCourseGrade().getCourseGrade());
+	}
 
+	/**
+	 * Compare the underlying course grades directly, for callers that don't hold {@link GbStudentGradeInfo} objects
+	 */
+	public int compareCourseGrades(final CourseGrade cg1, final CourseGrade cg2) {
 		String letterGrade1 = cg1.getMappedGrade();
 		if (cg1.getEnteredGrade() != null) {
 			letterGrade1 = cg1.getEnteredGrade();
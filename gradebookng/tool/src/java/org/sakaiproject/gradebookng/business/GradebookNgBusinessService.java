@@ -13,7 +13,6 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
-import java.util.TreeMap;
 import java.util.stream.Collectors;
 
 import javax.xml.bind.JAXBException;
@@ -32,12 +31,13 @@ import org.sakaiproject.gradebookng.business.model.GbCourseGrade;
 import org.sakaiproject.gradebookng.business.model.GbGradeCell;
 import org.sakaiproject.gradebookng.business.model.GbGradeInfo;
 import org.sakaiproject.gradebookng.business.model.GbGradeLog;
+import org.sakaiproject.gradebookng.business.model.GbGradeMatrix;
+import org.sakaiproject.gradebookng.business.model.GbGradeUpdate;
 import org.sakaiproject.gradebookng.business.model.GbGroup;
 import org.sakaiproject.gradebookng.business.model.GbStudentGradeInfo;
 import org.sakaiproject.gradebookng.business.model.GbStudentNameSortOrder;
 import org.sakaiproject.gradebookng.business.model.GbUser;
 import org.sakaiproject.gradebookng.business.util.CourseGradeFormatter;
-import org.sakaiproject.gradebookng.business.util.FormatHelper;
 import org.sakaiproject.gradebookng.business.util.GbStopWatch;
 import org.sakaiproject.gradebookng.tool.model.GradebookUiSettings;
 import org.sakaiproject.service.gradebook.shared.AssessmentNotFoundException;
@@ -121,6 +121,16 @@ public class GradebookNgBusinessService {
 	public static final String ASSIGNMENT_ORDER_PROP = "gbng_assignment_order";
 	public static final String ICON_SAKAI = "icon-sakai--";
 
+	/**
+	 * Number of gradebook items to fetch grades for in a single call when building the grade matrix
+	 */
+	private static final int GRADE_MATRIX_ITEM_BATCH_SIZE = 50;
+
+	/**
+	 * Difference in points below which two grades are the same. Covers the rounding when converting to and from percentages
+	 */
+	private static final double GRADE_TOLERANCE = 0.00001;
+
 	/**
 	 * Get a list of all users in the current site that can have grades
 	 *
@@ -491,8 +501,8 @@ public class GradebookNgBusinessService {
 			return GradeSaveResponse.NO_CHANGE;
 		}
 
-		// get current grade
-		final String storedGrade = this.gradebookService.getAssignmentScoreString(gradebook.getUid(), assignmentId,
+		// get current grade, this is always in points
+		final String storedPoints = this.gradebookService.getAssignmentScoreString(gradebook.getUid(), assignmentId,
 				studentUuid);
 
 		// get assignment config
@@ -502,52 +512,6 @@ public class GradebookNgBusinessService {
 		// check what grading mode we are in
 		final GradingType gradingType = GradingType.valueOf(gradebook.getGrade_type());
 
-		// if percentage entry type, reformat the grades, otherwise use points as is
-		String newGradeAdjusted = newGrade;
-		String oldGradeAdjusted = oldGrade;
-		String storedGradeAdjusted = storedGrade;
-		if(StringUtils.isNotBlank(storedGradeAdjusted)){
-			//Fix a problem when the grades comes from the old Gradebook API with locale separator, always compare the values using the same separator
-			oldGradeAdjusted = oldGradeAdjusted.replace(newGradeAdjusted.contains(",") ? "." : ",", newGradeAdjusted.contains(",") ? "," : ".");
-			storedGradeAdjusted = storedGradeAdjusted.replace(newGradeAdjusted.contains(",") ? "." : ",", newGradeAdjusted.contains(",") ? "," : ".");
-		}
-
-		if (gradingType == GradingType.PERCENTAGE) {
-			// the passed in grades represents a percentage so the number needs to be adjusted back to points
-			final Double newGradePercentage = NumberUtils.toDouble(newGrade);
-			final Double newGradePointsFromPercentage = (newGradePercentage / 100) * maxPoints;
-			newGradeAdjusted = FormatHelper.formatDoubleToDecimal(newGradePointsFromPercentage);
-
-			// only convert if we had a previous value otherwise it will be out of sync
-			if (StringUtils.isNotBlank(oldGradeAdjusted)) {
-				// To check if our data is out of date, we first compare what we think
-				// is the latest saved score against score stored in the database. As the score
-				// is stored as points, we must convert this to a percentage. To be sure we're
-				// comparing apples with apples, we first determine the number of decimal places
-				// on the score, so the converted points-as-percentage is in the expected format.
-
-				final Double oldGradePercentage = NumberUtils.toDouble(oldGrade);
-				final Double oldGradePointsFromPercentage = (oldGradePercentage / 100) * maxPoints;
-
-				oldGradeAdjusted = FormatHelper.formatDoubleToMatch(oldGradePointsFromPercentage, storedGradeAdjusted);
-			}
-
-			// we dont need processing of the stored grade as the service does that when persisting.
-		}
-
-		// trim the .0 from the grades if present. UI removes it so lets standardise
-		// trim to null so we can better compare against no previous grade being recorded (as it will be null)
-		// Note that we also trim newGrade so that don't add the grade if the new grade is blank and there was no grade previously
-		storedGradeAdjusted = StringUtils.trimToNull(StringUtils.removeEnd(storedGradeAdjusted, ".0"));
-		oldGradeAdjusted = StringUtils.trimToNull(StringUtils.removeEnd(oldGradeAdjusted, ".0"));
-		newGradeAdjusted = StringUtils.trimToNull(StringUtils.removeEnd(newGradeAdjusted, ".0"));
-
-		if (log.isDebugEnabled()) {
-			log.debug("storedGradeAdjusted: " + storedGradeAdjusted);
-			log.debug("oldGradeAdjusted: " + oldGradeAdjusted);
-			log.debug("newGradeAdjusted: " + newGradeAdjusted);
-		}
-
 		// if comment longer than 500 chars, error.
 		// the field is a CLOB, probably by mistake. Loading this field up may cause performance issues
 		// see SAK-29595
@@ -556,33 +520,18 @@ public class GradebookNgBusinessService {
 			return GradeSaveResponse.ERROR;
 		}
 
-		// no change
-		if (StringUtils.equals(storedGradeAdjusted, newGradeAdjusted)) {
-			final Double storedGradePoints = NumberUtils.toDouble(storedGradeAdjusted);
-			if (storedGradePoints.compareTo(maxPoints) > 0) {
-				return GradeSaveResponse.OVER_LIMIT;
-			} else {
-				return GradeSaveResponse.NO_CHANGE;
-			}
-		}
-
-		// concurrency check, if stored grade != old grade that was passed in,
-		// someone else has edited.
-		// if oldGrade == null, ignore concurrency check
-		if (oldGrade != null && !StringUtils.equals(storedGradeAdjusted, oldGradeAdjusted)) {
-			return GradeSaveResponse.CONCURRENT_EDIT;
+		// no change, or someone else has edited
+		final String storedGrade = pointsToGrade(gradingType, normaliseGrade(storedPoints), maxPoints);
+		final GradeSaveResponse unsaved = checkGrade(gradingType, storedGrade, oldGrade, newGrade, maxPoints);
+		if (unsaved != null) {
+			return unsaved;
 		}
 
+		// if over limit, still save but return the warning
 		GradeSaveResponse rval = null;
-
-		if (StringUtils.isNotBlank(newGradeAdjusted)) {
-			final Double newGradePoints = NumberUtils.toDouble(newGradeAdjusted);
-
-			// if over limit, still save but return the warning
-			if (newGradePoints.compareTo(maxPoints) > 0) {
-				log.debug("over limit. Max: " + maxPoints);
-				rval = GradeSaveResponse.OVER_LIMIT;
-			}
+		if (isOverLimit(gradingType, normaliseGrade(newGrade), maxPoints)) {
+			log.debug("over limit. Max: " + maxPoints);
+			rval = GradeSaveResponse.OVER_LIMIT;
 		}
 
 		// save
@@ -602,6 +551,240 @@ public class GradebookNgBusinessService {
 		return rval;
 	}
 
+	/**
+	 * Save a block of grades and comments, eg from an import, in one go. All of the cells are checked up front against the currently
+	 * stored grades (one lookup for the whole block), and the cells that need saving are written in a single call to the gradebook
+	 * service rather than one call per cell.
+	 *
+	 * Each cell gets the same response as {@link #saveGrade(Long, String, String, String, String)} would give it. A cell that fails the
+	 * concurrency check or has an invalid grade is skipped without affecting the rest of the block.
+	 *
+	 * @param updates the grades to save
+	 * @return map of assignment id to a map of student uuid and the response for that cell
+	 */
+	public Map<Long, Map<String, GradeSaveResponse>> saveGrades(final List<GbGradeUpdate> updates) {
+
+		final Map<Long, Map<String, GradeSaveResponse>> rval = new HashMap<>();
+
+		final Gradebook gradebook = this.getGradebook();
+		if (gradebook == null || updates.isEmpty()) {
+			for (final GbGradeUpdate update : updates) {
+				addGradeSaveResponse(rval, update, GradeSaveResponse.ERROR);
+			}
+			return rval;
+		}
+
+		final GradingType gradingType = GradingType.valueOf(gradebook.getGrade_type());
+
+		// lookup for the assignment config
+		final Map<Long, Assignment> assignments = new HashMap<>();
+		for (final Assignment assignment : this.getGradebookAssignments()) {
+			assignments.put(assignment.getId(), assignment);
+		}
+
+		// get the currently stored grades for the whole block
+		final Set<Long> assignmentIds = new HashSet<>();
+		final Set<String> studentUuids = new HashSet<>();
+		for (final GbGradeUpdate update : updates) {
+			assignmentIds.add(update.getAssignmentId());
+			studentUuids.add(update.getStudentUuid());
+		}
+		final Map<Long, Map<String, String>> storedGrades = new HashMap<>();
+		final Map<Long, List<GradeDefinition>> defs = this.gradebookService.getGradesForStudentsForItems(gradebook.getUid(),
+				new ArrayList<>(assignmentIds), new ArrayList<>(studentUuids));
+		for (final Map.Entry<Long, List<GradeDefinition>> entry : defs.entrySet()) {
+			final Map<String, String> grades = new HashMap<>();
+			for (final GradeDefinition def : entry.getValue()) {
+				grades.put(def.getStudentUid(), def.getGrade());
+			}
+			storedGrades.put(entry.getKey(), grades);
+		}
+
+		// work out what each cell needs. The pending responses are only final once the save succeeds
+		final Map<Long, List<GradeDefinition>> toSave = new LinkedHashMap<>();
+		final Map<GbGradeUpdate, GradeSaveResponse> pending = new LinkedHashMap<>();
+
+		for (final GbGradeUpdate update : updates) {
+
+			final Assignment assignment = assignments.get(update.getAssignmentId());
+
+			// if newGrade is null, no change
+			if (update.getNewGrade() == null) {
+				addGradeSaveResponse(rval, update, GradeSaveResponse.NO_CHANGE);
+				continue;
+			}
+
+			// unknown item or comment too long (see SAK-29595)
+			if (assignment == null || StringUtils.length(update.getComment()) > 500) {
+				log.error("Cannot save grade for assignment: " + update.getAssignmentId() + ", student: " + update.getStudentUuid());
+				addGradeSaveResponse(rval, update, GradeSaveResponse.ERROR);
+				continue;
+			}
+
+			final Map<String, String> grades = storedGrades.get(update.getAssignmentId());
+			final String storedGrade = grades != null ? grades.get(update.getStudentUuid()) : null;
+			final Double maxPoints = assignment.getPoints();
+
+			// no change, or someone else has edited
+			final GradeSaveResponse unsaved = checkGrade(gradingType, storedGrade, update.getOldGrade(), update.getNewGrade(), maxPoints);
+			if (unsaved != null) {
+				addGradeSaveResponse(rval, update, unsaved);
+				continue;
+			}
+
+			// if over limit, still save but return the warning
+			pending.put(update, isOverLimit(gradingType, normaliseGrade(update.getNewGrade()), maxPoints) ? GradeSaveResponse.OVER_LIMIT
+					: GradeSaveResponse.OK);
+
+			// note, you must pass in the comment or it will be nulled out by the GB service
+			// also, must pass in the raw grade as the service does conversions between percentage etc
+			final GradeDefinition def = new GradeDefinition();
+			def.setStudentUid(update.getStudentUuid());
+			def.setGrade(update.getNewGrade());
+			def.setGradeComment(update.getComment());
+
+			List<GradeDefinition> itemDefs = toSave.get(update.getAssignmentId());
+			if (itemDefs == null) {
+				itemDefs = new ArrayList<>();
+				toSave.put(update.getAssignmentId(), itemDefs);
+			}
+			itemDefs.add(def);
+		}
+
+		// remove any invalid grades so they don't fail the whole block
+		for (final Map.Entry<Long, List<GradeDefinition>> entry : toSave.entrySet()) {
+			final Map<String, String> studentIdToGradeMap = new HashMap<>();
+			for (final GradeDefinition def : entry.getValue()) {
+				studentIdToGradeMap.put(def.getStudentUid(), def.getGrade());
+			}
+			final List<String> invalid = this.gradebookService.identifyStudentsWithInvalidGrades(gradebook.getUid(),
+					studentIdToGradeMap);
+			if (invalid != null && !invalid.isEmpty()) {
+				entry.getValue().removeIf(def -> invalid.contains(def.getStudentUid()));
+				pending.entrySet().removeIf(e -> {
+					final GbGradeUpdate update = e.getKey();
+					if (update.getAssignmentId() == entry.getKey() && invalid.contains(update.getStudentUuid())) {
+						addGradeSaveResponse(rval, update, GradeSaveResponse.ERROR);
+						return true;
+					}
+					return false;
+				});
+			}
+		}
+		toSave.values().removeIf(List::isEmpty);
+
+		// save
+		GradeSaveResponse failure = null;
+		if (!toSave.isEmpty()) {
+			try {
+				this.gradebookService.saveGradesAndComments(gradebook.getUid(), toSave);
+			} catch (InvalidGradeException | GradebookNotFoundException | AssessmentNotFoundException | SecurityException e) {
+				log.error("An error occurred saving the grades. " + e.getClass() + ": " + e.getMessage());
+				failure = GradeSaveResponse.ERROR;
+			}
+		}
+		for (final Map.Entry<GbGradeUpdate, GradeSaveResponse> entry : pending.entrySet()) {
+			addGradeSaveResponse(rval, entry.getKey(), (failure != null) ? failure : entry.getValue());
+		}
+
+		return rval;
+	}
+
+	/**
+	 * Standardise a grade for comparison. Trims to null, uses a period as the decimal separator and removes any trailing .0 as the UI
+	 * does
+	 */
+	private String normaliseGrade(final String grade) {
+		String rval = StringUtils.trimToNull(grade);
+		if (rval != null && NumberUtils.isNumber(rval.replace(",", "."))) {
+			rval = rval.replace(",", ".");
+		}
+		return StringUtils.trimToNull(StringUtils.removeEnd(rval, ".0"));
+	}
+
+	/**
+	 * Check a new grade against the stored one, as {@link #saveGrade(Long, String, String, String, String)} and
+	 * {@link #saveGrades(List)} both do before saving. The grades are compared as points, as stored percentages have been through a
+	 * round trip to points so won't be formatted as entered.
+	 *
+	 * @param storedGrade the stored grade, in the form the gradebook's grading type enters it
+	 * @param oldGrade the grade the user last saw, for the concurrency check. If null, concurrency checking is skipped.
+	 * @param newGrade the new grade
+	 * @return the response if the grade shouldn't be saved, or null if it should
+	 */
+	private GradeSaveResponse checkGrade(final GradingType gradingType, final String storedGrade, final String oldGrade,
+			final String newGrade, final Double maxPoints) {
+		final String stored = normaliseGrade(storedGrade);
+
+		// no change
+		if (isSameGrade(gradingType, stored, normaliseGrade(newGrade), maxPoints)) {
+			return isOverLimit(gradingType, stored, maxPoints) ? GradeSaveResponse.OVER_LIMIT : GradeSaveResponse.NO_CHANGE;
+		}
+
+		// concurrency check, if stored grade != old grade that was passed in,
+		// someone else has edited.
+		if (oldGrade != null && !isSameGrade(gradingType, stored, normaliseGrade(oldGrade), maxPoints)) {
+			return GradeSaveResponse.CONCURRENT_EDIT;
+		}
+
+		return null;
+	}
+
+	/**
+	 * Convert a grade in points to the form the grading type enters it, ie a percentage for percentage gradebooks
+	 */
+	private String pointsToGrade(final GradingType gradingType, final String points, final Double maxPoints) {
+		if (gradingType != GradingType.PERCENTAGE || !NumberUtils.isNumber(points) || maxPoints == null || maxPoints == 0) {
+			return points;
+		}
+		return String.valueOf(NumberUtils.toDouble(points) / maxPoints * 100);
+	}
+
+	/**
+	 * Convert a grade to points, from a percentage if that is the grading type. Null for letter grades or anything that isn't a number
+	 */
+	private Double toPoints(final GradingType gradingType, final String grade, final Double maxPoints) {
+		if (gradingType == GradingType.LETTER || !NumberUtils.isNumber(grade)) {
+			return null;
+		}
+		final double value = NumberUtils.toDouble(grade);
+		if (gradingType == GradingType.PERCENTAGE) {
+			return (maxPoints != null) ? (value / 100) * maxPoints : null;
+		}
+		return value;
+	}
+
+	/**
+	 * Whether two normalised grades are the same. Numbers are compared as points, allowing for the rounding in the conversion between
+	 * points and percentages, anything else must match exactly
+	 */
+	private boolean isSameGrade(final GradingType gradingType, final String grade1, final String grade2, final Double maxPoints) {
+		final Double points1 = toPoints(gradingType, grade1, maxPoints);
+		final Double points2 = toPoints(gradingType, grade2, maxPoints);
+		if (points1 == null || points2 == null) {
+			return StringUtils.equals(grade1, grade2);
+		}
+		return Math.abs(points1 - points2) < GRADE_TOLERANCE;
+	}
+
+	private boolean isOverLimit(final GradingType gradingType, final String grade, final Double maxPoints) {
+		final Double points = toPoints(gradingType, grade, maxPoints);
+		if (points == null || maxPoints == null) {
+			return false;
+		}
+		return points - maxPoints > GRADE_TOLERANCE;
+	}
+
+	private void addGradeSaveResponse(final Map<Long, Map<String, GradeSaveResponse>> responses, final GbGradeUpdate update,
+			final GradeSaveResponse response) {
+		Map<String, GradeSaveResponse> itemResponses = responses.get(update.getAssignmentId());
+		if (itemResponses == null) {
+			itemResponses = new HashMap<>();
+			responses.put(update.getAssignmentId(), itemResponses);
+		}
+		itemResponses.put(update.getStudentUuid(), response);
+	}
+
 	/**
 	 * Build the matrix of assignments, students and grades for all students
 	 *
@@ -644,10 +827,46 @@ public class GradebookNgBusinessService {
 	 * @param studentUuids student uuids
 	 * @param uiSettings the settings from the UI that wraps up preferences
 	 * @return
+	 */
+	public List<GbStudentGradeInfo> buildGradeMatrix(final List<Assignment> assignments,
+			final List<String> studentUuids, final GradebookUiSettings uiSettings) throws GbException {
+
+		final GbGradeMatrix matrix = buildColumnarGradeMatrix(assignments, studentUuids, uiSettings);
+		if (matrix == null) {
+			return null;
+		}
+		summariseGradeMatrixRows(matrix, 0, matrix.size(), uiSettings);
+		return matrix.getRows(0, matrix.size());
+	}
+
+	/**
+	 * Build the columnar matrix of assignments, students and grades for all students in the group filter, with the specified sort
+	 * order. Use this when only part of the matrix will be displayed, eg a page of the table.
+	 *
+	 * @param assignments list of assignments
+	 * @param uiSettings the UI settings. Wraps sort order and group filter (sort = null for no sort, filter = null for all groups)
+	 * @return
+	 */
+	public GbGradeMatrix buildColumnarGradeMatrix(final List<Assignment> assignments,
+			final GradebookUiSettings uiSettings) throws GbException {
+		return this.buildColumnarGradeMatrix(assignments, this.getGradeableUsers(uiSettings.getGroupFilter()), uiSettings);
+	}
+
+	/**
+	 * Build the columnar matrix of assignments and grades for the given users with the specified sort order. Grades are fetched in
+	 * batches of items and stored per assignment, and the rows are sorted without creating a {@link GbStudentGradeInfo} per student.
+	 *
+	 * Course grades and category averages are only worked out for every student when the matrix is sorted by them. Otherwise call
+	 * {@link #summariseGradeMatrixRows(GbGradeMatrix, int, int, GradebookUiSettings)} for the rows that are going to be displayed.
+	 *
+	 * @param assignments list of assignments
+	 * @param studentUuids student uuids
+	 * @param uiSettings the settings from the UI that wraps up preferences
+	 * @return
 	 *
 	 * TODO refactor this into a hierarchical method structure
 	 */
-	public List<GbStudentGradeInfo> buildGradeMatrix(final List<Assignment> assignments,
+	public GbGradeMatrix buildColumnarGradeMatrix(final List<Assignment> assignments,
 			final List<String> studentUuids, final GradebookUiSettings uiSettings) throws GbException {
 
 		// TODO move GradebookUISettings to business
@@ -697,41 +916,8 @@ public class GradebookNgBusinessService {
 		}
 		stopwatch.timeWithContext("buildGradeMatrix", "sortUsers", stopwatch.getTime());
 
-		// get course grades
-		final Map<String, CourseGrade> courseGrades = getCourseGrades(studentUuids);
-
-		stopwatch.timeWithContext("buildGradeMatrix", "getSiteCourseGrades", stopwatch.getTime());
-
-		// setup a map because we progressively build this up by adding grades
-		// to a student's entry
-		final Map<String, GbStudentGradeInfo> matrix = new LinkedHashMap<>();
-
-		// setup the course grade formatter
-		// TODO we want the override except in certain cases. Can we hard code this?
-		final CourseGradeFormatter courseGradeFormatter = new CourseGradeFormatter(
-				gradebook,
-				role,
-				isCourseGradeVisible(currentUserUuid),
-				settings.getShowPoints(),
-				true);
-
-		// seed the map for all students so we can progresseively add grades
-		// also add the course grade here, to save an iteration later
-		// TA permissions already included in course grade visibility
-		for (final User student : students) {
-
-			// create and add the user info
-			final GbStudentGradeInfo sg = new GbStudentGradeInfo(student);
-
-			// add the course grade, including the display
-			final CourseGrade courseGrade = courseGrades.get(student.getId());
-			final GbCourseGrade gbCourseGrade = new GbCourseGrade(courseGrades.get(student.getId()));
-			gbCourseGrade.setDisplayString(courseGradeFormatter.format(courseGrade));
-			sg.setCourseGrade(gbCourseGrade);
-
-			// add to map so we can build on it later
-			matrix.put(student.getId(), sg);
-		}
+		// the matrix interns each student to a row, in the sorted order, and we progressively add columns of grades to it
+		final GbGradeMatrix matrix = new GbGradeMatrix(students);
 		stopwatch.timeWithContext("buildGradeMatrix", "matrix seeded", stopwatch.getTime());
 
 		// get categories. This call is filtered for TAs as well.
@@ -749,15 +935,8 @@ public class GradebookNgBusinessService {
 			}
 		}
 
-		// this holds a map of categoryId and the list of assignment ids in each
-		// we build this whilst iterating below to save further iterations when
-		// building the category list
-		final Map<Long, Set<Long>> categoryAssignments = new TreeMap<>();
-
-		// iterate over assignments and get the grades for each
-		// note, the returned list only includes entries where there is a grade
-		// for the user
-		// we also build the category lookup map here
+		// work out which assignments we need grades for, and build the category lookup map
+		final List<Long> assignmentIds = new ArrayList<>();
 		for (final Assignment assignment : assignments) {
 
 			final Long categoryId = assignment.getCategoryId();
@@ -774,98 +953,24 @@ public class GradebookNgBusinessService {
 				}
 			}
 
+			// the matrix also keeps the assignment ids in each category, for the category averages
+			matrix.addAssignment(assignmentId, categoryId);
+			assignmentIds.add(assignmentId);
+
 			// TA stub out. So that we can support 'per grade' permissions for a
 			// TA, we need a stub record for every student
-			// This is because getGradesForStudentsForItem only returns records
+			// This is because the grade lookup only returns records
 			// where there is a grade (even if blank)
-			// So this iteration for TAs allows the matrix to be fully
-			// populated.
+			// So this allows the matrix to be fully populated.
 			// This is later updated to be a real grade entry if there is one.
 			if (role == GbRole.TA) {
-				for (final User student : students) {
-					final GbStudentGradeInfo sg = matrix.get(student.getId());
-					sg.addGrade(assignment.getId(), new GbGradeInfo(null));
-				}
-			}
-
-			// build the category map (if assignment is categorised)
-			if (categoryId != null) {
-				Set<Long> values;
-				if (categoryAssignments.containsKey(categoryId)) {
-					values = categoryAssignments.get(categoryId);
-					values.add(assignmentId);
-				} else {
-					values = new HashSet<Long>();
-					values.add(assignmentId);
-				}
-				categoryAssignments.put(categoryId, values);
+				matrix.stubAssignment(assignmentId);
 			}
-
-			// get grades
-			final List<GradeDefinition> defs = this.gradebookService.getGradesForStudentsForItem(gradebook.getUid(),
-					assignment.getId(), studentUuids);
-			stopwatch.timeWithContext("buildGradeMatrix", "getGradesForStudentsForItem: " + assignment.getId(),
-					stopwatch.getTime());
-
-			// iterate the definitions returned and update the record for each
-			// student with the grades
-			for (final GradeDefinition def : defs) {
-				final GbStudentGradeInfo sg = matrix.get(def.getStudentUid());
-
-				if (sg == null) {
-					log.warn("No matrix entry seeded for: " + def.getStudentUid()
-							+ ". This user may be been removed from the site");
-				} else {
-					// this will overwrite the stub entry for the TA matrix if
-					// need be
-					sg.addGrade(assignment.getId(), new GbGradeInfo(def));
-				}
-			}
-			stopwatch.timeWithContext("buildGradeMatrix", "updatedStudentGradeInfo: " + assignment.getId(),
-					stopwatch.getTime());
 		}
-		stopwatch.timeWithContext("buildGradeMatrix", "matrix built", stopwatch.getTime());
-
-		// build category columns
-		for (final CategoryDefinition category : categories) {
-
-			// use the category mappings for faster lookup of the assignmentIds
-			// and grades in the category
-			final Set<Long> categoryAssignmentIds = categoryAssignments.get(category.getId());
-
-			// if there are no assignments in the category (ie its a new
-			// category) this will be null, so skip
-			if (categoryAssignmentIds != null) {
-
-				for (final User student : students) {
-
-					final GbStudentGradeInfo sg = matrix.get(student.getId());
-
-					// get grades
-					final Map<Long, GbGradeInfo> grades = sg.getGrades();
-
-					// build map of just the grades we want
-					final Map<Long, String> gradeMap = new HashMap<>();
-					for (final Long assignmentId : categoryAssignmentIds) {
-						final GbGradeInfo gradeInfo = grades.get(assignmentId);
-						if (gradeInfo != null) {
-							gradeMap.put(assignmentId, gradeInfo.getGrade());
-						}
-					}
 
-					final Double categoryScore = this.gradebookService.calculateCategoryScore(gradebook,
-							student.getId(), category, category.getAssignmentList(), gradeMap);
-
-					// add to GbStudentGradeInfo
-					sg.addCategoryAverage(category.getId(), categoryScore);
-
-					// TODO the TA permission check could reuse this iteration... check performance.
-
-				}
-			}
-
-		}
-		stopwatch.timeWithContext("buildGradeMatrix", "categories built", stopwatch.getTime());
+		// get the grades and update the matrix
+		addGradesToMatrix(matrix, gradebook.getUid(), assignmentIds, studentUuids, stopwatch);
+		stopwatch.timeWithContext("buildGradeMatrix", "matrix built", stopwatch.getTime());
 
 		// for a TA, apply the permissions to each grade item to see if we can render it
 		// the list of students, assignments and grades is already filtered to those that can be viewed
@@ -908,22 +1013,23 @@ public class GradebookNgBusinessService {
 				final Map<String, List<String>> groupMembershipsMap = getGroupMemberships();
 
 				// for every student
-				for (final User student : students) {
-
-					log.debug("Processing student: " + student.getEid());
+				for (int row = 0; row < matrix.size(); row++) {
 
-					final GbStudentGradeInfo sg = matrix.get(student.getId());
+					final String studentUuid = matrix.getStudentUuid(row);
 
-					// get their assignment/grade list
-					final Map<Long, GbGradeInfo> gradeMap = sg.getGrades();
+					log.debug("Processing student: " + studentUuid);
 
 					// for every assignment that has a grade
-					for (final Map.Entry<Long, GbGradeInfo> entry : gradeMap.entrySet()) {
+					for (final Long assignmentId : matrix.getAssignmentIds()) {
+
+						if (!matrix.hasEntry(assignmentId, row)) {
+							continue;
+						}
 
 						// categoryId
-						final Long gradeCategoryId = assignmentCategoryMap.get(entry.getKey());
+						final Long gradeCategoryId = assignmentCategoryMap.get(assignmentId);
 
-						log.debug("Grade: " + entry.getValue());
+						log.debug("Grade: " + matrix.getGrade(assignmentId, row));
 
 						// iterate the permissions
 						// if category, compare the category,
@@ -961,7 +1067,7 @@ public class GradebookNgBusinessService {
 								final List<String> groupMembers = groupMembershipsMap.get(permissionGroupReference);
 								log.debug("groupMembers: " + groupMembers);
 
-								if (groupMembers != null && groupMembers.contains(student.getId())) {
+								if (groupMembers != null && groupMembers.contains(studentUuid)) {
 									groupOk = true;
 									log.debug("Group check passed #2");
 								}
@@ -974,59 +1080,195 @@ public class GradebookNgBusinessService {
 						}
 
 						// set the gradeable flag on this grade instance
-						final GbGradeInfo gradeInfo = entry.getValue();
-						gradeInfo.setGradeable(gradeable);
+						matrix.setGradeable(assignmentId, row, gradeable);
 					}
 				}
 			}
 			stopwatch.timeWithContext("buildGradeMatrix", "TA permissions applied", stopwatch.getTime());
 		}
 
-		// get the matrix as a list of GbStudentGradeInfo
-		final List<GbStudentGradeInfo> items = new ArrayList<>(matrix.values());
+		// sorting by a category or the course grade needs them for every student, otherwise they are left for the displayed rows
+		if (settings.getCategorySortOrder() != null || settings.getCourseGradeSortOrder() != null) {
+			summariseRows(matrix, matrix.getUnsummarisedRows(0, matrix.size()), gradebook, role, currentUserUuid, categories, settings);
+			stopwatch.timeWithContext("buildGradeMatrix", "course grades and categories built", stopwatch.getTime());
+		}
 
 		// sort the matrix based on the supplied assignment sort order (if any)
 		if (settings.getAssignmentSortOrder() != null) {
-			Comparator<GbStudentGradeInfo> comparator = new AssignmentGradeComparator(settings.getAssignmentSortOrder().getAssignmentId());
-
-			final SortDirection direction = settings.getAssignmentSortOrder().getDirection();
-			// reverse if required
-			if (direction == SortDirection.DESCENDING) {
-				comparator = Collections.reverseOrder(comparator);
-			}
-			// sort
-			Collections.sort(items, comparator);
+			matrix.sortByAssignment(settings.getAssignmentSortOrder().getAssignmentId(),
+					settings.getAssignmentSortOrder().getDirection());
 		}
 		stopwatch.timeWithContext("buildGradeMatrix", "matrix sorted by assignment", stopwatch.getTime());
 
 		// sort the matrix based on the supplied category sort order (if any)
 		if (settings.getCategorySortOrder() != null) {
-			Comparator comparator = new CategorySubtotalComparator(settings.getCategorySortOrder().getCategoryId());
-
-			final SortDirection direction = settings.getCategorySortOrder().getDirection();
-			// reverse if required
-			if (direction == SortDirection.DESCENDING) {
-				comparator = Collections.reverseOrder(comparator);
-			}
-			// sort
-			Collections.sort(items, comparator);
-
+			matrix.sortByCategory(settings.getCategorySortOrder().getCategoryId(),
+					settings.getCategorySortOrder().getDirection());
 		}
 		stopwatch.timeWithContext("buildGradeMatrix", "matrix sorted by category", stopwatch.getTime());
 
 		if (settings.getCourseGradeSortOrder() != null) {
+			matrix.sortByCourseGrade(new CourseGradeComparator(getGradebookSettings()), settings.getCourseGradeSortOrder());
+		}
+		stopwatch.timeWithContext("buildGradeMatrix", "matrix sorted by course grade", stopwatch.getTime());
 
-			Comparator<GbStudentGradeInfo> comp = new CourseGradeComparator(getGradebookSettings());
-			// reverse if required
-			if (settings.getCourseGradeSortOrder() == SortDirection.DESCENDING) {
-				comp = Collections.reverseOrder(comp);
+		return matrix;
+	}
+
+	/**
+	 * Work out the course grade and category averages for a range of rows of a matrix built by
+	 * {@link #buildColumnarGradeMatrix(List, List, GradebookUiSettings)}, eg the page of the table being displayed. Rows that already
+	 * have them are skipped.
+	 *
+	 * @param matrix the matrix
+	 * @param first position of the first row, in the current sort order
+	 * @param count maximum number of rows
+	 * @param uiSettings the settings from the UI that wraps up preferences
+	 */
+	public void summariseGradeMatrixRows(final GbGradeMatrix matrix, final int first, final int count,
+			final GradebookUiSettings uiSettings) throws GbException {
+
+		final List<Integer> rows = matrix.getUnsummarisedRows(first, count);
+		if (rows.isEmpty()) {
+			return;
+		}
+
+		final Gradebook gradebook = this.getGradebook();
+		if (gradebook == null) {
+			return;
+		}
+
+		GbRole role;
+		try {
+			role = this.getUserRole();
+		} catch (final GbAccessDeniedException e) {
+			throw new GbException("Error getting role for current user", e);
+		}
+
+		final GradebookUiSettings settings = (uiSettings != null) ? uiSettings : new GradebookUiSettings();
+		summariseRows(matrix, rows, gradebook, role, getCurrentUser().getId(), this.getGradebookCategories(), settings);
+	}
+
+	/**
+	 * Set the course grade and category averages for the given rows
+	 *
+	 * @param matrix the matrix
+	 * @param rows the row indexes
+	 * @param gradebook the gradebook
+	 * @param role role of the current user
+	 * @param currentUserUuid uuid of the current user
+	 * @param categories the categories, already filtered for TAs
+	 * @param settings the settings from the UI
+	 */
+	private void summariseRows(final GbGradeMatrix matrix, final List<Integer> rows, final Gradebook gradebook, final GbRole role,
+			final String currentUserUuid, final List<CategoryDefinition> categories, final GradebookUiSettings settings) {
+
+		if (rows.isEmpty()) {
+			return;
+		}
+
+		// get course grades, for just these students
+		final List<String> studentUuids = new ArrayList<>(rows.size());
+		for (final int row : rows) {
+			studentUuids.add(matrix.getStudentUuid(row));
+		}
+		final Map<String, CourseGrade> courseGrades = getCourseGrades(studentUuids);
+
+		// setup the course grade formatter
+		// TODO we want the override except in certain cases. Can we hard code this?
+		final CourseGradeFormatter courseGradeFormatter = new CourseGradeFormatter(
+				gradebook,
+				role,
+				isCourseGradeVisible(currentUserUuid),
+				settings.getShowPoints(),
+				true);
+
+		// add the course grade for each student, including the display
+		// TA permissions already included in course grade visibility
+		for (final int row : rows) {
+			final CourseGrade courseGrade = courseGrades.get(matrix.getStudentUuid(row));
+			final GbCourseGrade gbCourseGrade = new GbCourseGrade(courseGrade);
+			gbCourseGrade.setDisplayString(courseGradeFormatter.format(courseGrade));
+			matrix.setCourseGrade(row, gbCourseGrade);
+		}
+
+		// build category columns
+		for (final CategoryDefinition category : categories) {
+
+			// use the category mappings for faster lookup of the assignmentIds
+			// and grades in the category
+			final Set<Long> categoryAssignmentIds = matrix.getCategoryAssignmentIds(category.getId());
+
+			// if there are no assignments in the category (ie its a new
+			// category) this will be null, so skip
+			if (categoryAssignmentIds != null) {
+
+				for (final int row : rows) {
+
+					// build map of just the grades we want
+					final Map<Long, String> gradeMap = new HashMap<>();
+					for (final Long assignmentId : categoryAssignmentIds) {
+						if (matrix.hasEntry(assignmentId, row)) {
+							gradeMap.put(assignmentId, matrix.getGrade(assignmentId, row));
+						}
+					}
+
+					final Double categoryScore = this.gradebookService.calculateCategoryScore(gradebook,
+							matrix.getStudentUuid(row), category, category.getAssignmentList(), gradeMap);
+
+					matrix.setCategoryAverage(category.getId(), row, categoryScore);
+				}
 			}
-			// sort
-			Collections.sort(items, comp);
 		}
-		stopwatch.timeWithContext("buildGradeMatrix", "matrix sorted by course grade", stopwatch.getTime());
 
-		return items;
+		for (final int row : rows) {
+			matrix.setSummarised(row);
+		}
+	}
+
+	/**
+	 * Add the grades for the given assignments to the matrix. The grades are fetched for a batch of assignments at a time, the size of
+	 * which is set by gradebookng.gradeMatrix.itemBatchSize.
+	 *
+	 * @param matrix the matrix, seeded with the students and assignments
+	 * @param gradebookUid uid of the gradebook
+	 * @param assignmentIds the assignments to get grades for
+	 * @param studentUuids the students to get grades for
+	 * @param stopwatch for timing each batch
+	 */
+	void addGradesToMatrix(final GbGradeMatrix matrix, final String gradebookUid, final List<Long> assignmentIds,
+			final List<String> studentUuids, final GbStopWatch stopwatch) {
+
+		int batchSize = this.serverConfigurationService.getInt("gradebookng.gradeMatrix.itemBatchSize",
+				GRADE_MATRIX_ITEM_BATCH_SIZE);
+		if (batchSize < 1) {
+			log.warn("Invalid gradebookng.gradeMatrix.itemBatchSize: " + batchSize + ", using " + GRADE_MATRIX_ITEM_BATCH_SIZE);
+			batchSize = GRADE_MATRIX_ITEM_BATCH_SIZE;
+		}
+
+		// note, the returned lists only include entries where there is a grade or comment for the user
+		for (int i = 0; i < assignmentIds.size(); i += batchSize) {
+			final List<Long> batch = assignmentIds.subList(i, Math.min(assignmentIds.size(), i + batchSize));
+
+			final Map<Long, List<GradeDefinition>> defs = this.gradebookService.getGradesForStudentsForItems(gradebookUid,
+					batch, studentUuids);
+			stopwatch.timeWithContext("buildGradeMatrix", "getGradesForStudentsForItems: " + batch.size(), stopwatch.getTime());
+
+			for (final Map.Entry<Long, List<GradeDefinition>> entry : defs.entrySet()) {
+				for (final GradeDefinition def : entry.getValue()) {
+					final int row = matrix.indexOf(def.getStudentUid());
+
+					if (row < 0) {
+						log.warn("No matrix entry seeded for: " + def.getStudentUid()
+								+ ". This user may be been removed from the site");
+					} else {
+						// this will overwrite the stub entry for the TA matrix if
+						// need be
+						matrix.setGrade(entry.getKey(), row, def.getGrade(), def.getGradeComment());
+					}
+				}
+			}
+		}
 	}
 
 	/**
@@ -51,6 +51,18 @@ public class GbGradeInfo implements Serializable, Comparable<GbGradeInfo> {
 		}
 	}
 
+	/**
+	 * Constructor. Takes the grade and comment directly.
+	 *
+	 * @param grade the grade. May be null
+	 * @param gradeComment the comment. May be null
+	 */
+	public GbGradeInfo(final String grade, final String gradeComment) {
+		this.grade = grade;
+		this.gradeComment = gradeComment;
+		this.gradeable = false;
+	}
+
 	@Override
 	public String toString() {
 		return ToStringBuilder.reflectionToString(this);
@@ -0,0 +1,380 @@
+package org.sakaiproject.gradebookng.business.model;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.apache.commons.lang.math.NumberUtils;
+import org.sakaiproject.gradebookng.business.CourseGradeComparator;
+import org.sakaiproject.gradebookng.business.SortDirection;
+import org.sakaiproject.user.api.User;
+
+/**
+ * Columnar store for the grade matrix. Students are interned to a row index and each assignment is held as a set of parallel arrays
+ * rather than a map of {@link GbGradeInfo} per student. Sorting is done on the row order only, and {@link GbStudentGradeInfo} objects
+ * are only created for the rows that are actually requested, eg the current page of the table.
+ *
+ * The course grade and category averages of a row (its summary) are worked out separately, only for the rows that are displayed or
+ * when the matrix is sorted by them. {@link #isSummarised(int)} says whether that has been done for a row.
+ */
+public class GbGradeMatrix implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private final String[] studentUuids;
+	private final String[] studentEids;
+	private final String[] studentFirstNames;
+	private final String[] studentLastNames;
+	private final String[] studentDisplayNames;
+	private final GbCourseGrade[] courseGrades;
+
+	private final Map<String, Integer> studentIndex;
+	private final Map<Long, Column> columns = new LinkedHashMap<>();
+	private final Map<Long, double[]> categoryAverages = new LinkedHashMap<>();
+	private final Map<Long, Set<Long>> categoryAssignments = new TreeMap<>();
+	private final BitSet summarised;
+
+	/**
+	 * Current display order, as row indexes
+	 */
+	private int[] order;
+
+	/**
+	 * Grades for a single assignment. A row has an entry if the bit in {@link #present} is set, which is either a grade record or a
+	 * stub so that a TA can be given per grade permissions.
+	 */
+	private static class Column implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		private final double[] scores;
+		private final String[] grades;
+		private final String[] comments;
+		private final BitSet present;
+		private final BitSet gradeable;
+
+		private Column(final int size) {
+			this.scores = new double[size];
+			Arrays.fill(this.scores, Double.NaN);
+			this.grades = new String[size];
+			this.comments = new String[size];
+			this.present = new BitSet(size);
+			this.gradeable = new BitSet(size);
+		}
+	}
+
+	/**
+	 * Constructor. Seeds the rows from the list of students in the order supplied.
+	 *
+	 * @param students list of students, already sorted by name if required
+	 */
+	public GbGradeMatrix(final List<User> students) {
+		final int size = students.size();
+		this.studentUuids = new String[size];
+		this.studentEids = new String[size];
+		this.studentFirstNames = new String[size];
+		this.studentLastNames = new String[size];
+		this.studentDisplayNames = new String[size];
+		this.courseGrades = new GbCourseGrade[size];
+		this.studentIndex = new HashMap<>(size * 2);
+		this.order = new int[size];
+		this.summarised = new BitSet(size);
+
+		for (int i = 0; i < size; i++) {
+			final User u = students.get(i);
+			this.studentUuids[i] = u.getId();
+			this.studentEids[i] = u.getEid();
+			this.studentFirstNames[i] = u.getFirstName();
+			this.studentLastNames[i] = u.getLastName();
+			this.studentDisplayNames[i] = u.getDisplayName();
+			this.studentIndex.put(u.getId(), i);
+			this.order[i] = i;
+		}
+	}
+
+	/**
+	 * @return the number of students in the matrix
+	 */
+	public int size() {
+		return this.studentUuids.length;
+	}
+
+	/**
+	 * Get the row index for a student
+	 *
+	 * @param studentUuid
+	 * @return the row index or -1 if the student is not in the matrix
+	 */
+	public int indexOf(final String studentUuid) {
+		final Integer row = this.studentIndex.get(studentUuid);
+		return row != null ? row : -1;
+	}
+
+	public String getStudentUuid(final int row) {
+		return this.studentUuids[row];
+	}
+
+	public Set<Long> getAssignmentIds() {
+		return Collections.unmodifiableSet(this.columns.keySet());
+	}
+
+	public void setCourseGrade(final int row, final GbCourseGrade courseGrade) {
+		this.courseGrades[row] = courseGrade;
+	}
+
+	/**
+	 * Add a column for an assignment in a category. Has no effect on the column if it already exists.
+	 *
+	 * @param assignmentId
+	 * @param categoryId the category of the assignment. May be null.
+	 */
+	public void addAssignment(final Long assignmentId, final Long categoryId) {
+		addAssignment(assignmentId);
+		if (categoryId != null) {
+			Set<Long> values = this.categoryAssignments.get(categoryId);
+			if (values == null) {
+				values = new HashSet<>();
+				this.categoryAssignments.put(categoryId, values);
+			}
+			values.add(assignmentId);
+		}
+	}
+
+	/**
+	 * @param categoryId
+	 * @return the assignments in the matrix that are in the category, or null if there are none
+	 */
+	public Set<Long> getCategoryAssignmentIds(final Long categoryId) {
+		final Set<Long> values = this.categoryAssignments.get(categoryId);
+		return (values != null) ? Collections.unmodifiableSet(values) : null;
+	}
+
+	/**
+	 * Add a column for an assignment. Has no effect if the column already exists.
+	 *
+	 * @param assignmentId
+	 */
+	public void addAssignment(final Long assignmentId) {
+		if (!this.columns.containsKey(assignmentId)) {
+			this.columns.put(assignmentId, new Column(size()));
+		}
+	}
+
+	/**
+	 * Add an empty entry for every student for the given assignment. Used so TAs get an entry for every cell.
+	 *
+	 * @param assignmentId
+	 */
+	public void stubAssignment(final Long assignmentId) {
+		final Column column = column(assignmentId);
+		column.present.set(0, size());
+		// a stub compares as zero, the same as an entry with a blank grade
+		Arrays.fill(column.scores, 0);
+	}
+
+	/**
+	 * Set the grade and comment for a student
+	 *
+	 * @param assignmentId
+	 * @param row the student row index
+	 * @param grade the grade string as returned from the service. May be null.
+	 * @param comment the comment. May be null.
+	 */
+	public void setGrade(final Long assignmentId, final int row, final String grade, final String comment) {
+		final Column column = column(assignmentId);
+		column.grades[row] = grade;
+		column.comments[row] = comment;
+		// matches the numerical ordering used by the AssignmentGradeComparator
+		column.scores[row] = NumberUtils.toDouble(grade);
+		column.present.set(row);
+	}
+
+	/**
+	 * @return true if the student has a grade entry (real or stub) for the assignment
+	 */
+	public boolean hasEntry(final Long assignmentId, final int row) {
+		final Column column = this.columns.get(assignmentId);
+		return column != null && column.present.get(row);
+	}
+
+	public String getGrade(final Long assignmentId, final int row) {
+		final Column column = this.columns.get(assignmentId);
+		return column != null ? column.grades[row] : null;
+	}
+
+	public void setGradeable(final Long assignmentId, final int row, final boolean gradeable) {
+		column(assignmentId).gradeable.set(row, gradeable);
+	}
+
+	/**
+	 * Set the category average for a student
+	 *
+	 * @param categoryId
+	 * @param row the student row index
+	 * @param score the average. May be null.
+	 */
+	public void setCategoryAverage(final Long categoryId, final int row, final Double score) {
+		double[] averages = this.categoryAverages.get(categoryId);
+		if (averages == null) {
+			averages = new double[size()];
+			Arrays.fill(averages, Double.NaN);
+			this.categoryAverages.put(categoryId, averages);
+		}
+		averages[row] = (score != null) ? score : Double.NaN;
+	}
+
+	/**
+	 * @return true if the course grade and category averages for the row have been set
+	 */
+	public boolean isSummarised(final int row) {
+		return this.summarised.get(row);
+	}
+
+	/**
+	 * Mark the course grade and category averages for the row as set
+	 */
+	public void setSummarised(final int row) {
+		this.summarised.set(row);
+	}
+
+	/**
+	 * Get the row indexes for a range of positions in the current sort order that have not been summarised yet
+	 *
+	 * @param first position of the first row
+	 * @param count maximum number of rows
+	 * @return the row indexes, in display order
+	 */
+	public List<Integer> getUnsummarisedRows(final int first, final int count) {
+		final int end = Math.min(size(), first + count);
+		final List<Integer> rval = new ArrayList<>();
+		for (int i = Math.max(0, first); i < end; i++) {
+			if (!this.summarised.get(this.order[i])) {
+				rval.add(this.order[i]);
+			}
+		}
+		return rval;
+	}
+
+	/**
+	 * Sort the rows by the grade for an assignment. Students with no entry sort first.
+	 *
+	 * @param assignmentId
+	 * @param direction
+	 */
+	public void sortByAssignment(final long assignmentId, final SortDirection direction) {
+		final Column column = this.columns.get(assignmentId);
+		if (column == null) {
+			return;
+		}
+		final double[] scores = column.scores;
+		sort((r1, r2) -> compareNullsFirst(scores[r1], scores[r2]), direction);
+	}
+
+	/**
+	 * Sort the rows by a category average. Students with no average sort first.
+	 *
+	 * @param categoryId
+	 * @param direction
+	 */
+	public void sortByCategory(final long categoryId, final SortDirection direction) {
+		final double[] averages = this.categoryAverages.get(categoryId);
+		if (averages == null) {
+			return;
+		}
+		sort((r1, r2) -> compareNullsFirst(averages[r1], averages[r2]), direction);
+	}
+
+	/**
+	 * Sort the rows by course grade
+	 *
+	 * @param comparator the comparator configured for the gradebook's grading scale
+	 * @param direction
+	 */
+	public void sortByCourseGrade(final CourseGradeComparator comparator, final SortDirection direction) {
+		sort((r1, r2) -> comparator.compareCourseGrades(this.courseGrades[r1].getCourseGrade(), this.courseGrades[r2].getCourseGrade()),
+				direction);
+	}
+
+	/**
+	 * Get a student's row, in the current sort order, as a {@link GbStudentGradeInfo}
+	 *
+	 * @param position position in the sorted matrix
+	 * @return
+	 */
+	public GbStudentGradeInfo getRow(final int position) {
+		final int row = this.order[position];
+
+		final GbStudentGradeInfo sg = new GbStudentGradeInfo(this.studentUuids[row], this.studentEids[row],
+				this.studentFirstNames[row], this.studentLastNames[row], this.studentDisplayNames[row]);
+		sg.setCourseGrade(this.courseGrades[row]);
+
+		for (final Map.Entry<Long, Column> entry : this.columns.entrySet()) {
+			final Column column = entry.getValue();
+			if (column.present.get(row)) {
+				final GbGradeInfo gradeInfo = new GbGradeInfo(column.grades[row], column.comments[row]);
+				gradeInfo.setGradeable(column.gradeable.get(row));
+				sg.addGrade(entry.getKey(), gradeInfo);
+			}
+		}
+		for (final Map.Entry<Long, double[]> entry : this.categoryAverages.entrySet()) {
+			final double score = entry.getValue()[row];
+			sg.addCategoryAverage(entry.getKey(), Double.isNaN(score) ? null : score);
+		}
+		return sg;
+	}
+
+	/**
+	 * Get a range of rows, in the current sort order. Only these rows are materialised.
+	 *
+	 * @param first position of the first row
+	 * @param count maximum number of rows
+	 * @return
+	 */
+	public List<GbStudentGradeInfo> getRows(final int first, final int count) {
+		final int end = Math.min(size(), first + count);
+		final List<GbStudentGradeInfo> rval = new ArrayList<>(Math.max(0, end - first));
+		for (int i = first; i < end; i++) {
+			rval.add(getRow(i));
+		}
+		return rval;
+	}
+
+	private Column column(final Long assignmentId) {
+		addAssignment(assignmentId);
+		return this.columns.get(assignmentId);
+	}
+
+	/**
+	 * Stable sort of the current order so successive sorts behave like the previous chain of Collections.sort calls
+	 */
+	private void sort(final Comparator<Integer> comparator, final SortDirection direction) {
+		final Integer[] boxed = new Integer[this.order.length];
+		for (int i = 0; i < this.order.length; i++) {
+			boxed[i] = this.order[i];
+		}
+		Arrays.sort(boxed, (direction == SortDirection.DESCENDING) ? Collections.reverseOrder(comparator) : comparator);
+		for (int i = 0; i < boxed.length; i++) {
+			this.order[i] = boxed[i];
+		}
+	}
+
+	private static int compareNullsFirst(final double d1, final double d2) {
+		final boolean n1 = Double.isNaN(d1);
+		final boolean n2 = Double.isNaN(d2);
+		if (n1 || n2) {
+			return (n1 == n2) ? 0 : (n1 ? -1 : 1);
+		}
+		return Double.compare(d1, d2);
+	}
+
+}
@@ -0,0 +1,43 @@
+package org.sakaiproject.gradebookng.business.model;
+
+import java.io.Serializable;
+
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * A single grade (and comment) to be saved as part of a block of grades, eg from an import
+ */
+@ToString
+public class GbGradeUpdate implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	@Getter
+	private final long assignmentId;
+
+	@Getter
+	private final String studentUuid;
+
+	/**
+	 * The grade the user saw before editing, for the concurrency check. If null, the check is skipped.
+	 */
+	@Getter
+	private final String oldGrade;
+
+	@Getter
+	private final String newGrade;
+
+	@Getter
+	private final String comment;
+
+	public GbGradeUpdate(final long assignmentId, final String studentUuid, final String oldGrade, final String newGrade,
+			final String comment) {
+		this.assignmentId = assignmentId;
+		this.studentUuid = studentUuid;
+		this.oldGrade = oldGrade;
+		this.newGrade = newGrade;
+		this.comment = comment;
+	}
+
+}
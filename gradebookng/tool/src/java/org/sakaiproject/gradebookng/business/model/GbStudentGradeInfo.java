@@ -47,11 +47,16 @@ public class GbStudentGradeInfo implements Serializable {
 	}
 
 	public GbStudentGradeInfo(final User u) {
-		this.studentUuid = u.getId();
-		this.studentEid = u.getEid();
-		this.studentFirstName = u.getFirstName();
-		this.studentLastName = u.getLastName();
-		this.studentDisplayName = u.getDisplayName();
+		this(u.getId(), u.getEid(), u.getFirstName(), u.getLastName(), u.getDisplayName());
+	}
+
+	public GbStudentGradeInfo(final String studentUuid, final String studentEid, final String studentFirstName,
+			final String studentLastName, final String studentDisplayName) {
+		this.studentUuid = studentUuid;
+		this.studentEid = studentEid;
+		this.studentFirstName = studentFirstName;
+		this.studentLastName = studentLastName;
+		this.studentDisplayName = studentDisplayName;
 		this.grades = new HashMap<Long, GbGradeInfo>();
 		this.categoryAverages = new HashMap<Long, Double>();
 	}
@@ -0,0 +1,65 @@
+package org.sakaiproject.gradebookng.tool.model;
+
+import java.util.Iterator;
+
+import org.apache.wicket.markup.repeater.data.IDataProvider;
+import org.apache.wicket.model.IModel;
+import org.apache.wicket.model.Model;
+import org.sakaiproject.gradebookng.business.GradebookNgBusinessService;
+import org.sakaiproject.gradebookng.business.model.GbGradeMatrix;
+import org.sakaiproject.gradebookng.business.model.GbStudentGradeInfo;
+
+/**
+ * Data provider for the grades table, backed by the columnar {@link GbGradeMatrix}. Only the rows for the page being rendered are
+ * turned into {@link GbStudentGradeInfo} objects, and only those rows get their course grade and category averages worked out.
+ */
+public class GbGradeMatrixDataProvider implements IDataProvider<GbStudentGradeInfo> {
+
+	private static final long serialVersionUID = 1L;
+
+	private final GbGradeMatrix matrix;
+	private final GradebookNgBusinessService businessService;
+	private final GradebookUiSettings settings;
+
+	/**
+	 * A provider for a matrix that has already been summarised
+	 */
+	public GbGradeMatrixDataProvider(final GbGradeMatrix matrix) {
+		this(matrix, null, null);
+	}
+
+	/**
+	 * @param matrix the matrix
+	 * @param businessService used to summarise the rows as they are displayed, the injected proxy so it can be serialized with the page
+	 * @param settings the settings from the UI
+	 */
+	public GbGradeMatrixDataProvider(final GbGradeMatrix matrix, final GradebookNgBusinessService businessService,
+			final GradebookUiSettings settings) {
+		this.matrix = matrix;
+		this.businessService = businessService;
+		this.settings = settings;
+	}
+
+	@Override
+	public Iterator<? extends GbStudentGradeInfo> iterator(final long first, final long count) {
+		if (this.businessService != null) {
+			this.businessService.summariseGradeMatrixRows(this.matrix, (int) first, (int) count, this.settings);
+		}
+		return this.matrix.getRows((int) first, (int) count).iterator();
+	}
+
+	@Override
+	public long size() {
+		return this.matrix.size();
+	}
+
+	@Override
+	public IModel<GbStudentGradeInfo> model(final GbStudentGradeInfo object) {
+		return Model.of(object);
+	}
+
+	@Override
+	public void detach() {
+	}
+
+}
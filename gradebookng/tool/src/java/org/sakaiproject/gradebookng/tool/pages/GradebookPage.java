@@ -34,20 +34,22 @@ import org.apache.wicket.markup.html.form.DropDownChoice;
 import org.apache.wicket.markup.html.form.Form;
 import org.apache.wicket.markup.html.panel.EmptyPanel;
 import org.apache.wicket.markup.repeater.Item;
-import org.apache.wicket.markup.repeater.data.ListDataProvider;
 import org.apache.wicket.model.IModel;
 import org.apache.wicket.model.Model;
 import org.apache.wicket.model.StringResourceModel;
 import org.apache.wicket.util.string.StringValue;
 import org.sakaiproject.component.cover.ServerConfigurationService;
 import org.sakaiproject.gradebookng.business.GbRole;
+import org.sakaiproject.gradebookng.business.exception.GbException;
 import org.sakaiproject.gradebookng.business.model.GbGradeInfo;
+import org.sakaiproject.gradebookng.business.model.GbGradeMatrix;
 import org.sakaiproject.gradebookng.business.model.GbGroup;
 import org.sakaiproject.gradebookng.business.model.GbStudentGradeInfo;
 import org.sakaiproject.gradebookng.business.util.GbStopWatch;
 import org.sakaiproject.gradebookng.business.util.MessageHelper;
 import org.sakaiproject.gradebookng.tool.component.GbAjaxButton;
 import org.sakaiproject.gradebookng.tool.component.GbHeadersToolbar;
+import org.sakaiproject.gradebookng.tool.model.GbGradeMatrixDataProvider;
 import org.sakaiproject.gradebookng.tool.model.GbModalWindow;
 import org.sakaiproject.gradebookng.tool.model.GradebookUiSettings;
 import org.sakaiproject.gradebookng.tool.panels.AddOrEditGradeItemPanel;
@@ -209,9 +211,15 @@ public class GradebookPage extends BasePage {
 		stopwatch.time("getGradebookAssignments", stopwatch.getTime());
 
 		// get the grade matrix. It should be sorted if we have that info
-		final List<GbStudentGradeInfo> grades = this.businessService.buildGradeMatrix(assignments, settings);
+		// rows are only materialised for the page of the table being rendered
+		final GbGradeMatrix grades = this.businessService.buildColumnarGradeMatrix(assignments, settings);
 
-		this.hasAssignmentsAndGrades = !assignments.isEmpty() && !grades.isEmpty();
+		// both are null if the site has no gradebook, eg it was removed since the tool was placed
+		if (gradebook == null || grades == null) {
+			throw new GbException("No gradebook in site " + this.businessService.getCurrentSiteId());
+		}
+
+		this.hasAssignmentsAndGrades = !assignments.isEmpty() && grades.size() > 0;
 
 		// mark the current timestamp so we can use this date to check for any changes since now
 		final Date gradesTimestamp = new Date();
@@ -224,8 +232,7 @@ public class GradebookPage extends BasePage {
 		// grading type?
 		final GradingType gradingType = GradingType.valueOf(gradebook.getGrade_type());
 
-		// this could potentially be a sortable data provider
-		final ListDataProvider<GbStudentGradeInfo> studentGradeMatrix = new ListDataProvider<GbStudentGradeInfo>(grades);
+		final GbGradeMatrixDataProvider studentGradeMatrix = new GbGradeMatrixDataProvider(grades, this.businessService, settings);
 		final List<IColumn> cols = new ArrayList<IColumn>();
 
 		// add an empty column that we can use as a handle for selecting the row
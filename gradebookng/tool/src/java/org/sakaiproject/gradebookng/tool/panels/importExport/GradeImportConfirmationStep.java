@@ -19,6 +19,7 @@ import org.apache.wicket.model.IModel;
 import org.apache.wicket.model.Model;
 import org.apache.wicket.model.ResourceModel;
 import org.sakaiproject.gradebookng.business.GradeSaveResponse;
+import org.sakaiproject.gradebookng.business.model.GbGradeUpdate;
 import org.sakaiproject.gradebookng.business.model.ProcessedGradeItem;
 import org.sakaiproject.gradebookng.business.model.ProcessedGradeItem.Type;
 import org.sakaiproject.gradebookng.business.model.ProcessedGradeItemDetail;
@@ -129,6 +130,10 @@ public class GradeImportConfirmationStep extends BasePanel {
 					itemsToSave.addAll(itemsToCreate);
 					itemsToSave.addAll(itemsToModify);
 
+					// grades are collected up and saved as one block
+					final List<GbGradeUpdate> gradeUpdates = new ArrayList<>();
+					final Map<Long, Map<String, ProcessedGradeItemDetail>> gradeDetails = new HashMap<>();
+
 					itemsToSave.forEach(processedGradeItem -> {
 						log.debug("Processing item: " + processedGradeItem);
 
@@ -154,39 +159,51 @@ public class GradeImportConfirmationStep extends BasePanel {
 								saveComment(assignmentId, processedGradeItemDetail);
 							}
 
-							// save grade (including comments)
+							// queue grade (including comments)
 							if(processedGradeItem.getType() == ProcessedGradeItem.Type.GB_ITEM) {
-
-								final GradeSaveResponse response = saveGrade(assignmentId, processedGradeItemDetail);
-
-								// handle the response types
-								switch(response) {
-									case OK:
-										// sweet
-										break;
-									case OVER_LIMIT:
-										// no worries!
-										break;
-									case NO_CHANGE:
-										// Try to save just the comments
-										saveComment(assignmentId, processedGradeItemDetail);
-										break;
-									case CONCURRENT_EDIT:
-										// this will be handled eventually
-										break;
-									case ERROR:
-										// uh oh
-										getSession().error(new ResourceModel("importExport.error.grade").getObject());
-										GradeImportConfirmationStep.this.errors = true;
-										break;
-									default:
-										break;
-								}
-								log.info("Saved grade for assignment id: " +  assignmentId + ", student: " + processedGradeItemDetail.getStudentEid() + ", grade: " + processedGradeItemDetail.getGrade() + ", comment: " + processedGradeItemDetail.getComment() + ", status: " + response);
+								gradeUpdates.add(new GbGradeUpdate(assignmentId, processedGradeItemDetail.getStudentUuid(), null,
+										processedGradeItemDetail.getGrade(), processedGradeItemDetail.getComment()));
+								gradeDetails.computeIfAbsent(assignmentId, k -> new HashMap<>())
+										.put(processedGradeItemDetail.getStudentUuid(), processedGradeItemDetail);
 							}
 
 						});
 					});
+
+					// save grades (including comments)
+					final Map<Long, Map<String, GradeSaveResponse>> responses = GradeImportConfirmationStep.this.businessService
+							.saveGrades(gradeUpdates);
+
+					responses.forEach((assignmentId, studentResponses) -> {
+						studentResponses.forEach((studentUuid, response) -> {
+							final ProcessedGradeItemDetail processedGradeItemDetail = gradeDetails.get(assignmentId).get(studentUuid);
+
+							// handle the response types
+							switch(response) {
+								case OK:
+									// sweet
+									break;
+								case OVER_LIMIT:
+									// no worries!
+									break;
+								case NO_CHANGE:
+									// Try to save just the comments
+									saveComment(assignmentId, processedGradeItemDetail);
+									break;
+								case CONCURRENT_EDIT:
+									// this will be handled eventually
+									break;
+								case ERROR:
+									// uh oh
+									getSession().error(new ResourceModel("importExport.error.grade").getObject());
+									GradeImportConfirmationStep.this.errors = true;
+									break;
+								default:
+									break;
+							}
+							log.info("Saved grade for assignment id: " +  assignmentId + ", student: " + processedGradeItemDetail.getStudentEid() + ", grade: " + processedGradeItemDetail.getGrade() + ", comment: " + processedGradeItemDetail.getComment() + ", status: " + response);
+						});
+					});
 				}
 
 				if (!GradeImportConfirmationStep.this.errors) {
@@ -342,10 +359,4 @@ public class GradeImportConfirmationStep extends BasePanel {
 			}
 		}
 	}
-
-	private GradeSaveResponse saveGrade(final Long assignmentId, final ProcessedGradeItemDetail processedGradeItemDetail) {
-		return GradeImportConfirmationStep.this.businessService.saveGrade(assignmentId,
-			processedGradeItemDetail.getStudentUuid(),
-			processedGradeItemDetail.getGrade(), processedGradeItemDetail.getComment());
-	}
 }
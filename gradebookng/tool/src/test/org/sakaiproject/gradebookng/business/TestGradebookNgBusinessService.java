@@ -1,23 +1,376 @@
 package org.sakaiproject.gradebookng.business;
 
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
+import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.sakaiproject.component.api.ServerConfigurationService;
+import org.sakaiproject.gradebookng.business.model.GbGradeMatrix;
+import org.sakaiproject.gradebookng.business.model.GbGradeUpdate;
+import org.sakaiproject.gradebookng.business.util.GbStopWatch;
+import org.sakaiproject.service.gradebook.shared.Assignment;
+import org.sakaiproject.service.gradebook.shared.CategoryDefinition;
+import org.sakaiproject.service.gradebook.shared.CourseGrade;
+import org.sakaiproject.service.gradebook.shared.GradeDefinition;
+import org.sakaiproject.service.gradebook.shared.GradebookService;
+import org.sakaiproject.service.gradebook.shared.GradingType;
+import org.sakaiproject.tool.gradebook.Gradebook;
+import org.sakaiproject.user.api.User;
 
 public class TestGradebookNgBusinessService {
 
+	private static final String GRADEBOOK_UID = "gradebook1";
+	private static final Long ASSIGNMENT_ID = 1L;
+
+	@Mock
+	GradebookService gradebookService;
+
+	@Mock
+	ServerConfigurationService serverConfigurationService;
+
 	@InjectMocks
 	GradebookNgBusinessService service;
-	
+
 	@Before
 	public void initMocks() {
 		MockitoAnnotations.initMocks(this);
 	}
-	
+
 	@Test
 	public void injectionOk() {
 		Assert.assertNotNull(service);
 	}
+
+	/**
+	 * Set up a gradebook of the given type with a single 30 point item and the given stored grades, alternating student uuid and grade
+	 */
+	private GradebookNgBusinessService gradebook(final GradingType gradingType, final String... storedGrades) {
+		final Gradebook gradebook = new Gradebook();
+		gradebook.setUid(GRADEBOOK_UID);
+		gradebook.setGrade_type(gradingType.getValue());
+
+		final Assignment assignment = new Assignment();
+		assignment.setId(ASSIGNMENT_ID);
+		assignment.setPoints(30.0);
+
+		final GradebookNgBusinessService spied = spy(this.service);
+		doReturn(gradebook).when(spied).getGradebook();
+		doReturn(Collections.singletonList(assignment)).when(spied).getGradebookAssignments();
+		doReturn(assignment).when(spied).getAssignment(ASSIGNMENT_ID);
+
+		final List<GradeDefinition> defs = new ArrayList<>();
+		for (int i = 0; i < storedGrades.length; i += 2) {
+			final GradeDefinition def = new GradeDefinition();
+			def.setStudentUid(storedGrades[i]);
+			def.setGrade(storedGrades[i + 1]);
+			defs.add(def);
+		}
+		when(this.gradebookService.getGradesForStudentsForItems(eq(GRADEBOOK_UID), anyList(), anyList()))
+				.thenReturn(Collections.singletonMap(ASSIGNMENT_ID, defs));
+		return spied;
+	}
+
+	private static GbGradeUpdate update(final String studentUuid, final String oldGrade, final String newGrade) {
+		return new GbGradeUpdate(ASSIGNMENT_ID, studentUuid, oldGrade, newGrade, null);
+	}
+
+	@SuppressWarnings("unchecked")
+	private List<GradeDefinition> saved() {
+		final ArgumentCaptor<Map<Long, List<GradeDefinition>>> captor = ArgumentCaptor.forClass(Map.class);
+		verify(this.gradebookService).saveGradesAndComments(eq(GRADEBOOK_UID), captor.capture());
+		return captor.getValue().get(ASSIGNMENT_ID);
+	}
+
+	@Test
+	public void saveGradesPoints() {
+		final GradebookNgBusinessService gb = gradebook(GradingType.POINTS, "s1", "25.0", "s2", "25.0", "s3", "25.5");
+
+		final Map<String, GradeSaveResponse> responses = gb.saveGrades(Arrays.asList(
+				update("s1", "25", "25"),
+				update("s2", "25", "27.5"),
+				update("s3", "25.5", "31"))).get(ASSIGNMENT_ID);
+
+		Assert.assertEquals(GradeSaveResponse.NO_CHANGE, responses.get("s1"));
+		Assert.assertEquals(GradeSaveResponse.OK, responses.get("s2"));
+		Assert.assertEquals(GradeSaveResponse.OVER_LIMIT, responses.get("s3"));
+		Assert.assertEquals(2, saved().size());
+	}
+
+	@Test
+	public void saveGradesPercentage() {
+		// the stored percentages are worked out from the points so aren't in the format they were entered in
+		final GradebookNgBusinessService gb = gradebook(GradingType.PERCENTAGE,
+				"s1", "85.00000000000001", "s2", "33.333333330000005", "s3", "85.0", "s4", "85.0");
+
+		final Map<String, GradeSaveResponse> responses = gb.saveGrades(Arrays.asList(
+				update("s1", "85", "85.00"),
+				update("s2", "33.33333333", "33.33333333"),
+				update("s3", "85", "90"),
+				update("s4", "85", "110"))).get(ASSIGNMENT_ID);
+
+		Assert.assertEquals(GradeSaveResponse.NO_CHANGE, responses.get("s1"));
+		Assert.assertEquals(GradeSaveResponse.NO_CHANGE, responses.get("s2"));
+		Assert.assertEquals(GradeSaveResponse.OK, responses.get("s3"));
+		Assert.assertEquals(GradeSaveResponse.OVER_LIMIT, responses.get("s4"));
+
+		// the raw percentages are passed through as the service converts them
+		final List<GradeDefinition> saved = saved();
+		Assert.assertEquals(2, saved.size());
+		Assert.assertEquals("90", saved.get(0).getGrade());
+		Assert.assertEquals("110", saved.get(1).getGrade());
+	}
+
+	@Test
+	public void saveGradesPercentageConcurrentEdit() {
+		final GradebookNgBusinessService gb = gradebook(GradingType.PERCENTAGE, "s1", "85.00000000000001", "s2", "70.0");
+
+		final Map<String, GradeSaveResponse> responses = gb.saveGrades(Arrays.asList(
+				update("s1", "85", "90"),
+				update("s2", "85", "90"))).get(ASSIGNMENT_ID);
+
+		Assert.assertEquals(GradeSaveResponse.OK, responses.get("s1"));
+		Assert.assertEquals(GradeSaveResponse.CONCURRENT_EDIT, responses.get("s2"));
+		Assert.assertEquals(1, saved().size());
+	}
+
+	@Test
+	public void saveGradesLetter() {
+		final GradebookNgBusinessService gb = gradebook(GradingType.LETTER, "s1", "A", "s2", "A");
+
+		final Map<String, GradeSaveResponse> responses = gb.saveGrades(Arrays.asList(
+				update("s1", "A", "A"),
+				update("s2", "A", "B+"))).get(ASSIGNMENT_ID);
+
+		Assert.assertEquals(GradeSaveResponse.NO_CHANGE, responses.get("s1"));
+		Assert.assertEquals(GradeSaveResponse.OK, responses.get("s2"));
+		final List<GradeDefinition> saved = saved();
+		Assert.assertEquals(1, saved.size());
+		Assert.assertEquals("B+", saved.get(0).getGrade());
+	}
+
+	@Test
+	public void saveGradesNoChangeNotSaved() {
+		final GradebookNgBusinessService gb = gradebook(GradingType.PERCENTAGE, "s1", "85.0");
+
+		final Map<String, GradeSaveResponse> responses = gb.saveGrades(Arrays.asList(update("s1", "85", "85"))).get(ASSIGNMENT_ID);
+
+		Assert.assertEquals(GradeSaveResponse.NO_CHANGE, responses.get("s1"));
+		verify(this.gradebookService, never()).saveGradesAndComments(anyString(), anyMap());
+	}
+
+	@Test
+	public void saveGradeMatchesSaveGrades() {
+		// a single grade goes through the same checks, but the stored grade comes back in points
+		final GradebookNgBusinessService gb = gradebook(GradingType.PERCENTAGE);
+		when(this.gradebookService.getAssignmentScoreString(GRADEBOOK_UID, ASSIGNMENT_ID, "s1")).thenReturn("25.5");
+		when(this.gradebookService.getAssignmentScoreString(GRADEBOOK_UID, ASSIGNMENT_ID, "s2")).thenReturn("21");
+		when(this.gradebookService.getAssignmentScoreString(GRADEBOOK_UID, ASSIGNMENT_ID, "s3")).thenReturn("35");
+
+		Assert.assertEquals(GradeSaveResponse.NO_CHANGE, gb.saveGrade(ASSIGNMENT_ID, "s1", "85", "85.00", null));
+		Assert.assertEquals(GradeSaveResponse.CONCURRENT_EDIT, gb.saveGrade(ASSIGNMENT_ID, "s2", "85", "90", null));
+		Assert.assertEquals(GradeSaveResponse.OVER_LIMIT, gb.saveGrade(ASSIGNMENT_ID, "s3", null, "116.66666667", null));
+		verify(this.gradebookService, never()).saveGradeAndCommentForStudent(anyString(), anyLong(), anyString(), anyString(), any());
+
+		Assert.assertEquals(GradeSaveResponse.OK, gb.saveGrade(ASSIGNMENT_ID, "s1", "85", "90", null));
+		Assert.assertEquals(GradeSaveResponse.OVER_LIMIT, gb.saveGrade(ASSIGNMENT_ID, "s2", "70", "110", null));
+		verify(this.gradebookService).saveGradeAndCommentForStudent(GRADEBOOK_UID, ASSIGNMENT_ID, "s1", "90", null);
+		verify(this.gradebookService).saveGradeAndCommentForStudent(GRADEBOOK_UID, ASSIGNMENT_ID, "s2", "110", null);
+	}
+
+	/**
+	 * A matrix of the given students with a column for each of the given items. The service returns a grade of item id * 10 for each
+	 * student, and one for a student who isn't in the matrix
+	 */
+	private GbGradeMatrix matrix(final List<String> studentUuids, final List<Long> assignmentIds) {
+		final List<User> students = new ArrayList<>();
+		for (final String studentUuid : studentUuids) {
+			final User student = mock(User.class);
+			when(student.getId()).thenReturn(studentUuid);
+			students.add(student);
+		}
+		final GbGradeMatrix matrix = new GbGradeMatrix(students);
+		for (final Long assignmentId : assignmentIds) {
+			matrix.addAssignment(assignmentId);
+		}
+
+		when(this.gradebookService.getGradesForStudentsForItems(eq(GRADEBOOK_UID), anyList(), anyList())).thenAnswer(invocation -> {
+			final List<Long> batch = invocation.getArgument(1);
+			final Map<Long, List<GradeDefinition>> rval = new HashMap<>();
+			for (final Long assignmentId : batch) {
+				final List<GradeDefinition> defs = new ArrayList<>();
+				for (final String studentUuid : Arrays.asList("s1", "s2", "s3", "removed")) {
+					final GradeDefinition def = new GradeDefinition();
+					def.setStudentUid(studentUuid);
+					def.setGrade(String.valueOf(assignmentId * 10));
+					defs.add(def);
+				}
+				rval.put(assignmentId, defs);
+			}
+			return rval;
+		});
+		return matrix;
+	}
+
+	@SuppressWarnings("unchecked")
+	private List<List<Long>> batches(final int calls) {
+		final ArgumentCaptor<List<Long>> captor = ArgumentCaptor.forClass(List.class);
+		verify(this.gradebookService, times(calls)).getGradesForStudentsForItems(eq(GRADEBOOK_UID), captor.capture(), anyList());
+		return captor.getAllValues();
+	}
+
+	@Test
+	public void addGradesToMatrixInBatches() {
+		when(this.serverConfigurationService.getInt(eq("gradebookng.gradeMatrix.itemBatchSize"), anyInt())).thenReturn(2);
+		final List<String> studentUuids = Arrays.asList("s1", "s2", "s3");
+		final List<Long> assignmentIds = Arrays.asList(1L, 2L, 3L, 4L, 5L);
+		final GbGradeMatrix matrix = matrix(studentUuids, assignmentIds);
+
+		this.service.addGradesToMatrix(matrix, GRADEBOOK_UID, assignmentIds, studentUuids, new GbStopWatch());
+
+		// 5 items in batches of 2, the last batch has the remainder
+		final List<List<Long>> batches = batches(3);
+		Assert.assertEquals(Arrays.asList(1L, 2L), batches.get(0));
+		Assert.assertEquals(Arrays.asList(3L, 4L), batches.get(1));
+		Assert.assertEquals(Collections.singletonList(5L), batches.get(2));
+
+		for (final Long assignmentId : assignmentIds) {
+			for (int row = 0; row < matrix.size(); row++) {
+				Assert.assertTrue(matrix.hasEntry(assignmentId, row));
+				Assert.assertEquals(String.valueOf(assignmentId * 10), matrix.getGrade(assignmentId, row));
+			}
+		}
+		Assert.assertEquals(-1, matrix.indexOf("removed"));
+	}
+
+	@Test
+	public void addGradesToMatrixSingleBatch() {
+		when(this.serverConfigurationService.getInt(eq("gradebookng.gradeMatrix.itemBatchSize"), anyInt())).thenReturn(50);
+		final List<String> studentUuids = Arrays.asList("s1", "s2");
+		final List<Long> assignmentIds = Arrays.asList(1L, 2L, 3L);
+		final GbGradeMatrix matrix = matrix(studentUuids, assignmentIds);
+
+		this.service.addGradesToMatrix(matrix, GRADEBOOK_UID, assignmentIds, studentUuids, new GbStopWatch());
+
+		Assert.assertEquals(assignmentIds, batches(1).get(0));
+		Assert.assertEquals("30", matrix.getGrade(3L, matrix.indexOf("s2")));
+	}
+
+	@Test
+	public void addGradesToMatrixInvalidBatchSize() {
+		when(this.serverConfigurationService.getInt(eq("gradebookng.gradeMatrix.itemBatchSize"), anyInt())).thenReturn(0);
+		final List<String> studentUuids = Arrays.asList("s1");
+		final List<Long> assignmentIds = Arrays.asList(1L, 2L, 3L);
+		final GbGradeMatrix matrix = matrix(studentUuids, assignmentIds);
+
+		this.service.addGradesToMatrix(matrix, GRADEBOOK_UID, assignmentIds, studentUuids, new GbStopWatch());
+
+		// falls back to the default rather than looping forever
+		Assert.assertEquals(assignmentIds, batches(1).get(0));
+	}
+
+	@Test
+	public void addGradesToMatrixNoItems() {
+		when(this.serverConfigurationService.getInt(eq("gradebookng.gradeMatrix.itemBatchSize"), anyInt())).thenReturn(2);
+		final GbGradeMatrix matrix = matrix(Arrays.asList("s1"), Collections.<Long> emptyList());
+
+		this.service.addGradesToMatrix(matrix, GRADEBOOK_UID, Collections.<Long> emptyList(), Arrays.asList("s1"), new GbStopWatch());
+
+		batches(0);
+	}
+
+	/**
+	 * A service for an instructor in a gradebook with one category holding item 1, where every course grade is an A
+	 */
+	private GradebookNgBusinessService summaryGradebook() throws Exception {
+		final Gradebook gradebook = new Gradebook();
+		gradebook.setUid(GRADEBOOK_UID);
+
+		final CategoryDefinition category = new CategoryDefinition();
+		category.setId(10L);
+		category.setAssignmentList(Collections.<Assignment> emptyList());
+
+		final User instructor = mock(User.class);
+		when(instructor.getId()).thenReturn("instructor");
+
+		final GradebookNgBusinessService spied = spy(this.service);
+		doReturn(gradebook).when(spied).getGradebook();
+		doReturn(GbRole.INSTRUCTOR).when(spied).getUserRole();
+		doReturn(instructor).when(spied).getCurrentUser();
+		doReturn(true).when(spied).isCourseGradeVisible(anyString());
+		doReturn(Collections.singletonList(category)).when(spied).getGradebookCategories();
+
+		when(this.gradebookService.getCourseGradeForStudents(eq(GRADEBOOK_UID), anyList())).thenAnswer(invocation -> {
+			final List<String> studentUuids = invocation.getArgument(1);
+			final Map<String, CourseGrade> rval = new HashMap<>();
+			for (final String studentUuid : studentUuids) {
+				final CourseGrade courseGrade = new CourseGrade();
+				courseGrade.setMappedGrade("A");
+				rval.put(studentUuid, courseGrade);
+			}
+			return rval;
+		});
+		when(this.gradebookService.calculateCategoryScore(any(), anyString(), any(CategoryDefinition.class), anyList(), anyMap()))
+				.thenReturn(90.0);
+		return spied;
+	}
+
+	@Test
+	public void summariseOnlyRequestedRows() throws Exception {
+		final GradebookNgBusinessService gb = summaryGradebook();
+		final GbGradeMatrix students = matrix(Arrays.asList("s1", "s2", "s3", "s4", "s5"), Collections.<Long> emptyList());
+		students.addAssignment(ASSIGNMENT_ID, 10L);
+
+		// the second page of two
+		gb.summariseGradeMatrixRows(students, 2, 2, null);
+
+		verify(this.gradebookService).getCourseGradeForStudents(GRADEBOOK_UID, Arrays.asList("s3", "s4"));
+		verify(this.gradebookService, times(2)).calculateCategoryScore(any(), anyString(), any(CategoryDefinition.class), anyList(),
+				anyMap());
+		for (int row = 0; row < students.size(); row++) {
+			Assert.assertEquals(row == 2 || row == 3, students.isSummarised(row));
+		}
+		Assert.assertEquals("A", students.getRows(2, 1).get(0).getCourseGrade().getDisplayString());
+		Assert.assertEquals(Double.valueOf(90.0), students.getRows(3, 1).get(0).getCategoryAverages().get(10L));
+
+		// rows already done aren't worked out again
+		gb.summariseGradeMatrixRows(students, 1, 3, null);
+		verify(this.gradebookService).getCourseGradeForStudents(GRADEBOOK_UID, Arrays.asList("s2"));
+		verify(this.gradebookService, times(3)).calculateCategoryScore(any(), anyString(), any(CategoryDefinition.class), anyList(),
+				anyMap());
+	}
+
+	@Test
+	public void summariseRowsPastTheEnd() throws Exception {
+		final GradebookNgBusinessService gb = summaryGradebook();
+		final GbGradeMatrix students = matrix(Arrays.asList("s1", "s2"), Collections.<Long> emptyList());
+
+		gb.summariseGradeMatrixRows(students, 2, 2, null);
+
+		verify(this.gradebookService, never()).getCourseGradeForStudents(anyString(), anyList());
+	}
 }
@@ -0,0 +1,98 @@
+package org.sakaiproject.gradebookng.tool.model;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.sakaiproject.gradebookng.business.GradebookNgBusinessService;
+import org.sakaiproject.gradebookng.business.SortDirection;
+import org.sakaiproject.gradebookng.business.model.GbGradeMatrix;
+import org.sakaiproject.gradebookng.business.model.GbStudentGradeInfo;
+import org.sakaiproject.user.api.User;
+
+public class TestGbGradeMatrixDataProvider {
+
+	private static final Long ASSIGNMENT_ID = 1L;
+
+	GbGradeMatrix matrix;
+
+	GbGradeMatrixDataProvider provider;
+
+	@Before
+	public void setUp() {
+		// five students, each with a grade that puts them in the reverse order
+		final List<User> students = new ArrayList<>();
+		for (int i = 1; i <= 5; i++) {
+			final User student = mock(User.class);
+			when(student.getId()).thenReturn("s" + i);
+			students.add(student);
+		}
+		this.matrix = new GbGradeMatrix(students);
+		this.matrix.addAssignment(ASSIGNMENT_ID);
+		for (int row = 0; row < this.matrix.size(); row++) {
+			this.matrix.setGrade(ASSIGNMENT_ID, row, String.valueOf(50 - row * 10), null);
+		}
+		this.provider = new GbGradeMatrixDataProvider(this.matrix);
+	}
+
+	private List<String> page(final long first, final long count) {
+		final List<String> rval = new ArrayList<>();
+		final Iterator<? extends GbStudentGradeInfo> iter = this.provider.iterator(first, count);
+		while (iter.hasNext()) {
+			rval.add(iter.next().getStudentUuid());
+		}
+		return rval;
+	}
+
+	@Test
+	public void size() {
+		Assert.assertEquals(5, this.provider.size());
+	}
+
+	@Test
+	public void pages() {
+		Assert.assertEquals(Arrays.asList("s1", "s2"), page(0, 2));
+		Assert.assertEquals(Arrays.asList("s3", "s4"), page(2, 2));
+		// the last page isn't full
+		Assert.assertEquals(Arrays.asList("s5"), page(4, 2));
+		Assert.assertTrue(page(5, 2).isEmpty());
+	}
+
+	@Test
+	public void pagesFollowSortOrder() {
+		this.matrix.sortByAssignment(ASSIGNMENT_ID, SortDirection.ASCENDING);
+		Assert.assertEquals(Arrays.asList("s5", "s4"), page(0, 2));
+		Assert.assertEquals(Arrays.asList("s1"), page(4, 2));
+	}
+
+	@Test
+	public void rowHasGrade() {
+		final GbStudentGradeInfo row = this.provider.iterator(1, 1).next();
+		Assert.assertEquals("s2", row.getStudentUuid());
+		Assert.assertEquals("40", row.getGrades().get(ASSIGNMENT_ID).getGrade());
+	}
+
+	@Test
+	public void onlyPageIsSummarised() {
+		final GradebookNgBusinessService businessService = mock(GradebookNgBusinessService.class);
+		final GradebookUiSettings settings = new GradebookUiSettings();
+		this.provider = new GbGradeMatrixDataProvider(this.matrix, businessService, settings);
+
+		this.provider.size();
+		verify(businessService, never()).summariseGradeMatrixRows(any(), anyInt(), anyInt(), any());
+
+		Assert.assertEquals(Arrays.asList("s3", "s4"), page(2, 2));
+		verify(businessService).summariseGradeMatrixRows(this.matrix, 2, 2, settings);
+	}
+}
@@ -21,6 +21,8 @@
 
 package org.sakaiproject.util.api;
 
+import java.util.List;
+
 import org.w3c.dom.Element;
 import java.text.NumberFormat;
 
@@ -157,6 +159,20 @@ public interface FormattedText {
     public String processFormattedText(final String strFromBrowser, StringBuilder errorMessages, Level level, boolean checkForEvilTags,
             boolean replaceWhitespaceTags, boolean useLegacySakaiCleaner);
 
+    /**
+     * Processes a batch of HTML formatted text in the same way as {@link #processFormattedText(String, StringBuilder, Level)}.
+     * The scans run in parallel so this is the one to use for bulk work like site imports.
+     * 
+     * @param strsFromBrowser
+     *        The formatted texts to process
+     * @param errorMessages
+     *        User-readable error messages for all the texts will be returned here.
+     * @param level
+     *        The security level used for the scan, null or DEFAULT will use whatever security level the system is configured for
+     * @return The processed texts, in the same order as they were given
+     */
+    public List<String> processFormattedText(final List<String> strsFromBrowser, StringBuilder errorMessages, Level level);
+
     /**
      * Prepares the given HTML formatted text for output as part of an HTML document.
      * 
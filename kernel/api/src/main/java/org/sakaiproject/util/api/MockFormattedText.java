@@ -21,6 +21,8 @@
 
 package org.sakaiproject.util.api;
 
+import java.util.List;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.w3c.dom.Element;
@@ -73,6 +75,11 @@ public class MockFormattedText implements FormattedText {
         return strFromBrowser;
     }
 
+    public List<String> processFormattedText(List<String> strsFromBrowser, StringBuilder errorMessages, Level level) {
+        log.warn(WARNING);
+        return strsFromBrowser;
+    }
+
     public String escapeHtmlFormattedText(String value) {
         log.warn(WARNING);
         return value;
@@ -0,0 +1,116 @@
+/******************************************************************************
+ * $URL$
+ * $Id$
+ ******************************************************************************
+ *
+ * Copyright (c) 2003-2018 The Apereo Foundation
+ *
+ * Licensed under the Educational Community License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *       http://opensource.org/licenses/ecl2
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *****************************************************************************/
+
+package org.sakaiproject.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import net.sf.ehcache.CacheManager;
+import net.sf.ehcache.config.CacheConfiguration;
+import net.sf.ehcache.config.Configuration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sakaiproject.memory.api.Cache;
+import org.sakaiproject.memory.impl.BasicMapCache;
+import org.sakaiproject.memory.impl.EhcacheCache;
+
+/**
+ * Get and put on the two local cache implementations, with in-memory caches holding {@link #KEYS} entries. Run with
+ * -t to see them under contention.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@State(Scope.Benchmark)
+public class CacheBenchmark {
+
+	private static final int KEYS = 1 << 14;
+
+	@Param({"map", "ehcache"})
+	private String implementation;
+
+	private CacheManager cacheManager;
+	private Cache<String, Object> cache;
+	private final String[] keys = new String[KEYS];
+	private final String[] missingKeys = new String[KEYS];
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		if ("ehcache".equals(implementation)) {
+			cacheManager = CacheManager.newInstance(new Configuration().name("kernel-benchmark"));
+			cacheManager.addCache(new net.sf.ehcache.Cache(new CacheConfiguration("benchmark", KEYS * 2).eternal(true)));
+			cache = new EhcacheCache<String, Object>(cacheManager.getEhcache("benchmark"));
+		} else {
+			cache = new BasicMapCache<String, Object>("benchmark");
+		}
+		for (int i = 0; i < KEYS; i++) {
+			keys[i] = "unlock@user" + i + "@site.visit@/site/site" + (i % 100);
+			missingKeys[i] = "unlock@other" + i + "@site.visit@/site/site" + (i % 100);
+			cache.put(keys[i], Boolean.TRUE);
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		cache.close();
+		if (cacheManager != null) {
+			cacheManager.shutdown();
+		}
+	}
+
+	/**
+	 * Each thread walks through the keys from its own position
+	 */
+	@State(Scope.Thread)
+	public static class Cursor {
+		private int next = (int) (Math.random() * KEYS);
+
+		int next() {
+			return next++ & (KEYS - 1);
+		}
+	}
+
+	@Benchmark
+	public Object getHit(Cursor cursor) {
+		return cache.get(keys[cursor.next()]);
+	}
+
+	@Benchmark
+	public Object getMiss(Cursor cursor) {
+		return cache.get(missingKeys[cursor.next()]);
+	}
+
+	@Benchmark
+	public void put(Cursor cursor) {
+		cache.put(keys[cursor.next()], Boolean.FALSE);
+	}
+}
@@ -0,0 +1,105 @@
+/******************************************************************************
+ * $URL$
+ * $Id$
+ ******************************************************************************
+ *
+ * Copyright (c) 2003-2018 The Apereo Foundation
+ *
+ * Licensed under the Educational Community License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *       http://opensource.org/licenses/ecl2
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *****************************************************************************/
+
+package org.sakaiproject.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sakaiproject.content.api.ContentHostingService;
+import org.sakaiproject.content.api.ContentResourceEdit;
+import org.sakaiproject.content.impl.serialize.impl.Type1BaseContentResourceSerializer;
+import org.sakaiproject.entity.api.ResourceProperties;
+import org.sakaiproject.entity.api.ResourcePropertiesEdit;
+import org.sakaiproject.entity.api.serialize.EntityParseException;
+import org.sakaiproject.entity.api.serialize.SerializableEntity;
+import org.sakaiproject.exception.IdUsedException;
+import org.sakaiproject.time.api.TimeService;
+
+/**
+ * The Type1 binary format content resources are stored in, serializing a resource and parsing it back.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@State(Scope.Benchmark)
+public class ContentSerializerBenchmark {
+
+	private static final String RESOURCE_ID = "/benchmark-serializer.txt";
+
+	private ContentHostingService contentHostingService;
+	private Type1BaseContentResourceSerializer serializer;
+	private SerializableEntity resource;
+	private ContentResourceEdit target;
+	private byte[] serialized;
+
+	@Setup(Level.Trial)
+	public void setUp(KernelState kernel) throws Exception {
+		kernel.loginAsAdmin();
+		contentHostingService = kernel.getService(ContentHostingService.class);
+		try {
+			ContentResourceEdit edit = contentHostingService.addResource(RESOURCE_ID);
+			edit.setContent("Benchmark content".getBytes("UTF-8"));
+			edit.setContentType("text/plain");
+			ResourcePropertiesEdit properties = edit.getPropertiesEdit();
+			properties.addProperty(ResourceProperties.PROP_DISPLAY_NAME, "benchmark-serializer.txt");
+			properties.addProperty(ResourceProperties.PROP_DESCRIPTION, "A resource with the usual properties");
+			properties.addProperty(ResourceProperties.PROP_COPYRIGHT_CHOICE, "I hold copyright.");
+			contentHostingService.commitResource(edit);
+		} catch (IdUsedException e) {
+			// set up by an earlier trial in this JVM
+		}
+
+		serializer = new Type1BaseContentResourceSerializer();
+		serializer.setTimeService(kernel.getService(TimeService.class));
+		resource = (SerializableEntity) contentHostingService.getResource(RESOURCE_ID);
+		serialized = serializer.serialize(resource);
+		// parsed into an edit so the cached resource is left alone
+		target = contentHostingService.editResource(RESOURCE_ID);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		contentHostingService.cancelResource(target);
+	}
+
+	@Benchmark
+	public byte[] serialize() throws EntityParseException {
+		return serializer.serialize(resource);
+	}
+
+	@Benchmark
+	public Object parse() throws EntityParseException {
+		serializer.parse((SerializableEntity) target, serialized);
+		return target;
+	}
+}
@@ -0,0 +1,124 @@
+/******************************************************************************
+ * $URL$
+ * $Id$
+ ******************************************************************************
+ *
+ * Copyright (c) 2003-2018 The Apereo Foundation
+ *
+ * Licensed under the Educational Community License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *       http://opensource.org/licenses/ecl2
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *****************************************************************************/
+
+package org.sakaiproject.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sakaiproject.cluster.api.ClusterService;
+import org.sakaiproject.component.api.ServerConfigurationService;
+import org.sakaiproject.component.cover.ComponentManager;
+import org.sakaiproject.component.impl.BasicConfigurationService;
+import org.sakaiproject.id.api.IdManager;
+import org.sakaiproject.id.impl.UuidV4IdComponent;
+import org.sakaiproject.thread_local.api.ThreadLocalManager;
+import org.sakaiproject.thread_local.impl.ThreadLocalComponent;
+import org.sakaiproject.tool.api.RebuildBreakdownService;
+import org.sakaiproject.tool.api.ToolManager;
+import org.sakaiproject.tool.impl.SessionComponent;
+import org.sakaiproject.util.BasicConfigItem;
+import org.sakaiproject.util.impl.FormattedTextImpl;
+
+/**
+ * FormattedTextImpl.processFormattedText, the AntiSamy cleaning of HTML from the browser, set up the same way as
+ * FormattedTextTest without the component manager.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@State(Scope.Benchmark)
+public class FormattedTextBenchmark {
+
+	private static final String PARAGRAPH = "<p>Some <b>bold</b> and <i>italic</i> text with a "
+			+ "<a href=\"http://www.sakaiproject.org/\" style=\"font-weight:bold;\">link</a>, "
+			+ "<span style=\"color: #ff0000;\">colour</span> and an image <img src=\"/access/content/group/site/image.png\" alt=\"\"/></p>"
+			+ "<table border=\"1\"><tr><td>cell</td><td>another cell</td></tr></table>"
+			+ "<script>alert('removed');</script>";
+
+	@Param({"1", "50"})
+	private int paragraphs;
+
+	private FormattedTextImpl formattedText;
+	private String html;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		final IdManager idManager = new UuidV4IdComponent();
+		final ThreadLocalManager threadLocalManager = new ThreadLocalComponent();
+		ServerConfigurationService serverConfigurationService = new BasicConfigurationService();
+		SessionComponent sessionManager = new SessionComponent() {
+			@Override
+			protected ToolManager toolManager() {
+				return null;
+			}
+
+			@Override
+			protected ThreadLocalManager threadLocalManager() {
+				return threadLocalManager;
+			}
+
+			@Override
+			protected IdManager idManager() {
+				return idManager;
+			}
+
+			@Override
+			protected RebuildBreakdownService rebuildBreakdownService() {
+				return null;
+			}
+
+			@Override
+			protected ClusterService clusterManager() {
+				return null;
+			}
+		};
+		serverConfigurationService.registerConfigItem(BasicConfigItem.makeDefaultedConfigItem("content.cleaner.errors.handling", "return", "FormattedTextBenchmark"));
+
+		ComponentManager.testingMode = true;
+		formattedText = new FormattedTextImpl();
+		formattedText.setServerConfigurationService(serverConfigurationService);
+		formattedText.setSessionManager(sessionManager);
+		formattedText.init();
+
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < paragraphs; i++) {
+			sb.append(PARAGRAPH);
+		}
+		html = sb.toString();
+	}
+
+	@Benchmark
+	public String processFormattedText() {
+		return formattedText.processFormattedText(html, new StringBuilder());
+	}
+}
@@ -0,0 +1,75 @@
+/******************************************************************************
+ * $URL$
+ * $Id$
+ ******************************************************************************
+ *
+ * Copyright (c) 2003-2018 The Apereo Foundation
+ *
+ * Licensed under the Educational Community License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *       http://opensource.org/licenses/ecl2
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *****************************************************************************/
+
+package org.sakaiproject.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.sakaiproject.component.cover.TestComponentManagerContainer;
+import org.sakaiproject.tool.api.Session;
+import org.sakaiproject.tool.api.SessionManager;
+
+/**
+ * Brings up the kernel components, once per forked JVM, against the in-memory HSQLDB database configured by
+ * kernel.properties. Benchmarks that need kernel services take this as a parameter to their setup.
+ */
+@State(Scope.Benchmark)
+public class KernelState {
+
+	/**
+	 * The kernel components, relative to this module as the benchmarks are run from here
+	 */
+	private static final String CONFIG = "../kernel-impl/src/main/webapp/WEB-INF/components.xml";
+
+	private static TestComponentManagerContainer container;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		synchronized (KernelState.class) {
+			if (container == null) {
+				TestComponentManagerContainer.setSakaiHome(new File("target/sakai-home").getAbsolutePath() + File.separator);
+				container = new TestComponentManagerContainer(CONFIG);
+			}
+		}
+	}
+
+	/**
+	 * Get a service bean from the component manager by its interface.
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> T getService(Class<T> clazz) {
+		return (T) container.getService(clazz.getName());
+	}
+
+	/**
+	 * Make the current session the admin user, for creating fixtures.
+	 */
+	public void loginAsAdmin() {
+		Session session = getService(SessionManager.class).getCurrentSession();
+		session.setUserEid("admin");
+		session.setUserId("admin");
+	}
+}
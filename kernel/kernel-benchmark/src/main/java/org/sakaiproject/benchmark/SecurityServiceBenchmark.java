@@ -0,0 +1,99 @@
+/******************************************************************************
+ * $URL$
+ * $Id$
+ ******************************************************************************
+ *
+ * Copyright (c) 2003-2018 The Apereo Foundation
+ *
+ * Licensed under the Educational Community License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *       http://opensource.org/licenses/ecl2
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *****************************************************************************/
+
+package org.sakaiproject.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sakaiproject.authz.api.SecurityService;
+import org.sakaiproject.memory.api.Cache;
+import org.sakaiproject.memory.api.MemoryService;
+import org.sakaiproject.site.api.Site;
+import org.sakaiproject.site.api.SiteService;
+import org.sakaiproject.user.api.UserAlreadyDefinedException;
+import org.sakaiproject.user.api.UserDirectoryService;
+import org.sakaiproject.user.api.UserEdit;
+
+/**
+ * SecurityService.unlock for a site member, answered from the unlock cache and with the cache emptied so the realm
+ * tables are queried.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@State(Scope.Benchmark)
+public class SecurityServiceBenchmark {
+
+	private static final String SITE_ID = "benchmark-security";
+	private static final String USER_ID = "benchmark-user";
+	private static final String SECURITY_CACHE = "org.sakaiproject.authz.api.SecurityService.cache";
+
+	private SecurityService securityService;
+	private Cache<String, Object> securityCache;
+	private String siteReference;
+
+	@Setup(Level.Trial)
+	public void setUp(KernelState kernel) throws Exception {
+		kernel.loginAsAdmin();
+
+		UserDirectoryService userDirectoryService = kernel.getService(UserDirectoryService.class);
+		try {
+			UserEdit user = userDirectoryService.addUser(USER_ID, USER_ID);
+			userDirectoryService.commitEdit(user);
+		} catch (UserAlreadyDefinedException e) {
+			// set up by an earlier trial in this JVM
+		}
+
+		SiteService siteService = kernel.getService(SiteService.class);
+		Site site = siteService.siteExists(SITE_ID) ? siteService.getSite(SITE_ID) : siteService.addSite(SITE_ID, "project");
+		site.addMember(USER_ID, "access", true, false);
+		siteService.save(site);
+		siteReference = site.getReference();
+
+		securityService = kernel.getService(SecurityService.class);
+		securityCache = kernel.getService(MemoryService.class).getCache(SECURITY_CACHE);
+	}
+
+	@Benchmark
+	public boolean unlockCacheHit() {
+		return securityService.unlock(USER_ID, SiteService.SITE_VISIT, siteReference);
+	}
+
+	/**
+	 * Includes emptying the cache, which only holds a handful of entries here so is small next to the queries.
+	 */
+	@Benchmark
+	public boolean unlockCacheMiss() {
+		securityCache.clear();
+		return securityService.unlock(USER_ID, SiteService.SITE_VISIT, siteReference);
+	}
+}
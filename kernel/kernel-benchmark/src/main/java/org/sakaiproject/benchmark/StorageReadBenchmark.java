@@ -0,0 +1,226 @@
+/******************************************************************************
+ * $URL$
+ * $Id$
+ ******************************************************************************
+ *
+ * Copyright (c) 2003-2018 The Apereo Foundation
+ *
+ * Licensed under the Educational Community License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *       http://opensource.org/licenses/ecl2
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *****************************************************************************/
+
+package org.sakaiproject.benchmark;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Stack;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sakaiproject.db.api.SqlService;
+import org.sakaiproject.entity.api.Edit;
+import org.sakaiproject.entity.api.Entity;
+import org.sakaiproject.entity.api.ResourceProperties;
+import org.sakaiproject.entity.api.ResourcePropertiesEdit;
+import org.sakaiproject.util.BaseDbSingleStorage;
+import org.sakaiproject.util.BaseResourcePropertiesEdit;
+import org.sakaiproject.util.DefaultEntityHandler;
+import org.sakaiproject.util.SAXEntityReader;
+import org.sakaiproject.util.SingleStorageUser;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+
+/**
+ * Reading an entity from its XML column in BaseDbSingleStorage with a SAXEntityReader storage user, the path the
+ * legacy XML rows take. The entity is a stand in, the properties are parsed by the real properties handler.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@State(Scope.Benchmark)
+public class StorageReadBenchmark {
+
+	/**
+	 * Shaped like the XML of a content resource with its usual properties
+	 */
+	private static final String XML = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+			+ "<resource content-length=\"17\" content-type=\"text/plain\" filePath=\"/2018/123/10/0a1b2c3d-4e5f\""
+			+ " id=\"/group/benchmark-site/folder/file.txt\" resource-type=\"org.sakaiproject.content.types.fileUpload\""
+			+ " sakai:access_mode=\"inherited\" sakai:hidden=\"false\">"
+			+ "<properties>"
+			+ "<property enc=\"BASE64\" name=\"DAV:displayname\" value=\"ZmlsZS50eHQ=\"/>"
+			+ "<property enc=\"BASE64\" name=\"CHEF:creator\" value=\"YWRtaW4=\"/>"
+			+ "<property enc=\"BASE64\" name=\"CHEF:modifiedby\" value=\"YWRtaW4=\"/>"
+			+ "<property enc=\"BASE64\" name=\"DAV:creationdate\" value=\"MjAxODA0MTAxMjAwMDAwMDA=\"/>"
+			+ "<property enc=\"BASE64\" name=\"DAV:getlastmodified\" value=\"MjAxODA0MTAxMjAwMDAwMDA=\"/>"
+			+ "<property enc=\"BASE64\" name=\"DAV:getcontentlength\" value=\"MTc=\"/>"
+			+ "<property enc=\"BASE64\" name=\"DAV:getcontenttype\" value=\"dGV4dC9wbGFpbg==\"/>"
+			+ "<property enc=\"BASE64\" name=\"CHEF:description\" value=\"QSByZXNvdXJjZSB3aXRoIHRoZSB1c3VhbCBwcm9wZXJ0aWVz\"/>"
+			+ "<property enc=\"BASE64\" name=\"CHEF:copyrightchoice\" value=\"SSBob2xkIGNvcHlyaWdodC4=\"/>"
+			+ "<property enc=\"BASE64\" list=\"list\" name=\"tag\" value=\"b25l\"/>"
+			+ "<property enc=\"BASE64\" list=\"list\" name=\"tag\" value=\"dHdv\"/>"
+			+ "</properties>"
+			+ "</resource>";
+
+	private Storage storage;
+
+	@Setup(Level.Trial)
+	public void setUp(KernelState kernel) {
+		storage = new Storage(new ResourceStorageUser(), kernel.getService(SqlService.class));
+	}
+
+	@Benchmark
+	public Entity readResource() {
+		return storage.read(XML);
+	}
+
+	/**
+	 * Opens up readResource
+	 */
+	private static class Storage extends BaseDbSingleStorage {
+
+		Storage(SingleStorageUser user, SqlService sqlService) {
+			super("BENCHMARK_RESOURCE", "RESOURCE_ID", null, false, "resource", user, sqlService);
+		}
+
+		Entity read(String xml) {
+			return readResource(xml);
+		}
+	}
+
+	private static class ResourceStorageUser implements SingleStorageUser, SAXEntityReader {
+
+		public DefaultEntityHandler getDefaultHandler(final Map<String, Object> services) {
+			return new DefaultEntityHandler() {
+				@Override
+				public void startElement(String uri, String localName, String qName, Attributes attributes) throws SAXException {
+					// the properties element is handed to the entity's properties by doStartElement
+					if (doStartElement(uri, localName, qName, attributes) && entity == null && "resource".equals(qName)) {
+						entity = new BenchmarkEntity(attributes.getValue("id"));
+					}
+				}
+			};
+		}
+
+		public Map<String, Object> getServices() {
+			return Collections.emptyMap();
+		}
+
+		public Entity newResource(Entity container, String id, Object[] others) {
+			return new BenchmarkEntity(id);
+		}
+
+		public Entity newResource(Entity container, Element element) {
+			return new BenchmarkEntity(element);
+		}
+
+		public Entity newResource(Entity container, Entity other) {
+			return new BenchmarkEntity(other);
+		}
+
+		public Edit newResourceEdit(Entity container, String id, Object[] others) {
+			return new BenchmarkEntity(id);
+		}
+
+		public Edit newResourceEdit(Entity container, Element element) {
+			return new BenchmarkEntity(element);
+		}
+
+		public Edit newResourceEdit(Entity container, Entity other) {
+			return new BenchmarkEntity(other);
+		}
+
+		public Object[] storageFields(Entity r) {
+			return null;
+		}
+	}
+
+	private static class BenchmarkEntity implements Edit {
+
+		private final String id;
+		private final BaseResourcePropertiesEdit properties = new BaseResourcePropertiesEdit();
+
+		BenchmarkEntity(String id) {
+			this.id = id;
+		}
+
+		/**
+		 * From the XML DOM, as the storage does for rows that aren't read with SAX
+		 */
+		BenchmarkEntity(Element el) {
+			this(el.getAttribute("id"));
+			NodeList children = el.getChildNodes();
+			for (int i = 0; i < children.getLength(); i++) {
+				Node child = children.item(i);
+				if (child.getNodeType() == Node.ELEMENT_NODE && "properties".equals(((Element) child).getTagName())) {
+					properties.addAll(new BaseResourcePropertiesEdit((Element) child));
+				}
+			}
+		}
+
+		BenchmarkEntity(Entity other) {
+			this(other.getId());
+			properties.addAll(other.getProperties());
+		}
+
+		public String getUrl() {
+			return null;
+		}
+
+		public String getReference() {
+			return id;
+		}
+
+		public String getUrl(String rootProperty) {
+			return null;
+		}
+
+		public String getReference(String rootProperty) {
+			return id;
+		}
+
+		public String getId() {
+			return id;
+		}
+
+		public ResourceProperties getProperties() {
+			return properties;
+		}
+
+		public ResourcePropertiesEdit getPropertiesEdit() {
+			return properties;
+		}
+
+		public boolean isActiveEdit() {
+			return true;
+		}
+
+		public Element toXml(Document doc, Stack<Element> stack) {
+			return null;
+		}
+	}
+}
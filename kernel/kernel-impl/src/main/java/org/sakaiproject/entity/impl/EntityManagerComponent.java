@@ -27,6 +27,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -158,6 +159,21 @@ public class EntityManagerComponent implements EntityManager
 
 	private Map<String, String> m_rejectRef = new HashMap<String, String>();
 
+	/** The roots of m_producers and m_rejectRef, rebuilt when they change. */
+	private ReferenceRoots m_roots = new ReferenceRoots(m_producers, m_rejectRef);
+
+	/**
+	 * Parsed references keyed by the reference string, new references for the same string are copied from these
+	 * rather than asking the producers to parse them again. Only references a producer parsed are kept.
+	 */
+	private ParsedCache m_parsed = null;
+
+	/** The number of parsed references kept, 0 to not keep any. */
+	private int referenceCacheSize = 10000;
+
+	/** How long in seconds a parsed reference is kept, as parsing can depend on things like site aliases. */
+	private int referenceCacheTtl = 60;
+
 	private int nparse = 0;
 
 	private long total;
@@ -168,6 +184,16 @@ public class EntityManagerComponent implements EntityManager
 	 * Constructors, Dependencies and their setter methods
 	 **************************************************************************/
 
+	public void setReferenceCacheSize(int referenceCacheSize)
+	{
+		this.referenceCacheSize = referenceCacheSize;
+	}
+
+	public void setReferenceCacheTtl(int referenceCacheTtl)
+	{
+		this.referenceCacheTtl = referenceCacheTtl;
+	}
+
 	/***************************************************************************
 	 * Init and Destroy
 	 **************************************************************************/
@@ -184,7 +210,9 @@ public class EntityManagerComponent implements EntityManager
 			m_rejectRefIn.put("library", "library");
 
 			m_rejectRef = new HashMap<String, String>(m_rejectRefIn);
-			M_log.info("init()");
+			m_roots = new ReferenceRoots(m_producers, m_rejectRef);
+			m_parsed = newParsedCache(referenceCacheSize);
+			M_log.info("init() reference cache size: " + referenceCacheSize + " ttl: " + referenceCacheTtl + "s");
 		}
 		catch (Exception t)
 		{
@@ -235,6 +263,14 @@ public class EntityManagerComponent implements EntityManager
 
 		m_producers = new HashMap<String, EntityProducer>(m_producersIn);
 		m_performance = new HashMap<EntityProducer, Calls>(m_performanceIn);
+		m_roots = new ReferenceRoots(m_producers, m_rejectRef);
+
+		// the new producer may parse references differently
+		ParsedCache parsed = m_parsed;
+		if (parsed != null)
+		{
+			parsed.clear();
+		}
 	}
 
 	/**
@@ -250,6 +286,7 @@ public class EntityManagerComponent implements EntityManager
 		}
 		m_rejectRefIn.put(shortReference, shortReference);
 		m_rejectRef = new HashMap<String, String>(m_rejectRefIn);
+		m_roots = new ReferenceRoots(m_producers, m_rejectRef);
 
 	}
 
@@ -258,7 +295,106 @@ public class EntityManagerComponent implements EntityManager
 	 */
 	public Reference newReference(String refString)
 	{
-		return new ReferenceComponent(this,refString);
+		ParsedCache parsed = m_parsed;
+		if (parsed == null || refString == null)
+		{
+			return new ReferenceComponent(this,refString);
+		}
+
+		CachedReference cached = parsed.get(refString);
+		if (cached != null && cached.expires > System.currentTimeMillis())
+		{
+			ReferenceComponent ref = new ReferenceComponent(cached.reference);
+			ref.m_setAlready = cached.reference.m_setAlready;
+			return ref;
+		}
+
+		ReferenceComponent ref = new ReferenceComponent(this,refString);
+		if (ref.getEntityProducer() != null)
+		{
+			// keep a copy as the caller may update the one returned
+			ReferenceComponent copy = new ReferenceComponent(ref);
+			copy.m_setAlready = ref.m_setAlready;
+			parsed.put(refString, new CachedReference(copy, System.currentTimeMillis() + referenceCacheTtl * 1000L));
+		}
+		else if (cached != null)
+		{
+			parsed.remove(refString);
+		}
+		return ref;
+	}
+
+	private static ParsedCache newParsedCache(int maxEntries)
+	{
+		if (maxEntries <= 0)
+		{
+			return null;
+		}
+		return new ParsedCache(maxEntries);
+	}
+
+	/**
+	 * The parsed references, without a lock so lookups from many threads don't wait on each other. The size is only
+	 * roughly bounded: once it goes over, one thread removes the expired entries and then any others until it is back
+	 * under 90% of the limit.
+	 */
+	static class ParsedCache extends ConcurrentHashMap<String, CachedReference>
+	{
+		private final int maxEntries;
+
+		private final AtomicBoolean evicting = new AtomicBoolean();
+
+		ParsedCache(int maxEntries)
+		{
+			this.maxEntries = maxEntries;
+		}
+
+		@Override
+		public CachedReference put(String key, CachedReference value)
+		{
+			CachedReference previous = super.put(key, value);
+			if (size() > maxEntries && evicting.compareAndSet(false, true))
+			{
+				try
+				{
+					evict();
+				}
+				finally
+				{
+					evicting.set(false);
+				}
+			}
+			return previous;
+		}
+
+		private void evict()
+		{
+			long now = System.currentTimeMillis();
+			values().removeIf(cached -> cached.expires <= now);
+			int target = maxEntries / 10 * 9;
+			Iterator<String> keys = keySet().iterator();
+			while (size() > target && keys.hasNext())
+			{
+				keys.next();
+				keys.remove();
+			}
+		}
+	}
+
+	/**
+	 * A parsed reference and when it expires
+	 */
+	static class CachedReference
+	{
+		private final ReferenceComponent reference;
+
+		private final long expires;
+
+		CachedReference(ReferenceComponent reference, long expires)
+		{
+			this.reference = reference;
+			this.expires = expires;
+		}
 	}
 
 	/**
@@ -429,24 +565,12 @@ public class EntityManagerComponent implements EntityManager
 		{
 			return null;
 		}
-		String ref = reference;
-		int n = ref.indexOf('/', 1);
-		if (n > 0)
-		{
-			if (ref.charAt(0) == '/')
-			{
-				ref = ref.substring(1, n);
-			}
-			else
-			{
-				ref = ref.substring(0, n);
-			}
-		}
-		if (m_rejectRef.get(ref) != null)
+		ReferenceRoots roots = m_roots;
+		if (roots.isRejected(reference))
 		{
 			return null;
 		}
-		EntityProducer ep = m_producers.get(ref);
+		EntityProducer ep = roots.getProducer(reference);
 		if (ep != null)
 		{
 			if (ep.parseEntityReference(reference, target))
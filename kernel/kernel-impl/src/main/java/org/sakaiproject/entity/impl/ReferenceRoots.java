@@ -0,0 +1,147 @@
+/**********************************************************************************
+ * $URL$
+ * $Id$
+ ***********************************************************************************
+ *
+ * Copyright (c) 2003, 2004, 2005, 2006, 2008 Sakai Foundation
+ *
+ * Licensed under the Educational Community License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.opensource.org/licenses/ECL-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ **********************************************************************************/
+
+package org.sakaiproject.entity.impl;
+
+import java.util.Map;
+
+import org.sakaiproject.entity.api.EntityProducer;
+
+/**
+ * <p>
+ * A prefix trie over the reference roots of the entity producers and the rejected roots, so the root of a reference
+ * can be looked up without taking a substring of it. It is not changed once built, the EntityManagerComponent builds a
+ * new one when a root is added.
+ * </p>
+ */
+class ReferenceRoots
+{
+	private static final class Node
+	{
+		private char[] chars = new char[0];
+
+		private Node[] children = new Node[0];
+
+		private EntityProducer producer;
+
+		private boolean rejected;
+
+		private Node child(char c)
+		{
+			for (int i = 0; i < chars.length; i++)
+			{
+				if (chars[i] == c) return children[i];
+			}
+			return null;
+		}
+
+		private Node addChild(char c)
+		{
+			Node node = child(c);
+			if (node == null)
+			{
+				int n = chars.length;
+				char[] newChars = new char[n + 1];
+				Node[] newChildren = new Node[n + 1];
+				System.arraycopy(chars, 0, newChars, 0, n);
+				System.arraycopy(children, 0, newChildren, 0, n);
+				node = new Node();
+				newChars[n] = c;
+				newChildren[n] = node;
+				chars = newChars;
+				children = newChildren;
+			}
+			return node;
+		}
+	}
+
+	private final Node root = new Node();
+
+	/**
+	 * @param producers
+	 *        the producers keyed by their reference root
+	 * @param rejected
+	 *        the rejected roots, as keys
+	 */
+	ReferenceRoots(Map<String, EntityProducer> producers, Map<String, String> rejected)
+	{
+		for (Map.Entry<String, EntityProducer> entry : producers.entrySet())
+		{
+			add(entry.getKey()).producer = entry.getValue();
+		}
+		for (String reject : rejected.keySet())
+		{
+			add(reject).rejected = true;
+		}
+	}
+
+	/**
+	 * @return true if the root of the reference has been rejected
+	 */
+	boolean isRejected(String reference)
+	{
+		Node node = find(reference);
+		return (node != null) && node.rejected;
+	}
+
+	/**
+	 * @return the producer registered for the root of the reference, or null if there is none
+	 */
+	EntityProducer getProducer(String reference)
+	{
+		Node node = find(reference);
+		return (node == null) ? null : node.producer;
+	}
+
+	private Node add(String key)
+	{
+		Node node = root;
+		for (int i = 0; i < key.length(); i++)
+		{
+			node = node.addChild(key.charAt(i));
+		}
+		return node;
+	}
+
+	/**
+	 * The root is the text before the second separator, without a leading separator, or the whole reference if there
+	 * is no second separator.
+	 */
+	private Node find(String reference)
+	{
+		int start = 0;
+		int end = reference.indexOf('/', 1);
+		if (end > 0)
+		{
+			if (reference.charAt(0) == '/') start = 1;
+		}
+		else
+		{
+			end = reference.length();
+		}
+		Node node = root;
+		for (int i = start; i < end && node != null; i++)
+		{
+			node = node.child(reference.charAt(i));
+		}
+		return node;
+	}
+}
@@ -25,11 +25,20 @@ import java.io.File;
 import java.io.UnsupportedEncodingException;
 import java.net.URL;
 import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Stack;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.text.NumberFormat;
 import java.text.DecimalFormat;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.lang.StringEscapeUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
@@ -78,6 +87,15 @@ public class FormattedTextImpl implements FormattedText
      */
     private AntiSamy antiSamyLow = null;
 
+    /**
+     * Results of the AntiSamy scans keyed by the level and a hash of the scanned html, so the same announcement,
+     * post or syllabus item is only scanned once. Recreated when the policies are loaded, null if disabled.
+     */
+    private ScanCache scanCache = null;
+    private int scanCacheSize = 1000;
+    private int scanCacheMaxLength = 20000;
+    private int scanCacheMaxChars = 5000000;
+
     /* KNL-1075 - content.cleaner.errors.handling = none|logged|return|notify|display
      * - none - errors are completely ignored and not even stored at all
      * - logged - errors are output in the logs only
@@ -143,6 +161,11 @@ public class FormattedTextImpl implements FormattedText
                     "; details to user=" + showDetailedErrorToUser);
 
             referrerPolicy = serverConfigurationService.getString(SAK_PROP_REFERRER_POLICY, SAKAI_REFERRER_POLICY_DEFAULT);
+
+            // number of scan results to keep (0 disables), the longest html that is cached and the total size kept
+            scanCacheSize = serverConfigurationService.getInt("content.cleaner.cache.size", scanCacheSize);
+            scanCacheMaxLength = serverConfigurationService.getInt("content.cleaner.cache.max.length", scanCacheMaxLength);
+            scanCacheMaxChars = serverConfigurationService.getInt("content.cleaner.cache.max.chars", scanCacheMaxChars);
         }
         if (useLegacy) {
             M_log.error(
@@ -180,6 +203,7 @@ public class FormattedTextImpl implements FormattedText
             antiSamyHigh = new AntiSamy(policyHigh);
             Policy policyLow = Policy.getInstance(lowPolicyURL);
             antiSamyLow = new AntiSamy(policyLow);
+            scanCache = newScanCache(scanCacheSize, scanCacheMaxChars);
             // TODO should we attempt to fallback to internal files if the parsing/init fails of external ones?
             M_log.info("AntiSamy INIT default security level ("+(defaultLowSecurity()?"LOW":"high")+"), policy files: high="+highPolicyURL+", low="+lowPolicyURL);
         } catch (Exception e) {
@@ -188,6 +212,13 @@ public class FormattedTextImpl implements FormattedText
 
     }
 
+    private static ScanCache newScanCache(int maxEntries, long maxChars) {
+        if (maxEntries <= 0 || maxChars <= 0) {
+            return null;
+        }
+        return new ScanCache(maxEntries, maxChars);
+    }
+
     /*
         Removes surrogates from a string http://stackoverflow.com/a/12867139/3708872
         @param str Value to process
@@ -354,14 +385,51 @@ public class FormattedTextImpl implements FormattedText
      */
     public String processFormattedText(final String strFromBrowser, StringBuilder errorMessages, Level level,
             boolean checkForEvilTags, boolean replaceWhitespaceTags, boolean doNotUseLegacySakaiCleaner) {
+        return processFormattedText(strFromBrowser, errorMessages, level, checkForEvilTags, replaceWhitespaceTags, null);
+    }
+
+    /* (non-Javadoc)
+     * @see org.sakaiproject.util.api.FormattedText#processFormattedText(java.util.List, java.lang.StringBuilder, org.sakaiproject.util.api.FormattedText.Level)
+     */
+    public List<String> processFormattedText(final List<String> strsFromBrowser, StringBuilder errorMessages, Level level) {
+        if (strsFromBrowser == null) {
+            return null;
+        }
+        final Level scanLevel = scanLevel(level);
+        final Map<String, CleanedHtml> scanned = new ConcurrentHashMap<String, CleanedHtml>();
+        if (!Level.NONE.equals(scanLevel)) {
+            // the scans are the expensive part and need nothing from the current thread so they are run in parallel first
+            strsFromBrowser.parallelStream()
+                    .filter(StringUtils::isNotEmpty)
+                    .map(str -> prepareForScan(str, true))
+                    .distinct()
+                    .forEach(val -> {
+                        try {
+                            scanned.put(val, scan(scanLevel, val));
+                        } catch (Exception e) {
+                            // scanned again below which reports the failure
+                        }
+                    });
+        }
+        // the rest stays on this thread as the errors are reported through the current session
+        List<String> results = new ArrayList<String>(strsFromBrowser.size());
+        for (String strFromBrowser : strsFromBrowser) {
+            results.add(processFormattedText(strFromBrowser, errorMessages, scanLevel, true, true, scanned));
+        }
+        return results;
+    }
+
+    /**
+     * @param scanned results of scans that were already done, keyed by the html that was scanned, may be null
+     */
+    private String processFormattedText(final String strFromBrowser, StringBuilder errorMessages, Level level,
+            boolean checkForEvilTags, boolean replaceWhitespaceTags, Map<String, CleanedHtml> scanned) {
 
         // KNL-1075: bypass the old error system and present our formatted text errors using growl notification
         StringBuilder formattedTextErrors = new StringBuilder();
 
-        if (level == null || Level.DEFAULT.equals(level)) {
-            // Select the default policy as high or low - KNL-1015
-            level = defaultLowSecurity() ? Level.LOW : Level.HIGH; // default to system setting
-        } else if (Level.NONE.equals(level)) {
+        level = scanLevel(level);
+        if (Level.NONE.equals(level)) {
             checkForEvilTags = false; // disable scan
         }
 
@@ -371,35 +439,18 @@ public class FormattedTextImpl implements FormattedText
         }
 
         try {
-            if (cleanUTF8) {
-                val = removeSurrogates(val);
-            }
-            if (replaceWhitespaceTags) {
-                // normalize all variants of the "<br>" HTML tag to be "<br />\n"
-                val = M_patternTagBr.matcher(val).replaceAll("<br />");
-
-                // replace "<p>" with nothing. Replace "</p>" and "<p />" HTML tags with "<br />"
-                // val = val.replaceAll("<p>", "");
-                // val = val.replaceAll("</p>", "<br />\n");
-                // val = val.replaceAll("<p />", "<br />\n");
-            }
+            val = prepareForScan(val, replaceWhitespaceTags);
 
             if (checkForEvilTags) {
-                // use the owasp antisamy processor
-                AntiSamy as = antiSamyHigh;
-                if (Level.LOW.equals(level)) {
-                    as = antiSamyLow;
-                }
                 try {
-                    CleanResults cr = as.scan(val);
-                    if (cr.getNumberOfErrors() > 0) {
-                        // TODO currently no way to get internationalized versions of error messages
-                        for (String errorMsg : cr.getErrorMessages()) {
-                            String i18nErrorMsg = new String(errorMsg.getBytes("ISO-8859-1"),"UTF8");
-                            formattedTextErrors.append(i18nErrorMsg + "<br/>");
-                        }
+                    CleanedHtml cleaned = (scanned == null) ? null : scanned.get(val);
+                    if (cleaned == null) {
+                        cleaned = scan(level, val);
+                    }
+                    for (String errorMsg : cleaned.errors) {
+                        formattedTextErrors.append(errorMsg + "<br/>");
                     }
-                    val = cr.getCleanHTML();
+                    val = cleaned.html;
 
                     // now replace all the A tags WITHOUT a target with _blank (to match the old functionality)
                     if (addBlankTargetToLinks() && StringUtils.isNotBlank(val)) {
@@ -483,6 +534,142 @@ public class FormattedTextImpl implements FormattedText
         return val;
     }
 
+    /**
+     * @return the level to scan with, DEFAULT or null is the system setting
+     */
+    private Level scanLevel(Level level) {
+        if (level == null || Level.DEFAULT.equals(level)) {
+            // Select the default policy as high or low - KNL-1015
+            return defaultLowSecurity() ? Level.LOW : Level.HIGH; // default to system setting
+        }
+        return level;
+    }
+
+    /**
+     * Does the changes made to the html before it is scanned
+     */
+    private String prepareForScan(String val, boolean replaceWhitespaceTags) {
+        if (cleanUTF8) {
+            val = removeSurrogates(val);
+        }
+        if (replaceWhitespaceTags) {
+            // normalize all variants of the "<br>" HTML tag to be "<br />\n"
+            val = M_patternTagBr.matcher(val).replaceAll("<br />");
+
+            // replace "<p>" with nothing. Replace "</p>" and "<p />" HTML tags with "<br />"
+            // val = val.replaceAll("<p>", "");
+            // val = val.replaceAll("</p>", "<br />\n");
+            // val = val.replaceAll("<p />", "<br />\n");
+        }
+        return val;
+    }
+
+    /**
+     * Scans the html with the owasp antisamy processor for the level, using the cached result if the same html was
+     * scanned before. The policies are only parsed once, in init.
+     */
+    private CleanedHtml scan(Level level, String val) throws ScanException, PolicyException, UnsupportedEncodingException {
+        ScanCache cache = scanCache;
+        String key = null;
+        if (cache != null && val.length() <= scanCacheMaxLength) {
+            key = level + ":" + DigestUtils.sha256Hex(val);
+            CleanedHtml cleaned = cache.get(key);
+            if (cleaned != null) {
+                return cleaned;
+            }
+        }
+        AntiSamy as = antiSamyHigh;
+        if (Level.LOW.equals(level)) {
+            as = antiSamyLow;
+        }
+        CleanResults cr = as.scan(val);
+        List<String> errors = new ArrayList<String>(cr.getNumberOfErrors());
+        // TODO currently no way to get internationalized versions of error messages
+        for (String errorMsg : cr.getErrorMessages()) {
+            errors.add(new String(errorMsg.getBytes("ISO-8859-1"),"UTF8"));
+        }
+        CleanedHtml cleaned = new CleanedHtml(cr.getCleanHTML(), errors);
+        if (key != null) {
+            cache.put(key, cleaned);
+        }
+        return cleaned;
+    }
+
+    /**
+     * The output of an AntiSamy scan
+     */
+    static class CleanedHtml {
+        final String html;
+        final List<String> errors;
+        /** roughly the number of chars held, for the size of the cache */
+        final int chars;
+
+        CleanedHtml(String html, List<String> errors) {
+            this.html = html;
+            this.errors = Collections.unmodifiableList(errors);
+            int chars = (html == null) ? 0 : html.length();
+            for (String error : errors) {
+                chars += error.length();
+            }
+            this.chars = chars;
+        }
+    }
+
+    /**
+     * The scan results, without a lock so scans on many threads don't wait on each other. It is bounded by the number
+     * of results and the number of chars they hold, but only roughly: once either goes over, one thread removes
+     * results until both are back under 90% of their limits.
+     */
+    static class ScanCache {
+        private final Map<String, CleanedHtml> entries = new ConcurrentHashMap<String, CleanedHtml>();
+        private final AtomicLong chars = new AtomicLong();
+        private final AtomicBoolean evicting = new AtomicBoolean();
+        private final int maxEntries;
+        private final long maxChars;
+
+        ScanCache(int maxEntries, long maxChars) {
+            this.maxEntries = maxEntries;
+            this.maxChars = maxChars;
+        }
+
+        CleanedHtml get(String key) {
+            return entries.get(key);
+        }
+
+        void put(String key, CleanedHtml cleaned) {
+            CleanedHtml previous = entries.put(key, cleaned);
+            chars.addAndGet(cleaned.chars - (previous == null ? 0 : previous.chars));
+            if ((entries.size() > maxEntries || chars.get() > maxChars) && evicting.compareAndSet(false, true)) {
+                try {
+                    evict();
+                } finally {
+                    evicting.set(false);
+                }
+            }
+        }
+
+        int size() {
+            return entries.size();
+        }
+
+        long chars() {
+            return chars.get();
+        }
+
+        private void evict() {
+            int targetEntries = maxEntries / 10 * 9;
+            long targetChars = maxChars / 10 * 9;
+            Iterator<Map.Entry<String, CleanedHtml>> iter = entries.entrySet().iterator();
+            while ((entries.size() > targetEntries || chars.get() > targetChars) && iter.hasNext()) {
+                Map.Entry<String, CleanedHtml> entry = iter.next();
+                // only count it if another thread hasn't removed or replaced it
+                if (entries.remove(entry.getKey(), entry.getValue())) {
+                    chars.addAndGet(-entry.getValue().chars);
+                }
+            }
+        }
+    }
+
     /* (non-Javadoc)
      * @see org.sakaiproject.utils.impl.FormattedText#escapeHtmlFormattedText(java.lang.String)
      */
@@ -0,0 +1,134 @@
+/**********************************************************************************
+ *
+ * Copyright (c) 2018 The Sakai Foundation
+ *
+ * Licensed under the Educational Community License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.opensource.org/licenses/ECL-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ **********************************************************************************/
+
+package org.sakaiproject.entity.impl;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.sakaiproject.entity.api.EntityProducer;
+import org.sakaiproject.entity.api.Reference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class EntityManagerComponentTest {
+
+	private EntityManagerComponent entityManager;
+
+	private EntityProducer siteProducer;
+
+	@Before
+	public void setUp() {
+		entityManager = new EntityManagerComponent();
+		entityManager.init();
+
+		siteProducer = mock(EntityProducer.class);
+		when(siteProducer.parseEntityReference(anyString(), any(Reference.class))).thenAnswer(new Answer<Boolean>() {
+			public Boolean answer(InvocationOnMock invocation) {
+				String reference = (String) invocation.getArguments()[0];
+				Reference ref = (Reference) invocation.getArguments()[1];
+				if (!reference.startsWith("/site/")) return false;
+				String id = reference.substring("/site/".length());
+				return ref.set("sakai:site", "site", id, null, id);
+			}
+		});
+		entityManager.registerEntityProducer(siteProducer, "/site");
+	}
+
+	@Test
+	public void testParse() {
+		Reference ref = entityManager.newReference("/site/mercury");
+		assertSame(siteProducer, ref.getEntityProducer());
+		assertEquals("sakai:site", ref.getType());
+		assertEquals("mercury", ref.getId());
+		assertEquals("mercury", ref.getContext());
+	}
+
+	@Test
+	public void testParsedOnce() {
+		Reference ref1 = entityManager.newReference("/site/mercury");
+		Reference ref2 = entityManager.newReference("/site/mercury");
+		assertNotSame(ref1, ref2);
+		assertEquals(ref1.getId(), ref2.getId());
+		assertSame(siteProducer, ref2.getEntityProducer());
+		// a copy from the cache has been set like a parsed one
+		assertFalse(ref2.set("other", "other", "other", null, "other"));
+		verify(siteProducer, times(1)).parseEntityReference(anyString(), any(Reference.class));
+	}
+
+	@Test
+	public void testUpdateNotShared() {
+		Reference ref1 = entityManager.newReference("/site/mercury");
+		ref1.updateReference("/site/venus");
+		assertEquals("/site/mercury", entityManager.newReference("/site/mercury").getReference());
+	}
+
+	@Test
+	public void testCacheBounded() {
+		EntityManagerComponent.ParsedCache cache = new EntityManagerComponent.ParsedCache(10);
+		long expires = System.currentTimeMillis() + 60000L;
+		for (int i = 0; i < 100; i++) {
+			cache.put("/site/" + i, new EntityManagerComponent.CachedReference(null, expires));
+			assertTrue(cache.size() <= 10);
+		}
+		assertTrue(cache.containsKey("/site/99"));
+	}
+
+	@Test
+	public void testCacheEvictsExpiredFirst() {
+		EntityManagerComponent.ParsedCache cache = new EntityManagerComponent.ParsedCache(10);
+		long expires = System.currentTimeMillis() + 60000L;
+		for (int i = 0; i < 5; i++) {
+			cache.put("/site/" + i, new EntityManagerComponent.CachedReference(null, expires));
+		}
+		for (int i = 5; i < 11; i++) {
+			cache.put("/site/" + i, new EntityManagerComponent.CachedReference(null, 0L));
+		}
+		// all the expired ones go, which is enough
+		assertEquals(5, cache.size());
+		for (int i = 0; i < 5; i++) {
+			assertTrue(cache.containsKey("/site/" + i));
+		}
+	}
+
+	@Test
+	public void testRejected() {
+		Reference ref = entityManager.newReference("/library/image.png");
+		assertNull(ref.getEntityProducer());
+		assertEquals("", ref.getType());
+	}
+
+	@Test
+	public void testUnknown() {
+		assertNull(entityManager.newReference("/unknown/thing").getEntityProducer());
+		assertNull(entityManager.newReference("/").getEntityProducer());
+		assertNull(entityManager.newReference("site").getEntityProducer());
+	}
+}
@@ -21,6 +21,10 @@
 
 package org.sakaiproject.util.impl;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.regex.Pattern;
 
 import org.junit.After;
@@ -1137,5 +1141,53 @@ public class FormattedTextTest {
         Assert.assertEquals(result, expectedAnchor);
     }
 
+    @Test
+    public void testProcessFormattedTextBatch() {
+        String anchor = "<a href=\"http://sakaiproject.org/\">sakaiproject</a>";
+        String script = "<b>bold</b><script>alert('XSS');</script>";
+        List<String> texts = Arrays.asList(anchor, script, null, "", anchor);
+
+        StringBuilder expectedErrors = new StringBuilder();
+        List<String> expected = new ArrayList<String>();
+        for (String text : texts) {
+            expected.add(formattedText.processFormattedText(text, expectedErrors, Level.DEFAULT));
+        }
+
+        // the second time round the scans come from the cache
+        StringBuilder errorMessages = new StringBuilder();
+        Assert.assertEquals(expected, formattedText.processFormattedText(texts, errorMessages, Level.DEFAULT));
+        Assert.assertEquals(expectedErrors.toString(), errorMessages.toString());
+        Assert.assertTrue(errorMessages.length() > 0);
+        Assert.assertFalse(expected.get(1).contains("<script"));
+    }
+
+    @Test
+    public void testScanCacheBoundedByChars() {
+        FormattedTextImpl.ScanCache cache = new FormattedTextImpl.ScanCache(1000, 1000);
+        String html = new String(new char[100]).replace('\0', 'x');
+        for (int i = 0; i < 50; i++) {
+            cache.put("key" + i, new FormattedTextImpl.CleanedHtml(html, Collections.<String>emptyList()));
+            Assert.assertTrue(cache.chars() <= 1000);
+        }
+        Assert.assertEquals(cache.size() * 100L, cache.chars());
+        Assert.assertNotNull(cache.get("key49"));
+    }
+
+    @Test
+    public void testScanCacheBoundedByEntries() {
+        FormattedTextImpl.ScanCache cache = new FormattedTextImpl.ScanCache(10, Long.MAX_VALUE);
+        for (int i = 0; i < 50; i++) {
+            cache.put("key" + i, new FormattedTextImpl.CleanedHtml("<b>" + i + "</b>", Arrays.asList("error")));
+            Assert.assertTrue(cache.size() <= 10);
+        }
+        // replacing a result only counts the new one
+        cache.put("key49", new FormattedTextImpl.CleanedHtml("x", Collections.<String>emptyList()));
+        long chars = 0;
+        for (int i = 0; i < 50; i++) {
+            FormattedTextImpl.CleanedHtml cleaned = cache.get("key" + i);
+            chars += (cleaned == null) ? 0 : cleaned.chars;
+        }
+        Assert.assertEquals(chars, cache.chars());
+    }
 
 }
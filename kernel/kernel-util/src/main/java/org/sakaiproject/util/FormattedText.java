@@ -28,6 +28,7 @@ import org.sakaiproject.util.api.FormattedText.Level;
 import org.sakaiproject.util.api.MockFormattedText;
 import org.w3c.dom.Element;
 import java.text.NumberFormat;
+import java.util.List;
 
 /**
  * COVER
@@ -102,6 +103,13 @@ public class FormattedText {
                 checkForEvilTags, replaceWhitespaceTags, useLegacySakaiCleaner);
     }
 
+    /**
+     * @see org.sakaiproject.util.api.FormattedText#processFormattedText(List, StringBuilder, Level)
+     */
+    public static List<String> processFormattedText(List<String> strsFromBrowser, StringBuilder errorMessages, Level level) {
+        return getFormattedText().processFormattedText(strsFromBrowser, errorMessages, level);
+    }
+
     public static String escapeHtmlFormattedText(String value) {
         return getFormattedText().escapeHtmlFormattedText(value);
     }
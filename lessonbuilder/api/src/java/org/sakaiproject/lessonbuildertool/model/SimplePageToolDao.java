@@ -206,6 +206,9 @@ public interface SimplePageToolDao {
 	 * There should only be one log entry for each combination.
 	 */
 	public SimplePageLogEntry getLogEntry(String userId, long itemId, Long studentPageId);
+
+    // the log entries of the items that aren't for a student page, all in one query
+	public List<SimplePageLogEntry> getLogEntries(String userId, Collection<Long> itemIds);
 	
     // includes the dummy entries for preauthoized pages, but that's OK
 	public boolean isPageVisited(long pageId, String userId, String owner);
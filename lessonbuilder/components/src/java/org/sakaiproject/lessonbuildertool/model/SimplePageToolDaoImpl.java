@@ -941,6 +941,19 @@ public class SimplePageToolDaoImpl extends HibernateDaoSupport implements Simple
 		}
 	}
 	
+	public List<SimplePageLogEntry> getLogEntries(String userId, Collection<Long> itemIds) {
+		List<SimplePageLogEntry> entries = new ArrayList<SimplePageLogEntry>();
+		List<Long> ids = new ArrayList<Long>(itemIds);
+		// Oracle won't take more than 1000 values in an in clause
+		for (int i = 0; i < ids.size(); i += 1000) {
+			DetachedCriteria d = DetachedCriteria.forClass(SimplePageLogEntry.class).add(Restrictions.eq("userId", userId))
+				.add(Restrictions.in("itemId", ids.subList(i, Math.min(i + 1000, ids.size()))))
+				.add(Restrictions.isNull("studentPageId"));
+			entries.addAll((List<SimplePageLogEntry>) getHibernateTemplate().findByCriteria(d));
+		}
+		return entries;
+	}
+
 	// owner not currently used. would need group as well
         public boolean isPageVisited(long pageId, String userId, String owner) {
 	    // if this is a student page, it's most likely the top level, so do that query first
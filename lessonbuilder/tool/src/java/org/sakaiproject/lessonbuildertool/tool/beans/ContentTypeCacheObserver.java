@@ -0,0 +1,53 @@
+package org.sakaiproject.lessonbuildertool.tool.beans;
+
+import java.util.Observable;
+import java.util.Observer;
+
+import org.sakaiproject.content.api.ContentHostingService;
+import org.sakaiproject.event.api.Event;
+import org.sakaiproject.event.api.EventTrackingService;
+import org.sakaiproject.memory.api.Cache;
+import org.sakaiproject.memory.api.MemoryService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+// Resources can be revised outside Lessons and on other nodes, so drop their content type
+// from SimplePageBean's cache when we see the event. Registered for the life of the webapp,
+// so a redeploy doesn't leave the old observer behind.
+public class ContentTypeCacheObserver implements Observer {
+
+	private static Logger log = LoggerFactory.getLogger(ContentTypeCacheObserver.class);
+
+	private MemoryService memoryService;
+	private EventTrackingService eventTrackingService;
+	private Cache contentTypeCache;
+
+	public void setMemoryService(MemoryService memoryService) {
+		this.memoryService = memoryService;
+	}
+
+	public void setEventTrackingService(EventTrackingService eventTrackingService) {
+		this.eventTrackingService = eventTrackingService;
+	}
+
+	public void init() {
+		contentTypeCache = memoryService.getCache(SimplePageBean.CONTENT_TYPE_CACHE);
+		eventTrackingService.addObserver(this);
+		log.info("init()");
+	}
+
+	public void destroy() {
+		eventTrackingService.deleteObserver(this);
+		log.info("destroy()");
+	}
+
+	public void update(Observable o, Object arg) {
+		if (!(arg instanceof Event))
+			return;
+		Event event = (Event) arg;
+		String resource = event.getResource();
+		if ((ContentHostingService.EVENT_RESOURCE_WRITE.equals(event.getEvent()) || ContentHostingService.EVENT_RESOURCE_REMOVE.equals(event.getEvent())) &&
+		    resource != null && resource.startsWith(ContentHostingService.REFERENCE_ROOT))
+			contentTypeCache.remove(resource.substring(ContentHostingService.REFERENCE_ROOT.length()));
+	}
+}
@@ -435,6 +435,10 @@ public class SimplePageBean {
 	static MemoryService memoryService = (MemoryService)org.sakaiproject.component.cover.ComponentManager.get("org.sakaiproject.memory.api.MemoryService");
 	private static Cache groupCache = memoryService.newCache("org.sakaiproject.lessonbuildertool.tool.beans.SimplePageBean.groupCache");  // itemId => grouplist
 	private static Cache resourceCache = memoryService.newCache("org.sakaiproject.lessonbuildertool.tool.beans.SimplePageBean.resourceCache");
+	// sakaiId => content type of the resource. The same for every user, and looked up several times per item on each page view.
+	// ContentTypeCacheObserver drops entries when resources are revised outside Lessons
+	static final String CONTENT_TYPE_CACHE = "org.sakaiproject.lessonbuildertool.tool.beans.SimplePageBean.contentTypeCache";
+	private static Cache contentTypeCache = memoryService.newCache(CONTENT_TYPE_CACHE);
 	protected static final int DEFAULT_EXPIRATION = 10 * 60;
 
 	public static class PathEntry {
@@ -1040,6 +1044,13 @@ public class SimplePageBean {
 			setErrMessage(messageLocator.getMessage("simplepage.savefailed") + err);
 			return false;
 		}
+
+		// getLogEntry remembers entries that weren't there, so keep it up to date
+		if (i instanceof SimplePageLogEntry) {
+			SimplePageLogEntry entry = (SimplePageLogEntry) i;
+			Long studentPageId = entry.getStudentPageId();
+			logCache.put(entry.getItemId() + "-" + (studentPageId == null ? -1L : studentPageId), entry);
+		}
 		
 		return true;
 	}
@@ -3632,10 +3643,18 @@ public class SimplePageBean {
 		// 2 is the generic "use old display" so treat it as null
 		// only do this for type 2, since that's where there's an actual file
 		if (mmDisplayType == null || "".equals(mmDisplayType) || "2".equals(mmDisplayType)) {
-		    try {
-			ContentResource res = contentHostingService.getResource(item.getSakaiId());
-			mimeType = res.getContentType();
-		    } catch (Exception ignore) {
+		    mimeType = (String) contentTypeCache.get(item.getSakaiId());
+		    // the type is shared, but this user still has to be allowed to see the resource
+		    if (mimeType != null && !contentHostingService.allowGetResource(item.getSakaiId()))
+			mimeType = null;
+		    else if (mimeType == null) {
+			try {
+			    ContentResource res = contentHostingService.getResource(item.getSakaiId());
+			    mimeType = res.getContentType();
+			    // cache "" for no type, so it isn't looked up again
+			    contentTypeCache.put(item.getSakaiId(), (mimeType == null ? "" : mimeType));
+			} catch (Exception ignore) {
+			}
 		    }
 		}
 	    }
@@ -4955,7 +4974,8 @@ public class SimplePageBean {
 		String lookup = itemId + "-" + studentPageId;
 		SimplePageLogEntry entry = logCache.get(lookup);
 
-		if (entry != null)
+		// null is cached too, for items the user hasn't seen
+		if (entry != null || logCache.containsKey(lookup))
 		    return entry;
 		String userId = getCurrentUserId();
 		if (userId == null)
@@ -4968,6 +4988,27 @@ public class SimplePageBean {
 		return entry;
 	}
 
+	// load the log entries for all the items, so checking prerequisites and completion
+	// on a page doesn't need a query per item
+	public void cacheLogEntries(List<SimplePageItem> items) {
+		List<Long> itemIds = new ArrayList<Long>();
+		for (SimplePageItem item : items) {
+		    String lookup = item.getId() + "--1";
+		    if (!logCache.containsKey(lookup)) {
+			itemIds.add(item.getId());
+			logCache.put(lookup, null);
+		    }
+		}
+		if (itemIds.isEmpty())
+		    return;
+
+		String userId = getCurrentUserId();
+		if (userId == null)
+		    userId = ".anon";
+		for (SimplePageLogEntry entry : simplePageToolDao.getLogEntries(userId, itemIds))
+		    logCache.put(entry.getItemId() + "--1", entry);
+	}
+
 	public boolean hasLogEntry(long itemId) {
 		return (getLogEntry(itemId) != null);
 	}
@@ -5121,15 +5162,13 @@ public class SimplePageBean {
 		
     private boolean arePageItemsComplete(long pageId) {
 
-	int sequence = 1;
-	SimplePageItem i = simplePageToolDao.findNextItemOnPage(pageId, sequence);
+	// one query for the items and one for their log entries, rather than a couple per item
+	List<SimplePageItem> items = getItemsOnPage(pageId);
+	cacheLogEntries(items);
 
-	while (i != null) {
+	for (SimplePageItem i : items) {
 	    if (i.isRequired() && !isItemComplete(i) && isItemVisible(i)) 
 		return false; 
-
-	    sequence++; 
-	    i = simplePageToolDao.findNextItemOnPage(pageId, sequence); 
 	}
 
 	return true;
@@ -5442,6 +5481,7 @@ public class SimplePageBean {
 		
 		
 		List<SimplePageItem> items = getItemsOnPage(Long.valueOf(findItem(itemId).getSakaiId()));
+		cacheLogEntries(items);
 
 		for (SimplePageItem item : items) {
 			if (!isItemComplete(item) && isItemVisible(item)) {
@@ -5576,6 +5616,7 @@ public class SimplePageBean {
 	public boolean isItemAvailable(SimplePageItem item, long pageId) {
 		if (item.isPrerequisite()) {
 			List<SimplePageItem> items = getItemsOnPage(pageId);
+			cacheLogEntries(items);
 
 			for (SimplePageItem i : items) {
 			    // log.info(i.getSequence() + " " + i.isRequired() + " " + isItemVisible(i) + " " + isItemComplete(i));
@@ -5594,6 +5635,7 @@ public class SimplePageBean {
     // weird variant that works even if current item doesn't have prereq.
 	public boolean wouldItemBeAvailable(SimplePageItem item, long pageId) {
 		List<SimplePageItem> items = getItemsOnPage(pageId);
+		cacheLogEntries(items);
 
 		for (SimplePageItem i : items) {
 			if (i.getSequence() >= item.getSequence()) {
@@ -6290,6 +6332,8 @@ public class SimplePageBean {
 						    res.setContentType(mimeType);
 						    contentHostingService.commitResource(res,  NotificationService.NOTI_NONE);
 						}
+						// a new version may have a different type
+						contentTypeCache.remove(res.getId());
 						// note that we don't save the mime type in the lessons item anymore
 						// display code will use the item type from resources
 						// 	there's a bug in the kernel that can cause
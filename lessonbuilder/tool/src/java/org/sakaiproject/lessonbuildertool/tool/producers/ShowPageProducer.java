@@ -1091,6 +1091,8 @@ public class ShowPageProducer implements ViewComponentProducer, DefaultView, Nav
 
 		// items to show
 		List<SimplePageItem> itemList = (List<SimplePageItem>) simplePageBean.getItemsOnPage(currentPage.getPageId());
+		// the user's log entries for everything on the page, used to check completion and prerequisites
+		simplePageBean.cacheLogEntries(itemList);
 		
 		// Move all items with sequence <= 0 to the end of the list.
 		// Count is necessary to guarantee we don't infinite loop over a
@@ -187,6 +187,39 @@ public interface MessageForumsMessageManager {
      * or DELETED).    
      */
     public List<Object[]> findReadMessageCountsForMainPage(final Collection<Long> topicIds);
+
+    /**
+     * The same as {@link #findViewableMessageCountByTopicIdByUserId(Long, String)} for many topics at once.
+     * 
+     * @param topicIds The list of topic ids for which we want to gather the message counts.
+     * @param userId The user the messages must be viewable by
+     * 
+     * @return A list of arrays where index 0, a Long, is the topicId and index 1, a Long, is the number
+     * of messages under that topic that have been approved or were authored by the user. Topics with
+     * no such messages are left out.
+     */
+    public List<Object[]> findViewableMessageCountsForMainPage(final Collection<Long> topicIds, final String userId);
+
+    /**
+     * The same as {@link #findReadViewableMessageCountByTopicIdByUserId(Long, String)} for many topics at once.
+     * 
+     * @param topicIds The list of topic ids for which we want to gather the message counts.
+     * @param userId The user the messages must be viewable by and read by
+     * 
+     * @return A list of arrays where index 0, a Long, is the topicId and index 1, a Long, is the number
+     * of messages under that topic the user has read that have been approved or were authored by the user.
+     * Topics with no such messages are left out.
+     */
+    public List<Object[]> findReadViewableMessageCountsForMainPage(final Collection<Long> topicIds, final String userId);
+
+    /**
+     * Loads the counts needed to work out the unread messages of every user in the topics, in a fixed number of
+     * queries however many users and topics there are.
+     * 
+     * @param topicIds The topics to count the messages of
+     * @return the counts, with nothing for topics that are not found
+     */
+    public TopicUnreadCounts findTopicUnreadCounts(final Collection<Long> topicIds);
     
     public List findMessagesByTopicId(Long topicId);
   
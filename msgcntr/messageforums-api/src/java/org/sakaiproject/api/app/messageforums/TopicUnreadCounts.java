@@ -0,0 +1,99 @@
+/**********************************************************************************
+ * $URL$
+ * $Id$
+ ***********************************************************************************
+ *
+ * Copyright (c) 2003, 2004, 2005, 2006, 2007, 2008, 2009 The Sakai Foundation
+ *
+ * Licensed under the Educational Community License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.opensource.org/licenses/ECL-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ **********************************************************************************/
+package org.sakaiproject.api.app.messageforums;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The message counts of a set of topics, loaded for all users at once, so the unread counts of every user in a site
+ * can be worked out without a count query per user and topic. Draft and deleted messages are never counted.
+ *
+ * @see MessageForumsMessageManager#findTopicUnreadCounts(java.util.Collection)
+ */
+public class TopicUnreadCounts {
+
+	private final Map<Long, Integer> messages = new HashMap<Long, Integer>();
+	private final Map<Long, Integer> approvedMessages = new HashMap<Long, Integer>();
+	private final Map<Long, Map<String, Integer>> notApprovedByAuthor = new HashMap<Long, Map<String, Integer>>();
+	private final Map<Long, Map<String, Integer>> readByUser = new HashMap<Long, Map<String, Integer>>();
+	private final Map<Long, Map<String, Integer>> readViewableByUser = new HashMap<Long, Map<String, Integer>>();
+
+	public void setMessageCount(Long topicId, int count) {
+		messages.put(topicId, count);
+	}
+
+	public void setApprovedMessageCount(Long topicId, int count) {
+		approvedMessages.put(topicId, count);
+	}
+
+	/**
+	 * @param count the number of messages the user wrote that are pending or were denied
+	 */
+	public void setNotApprovedMessageCount(Long topicId, String userId, int count) {
+		put(notApprovedByAuthor, topicId, userId, count);
+	}
+
+	public void setReadMessageCount(Long topicId, String userId, int count) {
+		put(readByUser, topicId, userId, count);
+	}
+
+	/**
+	 * @param count the number of messages the user read that are approved or that the user wrote
+	 */
+	public void setReadViewableMessageCount(Long topicId, String userId, int count) {
+		put(readViewableByUser, topicId, userId, count);
+	}
+
+	/**
+	 * The same as {@link MessageForumsMessageManager#findUnreadMessageCountByTopicIdByUserId(Long, String)}
+	 */
+	public int getUnreadMessageCount(Long topicId, String userId) {
+		return get(messages, topicId) - get(readByUser, topicId, userId);
+	}
+
+	/**
+	 * The same as {@link MessageForumsMessageManager#findUnreadViewableMessageCountByTopicIdByUserId(Long, String)}
+	 */
+	public int getUnreadViewableMessageCount(Long topicId, String userId) {
+		return get(approvedMessages, topicId) + get(notApprovedByAuthor, topicId, userId) - get(readViewableByUser, topicId, userId);
+	}
+
+	private static void put(Map<Long, Map<String, Integer>> counts, Long topicId, String userId, int count) {
+		Map<String, Integer> users = counts.get(topicId);
+		if (users == null) {
+			users = new HashMap<String, Integer>();
+			counts.put(topicId, users);
+		}
+		users.put(userId, count);
+	}
+
+	private static int get(Map<Long, Integer> counts, Long topicId) {
+		Integer count = counts.get(topicId);
+		return (count == null) ? 0 : count.intValue();
+	}
+
+	private static int get(Map<Long, Map<String, Integer>> counts, Long topicId, String userId) {
+		Map<String, Integer> users = counts.get(topicId);
+		Integer count = (users == null) ? null : users.get(userId);
+		return (count == null) ? 0 : count.intValue();
+	}
+}
@@ -78,6 +78,26 @@ public interface DiscussionForumManager
    * or DELETED).    
    */
   public List<Object[]> getReadMessageCountsForMainPage(Collection<Long> topicIds);
+
+  /**
+   * Counts for moderated topics, the same as {@link #getTotalViewableMessagesWhenMod(Topic)} for many topics at once.
+   * 
+   * @param topicIds The list of topic ids for which we want to gather the message counts.
+   *  
+   * @return A list of arrays where index 0, a Long, is the topicId and index 1, a Long, is the number of
+   * messages under that topic that have been approved or were authored by the current user. Topics with
+   * no such messages are left out.
+   */
+  public List<Object[]> getViewableMessageCountsForMainPage(Collection<Long> topicIds);
+
+  /**
+   * @param topicIds The list of topic ids for which we want to gather the message counts.
+   *  
+   * @return A list of arrays where index 0, a Long, is the topicId and index 1, a Long, is the number of
+   * messages under that topic that the current user has read and that have been approved or were authored
+   * by the current user. Topics with no such messages are left out.
+   */
+  public List<Object[]> getReadViewableMessageCountsForMainPage(Collection<Long> topicIds);
   
   public Topic getTopicByIdWithMessages(final Long topicId);
   
@@ -644,6 +644,7 @@ public class DiscussionForumTool
 	    	 SortedSet<DiscussionForum> tempSortedForums = new TreeSet<DiscussionForum>(new ForumBySortIndexAscAndCreatedDateDesc());
 	    	 Map<Long, DiscussionTopicBean> topicBeans = new HashMap<Long, DiscussionTopicBean>();
 	    	 Set<Long> topicIdsForCounts = new HashSet<Long>();
+	    	 Set<Long> moderatedTopicIdsForCounts = new HashSet<Long>();
 	    	 for (DiscussionForum forum: tempForums) {
 	    		 if ((!forum.getDraft() && forum.getAvailability())
 	    				 || hasOverridingPermissions)
@@ -660,11 +661,12 @@ public class DiscussionForumTool
 	    					 DiscussionTopicBean decoTopic = new DiscussionTopicBean(currTopic, (DiscussionForum)currTopic.getOpenForum(), uiPermissionsManager, forumManager);
 	    					 if (readFullDescription) decoTopic.setReadFullDesciption(true);
 
-	    					 // set the message count for moderated topics, otherwise it will be set later
+	    					 // the message counts are set later, for moderated topics only the messages the user can see are counted
 	    					 if(uiPermissionsManager.isRead(decoTopic.getTopic(), (DiscussionForum)currTopic.getOpenForum(), userId)){
 	    						 if (currTopic.getModerated() && !uiPermissionsManager.isModeratePostings(currTopic, (DiscussionForum)currTopic.getOpenForum())) {
-	    							 decoTopic.setTotalNoMessages(forumManager.getTotalViewableMessagesWhenMod(currTopic));
-	    							 decoTopic.setUnreadNoMessages(forumManager.getNumUnreadViewableMessagesWhenMod(currTopic));
+	    							 decoTopic.setTotalNoMessages(0);
+	    							 decoTopic.setUnreadNoMessages(0);
+	    							 moderatedTopicIdsForCounts.add(currTopic.getId());
 	    						 } else {
 	    							 topicIdsForCounts.add(currTopic.getId());
 	    						 }
@@ -702,6 +704,20 @@ public class DiscussionForumTool
 	    		 decoTopic.setUnreadNoMessages(decoTopic.getTotalNoMessages() - ((Long) counts[1]).intValue());
 	    	 }
 
+	    	 // the same for the moderated topics, counting only the approved messages and the user's own messages.
+	    	 // Topics missing from the results have no such messages.
+	    	 topicMessageCounts = forumManager.getViewableMessageCountsForMainPage(moderatedTopicIdsForCounts);
+	    	 for (Object[] counts: topicMessageCounts) {
+	    		 DiscussionTopicBean decoTopic = topicBeans.get(counts[0]);
+	    		 decoTopic.setTotalNoMessages(((Long) counts[1]).intValue());
+	    		 decoTopic.setUnreadNoMessages(((Long) counts[1]).intValue());
+	    	 }
+	    	 topicMessageCounts = forumManager.getReadViewableMessageCountsForMainPage(moderatedTopicIdsForCounts);
+	    	 for (Object[] counts: topicMessageCounts) {
+	    		 DiscussionTopicBean decoTopic = topicBeans.get(counts[0]);
+	    		 decoTopic.setUnreadNoMessages(decoTopic.getTotalNoMessages() - ((Long) counts[1]).intValue());
+	    	 }
+
 	    	 // get the assignments for use later
 	    	 try {
 	    		 assignments = new ArrayList<SelectItem>();
@@ -3272,6 +3288,8 @@ public class DiscussionForumTool
 		Map<String, String> userIdAnonIdMap = Collections.emptyMap();
 
 		  List msgIdList = new ArrayList();
+		  // the read status is loaded for deleted messages too, so none of them are looked up one at a time
+		  List<Long> readStatusIdList = new ArrayList<Long>();
     	if (temp_messages == null || temp_messages.size() < 1)
     	{
     		decoTopic.setTotalNoMessages(0);
@@ -3283,10 +3301,26 @@ public class DiscussionForumTool
     		// We're in an anonymous context and there are messages. Get the anonIDs for all the authors in this topic
     		userIdAnonIdMap = getUserIdAnonIdMapForMessages(temp_messages);
     	}
+    	// the replies to each message, so the thread view does not query the children of every message
+    	Map<Long, List<Message>> childIndex = new HashMap<Long, List<Message>>();
     	for (Iterator msgIter = temp_messages.iterator(); msgIter.hasNext();) {
     		Message msg = (Message) msgIter.next();
-    		if(msg != null && !msg.getDraft().booleanValue() && !msg.getDeleted()) {
-    			msgIdList.add(msg.getId());
+    		if (msg == null) {
+    			continue;
+    		}
+    		if(!msg.getDraft().booleanValue()) {
+    			readStatusIdList.add(msg.getId());
+    			if (!msg.getDeleted()) {
+    				msgIdList.add(msg.getId());
+    			}
+    		}
+    		if (msg.getInReplyTo() != null) {
+    			List<Message> children = childIndex.get(msg.getInReplyTo().getId());
+    			if (children == null) {
+    				children = new ArrayList<Message>();
+    				childIndex.put(msg.getInReplyTo().getId(), children);
+    			}
+    			children.add(msg);
     		}
     	}
 
@@ -3294,10 +3328,10 @@ public class DiscussionForumTool
     	Map messageReadStatusMap=null;
     	if(getUserId()!= null){
 				  if (LOG.isDebugEnabled()) LOG.debug("getting unread counts for " + getUserId());
-    		messageReadStatusMap = forumManager.getReadStatusForMessagesWithId(msgIdList, getUserId());
+    		messageReadStatusMap = forumManager.getReadStatusForMessagesWithId(readStatusIdList, getUserId());
     	}else if(getUserId() == null && this.forumManager.getAnonRole()==true){
 				  if (LOG.isDebugEnabled()) LOG.debug("getting unread counts for anon user");
-    		messageReadStatusMap = forumManager.getReadStatusForMessagesWithId(msgIdList, ".anon");
+    		messageReadStatusMap = forumManager.getReadStatusForMessagesWithId(readStatusIdList, ".anon");
     	}
 
     	// set # read/unread msgs on topic level
@@ -3332,6 +3366,9 @@ public class DiscussionForumTool
     	boolean decoTopicGetIsDeleteOwn = decoTopic.getIsDeleteOwn();
     	boolean decoTopicGetIsReviseAny = decoTopic.getIsReviseAny();
     	boolean decoTopicGetIsReviseOwn = decoTopic.getIsReviseOwn();
+    	// ranks and post counts are looked up once per author rather than once per message
+    	Map<String, Rank> authorRanks = new HashMap<String, Rank>();
+    	Map<String, Integer> authorPostCounts = new HashMap<String, Integer>();
     	while (iter.hasNext())
     	{
     		Message message = (Message) iter.next();
@@ -3339,6 +3376,7 @@ public class DiscussionForumTool
     		{
     			DiscussionMessageBean decoMsg = new DiscussionMessageBean(message,
     					messageManager);
+    			decoMsg.setChildIndex(childIndex);
     			// Set anonymous attributes on the bean (reduces queries later; improves performance)
     			decoMsg.setUseAnonymousId(useAnonymousId);
     			if (useAnonymousId)
@@ -3372,9 +3410,16 @@ public class DiscussionForumTool
     			}
 				if (LOG.isDebugEnabled()) LOG.debug("SETRANK calling getSelectedMessage, we can set Rank here");
 				String userEid = decoMsg.getMessage().getCreatedBy();
-				Rank thisrank = this.getAuthorRank(userEid);
+				Rank thisrank = authorRanks.get(userEid);
+				if (thisrank == null && !authorRanks.containsKey(userEid)) {
+					thisrank = getAuthorRank(userEid, authorPostCounts);
+					authorRanks.put(userEid, thisrank);
+				}
 				decoMsg.setAuthorRank(thisrank);
-				decoMsg.setAuthorPostCount(userEid);
+				// the post count is only shown with a rank
+				if (thisrank != null) {
+					decoMsg.setAuthorPostCount(getAuthorPostCount(userEid, authorPostCounts));
+				}
     		}
     	}
     }
@@ -9789,19 +9834,35 @@ public class DiscussionForumTool
 	private Rank authorRank;
 
 	public Rank getAuthorRank(String userEid) {
+		return getAuthorRank(userEid, new HashMap<String, Integer>());
+	}
+
+	/**
+	 * @param authorPostCounts the post counts already looked up, keyed by author
+	 */
+	private Rank getAuthorRank(String userEid, Map<String, Integer> authorPostCounts) {
 		// if both types of ranks exist for the same user, use the "Special rank assigned to selected site member(s)" type first.
 		Rank currRank = null;
 		if (isRanksEnabled())
 		{
 			currRank = findRankByUser(userEid);
 			if (currRank == null) {
-				int authorCount = messageManager.findAuthoredMessageCountForStudent(userEid);
+				int authorCount = getAuthorPostCount(userEid, authorPostCounts);
 				currRank = findRankByMinPost(authorCount);
 			}
 		}
 		return currRank;
 	}
 
+	private int getAuthorPostCount(String userEid, Map<String, Integer> authorPostCounts) {
+		Integer authorCount = authorPostCounts.get(userEid);
+		if (authorCount == null) {
+			authorCount = messageManager.findAuthoredMessageCountForStudent(userEid);
+			authorPostCounts.put(userEid, authorCount);
+		}
+		return authorCount;
+	}
+
 	private Rank findRankByMinPost(int authorCount) {
 		Rank returnRank = null;
 		List sortedranks = rankManager.findRanksByContextIdOrderByMinPostDesc(getSiteId());
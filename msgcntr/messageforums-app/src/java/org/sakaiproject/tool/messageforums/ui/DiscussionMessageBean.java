@@ -23,6 +23,7 @@ package org.sakaiproject.tool.messageforums.ui;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -74,6 +75,8 @@ public class DiscussionMessageBean
   private Rank authorRank = null;
   private Boolean useAnonymousId = null;
   private String anonId;
+  // replies keyed by the message they reply to, when the whole topic has been loaded
+  private Map<Long, List<Message>> childIndex;
 
   public Rank getAuthorRank() {
     return authorRank;
@@ -83,6 +86,10 @@ public class DiscussionMessageBean
     authorRank = aRank;
   }
 
+  public void setAuthorPostCount(int authorPostCount) {
+    this.authorPostCount = authorPostCount;
+  }
+
   public void setAuthorPostCount(String userEid) {
     // This is invoked a lot, but it's only relevant when a student has a rank.
     if (authorRank != null)
@@ -104,6 +111,23 @@ public class DiscussionMessageBean
     this.messageManager = messageManager; 
   }
 
+  /**
+   * Sets the replies of the topic's messages, keyed by the id of the message they reply to, so the thread
+   * structure is looked up in memory rather than with a query per message
+   */
+  public void setChildIndex(Map<Long, List<Message>> childIndex) {
+    this.childIndex = childIndex;
+  }
+
+  private List getFirstLevelChildMsgs(Long messageId)
+  {
+    if (childIndex != null)
+    {
+      return childIndex.get(messageId);
+    }
+    return messageManager.getFirstLevelChildMsgs(messageId);
+  }
+
   public void setMoved(boolean b) {
     moved = b;
   }
@@ -266,7 +290,7 @@ public class DiscussionMessageBean
 
   public boolean getHasChild()
   {
-  	List childList = messageManager.getFirstLevelChildMsgs(this.getMessage().getId());
+  	List childList = getFirstLevelChildMsgs(this.getMessage().getId());
   	if((childList != null) && (childList.size()>0))
   		hasChild = true;
   	else
@@ -277,7 +301,7 @@ public class DiscussionMessageBean
 
   public boolean getHasNotDeletedDescendant(final Long messageId)
   {
-      List childList = messageManager.getFirstLevelChildMsgs(messageId==null?this.getMessage().getId():messageId);
+      List childList = getFirstLevelChildMsgs(messageId==null?this.getMessage().getId():messageId);
       if((childList != null) && (childList.size() > 0))
       {
           hasNotDeletedChild = false;
@@ -45,6 +45,7 @@ import org.sakaiproject.api.app.messageforums.MessageMoveHistory;
 import org.sakaiproject.api.app.messageforums.PrivateMessage;
 import org.sakaiproject.api.app.messageforums.SynopticMsgcntrManager;
 import org.sakaiproject.api.app.messageforums.Topic;
+import org.sakaiproject.api.app.messageforums.TopicUnreadCounts;
 import org.sakaiproject.api.app.messageforums.UnreadStatus;
 import org.sakaiproject.api.app.messageforums.UserStatistics;
 import org.sakaiproject.api.app.messageforums.cover.SynopticMsgcntrManagerCover;
@@ -81,6 +82,12 @@ public class MessageForumsMessageManagerImpl extends HibernateDaoSupport impleme
     private static final String QUERY_COUNT_BY_AUTHORED = "findAuhtoredMessageCountByTopicId";
     private static final String QUERY_MESSAGE_COUNTS_FOR_MAIN_PAGE = "findMessageCountsForMainPage";
     private static final String QUERY_READ_MESSAGE_COUNTS_FOR_MAIN_PAGE = "findReadMessageCountsForMainPage";
+    private static final String QUERY_VIEWABLE_MESSAGE_COUNTS_FOR_MAIN_PAGE = "findViewableMessageCountsForMainPage";
+    private static final String QUERY_READ_VIEWABLE_MESSAGE_COUNTS_FOR_MAIN_PAGE = "findReadViewableMessageCountsForMainPage";
+    private static final String QUERY_APPROVED_MESSAGE_COUNTS_BY_TOPIC_IDS = "findApprovedMessageCountsByTopicIds";
+    private static final String QUERY_NOT_APPROVED_MESSAGE_COUNTS_BY_TOPIC_IDS = "findNotApprovedMessageCountsForAllAuthorsByTopicIds";
+    private static final String QUERY_READ_MESSAGE_COUNTS_BY_TOPIC_IDS = "findReadMessageCountsForAllUsersByTopicIds";
+    private static final String QUERY_READ_VIEWABLE_MESSAGE_COUNTS_BY_TOPIC_IDS = "findReadViewableMessageCountsForAllUsersByTopicIds";
     private static final String QUERY_BY_TOPIC_ID = "findMessagesByTopicId";
     private static final String QUERY_COUNT_VIEWABLE_BY_TOPIC_ID = "findViewableMessageCountByTopicIdByUserId";
     private static final String QUERY_COUNT_READ_VIEWABLE_BY_TOPIC_ID = "findReadViewableMessageCountByTopicIdByUserId";
@@ -940,6 +947,90 @@ public class MessageForumsMessageManagerImpl extends HibernateDaoSupport impleme
     	return getHibernateTemplate().execute(hcb);
     }
 
+    /*
+     * (non-Javadoc)
+     * @see org.sakaiproject.api.app.messageforums.MessageForumsMessageManager#findViewableMessageCountsForMainPage(java.util.Collection, java.lang.String)
+     */
+    public List<Object[]> findViewableMessageCountsForMainPage(final Collection<Long> topicIds, final String userId) {
+        if (topicIds == null || userId == null) {
+            LOG.error("findViewableMessageCountsForMainPage failed with topicIds: " + topicIds + " and userId: " + userId);
+            throw new IllegalArgumentException("Null Argument");
+        }
+        return findMessageCountsForTopics(QUERY_VIEWABLE_MESSAGE_COUNTS_FOR_MAIN_PAGE, topicIds, userId);
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see org.sakaiproject.api.app.messageforums.MessageForumsMessageManager#findReadViewableMessageCountsForMainPage(java.util.Collection, java.lang.String)
+     */
+    public List<Object[]> findReadViewableMessageCountsForMainPage(final Collection<Long> topicIds, final String userId) {
+        if (topicIds == null || userId == null) {
+            LOG.error("findReadViewableMessageCountsForMainPage failed with topicIds: " + topicIds + " and userId: " + userId);
+            throw new IllegalArgumentException("Null Argument");
+        }
+        return findMessageCountsForTopics(QUERY_READ_VIEWABLE_MESSAGE_COUNTS_FOR_MAIN_PAGE, topicIds, userId);
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see org.sakaiproject.api.app.messageforums.MessageForumsMessageManager#findTopicUnreadCounts(java.util.Collection)
+     */
+    public TopicUnreadCounts findTopicUnreadCounts(final Collection<Long> topicIds) {
+        if (topicIds == null) {
+            LOG.error("findTopicUnreadCounts failed with topicIds: null");
+            throw new IllegalArgumentException("Null Argument");
+        }
+
+        TopicUnreadCounts counts = new TopicUnreadCounts();
+        if (topicIds.isEmpty()) return counts;
+
+        LOG.debug("findTopicUnreadCounts executing with topicIds: " + topicIds);
+
+        for (Object[] row : findMessageCountsForMainPage(topicIds)) {
+            counts.setMessageCount((Long) row[0], ((Number) row[1]).intValue());
+        }
+        for (Object[] row : findMessageCountsForTopics(QUERY_APPROVED_MESSAGE_COUNTS_BY_TOPIC_IDS, topicIds, null)) {
+            counts.setApprovedMessageCount((Long) row[0], ((Number) row[1]).intValue());
+        }
+        for (Object[] row : findMessageCountsForTopics(QUERY_NOT_APPROVED_MESSAGE_COUNTS_BY_TOPIC_IDS, topicIds, null)) {
+            counts.setNotApprovedMessageCount((Long) row[0], (String) row[1], ((Number) row[2]).intValue());
+        }
+        for (Object[] row : findMessageCountsForTopics(QUERY_READ_MESSAGE_COUNTS_BY_TOPIC_IDS, topicIds, null)) {
+            counts.setReadMessageCount((Long) row[0], (String) row[1], ((Number) row[2]).intValue());
+        }
+        for (Object[] row : findMessageCountsForTopics(QUERY_READ_VIEWABLE_MESSAGE_COUNTS_BY_TOPIC_IDS, topicIds, null)) {
+            counts.setReadViewableMessageCount((Long) row[0], (String) row[1], ((Number) row[2]).intValue());
+        }
+        return counts;
+    }
+
+    /**
+     * Runs a query grouping counts by topic for the topics, in chunks so the in clause stays under the Oracle limit
+     * 
+     * @param userId set as the userId parameter of the query, null if it has none
+     */
+    private List<Object[]> findMessageCountsForTopics(final String queryName, final Collection<Long> topicIds, final String userId) {
+        if (topicIds.isEmpty()) return new ArrayList<>();
+
+        LOG.debug("findMessageCountsForTopics executing " + queryName + " with topicIds: " + topicIds + " and userId: " + userId);
+
+        List<Long> allTopics = new ArrayList<>(topicIds);
+        HibernateCallback<List<Object[]>> hcb = session -> {
+            List<Object[]> retrievedCounts = new ArrayList<>(allTopics.size());
+            for (int start = 0; start < allTopics.size(); start += MAX_IN_CLAUSE_SIZE) {
+                Query q = session.getNamedQuery(queryName);
+                q.setParameterList("topicIds", allTopics.subList(start, Math.min(start + MAX_IN_CLAUSE_SIZE, allTopics.size())));
+                if (userId != null) {
+                    q.setParameter("userId", userId);
+                }
+                retrievedCounts.addAll(q.list());
+            }
+            return retrievedCounts;
+        };
+
+        return getHibernateTemplate().execute(hcb);
+    }
+
 
 
     public List<Object[]> findMessageCountTotal() {
@@ -22,6 +22,7 @@ import org.sakaiproject.api.app.messageforums.MessageForumsMessageManager;
 import org.sakaiproject.api.app.messageforums.MessageForumsTypeManager;
 import org.sakaiproject.api.app.messageforums.SynopticMsgcntrItem;
 import org.sakaiproject.api.app.messageforums.SynopticMsgcntrManager;
+import org.sakaiproject.api.app.messageforums.TopicUnreadCounts;
 import org.sakaiproject.api.app.messageforums.ui.DiscussionForumManager;
 import org.sakaiproject.api.app.messageforums.ui.PrivateMessageManager;
 import org.sakaiproject.api.app.messageforums.ui.UIPermissionsManager;
@@ -683,6 +684,15 @@ public class SynopticMsgcntrManagerImpl extends HibernateDaoSupport implements S
 				//need to check that the area hasn't been disabled:
 				Area area = forumManager.getDiscussionForumArea(siteId);
 				if(area != null){
+					// the counts of all the topics for all users, rather than a count query per user and topic
+					List<Long> topicIds = new ArrayList<Long>();
+					for (DecoratedForumInfo dForum : dfHM.values()) {
+						for (DecoratedTopicsInfo topic : dForum.getTopics()) {
+							topicIds.add(topic.getTopicId());
+						}
+					}
+					TopicUnreadCounts unreadCounts = getMessageManager().findTopicUnreadCounts(topicIds);
+
 					for (Iterator iterator = dfKeySet.iterator(); iterator.hasNext();) {
 						Long dfId = (Long) iterator.next();
 
@@ -716,15 +726,13 @@ public class SynopticMsgcntrManagerImpl extends HibernateDaoSupport implements S
 											if (!isTopicModerated.booleanValue() || (isTopicModerated.booleanValue() && 
 													getUiPermissionsManager().isModeratePostings(topicId, dForum.getIsLocked(), dForum.getIsDraft(), isTopicLocked, isTopicDraft, userId, siteId)))
 											{
-												//TODO: to improve this performance, try using the logic in MessageForumStatisticsBean.getTopicStatistics
-												//essentially, get the number of possible messages for that user and subtract the number read.  See commit for SAK-27810 for more details.
-												dcms.get(userId).setUnreadForumsAmt(dcms.get(userId).getUnreadForumsAmt() + getMessageManager().findUnreadMessageCountByTopicIdByUserId(topicId, userId));
+												dcms.get(userId).setUnreadForumsAmt(dcms.get(userId).getUnreadForumsAmt() + unreadCounts.getUnreadMessageCount(topicId, userId));
 											}
 											else
 											{	
 												// b/c topic is moderated and user does not have mod perm, user may only
 												// see approved msgs or pending/denied msgs authored by user
-												dcms.get(userId).setUnreadForumsAmt(dcms.get(userId).getUnreadForumsAmt() + getMessageManager().findUnreadViewableMessageCountByTopicIdByUserId(topicId, userId));
+												dcms.get(userId).setUnreadForumsAmt(dcms.get(userId).getUnreadForumsAmt() + unreadCounts.getUnreadViewableMessageCount(topicId, userId));
 											}
 										}
 									}
@@ -3,25 +3,41 @@ package org.sakaiproject.component.app.messageforums.jobs;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
-
-import org.quartz.Job;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.quartz.JobBuilder;
+import org.quartz.JobDataMap;
+import org.quartz.JobDetail;
 import org.quartz.JobExecutionContext;
 import org.quartz.JobExecutionException;
+import org.quartz.SchedulerException;
+import org.quartz.StatefulJob;
 import org.sakaiproject.api.app.messageforums.MessageForumsMessageManager;
 import org.sakaiproject.api.app.messageforums.MessageForumsTypeManager;
+import org.sakaiproject.api.app.messageforums.TopicUnreadCounts;
 import org.sakaiproject.api.app.messageforums.cover.SynopticMsgcntrManagerCover;
 import org.sakaiproject.api.app.messageforums.ui.DiscussionForumManager;
 import org.sakaiproject.api.app.messageforums.ui.PrivateMessageManager;
 import org.sakaiproject.api.app.messageforums.ui.UIPermissionsManager;
+import org.sakaiproject.api.app.scheduler.JobBeanWrapper;
+import org.sakaiproject.api.app.scheduler.SchedulerManager;
 import org.sakaiproject.authz.api.SecurityService;
 import org.sakaiproject.component.cover.ServerConfigurationService;
 import org.sakaiproject.db.api.SqlService;
@@ -30,7 +46,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 
-public class UpdateSynopticMessageCounts implements Job{
+public class UpdateSynopticMessageCounts implements StatefulJob{
 
 	
 	private PrivateMessageManager pvtMessageManager;
@@ -41,14 +57,21 @@ public class UpdateSynopticMessageCounts implements Job{
 	private SiteService siteService;
 	private SecurityService securityService;
 	private SqlService sqlService;
+	private SchedulerManager schedulerManager;
 	
 	private static final Logger LOG = LoggerFactory.getLogger(UpdateSynopticMessageCounts.class);
 	
+	//the progress of a run is kept in the job data, which is saved through the scheduler after each batch of sites
+	static final String CHECKPOINT_FILTER = "synopticMessageCounts.siteFilter";
+	static final String CHECKPOINT_SITE_ID = "synopticMessageCounts.lastSiteId";
+	//the sites that failed to update, one per line, which are tried again at the start of the next run
+	static final String CHECKPOINT_FAILED_SITES = "synopticMessageCounts.failedSiteIds";
+	
 	
 	private static final boolean runOracleSQL = false;
 	//this SQL is more generic but also slower
-	private static final String FIND_ALL_SYNOPTIC_SITES_QUERY_GENERIC = "select SITE_ID, TITLE from SAKAI_SITE where IS_USER = 0 and PUBLISHED = 1 and IS_SPECIAL = 0";
-	private static final String FIND_ALL_SYNOPTIC_SITES_BY_SITE_QUERY_GENERIC = FIND_ALL_SYNOPTIC_SITES_QUERY_GENERIC + " and SITE_ID like ?";
+	//the sites are ordered so a run that is stopped can be resumed from the checkpoint
+	private static final String FIND_ALL_SYNOPTIC_SITES_QUERY_GENERIC_PART = "select SITE_ID, TITLE from SAKAI_SITE where IS_USER = 0 and PUBLISHED = 1 and IS_SPECIAL = 0";
 	//this SQL works for Oracle and runs faster than the Generic Query
 	private static final String FIND_ALL_SYNOPTIC_SITES_QUERY_ORACLE_PART1 = "select q.SITE_ID, q.TITLE, sum(q.Decoded) as BINARY_FLAGS from (" +
 																	"select ss.SITE_ID, ss.TITLE, " +
@@ -59,11 +82,7 @@ public class UpdateSynopticMessageCounts implements Job{
 																	"and ss.IS_SPECIAL = 0 " +
 																	"and ss.SITE_ID = sst.SITE_ID ";
 	private static final String FIND_ALL_SYNOPTIC_SITES_QUERY_ORACLE_PART2 = "and sst.REGISTRATION in ('sakai.messagecenter','sakai.messages','sakai.forums')) q " +
-																	"Group By q.SITE_ID, q.TITLE";
-	private static final String FIND_ALL_SYNOPTIC_SITES_QUERY_ORACLE = FIND_ALL_SYNOPTIC_SITES_QUERY_ORACLE_PART1 + FIND_ALL_SYNOPTIC_SITES_QUERY_ORACLE_PART2;
-	private static final String FIND_ALL_SYNOPTIC_SITES_BY_SITE_QUERY_ORACLE = FIND_ALL_SYNOPTIC_SITES_QUERY_ORACLE_PART1 +
-																	"and ss.SITE_ID like ? " +
-																	FIND_ALL_SYNOPTIC_SITES_QUERY_ORACLE_PART2;
+																	"Group By q.SITE_ID, q.TITLE order by q.SITE_ID";
 	
 	private static final String UNREAD_MESSAGES_QUERY = "SELECT message.USER_ID, message.CONTEXT_ID, count(*) unread_messages " +
 															"FROM MFR_PVT_MSG_USR_T message " +										
@@ -82,6 +101,13 @@ public class UpdateSynopticMessageCounts implements Job{
 	private boolean updateNewMembersOnly = ServerConfigurationService.getBoolean("msgcntr.synoptic.updateMessageCounts.updateNewMembersOnly", false);
 	//by default, this job only updates/adds the counts when the counts for forums or messages isn't 0, this overrides that and forces updates for all items no matter what
 	private boolean addItemsWhenNoUnreadCounts = ServerConfigurationService.getBoolean("msgcntr.synoptic.updateMessageCounts.addItemsWhenNoUnreadCounts", false);
+	//number of sites updated at the same time, each takes a database connection
+	private int threads = ServerConfigurationService.getInt("msgcntr.synoptic.updateMessageCounts.threads", 4);
+	//the progress is recorded after each batch of sites, a run that did not finish carries on from there the next time
+	private int batchSize = ServerConfigurationService.getInt("msgcntr.synoptic.updateMessageCounts.batchSize", 100);
+	private boolean resume = ServerConfigurationService.getBoolean("msgcntr.synoptic.updateMessageCounts.resume", true);
+	//pause between batches to limit the load on the database
+	private long pauseMillis = ServerConfigurationService.getInt("msgcntr.synoptic.updateMessageCounts.pauseMillis", 0);
 	
 	public void init() {
 		
@@ -97,13 +123,16 @@ public class UpdateSynopticMessageCounts implements Job{
 		ResultSet synotpicSitesRS = null;
 		PreparedStatement unreadMessagesbySitePS = null;
 		PreparedStatement findSitesbySitePS = null;		
+		PreparedStatement findSitePS = null;
 		String siteFilter = ServerConfigurationService.getString("msgcntr.synoptic.updateMessageCountsSiteFilter");
 		boolean filterSites = siteFilter != null && !"".equals(siteFilter);
+		JobDataMap jobData = arg0.getJobDetail().getJobDataMap();
+		String lastSiteId = resume ? readCheckpoint(jobData, siteFilter) : null;
+		Set<String> retrySiteIds = resume ? readFailedSites(jobData, siteFilter) : new LinkedHashSet<String>();
 		
-		
-		
-		//loop through all sites and call updateSynopticToolInfoForAllUsers
-		int count = 0;
+		HashMap<String, HashMap<String, Integer>> siteAndUserMessageCountHM = null;
+		HashMap<String, HashMap<Long, DecoratedForumInfo>> allTopicsAndForumsHM = null;
+		List<SynopticSite> sites = new ArrayList<SynopticSite>();
 
 		LOG.info("UpdateSynopticMessageCounts job launched: " + new Date());
 
@@ -119,75 +148,53 @@ public class UpdateSynopticMessageCounts implements Job{
 			}else{
 				unreadMessageCountRS = statement.executeQuery(UNREAD_MESSAGES_QUERY);
 			}
-			HashMap<String, HashMap<String, Integer>> siteAndUserMessageCountHM = getSiteAndUserMessageCountHM(unreadMessageCountRS);
+			siteAndUserMessageCountHM = getSiteAndUserMessageCountHM(unreadMessageCountRS);
 			
 			
 			//CREATE HASHMAP OF ALL TOPICS AND FORUMS
 			allTopicsAndForumsRS = statement.executeQuery(TOPICS_AND_FORUMS_QUERY);
-			HashMap<String, HashMap<Long, DecoratedForumInfo>> allTopicsAndForumsHM = getAllTopicsAndForumsHM(allTopicsAndForumsRS);
-			//LOOP TRHOUGH ALL SITES AND UPDATE INFO
-			String siteId = "";
-			String siteTitle = "";
-			int BINARY_FLAGS;
-			
-			if(runOracleSQL){
-				if(filterSites){
-					findSitesbySitePS = clConnection.prepareStatement(FIND_ALL_SYNOPTIC_SITES_BY_SITE_QUERY_ORACLE);
-					findSitesbySitePS.setString(1, siteFilter);
-					synotpicSitesRS = findSitesbySitePS.executeQuery();
-				}else{
-					synotpicSitesRS = statement.executeQuery(FIND_ALL_SYNOPTIC_SITES_QUERY_ORACLE);
-				}
-			}else{
-				if(filterSites){
-					findSitesbySitePS = clConnection.prepareStatement(FIND_ALL_SYNOPTIC_SITES_BY_SITE_QUERY_GENERIC);
-					findSitesbySitePS.setString(1, siteFilter);
-					synotpicSitesRS = findSitesbySitePS.executeQuery();
-				}else{
-					synotpicSitesRS = statement.executeQuery(FIND_ALL_SYNOPTIC_SITES_QUERY_GENERIC);
+			allTopicsAndForumsHM = getAllTopicsAndForumsHM(allTopicsAndForumsRS);
+			//FIND ALL SITES TO UPDATE
+			//sites that failed in an earlier run are tried again first
+			if(!retrySiteIds.isEmpty()){
+				findSitePS = clConnection.prepareStatement(getSiteQuery());
+				for(String retrySiteId : retrySiteIds){
+					findSitePS.setString(1, retrySiteId);
+					ResultSet retrySiteRS = findSitePS.executeQuery();
+					try{
+						while(retrySiteRS.next()){
+							sites.add(readSite(retrySiteRS, true));
+						}
+					}finally{
+						retrySiteRS.close();
+					}
 				}
+				LOG.info("UpdateSynopticMessageCounts retrying " + sites.size() + " sites that failed before");
 			}
 			
-			while (synotpicSitesRS.next()) {
-				boolean isMessageForumsPageInSite = false;
-				boolean isMessagesPageInSite = false;
-				boolean isForumsPageInSite = false;
-				
-				siteId = synotpicSitesRS.getString("SITE_ID");
-				siteTitle = synotpicSitesRS.getString("TITLE");	
+			//a resumed run only loads the sites after the last one updated, the database orders and compares the ids the same way
+			findSitesbySitePS = clConnection.prepareStatement(getSitesQuery(filterSites, lastSiteId != null));
+			int param = 1;
+			if(filterSites){
+				findSitesbySitePS.setString(param++, siteFilter);
+			}
+			if(lastSiteId != null){
+				findSitesbySitePS.setString(param++, lastSiteId);
+				LOG.info("UpdateSynopticMessageCounts resuming after site " + lastSiteId);
+			}
+			synotpicSitesRS = findSitesbySitePS.executeQuery();
 			
-				if(runOracleSQL){
-					BINARY_FLAGS = synotpicSitesRS.getInt("BINARY_FLAGS");
-
-					//BINARY_FLAGS returns a sumation of the values:
-					//has messagecenter= 100
-					//has messages     = 10
-					//has forums       = 1
-
-					//so if a tool has both messages and forums, the value would be 11
-					//this if it as binary true false where first bit is messagecenter, 
-					//second is messages, and 3rd is forums
-
-					if(BINARY_FLAGS % 10 >= 1)
-						isForumsPageInSite = true;
-
-					if(BINARY_FLAGS % 100 >= 10)
-						isMessagesPageInSite = true;
-
-					if(BINARY_FLAGS % 1000 >= 100)
-						isMessageForumsPageInSite = true;
-				}
-				
-				updateSynopticToolInfoForAllUsers(siteId, siteTitle, clConnection, isMessageForumsPageInSite, isMessagesPageInSite, isForumsPageInSite, siteAndUserMessageCountHM, allTopicsAndForumsHM);
-				
-				count++;
-				if(count % 1000 == 0){
-					LOG.info("UpdateSynopticMessageCounts Progress: " + count + " Sites updated");
+			while (synotpicSitesRS.next()) {
+				SynopticSite site = readSite(synotpicSitesRS, false);
+				if(!retrySiteIds.contains(site.siteId)){
+					sites.add(site);
 				}
 			}
 						
 		} catch (Exception e1) {
-			LOG.error(e1.getMessage(), e1);
+			//don't count this as a finished run, the checkpoint is kept for the next one
+			LOG.error("UpdateSynopticMessageCounts unable to load the sites to update: " + e1.getMessage(), e1);
+			sites = null;
 		} finally {
 			try {
 				if(unreadMessageCountRS != null)
@@ -225,11 +232,241 @@ public class UpdateSynopticMessageCounts implements Job{
 			}catch(Exception e){
 				LOG.warn(e.getMessage());
 			}
+			try{
+				if(findSitePS != null)
+					findSitePS.close();
+			}catch(Exception e){
+				LOG.warn(e.getMessage());
+			}
 			sqlService.returnConnection(clConnection);
 		}
+
+		if (sites != null) {
+			updateSites(sites, arg0, siteFilter, lastSiteId, siteAndUserMessageCountHM, allTopicsAndForumsHM);
+		}
 		
 		LOG.info("UpdateSynopticMessageCounts job finished: " + new Date());
 	}
+
+	private SynopticSite readSite(ResultSet rs, boolean retry) throws SQLException
+	{
+		boolean isMessageForumsPageInSite = false;
+		boolean isMessagesPageInSite = false;
+		boolean isForumsPageInSite = false;
+
+		String siteId = rs.getString("SITE_ID");
+		String siteTitle = rs.getString("TITLE");
+
+		if(runOracleSQL){
+			int BINARY_FLAGS = rs.getInt("BINARY_FLAGS");
+
+			//BINARY_FLAGS returns a sumation of the values:
+			//has messagecenter= 100
+			//has messages     = 10
+			//has forums       = 1
+
+			//so if a tool has both messages and forums, the value would be 11
+			//this if it as binary true false where first bit is messagecenter, 
+			//second is messages, and 3rd is forums
+
+			if(BINARY_FLAGS % 10 >= 1)
+				isForumsPageInSite = true;
+
+			if(BINARY_FLAGS % 100 >= 10)
+				isMessagesPageInSite = true;
+
+			if(BINARY_FLAGS % 1000 >= 100)
+				isMessageForumsPageInSite = true;
+		}
+
+		return new SynopticSite(siteId, siteTitle, isMessageForumsPageInSite, isMessagesPageInSite, isForumsPageInSite, retry);
+	}
+
+	/**
+	 * @return the query for a single site, to retry one that failed
+	 */
+	static String getSiteQuery()
+	{
+		if(runOracleSQL){
+			return FIND_ALL_SYNOPTIC_SITES_QUERY_ORACLE_PART1 + "and ss.SITE_ID = ? " + FIND_ALL_SYNOPTIC_SITES_QUERY_ORACLE_PART2;
+		}
+		return FIND_ALL_SYNOPTIC_SITES_QUERY_GENERIC_PART + " and SITE_ID = ?";
+	}
+
+	/**
+	 * @return the query for the sites to update, in SITE_ID order and optionally only those after a site
+	 */
+	static String getSitesQuery(boolean filterSites, boolean afterSite)
+	{
+		if(runOracleSQL){
+			return FIND_ALL_SYNOPTIC_SITES_QUERY_ORACLE_PART1 + (filterSites ? "and ss.SITE_ID like ? " : "")
+					+ (afterSite ? "and ss.SITE_ID > ? " : "") + FIND_ALL_SYNOPTIC_SITES_QUERY_ORACLE_PART2;
+		}
+		return FIND_ALL_SYNOPTIC_SITES_QUERY_GENERIC_PART + (filterSites ? " and SITE_ID like ?" : "")
+				+ (afterSite ? " and SITE_ID > ?" : "") + " order by SITE_ID";
+	}
+
+	/**
+	 * Updates the sites in batches, several sites at a time, saving the progress after each batch
+	 */
+	private void updateSites(List<SynopticSite> sites, JobExecutionContext context, String siteFilter, String lastSiteId,
+			final HashMap<String, HashMap<String, Integer>> siteAndUserMessageCountHM, final HashMap<String, HashMap<Long, DecoratedForumInfo>> allTopicsAndForumsHM)
+	{
+		JobDataMap jobData = context.getJobDetail().getJobDataMap();
+		//the sites that failed before and haven't been tried yet, and those that have failed in this run
+		Set<String> retries = new LinkedHashSet<String>();
+		Set<String> failed = new LinkedHashSet<String>();
+		for (SynopticSite site : sites) {
+			if (site.retry) {
+				retries.add(site.siteId);
+			}
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, threads));
+		int step = Math.max(1, batchSize);
+		int count = 0;
+		try {
+			for (int i = 0; i < sites.size(); i += step) {
+				List<SynopticSite> batch = sites.subList(i, Math.min(i + step, sites.size()));
+				Map<SynopticSite, Future<Boolean>> updates = new LinkedHashMap<SynopticSite, Future<Boolean>>();
+				for (final SynopticSite site : batch) {
+					updates.put(site, executor.submit(() -> updateSite(site, siteAndUserMessageCountHM, allTopicsAndForumsHM)));
+				}
+				for (Map.Entry<SynopticSite, Future<Boolean>> update : updates.entrySet()) {
+					SynopticSite site = update.getKey();
+					boolean updated = false;
+					try {
+						updated = update.getValue().get();
+					} catch (ExecutionException e) {
+						LOG.warn("Unable to update the synoptic message counts of site " + site.siteId + ": " + e.getMessage(), e.getCause());
+					}
+					retries.remove(site.siteId);
+					if (!updated) {
+						failed.add(site.siteId);
+					}
+					//the retried sites come before the others and aren't in order, so they don't move the checkpoint
+					if (!site.retry) {
+						lastSiteId = site.siteId;
+					}
+				}
+				Set<String> failedSiteIds = new LinkedHashSet<String>(retries);
+				failedSiteIds.addAll(failed);
+				writeCheckpoint(jobData, siteFilter, lastSiteId, failedSiteIds);
+				saveJobData(context);
+
+				if ((count + batch.size()) / 1000 > count / 1000) {
+					LOG.info("UpdateSynopticMessageCounts Progress: " + (count + batch.size()) + " Sites updated");
+				}
+				count += batch.size();
+
+				if (pauseMillis > 0 && count < sites.size()) {
+					Thread.sleep(pauseMillis);
+				}
+			}
+			// finished so the next run starts from the beginning, after trying the sites that failed again
+			if (!failed.isEmpty()) {
+				LOG.warn("UpdateSynopticMessageCounts unable to update " + failed.size() + " sites, they are tried again in the next run");
+			}
+			writeCheckpoint(jobData, siteFilter, null, failed);
+			saveJobData(context);
+		} catch (InterruptedException e) {
+			LOG.warn("UpdateSynopticMessageCounts interrupted after " + count + " sites, the next run carries on from there");
+			Thread.currentThread().interrupt();
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * @return false if the site couldn't be updated
+	 */
+	private boolean updateSite(SynopticSite site, HashMap<String, HashMap<String, Integer>> siteAndUserMessageCountHM, HashMap<String, HashMap<Long, DecoratedForumInfo>> allTopicsAndForumsHM)
+	{
+		Connection connection = null;
+		try {
+			connection = sqlService.borrowConnection();
+			updateSynopticToolInfoForAllUsers(site.siteId, site.title, connection, site.isMessageForumsPageInSite, site.isMessagesPageInSite, site.isForumsPageInSite, siteAndUserMessageCountHM, allTopicsAndForumsHM);
+			return true;
+		} catch (Exception e) {
+			LOG.warn("Unable to update the synoptic message counts of site " + site.siteId + ": " + e.getMessage(), e);
+			return false;
+		} finally {
+			if (connection != null) {
+				sqlService.returnConnection(connection);
+			}
+		}
+	}
+
+	/**
+	 * Saves the job data through the scheduler. Quartz only saves it when a run ends, so without this a run that is killed
+	 * would lose its progress. A job that was scheduled with a different wrapper than the one registered for it, eg the
+	 * non-stateful wrapper the job used before, is moved to the registered one at the same time.
+	 */
+	private void saveJobData(JobExecutionContext context)
+	{
+		JobDetail jobDetail = context.getJobDetail();
+		JobBuilder builder = jobDetail.getJobBuilder();
+		if (schedulerManager != null) {
+			JobBeanWrapper wrapper = schedulerManager.getJobBeanWrapper(jobDetail.getJobDataMap().getString(JobBeanWrapper.JOB_TYPE));
+			if (wrapper != null && !wrapper.getJobClass().equals(jobDetail.getJobClass())) {
+				LOG.debug("UpdateSynopticMessageCounts moving job " + jobDetail.getKey() + " to " + wrapper.getJobClass().getName());
+				builder.ofType(wrapper.getJobClass());
+			}
+		}
+		try {
+			context.getScheduler().addJob(builder.build(), true, true);
+		} catch (SchedulerException e) {
+			LOG.warn("UpdateSynopticMessageCounts unable to save its progress: " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * @return the last site updated by a run that did not finish, if it used the same site filter
+	 */
+	static String readCheckpoint(JobDataMap jobData, String siteFilter)
+	{
+		String filter = (siteFilter == null) ? "" : siteFilter;
+		if (filter.equals(jobData.getString(CHECKPOINT_FILTER))) {
+			return jobData.getString(CHECKPOINT_SITE_ID);
+		}
+		return null;
+	}
+
+	/**
+	 * @return the sites that failed in an earlier run, if it used the same site filter
+	 */
+	static Set<String> readFailedSites(JobDataMap jobData, String siteFilter)
+	{
+		Set<String> siteIds = new LinkedHashSet<String>();
+		String filter = (siteFilter == null) ? "" : siteFilter;
+		String failed = jobData.getString(CHECKPOINT_FAILED_SITES);
+		if (filter.equals(jobData.getString(CHECKPOINT_FILTER)) && failed != null && !failed.isEmpty()) {
+			siteIds.addAll(Arrays.asList(failed.split("\n")));
+		}
+		return siteIds;
+	}
+
+	/**
+	 * Records the last site updated, or null when the run has finished, and the sites that failed. The job data only holds
+	 * strings, so the failed sites are kept one per line.
+	 */
+	static void writeCheckpoint(JobDataMap jobData, String siteFilter, String lastSiteId, Collection<String> failedSiteIds)
+	{
+		if (lastSiteId == null && failedSiteIds.isEmpty()) {
+			jobData.remove(CHECKPOINT_FILTER);
+		} else {
+			jobData.put(CHECKPOINT_FILTER, (siteFilter == null) ? "" : siteFilter);
+		}
+		if (lastSiteId == null) {
+			jobData.remove(CHECKPOINT_SITE_ID);
+		} else {
+			jobData.put(CHECKPOINT_SITE_ID, lastSiteId);
+		}
+		if (failedSiteIds.isEmpty()) {
+			jobData.remove(CHECKPOINT_FAILED_SITES);
+		} else {
+			jobData.put(CHECKPOINT_FAILED_SITES, String.join("\n", failedSiteIds));
+		}
+	}
 	
 	
 	private void updateSynopticToolInfoForAllUsers(String siteId, String siteTitle, Connection clConnection, boolean isMessageForumsPageInSite, boolean isMessagesPageInSite, boolean isForumsPageInSite, HashMap<String, HashMap<String, Integer>> siteAndUserMessageCountHM, HashMap<String, HashMap<Long, DecoratedForumInfo>> allTopicsAndForumsHM) throws Exception
@@ -310,6 +547,22 @@ public class UpdateSynopticMessageCounts implements Job{
 			Integer count = null;
 			Map<String, Integer[]> unreadCountMap = new HashMap<String, Integer[]>();
 			List<String> userIds = new ArrayList<String>();
+
+			//the counts of all the site's topics for all users, rather than a count query per user and topic
+			TopicUnreadCounts unreadCounts = null;
+			if (isMessageForumsPageInSite || isForumsPageInSite) {
+				HashMap<Long, DecoratedForumInfo> siteForums = allTopicsAndForumsHM.get(siteId);
+				if (siteForums != null) {
+					List<Long> topicIds = new ArrayList<Long>();
+					for (DecoratedForumInfo dForum : siteForums.values()) {
+						for (DecoratedTopicsInfo topic : dForum.getTopics()) {
+							topicIds.add(topic.getTopicId());
+						}
+					}
+					unreadCounts = getMessageManager().findTopicUnreadCounts(topicIds);
+				}
+			}
+
 			while(usersMap.next()){
 				int unreadPrivate = 0;
 				int unreadForum = 0;
@@ -377,13 +630,13 @@ public class UpdateSynopticMessageCounts implements Job{
 											if (!isTopicModerated.booleanValue() || (isTopicModerated.booleanValue() && 
 													getUiPermissionsManager().isModeratePostings(topicId, dForum.getIsLocked(), dForum.getIsDraft(), isTopicLocked, isTopicDraft, userId, siteId)))
 											{
-												unreadForum += getMessageManager().findUnreadMessageCountByTopicIdByUserId(topicId, userId);
+												unreadForum += unreadCounts.getUnreadMessageCount(topicId, userId);
 											}
 											else
 											{	
 												// b/c topic is moderated and user does not have mod perm, user may only
 												// see approved msgs or pending/denied msgs authored by user
-												unreadForum += getMessageManager().findUnreadViewableMessageCountByTopicIdByUserId(topicId, userId);
+												unreadForum += unreadCounts.getUnreadViewableMessageCount(topicId, userId);
 
 											}
 										}
@@ -400,8 +653,6 @@ public class UpdateSynopticMessageCounts implements Job{
 				}
 			}
 			SynopticMsgcntrManagerCover.createOrUpdateSynopticToolInfo(userIds, siteId, siteTitle, unreadCountMap);
-		}catch (Exception e){
-			LOG.warn(e.getMessage(), e);
 		}finally{
 
 			try{
@@ -594,6 +845,26 @@ public class UpdateSynopticMessageCounts implements Job{
 		this.sqlService = sqlService;
 	}
 
+	public void setSchedulerManager(SchedulerManager schedulerManager) {
+		this.schedulerManager = schedulerManager;
+	}
+
+	private static class SynopticSite{
+		private final String siteId, title;
+		private final boolean isMessageForumsPageInSite, isMessagesPageInSite, isForumsPageInSite;
+		//failed in an earlier run
+		private final boolean retry;
+
+		private SynopticSite(String siteId, String title, boolean isMessageForumsPageInSite, boolean isMessagesPageInSite, boolean isForumsPageInSite, boolean retry){
+			this.siteId = siteId;
+			this.title = title;
+			this.isMessageForumsPageInSite = isMessageForumsPageInSite;
+			this.isMessagesPageInSite = isMessagesPageInSite;
+			this.isForumsPageInSite = isForumsPageInSite;
+			this.retry = retry;
+		}
+	}
+
 	public class DecoratedForumInfo{
 		
 		private Long forumId;
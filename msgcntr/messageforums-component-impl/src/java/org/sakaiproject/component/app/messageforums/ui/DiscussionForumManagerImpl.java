@@ -227,6 +227,36 @@ public class DiscussionForumManagerImpl extends HibernateDaoSupport implements
     }
     return messageManager.findReadMessageCountsForMainPage(topicIds);
   }
+
+  /*
+   * (non-Javadoc)
+   * @see org.sakaiproject.api.app.messageforums.ui.DiscussionForumManager#getViewableMessageCountsForMainPage(java.util.Collection)
+   */
+  public List<Object[]> getViewableMessageCountsForMainPage(Collection<Long> topicIds) {
+    if (LOG.isDebugEnabled()) {
+      LOG.debug("getViewableMessageCountsForMainPage(" + topicIds + ")");
+    }
+    String userId = getCurrentUser();
+    if (userId == null) {
+      return new ArrayList<Object[]>();
+    }
+    return messageManager.findViewableMessageCountsForMainPage(topicIds, userId);
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see org.sakaiproject.api.app.messageforums.ui.DiscussionForumManager#getReadViewableMessageCountsForMainPage(java.util.Collection)
+   */
+  public List<Object[]> getReadViewableMessageCountsForMainPage(Collection<Long> topicIds) {
+    if (LOG.isDebugEnabled()) {
+      LOG.debug("getReadViewableMessageCountsForMainPage(" + topicIds + ")");
+    }
+    String userId = getCurrentUser();
+    if (userId == null) {
+      return new ArrayList<Object[]>();
+    }
+    return messageManager.findReadViewableMessageCountsForMainPage(topicIds, userId);
+  }
   
   public Topic getTopicByIdWithMessages(final Long topicId)
   {
@@ -0,0 +1,269 @@
+package org.sakaiproject.component.app.messageforums.jobs;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+import org.quartz.JobBuilder;
+import org.quartz.JobDataMap;
+import org.quartz.JobDetail;
+import org.quartz.JobExecutionContext;
+import org.quartz.Scheduler;
+import org.sakaiproject.api.app.messageforums.SynopticMsgcntrManager;
+import org.sakaiproject.component.api.ServerConfigurationService;
+import org.sakaiproject.component.cover.ComponentManager;
+import org.sakaiproject.db.api.SqlService;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Checks the job saves a checkpoint in its job data after each batch, resumes from it and retries the sites that failed.
+ */
+@PrepareForTest(ComponentManager.class)
+@RunWith(PowerMockRunner.class)
+public class UpdateSynopticMessageCountsTest {
+
+    private static final String SITES_QUERY_PREFIX = "select SITE_ID, TITLE from SAKAI_SITE";
+
+    // The covers keep the first instance they are given, so these are shared by all the tests.
+    private static final ServerConfigurationService serverConfigurationService = mock(ServerConfigurationService.class);
+    private static final SynopticMsgcntrManager synopticMsgcntrManager = mock(SynopticMsgcntrManager.class);
+
+    @Mock
+    private SqlService sqlService;
+    @Mock
+    private Connection connection;
+    @Mock
+    private PreparedStatement sitesStatement;
+    @Mock
+    private PreparedStatement siteStatement;
+    @Mock
+    private JobExecutionContext context;
+    @Mock
+    private Scheduler scheduler;
+
+    private JobDataMap jobData;
+    // The job details saved through the scheduler.
+    private List<JobDetail> saved;
+
+    @Before
+    public void setUp() throws SQLException {
+        PowerMockito.mockStatic(ComponentManager.class);
+        when(ComponentManager.get(ServerConfigurationService.class)).thenReturn(serverConfigurationService);
+        when(ComponentManager.get(SynopticMsgcntrManager.class)).thenReturn(synopticMsgcntrManager);
+
+        reset(serverConfigurationService, synopticMsgcntrManager);
+        // Use the defaults in the code.
+        when(serverConfigurationService.getBoolean(anyString(), anyBoolean())).thenAnswer(i -> i.getArgument(1));
+        when(serverConfigurationService.getInt(anyString(), anyInt())).thenAnswer(i -> i.getArgument(1));
+
+        JobDetail jobDetail = JobBuilder.newJob(UpdateSynopticMessageCounts.class).withIdentity("synoptic").build();
+        jobData = jobDetail.getJobDataMap();
+        when(context.getJobDetail()).thenReturn(jobDetail);
+        when(context.getScheduler()).thenReturn(scheduler);
+        saved = new ArrayList<>();
+        doAnswer(i -> saved.add(i.getArgument(0))).when(scheduler).addJob(any(JobDetail.class), eq(true), eq(true));
+
+        when(sqlService.borrowConnection()).thenReturn(connection);
+        Statement statement = mock(Statement.class);
+        when(connection.createStatement()).thenReturn(statement);
+        when(statement.executeQuery(anyString())).thenAnswer(i -> mock(ResultSet.class));
+        when(connection.prepareStatement(anyString())).thenAnswer(this::prepareStatement);
+    }
+
+    private PreparedStatement prepareStatement(InvocationOnMock invocation) throws SQLException {
+        String sql = invocation.getArgument(0);
+        if (sql.equals(UpdateSynopticMessageCounts.getSiteQuery())) {
+            return siteStatement;
+        }
+        if (sql.startsWith(SITES_QUERY_PREFIX)) {
+            return sitesStatement;
+        }
+        // The site's tools and users, there are none.
+        PreparedStatement statement = mock(PreparedStatement.class);
+        when(statement.executeQuery()).thenAnswer(i -> mock(ResultSet.class));
+        return statement;
+    }
+
+    private ResultSet newSites(String... siteIds) throws SQLException {
+        Iterator<String> ids = Arrays.asList(siteIds).iterator();
+        ResultSet sites = mock(ResultSet.class);
+        String[] current = new String[1];
+        when(sites.next()).thenAnswer(i -> {
+            current[0] = ids.hasNext() ? ids.next() : null;
+            return current[0] != null;
+        });
+        when(sites.getString("SITE_ID")).thenAnswer(i -> current[0]);
+        when(sites.getString("TITLE")).thenAnswer(i -> "Title " + current[0]);
+        return sites;
+    }
+
+    private void returnSites(String... siteIds) throws SQLException {
+        when(sitesStatement.executeQuery()).thenReturn(newSites(siteIds));
+    }
+
+    // Each retried site is looked up on its own.
+    private void returnRetrySites(String... siteIds) throws SQLException {
+        ResultSet first = newSites(siteIds[0]);
+        ResultSet[] rest = new ResultSet[siteIds.length - 1];
+        for (int i = 1; i < siteIds.length; i++) {
+            rest[i - 1] = newSites(siteIds[i]);
+        }
+        when(siteStatement.executeQuery()).thenReturn(first, rest);
+    }
+
+    private void failSite(String siteId) {
+        doThrow(new RuntimeException("Unable to save")).when(synopticMsgcntrManager)
+                .createOrUpdateSynopticToolInfo(anyList(), eq(siteId), anyString(), anyMap());
+    }
+
+    private UpdateSynopticMessageCounts newJob() {
+        UpdateSynopticMessageCounts job = new UpdateSynopticMessageCounts();
+        job.setSqlService(sqlService);
+        return job;
+    }
+
+    @Test
+    public void testFinishedRunClearsCheckpoint() throws Exception {
+        returnSites("site1", "site2");
+        newJob().execute(context);
+
+        verify(connection).prepareStatement(UpdateSynopticMessageCounts.getSitesQuery(false, false));
+        verify(synopticMsgcntrManager).createOrUpdateSynopticToolInfo(anyList(), eq("site1"), eq("Title site1"), anyMap());
+        verify(synopticMsgcntrManager).createOrUpdateSynopticToolInfo(anyList(), eq("site2"), eq("Title site2"), anyMap());
+        assertFalse(jobData.containsKey(UpdateSynopticMessageCounts.CHECKPOINT_SITE_ID));
+    }
+
+    @Test
+    public void testResumesAfterLastSite() throws Exception {
+        // The last site may have been deleted since, so the sites after it are loaded rather than looked for.
+        UpdateSynopticMessageCounts.writeCheckpoint(jobData, null, "site2", Collections.emptyList());
+        returnSites("site3");
+        newJob().execute(context);
+
+        verify(connection).prepareStatement(UpdateSynopticMessageCounts.getSitesQuery(false, true));
+        verify(sitesStatement).setString(1, "site2");
+        verify(synopticMsgcntrManager, times(1)).createOrUpdateSynopticToolInfo(anyList(), anyString(), anyString(), anyMap());
+        verify(synopticMsgcntrManager).createOrUpdateSynopticToolInfo(anyList(), eq("site3"), anyString(), anyMap());
+        assertFalse(jobData.containsKey(UpdateSynopticMessageCounts.CHECKPOINT_SITE_ID));
+    }
+
+    @Test
+    public void testCheckpointForOtherFilterIgnored() throws Exception {
+        when(serverConfigurationService.getString("msgcntr.synoptic.updateMessageCountsSiteFilter")).thenReturn("abc%");
+        UpdateSynopticMessageCounts.writeCheckpoint(jobData, null, "site2", Collections.emptyList());
+        returnSites("abc1");
+        newJob().execute(context);
+
+        verify(connection).prepareStatement(UpdateSynopticMessageCounts.getSitesQuery(true, false));
+        verify(sitesStatement).setString(1, "abc%");
+        verify(sitesStatement, never()).setString(2, "site2");
+    }
+
+    @Test
+    public void testLoadFailureKeepsCheckpoint() throws Exception {
+        UpdateSynopticMessageCounts.writeCheckpoint(jobData, null, "site2", Collections.emptyList());
+        when(sqlService.borrowConnection()).thenThrow(new SQLException("No connection"));
+        newJob().execute(context);
+
+        verify(synopticMsgcntrManager, never()).createOrUpdateSynopticToolInfo(anyList(), anyString(), anyString(), anyMap());
+        assertEquals("site2", UpdateSynopticMessageCounts.readCheckpoint(jobData, null));
+    }
+
+    @Test
+    public void testCheckpointPerFilter() {
+        UpdateSynopticMessageCounts.writeCheckpoint(jobData, "abc%", "abc1", Collections.emptyList());
+        assertEquals("abc1", UpdateSynopticMessageCounts.readCheckpoint(jobData, "abc%"));
+        assertNull(UpdateSynopticMessageCounts.readCheckpoint(jobData, null));
+        assertNull(UpdateSynopticMessageCounts.readCheckpoint(jobData, ""));
+    }
+
+    @Test
+    public void testKilledRunResumesFromSavedCheckpoint() throws Exception {
+        when(serverConfigurationService.getInt(eq("msgcntr.synoptic.updateMessageCounts.batchSize"), anyInt())).thenReturn(2);
+        // The server dies while saving the second batch, so only the first batch was saved.
+        doAnswer(i -> saved.add(i.getArgument(0)))
+                .doThrow(new RuntimeException("Killed"))
+                .when(scheduler).addJob(any(JobDetail.class), eq(true), eq(true));
+        returnSites("site1", "site2", "site3", "site4", "site5");
+        try {
+            newJob().execute(context);
+        } catch (RuntimeException e) {
+            assertEquals("Killed", e.getMessage());
+        }
+        assertEquals(1, saved.size());
+        JobDetail stored = saved.get(0);
+        assertEquals("site2", UpdateSynopticMessageCounts.readCheckpoint(stored.getJobDataMap(), null));
+
+        // The next run gets the job data that was stored.
+        reset(synopticMsgcntrManager);
+        when(context.getJobDetail()).thenReturn(stored);
+        doAnswer(i -> saved.add(i.getArgument(0))).when(scheduler).addJob(any(JobDetail.class), eq(true), eq(true));
+        returnSites("site3", "site4", "site5");
+        newJob().execute(context);
+
+        verify(connection).prepareStatement(UpdateSynopticMessageCounts.getSitesQuery(false, true));
+        verify(sitesStatement).setString(1, "site2");
+        verify(synopticMsgcntrManager, never()).createOrUpdateSynopticToolInfo(anyList(), eq("site1"), anyString(), anyMap());
+        verify(synopticMsgcntrManager, never()).createOrUpdateSynopticToolInfo(anyList(), eq("site2"), anyString(), anyMap());
+        verify(synopticMsgcntrManager).createOrUpdateSynopticToolInfo(anyList(), eq("site5"), anyString(), anyMap());
+        JobDataMap finished = saved.get(saved.size() - 1).getJobDataMap();
+        assertFalse(finished.containsKey(UpdateSynopticMessageCounts.CHECKPOINT_SITE_ID));
+    }
+
+    @Test
+    public void testFailedSitesKeptForRetry() throws Exception {
+        failSite("site2");
+        returnSites("site1", "site2", "site3");
+        newJob().execute(context);
+
+        verify(synopticMsgcntrManager).createOrUpdateSynopticToolInfo(anyList(), eq("site3"), anyString(), anyMap());
+        assertFalse(jobData.containsKey(UpdateSynopticMessageCounts.CHECKPOINT_SITE_ID));
+        assertEquals(Collections.singleton("site2"), UpdateSynopticMessageCounts.readFailedSites(jobData, null));
+        assertFalse(saved.isEmpty());
+    }
+
+    @Test
+    public void testFailedSitesRetriedFirst() throws Exception {
+        UpdateSynopticMessageCounts.writeCheckpoint(jobData, null, null, Arrays.asList("site2", "site4"));
+        failSite("site4");
+        returnRetrySites("site2", "site4");
+        // The failed sites are loaded again by the main query too.
+        returnSites("site1", "site2", "site3", "site4");
+        newJob().execute(context);
+
+        verify(siteStatement).setString(1, "site2");
+        verify(siteStatement).setString(1, "site4");
+        verify(synopticMsgcntrManager, times(1)).createOrUpdateSynopticToolInfo(anyList(), eq("site2"), anyString(), anyMap());
+        verify(synopticMsgcntrManager).createOrUpdateSynopticToolInfo(anyList(), eq("site3"), anyString(), anyMap());
+        // site4 failed again so is still kept, site2 is done.
+        assertEquals(Collections.singleton("site4"), UpdateSynopticMessageCounts.readFailedSites(jobData, null));
+        assertTrue(UpdateSynopticMessageCounts.readFailedSites(jobData, "abc%").isEmpty());
+    }
+}
@@ -444,3 +444,8 @@ UPDATE SAKAI_EVENT SET EVENT = 'sam.assessment.submit.timer' WHERE EVENT = 'sam.
 UPDATE SAKAI_EVENT SET EVENT = 'sam.assessment.submit.timer.url' WHERE EVENT = 'sam.assessment.timer_submit.url';
 
 -- END SAM-3012 Update samigo events 
+
+-- Assignments - RETURNED status column alongside the submission XML
+ALTER TABLE ASSIGNMENT_SUBMISSION ADD RETURNED VARCHAR(6) DEFAULT NULL;
+UPDATE ASSIGNMENT_SUBMISSION SET RETURNED = CASE WHEN XML LIKE '%returned="true"%' THEN 'true' ELSE 'false' END WHERE RETURNED IS NULL;
+-- END Assignments RETURNED status column
@@ -504,3 +504,9 @@ UPDATE SAKAI_EVENT SET EVENT = 'sam.assessment.submit.timer' WHERE EVENT = 'sam.
 UPDATE SAKAI_EVENT SET EVENT = 'sam.assessment.submit.timer.url' WHERE EVENT = 'sam.assessment.timer_submit.url';
 
 -- END SAM-3012
+
+-- Assignments - RETURNED status column alongside the submission XML
+-- NOTE: this needs the XML column to be a clob, see sakai_2_6_0-2_6_1_oracle_conversion.sql
+ALTER TABLE ASSIGNMENT_SUBMISSION ADD RETURNED VARCHAR2 (6) DEFAULT NULL;
+UPDATE ASSIGNMENT_SUBMISSION SET RETURNED = CASE WHEN DBMS_LOB.INSTR(XML, 'returned="true"') > 0 THEN 'true' ELSE 'false' END WHERE RETURNED IS NULL;
+-- END Assignments RETURNED status column
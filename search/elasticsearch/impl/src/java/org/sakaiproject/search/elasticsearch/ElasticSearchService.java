@@ -105,6 +105,13 @@ public class ElasticSearchService implements SearchService {
      */
     private boolean clientNode = false;
 
+    /**
+     * set this to true for a single node without a cluster, eg a small install or a load test rig. The node runs
+     * in-JVM with no network transport or discovery and indexes default to a single memory mapped shard with no
+     * replicas. Anything set explicitly with "elasticsearch." properties still wins.
+     */
+    private boolean standalone = false;
+
     /* injected dependencies */
     private List<String> triggerFunctions = Lists.newArrayListWithCapacity(0);
     private NotificationService notificationService;
@@ -170,11 +177,37 @@ public class ElasticSearchService implements SearchService {
             properties.put("path.data", serverConfigurationService.getSakaiHomePath() + "/elasticsearch/" + properties.get("node.name"));
         }
 
+        if (standalone) {
+            addStandaloneSettings(properties);
+        }
+
         log.info("Setting ElasticSearch storage area to [" + properties.get("path.data") + "]");
 
         return properties;
     }
 
+    /**
+     * Defaults for a node that is the only one. The index.* settings here are node level defaults for new indexes,
+     * an index builder's own index settings override them.
+     */
+    protected void addStandaloneSettings(Map<String, String> properties) {
+        // no transport or discovery, other nodes can't join
+        properties.putIfAbsent("node.local", "true");
+        properties.putIfAbsent("discovery.zen.ping.multicast.enabled", "false");
+        properties.putIfAbsent("http.enabled", "false");
+        // nothing to spread shards or replicas over
+        properties.putIfAbsent("index.number_of_shards", "1");
+        properties.putIfAbsent("index.number_of_replicas", "0");
+        // memory mapped index files, needs a 64 bit JVM
+        properties.putIfAbsent("index.store.type", "mmapfs");
+        // near real time, new docs are searchable after a second
+        properties.putIfAbsent("index.refresh_interval", "1s");
+        // merge in the background without competing with the indexing and search threads
+        properties.putIfAbsent("index.merge.scheduler.type", "concurrent");
+        properties.putIfAbsent("index.merge.scheduler.max_thread_count", "1");
+        log.info("Running ElasticSearch standalone, the node won't join a cluster");
+    }
+
     protected String getNodeName() {
         if ( this.node == null ) {
             return null;
@@ -186,9 +219,9 @@ public class ElasticSearchService implements SearchService {
         ImmutableSettings.Builder settings = settingsBuilder().put(properties);
 
         return nodeBuilder()
-                .client(clientNode)
+                .client(clientNode && !standalone)
                 .settings(settings)
-                .local(localNode).node();
+                .local(localNode || standalone).node();
     }
 
     protected Client initializeElasticSearchClient(Node node) {
@@ -849,6 +882,10 @@ public class ElasticSearchService implements SearchService {
         this.clientNode = clientNode;
     }
 
+    public void setStandalone(boolean standalone) {
+        this.standalone = standalone;
+    }
+
     public void setThreadLocalManager(ThreadLocalManager threadLocalManager) {
         this.threadLocalManager = threadLocalManager;
     }
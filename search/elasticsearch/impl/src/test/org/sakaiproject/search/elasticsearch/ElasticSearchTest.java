@@ -25,6 +25,7 @@ import org.sakaiproject.tool.api.SessionManager;
 import org.sakaiproject.user.api.UserDirectoryService;
 
 import java.util.*;
+import java.util.concurrent.ExecutorService;
 
 import static org.junit.Assert.*;
 import static org.mockito.Mockito.*;
@@ -429,6 +430,36 @@ public class ElasticSearchTest {
         assertTrue(elasticSearchService.getNDocs() == 106);
     }
 
+    @Test
+    public void testParallelContentExtraction() {
+        Set<String> threads = Collections.synchronizedSet(new HashSet<>());
+        when(entityContentProducer.getContent(any(String.class))).thenAnswer(i -> {
+            threads.add(Thread.currentThread().getName());
+            return resources.get((String) i.getArgument(0)).getContent();
+        });
+        when(entityContentProducer.getSiteContentIterator(siteId)).thenAnswer(i -> resources.keySet().iterator());
+        elasticSearchIndexBuilder.setContentIndexBatchSize(200);
+        elasticSearchIndexBuilder.setBulkRequestSize(20);
+
+        // two runs share the same two extraction threads, rather than starting a pool each time
+        for (int run = 0; run < 2; run++) {
+            elasticSearchIndexBuilder.rebuildIndex(siteId);
+            elasticSearchIndexBuilder.refreshIndex();
+            elasticSearchIndexBuilder.processContentQueue();
+            elasticSearchIndexBuilder.refreshIndex();
+            assertEquals(106, elasticSearchService.getNDocs());
+        }
+
+        String prefix = "[elasticsearch content extractor " + elasticSearchIndexBuilder.getName() + " ";
+        Set<String> extractors = new HashSet<>(Arrays.asList(prefix + "1]", prefix + "2]"));
+        assertFalse(threads.isEmpty());
+        assertTrue("content extracted on " + threads, extractors.containsAll(threads));
+
+        ExecutorService pool = elasticSearchIndexBuilder.contentExtractors;
+        elasticSearchIndexBuilder.destroy();
+        assertTrue(pool.isShutdown());
+    }
+
     @Test
     public void testRefreshSite(){
         elasticSearchIndexBuilder.setContentIndexBatchSize(200);
@@ -0,0 +1,124 @@
+package org.sakaiproject.search.elasticsearch;
+
+import org.elasticsearch.index.query.FilterBuilder;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.sakaiproject.authz.api.AuthzGroupService;
+import org.sakaiproject.authz.api.SecurityService;
+import org.sakaiproject.content.api.ContentHostingService;
+import org.sakaiproject.search.api.SearchService;
+import org.sakaiproject.site.api.Group;
+import org.sakaiproject.site.api.Site;
+import org.sakaiproject.site.api.SiteService;
+import org.sakaiproject.user.api.User;
+import org.sakaiproject.user.api.UserDirectoryService;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Checks the access filter only leaves out what the user certainly can't read.
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class SiteElasticSearchIndexBuilderAccessFilterTest {
+
+    @Mock
+    UserDirectoryService userDirectoryService;
+
+    @Mock
+    SecurityService securityService;
+
+    @Mock
+    SiteService siteService;
+
+    @Mock
+    AuthzGroupService authzGroupService;
+
+    @Mock
+    User user;
+
+    @Mock
+    Site site;
+
+    SiteElasticSearchIndexBuilder indexBuilder;
+
+    List<String> siteIds = Collections.singletonList("site1");
+
+    @Before
+    public void setUp() throws Exception {
+        when(user.getId()).thenReturn("user1");
+        when(userDirectoryService.getCurrentUser()).thenReturn(user);
+        when(siteService.siteReference("site1")).thenReturn("/site/site1");
+        when(siteService.getSite("site1")).thenReturn(site);
+        when(site.getGroupsWithMember("user1")).thenReturn(Collections.<Group>emptyList());
+        when(authzGroupService.getAuthzGroupsIsAllowed(anyString(), anyString(), any())).thenReturn(Collections.<String>emptySet());
+
+        indexBuilder = new SiteElasticSearchIndexBuilder();
+        indexBuilder.setUserDirectoryService(userDirectoryService);
+        indexBuilder.setSecurityService(securityService);
+        indexBuilder.setSiteService(siteService);
+        indexBuilder.setAuthzGroupService(authzGroupService);
+    }
+
+    @Test
+    public void testCreatorAlwaysPasses() {
+        String filter = indexBuilder.buildAccessFilter(siteIds).toString();
+        assertTrue(filter.contains(SearchService.FIELD_ACCESS_HIDDEN));
+        assertTrue(filter.contains(SearchService.FIELD_ACCESS_GROUPS));
+        assertTrue(filter.contains(SearchService.FIELD_ACCESS_CREATOR));
+        assertTrue(filter.contains("user1"));
+    }
+
+    @Test
+    public void testSiteLevelPermissions() {
+        when(securityService.unlock(eq("user1"), anyString(), eq("/site/site1"))).thenReturn(true);
+        assertNull(indexBuilder.buildAccessFilter(siteIds));
+    }
+
+    @Test
+    public void testHiddenOnFolderRealm() {
+        when(authzGroupService.getAuthzGroupsIsAllowed("user1", ContentHostingService.AUTH_RESOURCE_HIDDEN, null))
+                .thenReturn(Collections.singleton("/content/group/site1/folder/"));
+        String filter = indexBuilder.buildAccessFilter(siteIds).toString();
+        // the index can't tell which resources are in the folder
+        assertFalse(filter.contains(SearchService.FIELD_ACCESS_HIDDEN));
+        assertTrue(filter.contains(SearchService.FIELD_ACCESS_GROUPS));
+    }
+
+    @Test
+    public void testHiddenOnOtherSiteFolderRealm() {
+        when(authzGroupService.getAuthzGroupsIsAllowed("user1", ContentHostingService.AUTH_RESOURCE_HIDDEN, null))
+                .thenReturn(Collections.singleton("/content/group/site10/folder/"));
+        String filter = indexBuilder.buildAccessFilter(siteIds).toString();
+        assertTrue(filter.contains(SearchService.FIELD_ACCESS_HIDDEN));
+    }
+
+    @Test
+    public void testAllGroupsOnFolderRealm() {
+        when(authzGroupService.getAuthzGroupsIsAllowed("user1", ContentHostingService.AUTH_RESOURCE_ALL_GROUPS, null))
+                .thenReturn(Collections.singleton("/content/group/site1/folder/"));
+        String filter = indexBuilder.buildAccessFilter(siteIds).toString();
+        assertTrue(filter.contains(SearchService.FIELD_ACCESS_HIDDEN));
+        assertFalse(filter.contains(SearchService.FIELD_ACCESS_GROUPS));
+        verify(site, never()).getGroupsWithMember("user1");
+    }
+
+    @Test
+    public void testGroupMember() {
+        Group group = mock(Group.class);
+        when(group.getReference()).thenReturn("/site/site1/group/group1");
+        when(site.getGroupsWithMember("user1")).thenReturn(Collections.singletonList(group));
+        String filter = indexBuilder.buildAccessFilter(siteIds).toString();
+        assertTrue(filter.contains("/site/site1/group/group1"));
+        assertTrue(filter.contains(SearchService.FIELD_ACCESS_CREATOR));
+    }
+}
@@ -11,6 +11,7 @@ import org.elasticsearch.action.admin.indices.create.CreateIndexResponse;
 import org.elasticsearch.action.admin.indices.delete.DeleteIndexRequest;
 import org.elasticsearch.action.admin.indices.exists.indices.IndicesExistsRequest;
 import org.elasticsearch.action.admin.indices.exists.indices.IndicesExistsResponse;
+import org.elasticsearch.action.admin.indices.mapping.put.PutMappingResponse;
 import org.elasticsearch.action.admin.indices.refresh.RefreshRequest;
 import org.elasticsearch.action.admin.indices.refresh.RefreshResponse;
 import org.elasticsearch.action.admin.indices.status.IndexStatus;
@@ -58,11 +59,13 @@ import org.springframework.util.Assert;
 import java.io.IOException;
 import java.io.StringWriter;
 import java.text.DecimalFormat;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -70,6 +73,12 @@ import java.util.Optional;
 import java.util.Set;
 import java.util.Timer;
 import java.util.TimerTask;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
@@ -174,6 +183,26 @@ public abstract class BaseElasticSearchIndexBuilder implements ElasticSearchInde
      */
     protected int bulkRequestSize = 10;
 
+    /**
+     * Maximum estimated size in bytes of one elasticsearch bulk index call (defaults to 5MB).  A bulk request
+     * is sent when it reaches either this or {@link #bulkRequestSize}, so a batch of large documents doesn't
+     * have to be held in memory all at once.
+     */
+    protected long bulkRequestMaxBytes = 5 * 1024 * 1024;
+
+    /**
+     * Number of threads extracting content for the documents in the content queue (defaults to 2).  Set to 1
+     * to extract on the content indexing thread.
+     */
+    protected int contentExtractionThreads = 2;
+
+    /**
+     * pool of {@link #contentExtractionThreads} threads shared by all the content queue runs, created in
+     * {@link #initialize(ElasticSearchIndexBuilderEventRegistrar, Client)} and shut down in {@link #destroy()}.
+     * null when content is extracted on the indexing thread.
+     */
+    protected ExecutorService contentExtractors = null;
+
     /**
      * number seconds of wait after startup before starting the BulkContentIndexerTask (defaults to 3 minutes)
      */
@@ -253,6 +282,10 @@ public abstract class BaseElasticSearchIndexBuilder implements ElasticSearchInde
 
     @Override
     public void destroy() {
+        if (contentExtractors != null) {
+            contentExtractors.shutdownNow();
+            contentExtractors = null;
+        }
         this.client = null;
         this.eventRegistrar = null;
     }
@@ -284,6 +317,7 @@ public abstract class BaseElasticSearchIndexBuilder implements ElasticSearchInde
 
         beforeBackgroundSchedulerInitialization();
 
+        this.contentExtractors = newContentExtractionExecutor();
         this.backgroundScheduler = initializeBackgroundScheduler();
         backgroundScheduler.schedule(initializeContentQueueProcessingTask(), (delay * 1000), (period * 1000));
 
@@ -442,6 +476,12 @@ public abstract class BaseElasticSearchIndexBuilder implements ElasticSearchInde
      * Searches for any docs in the search index that have not been indexed yet,
      * digests the content and loads it into the index.  Any docs with empty content will be removed from
      * the index.
+     *
+     * The queue is worked as a pipeline: the batch found by {@link #findContentQueue()} is handed to
+     * {@link #contentExtractionThreads} threads that run the (often expensive) content digesting, while this
+     * thread adds the results, in order, to bulk requests that are sent once they reach {@link #bulkRequestSize}
+     * documents or {@link #bulkRequestMaxBytes} bytes. At most two documents per extraction thread are in
+     * flight at once, so a slow bulk write holds back the extraction rather than building up content in memory.
      */
     protected void processContentQueue() {
         startTime = System.currentTimeMillis();
@@ -456,30 +496,68 @@ public abstract class BaseElasticSearchIndexBuilder implements ElasticSearchInde
         }
 
         SearchResponse response = findContentQueue();
+        long fetchTime = System.currentTimeMillis() - startTime;
 
         SearchHit[] hits = response.getHits().hits();
         List<NoContentException> noContentExceptions = new ArrayList();
         getLog().debug(getPendingDocuments() + " pending docs for index builder [" + getName() + "]");
 
+        ExecutorService extractors = contentExtractors;
+        int maxInFlight = extractors == null ? 1 : contentExtractionThreads * 2;
+        Deque<Future<ContentQueueEntry>> inFlight = new ArrayDeque<>();
+        long extractTime = 0;
+        long bulkTime = 0;
+        int bulkCount = 0;
+        int next = 0;
+
         BulkRequestBuilder bulkRequest = newContentQueueBulkUpdateRequestBuilder();
+        int bulkDocuments = 0;
 
-        for (SearchHit hit : hits) {
+        try {
+            while (next < hits.length || !inFlight.isEmpty()) {
+                while (next < hits.length && inFlight.size() < maxInFlight) {
+                    inFlight.add(submitContentQueueEntry(extractors, hits[next++]));
+                }
 
-            if (bulkRequest.numberOfActions() < bulkRequestSize) {
-                try {
-                    processContentQueueEntry(hit, bulkRequest);
-                } catch ( NoContentException e ) {
-                    noContentExceptions.add(e);
+                ContentQueueEntry entry = awaitContentQueueEntry(inFlight.poll());
+                if (entry == null) {
+                    continue;
+                }
+                extractTime += entry.extractTime;
+                if (entry.noContentException != null) {
+                    noContentExceptions.add(entry.noContentException);
+                    continue;
+                }
+
+                //updating was causing issues without a _source, so doing delete and re-add
+                bulkRequest.add(prepareDeleteDocument(extractDeleteDocumentParams(entry.hit)));
+                if (entry.indexRequest != null) {
+                    bulkRequest.add(entry.indexRequest);
+                }
+                bulkDocuments++;
+
+                if (bulkDocuments >= bulkRequestSize
+                        || bulkRequest.request().estimatedSizeInBytes() >= bulkRequestMaxBytes) {
+                    long bulkStart = System.currentTimeMillis();
+                    executeBulkRequest(bulkRequest);
+                    bulkTime += System.currentTimeMillis() - bulkStart;
+                    bulkCount++;
+                    bulkRequest = newContentQueueBulkUpdateRequestBuilder();
+                    bulkDocuments = 0;
                 }
-            } else {
-                executeBulkRequest(bulkRequest);
-                bulkRequest = newContentQueueBulkUpdateRequestBuilder();
             }
-        }
 
-        // execute any remaining bulks requests not executed yet
-        if (bulkRequest.numberOfActions() > 0) {
-            executeBulkRequest(bulkRequest);
+            // execute any remaining bulks requests not executed yet
+            if (bulkRequest.numberOfActions() > 0) {
+                long bulkStart = System.currentTimeMillis();
+                executeBulkRequest(bulkRequest);
+                bulkTime += System.currentTimeMillis() - bulkStart;
+                bulkCount++;
+            }
+        } finally {
+            for (Future<ContentQueueEntry> future : inFlight) {
+                future.cancel(true);
+            }
         }
 
         // remove any docs without content, so we don't try to index them again
@@ -493,29 +571,101 @@ public abstract class BaseElasticSearchIndexBuilder implements ElasticSearchInde
 
         if (hits.length > 0) {
             getLog().info("Finished indexing " + hits.length + " docs in " +
-                    ((lastLoad - startTime)) + " ms for index builder " + getName());
+                    ((lastLoad - startTime)) + " ms for index builder " + getName() + " (fetch: " + fetchTime
+                    + " ms, extraction: " + extractTime + " ms over " + Math.max(1, contentExtractionThreads)
+                    + " threads, " + bulkCount + " bulk requests: " + bulkTime + " ms)");
         }
 
     }
 
-    protected void processContentQueueEntry(SearchHit hit, BulkRequestBuilder bulkRequest) throws NoContentException {
-        String reference = getFieldFromSearchHit(SearchService.FIELD_REFERENCE, hit);
-        EntityContentProducer ecp = newEntityContentProducer(reference);
+    /**
+     * A content queue entry once its content has been extracted, either an index request or the reason
+     * there is nothing to index.
+     */
+    protected static class ContentQueueEntry {
+        protected final SearchHit hit;
+        protected IndexRequestBuilder indexRequest;
+        protected NoContentException noContentException;
+        protected long extractTime;
+
+        protected ContentQueueEntry(SearchHit hit) {
+            this.hit = hit;
+        }
+    }
 
-        if (ecp != null) {
-            //updating was causing issues without a _source, so doing delete and re-add
+    /**
+     * @return the pool for content extraction or null to extract on the calling thread. Each task installs
+     * and removes its own security advisor, so nothing is left on the pooled threads between documents.
+     */
+    protected ExecutorService newContentExtractionExecutor() {
+        if (contentExtractionThreads <= 1) {
+            return null;
+        }
+        final AtomicInteger count = new AtomicInteger();
+        return Executors.newFixedThreadPool(contentExtractionThreads, r -> {
+            Thread t = new Thread(r, "[elasticsearch content extractor " + getName() + " " + count.incrementAndGet() + "]");
+            t.setDaemon(true);
+            t.setPriority(Thread.NORM_PRIORITY - 1);
+            return t;
+        });
+    }
+
+    protected Future<ContentQueueEntry> submitContentQueueEntry(ExecutorService extractors, SearchHit hit) {
+        if (extractors == null) {
+            // already running with the security advisor in place
+            FutureTask<ContentQueueEntry> task = new FutureTask<>(() -> processContentQueueEntry(hit));
+            task.run();
+            return task;
+        }
+        return extractors.submit(() -> {
+            enableAzgSecurityAdvisor();
             try {
-                deleteDocument(hit);
-                bulkRequest.add(prepareIndex(reference, ecp, true));
-            } catch (NoContentException e) {
-                throw e;
-            } catch (Exception e) {
-                getLog().error("Failed to process content queue entry with id [" + hit.getId() + "] in index builder ["
-                        + getName() + "]", e);
+                return processContentQueueEntry(hit);
+            } finally {
+                disableAzgSecurityAdvisor();
             }
-        } else {
-            noContentProducerForContentQueueEntry(hit, reference);
+        });
+    }
+
+    protected ContentQueueEntry awaitContentQueueEntry(Future<ContentQueueEntry> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while indexing content in index builder [" + getName() + "]", e);
+        } catch (ExecutionException e) {
+            getLog().error("Failed to process content queue entry in index builder [" + getName() + "]", e.getCause());
+            return null;
+        }
+    }
+
+    /**
+     * Digest the content for a queued document. Runs on the extraction threads so must not touch the bulk request.
+     */
+    protected ContentQueueEntry processContentQueueEntry(SearchHit hit) {
+        ContentQueueEntry entry = new ContentQueueEntry(hit);
+        long start = System.currentTimeMillis();
+        String reference = getFieldFromSearchHit(SearchService.FIELD_REFERENCE, hit);
+        try {
+            EntityContentProducer ecp = newEntityContentProducer(reference);
+
+            if (ecp != null) {
+                try {
+                    entry.indexRequest = prepareIndex(reference, ecp, true);
+                } catch (NoContentException e) {
+                    throw e;
+                } catch (Exception e) {
+                    getLog().error("Failed to process content queue entry with id [" + hit.getId() + "] in index builder ["
+                            + getName() + "]", e);
+                }
+            } else {
+                noContentProducerForContentQueueEntry(hit, reference);
+            }
+        } catch (NoContentException e) {
+            entry.noContentException = e;
         }
+        entry.extractTime = System.currentTimeMillis() - start;
+        return entry;
     }
 
     protected void executeBulkRequest(BulkRequestBuilder bulkRequest) {
@@ -667,6 +817,25 @@ public abstract class BaseElasticSearchIndexBuilder implements ElasticSearchInde
         IndicesExistsResponse response = client.admin().indices().exists(new IndicesExistsRequest(indexName)).actionGet();
         if (!response.isExists()) {
             createIndex();
+        } else {
+            updateMapping();
+        }
+    }
+
+    /**
+     * adds any fields that are new in the mapping to an existing index, so they don't get a dynamic mapping
+     * when first indexed
+     */
+    protected void updateMapping() {
+        try {
+            PutMappingResponse putResponse = client.admin().indices().preparePutMapping(indexName)
+                    .setType(indexedDocumentType).setSource(mappingMerged).execute().actionGet();
+            if (!putResponse.isAcknowledged()) {
+                getLog().warn("Mapping wasn't updated for index builder [" + getName() + "]");
+            }
+        } catch (Exception e) {
+            getLog().warn("Unable to update the mapping for index builder [" + getName() + "], the index may need to "
+                    + "be rebuilt: " + e.getMessage());
         }
     }
 
@@ -1548,6 +1717,14 @@ public abstract class BaseElasticSearchIndexBuilder implements ElasticSearchInde
         this.bulkRequestSize = bulkRequestSize;
     }
 
+    public void setBulkRequestMaxBytes(long bulkRequestMaxBytes) {
+        this.bulkRequestMaxBytes = bulkRequestMaxBytes;
+    }
+
+    public void setContentExtractionThreads(int contentExtractionThreads) {
+        this.contentExtractionThreads = contentExtractionThreads;
+    }
+
     public void setSecurityService(SecurityService securityService) {
         this.securityService = securityService;
     }
@@ -35,16 +35,21 @@ import org.elasticsearch.action.search.SearchType;
 import org.elasticsearch.common.lang3.ArrayUtils;
 import org.elasticsearch.common.lang3.tuple.Pair;
 import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.index.query.AndFilterBuilder;
 import org.elasticsearch.index.query.BoolQueryBuilder;
+import org.elasticsearch.index.query.FilterBuilder;
 import org.elasticsearch.index.query.OrFilterBuilder;
 import org.elasticsearch.index.query.QueryBuilder;
 import org.elasticsearch.search.SearchHit;
+import org.sakaiproject.authz.api.AuthzGroupService;
+import org.sakaiproject.content.api.ContentHostingService;
 import org.sakaiproject.event.api.Event;
 import org.sakaiproject.exception.IdUnusedException;
 import org.sakaiproject.search.api.EntityContentProducer;
 import org.sakaiproject.search.api.SearchService;
 import org.sakaiproject.search.api.SiteSearchIndexBuilder;
 import org.sakaiproject.search.model.SearchBuilderItem;
+import org.sakaiproject.site.api.Group;
 import org.sakaiproject.site.api.Site;
 import org.sakaiproject.site.api.SiteService;
 import org.sakaiproject.site.api.ToolConfiguration;
@@ -56,14 +61,22 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.TimerTask;
 import java.util.stream.Collectors;
 
+import static org.elasticsearch.index.query.FilterBuilders.andFilter;
+import static org.elasticsearch.index.query.FilterBuilders.missingFilter;
+import static org.elasticsearch.index.query.FilterBuilders.notFilter;
 import static org.elasticsearch.index.query.FilterBuilders.orFilter;
+import static org.elasticsearch.index.query.FilterBuilders.rangeFilter;
+import static org.elasticsearch.index.query.FilterBuilders.termFilter;
 import static org.elasticsearch.index.query.FilterBuilders.termsFilter;
+import static org.elasticsearch.index.query.QueryBuilders.constantScoreQuery;
 import static org.elasticsearch.index.query.QueryBuilders.termQuery;
 import static org.elasticsearch.index.query.QueryBuilders.termsQuery;
 
@@ -80,9 +93,15 @@ public class SiteElasticSearchIndexBuilder extends BaseElasticSearchIndexBuilder
 
     private SiteService siteService;
     private UserDirectoryService userDirectoryService;
+    private AuthzGroupService authzGroupService;
 
     private boolean useSiteFilters = false;
 
+    /**
+     * set to false to leave out the access fields when searching and only check each hit
+     */
+    private boolean useAccessFilters = true;
+
     /**
      * set to false if you want to index all content, not just sites that have the search tool placed
      */
@@ -467,11 +486,120 @@ public class SiteElasticSearchIndexBuilder extends BaseElasticSearchIndexBuilder
             } else {
                 queryBuilder = queryBuilder.must(termsQuery(SearchService.FIELD_SITEID, siteIds.toArray(new String[siteIds.size()])));
             }
+
+            if (useAccessFilters) {
+                FilterBuilder accessFilter = buildAccessFilter(siteIds);
+                if (accessFilter != null) {
+                    // part of the query rather than a post filter so the facets don't count what can't be seen
+                    queryBuilder = queryBuilder.must(constantScoreQuery(accessFilter).boost(0.0f));
+                }
+            }
         }
 
         return pairOf(searchRequestBuilder,queryBuilder);
     }
 
+    /**
+     * Builds a filter on the access fields (see {@link SearchService#FIELD_ACCESS_GROUPS}) that leaves out the
+     * documents the current user isn't able to see in the sites being searched, using the resources permissions in
+     * each site. Documents without the fields always pass and every hit still goes through the search filter, this
+     * just keeps most of the unreadable hits from filling up the page.
+     *
+     * The filter may only leave out what the user certainly can't read, as the check on each hit can't bring a hit
+     * back. So the user's own resources always pass, and a site where the user has content.hidden or
+     * content.all.groups on one of its folders isn't filtered on that permission at all, as the index doesn't know
+     * which folder a resource inherits from.
+     *
+     * @return the filter, or null if the index can't leave out anything in the sites
+     */
+    protected FilterBuilder buildAccessFilter(List<String> siteIds) {
+        User user = userDirectoryService.getCurrentUser();
+        if (user == null || StringUtils.isEmpty(user.getId()) || securityService.isSuperUser(user.getId())) {
+            return null;
+        }
+        String userId = user.getId();
+
+        Set<String> hiddenFolders = getFolderRealmsAllowed(userId, ContentHostingService.AUTH_RESOURCE_HIDDEN);
+        Set<String> allGroupsFolders = getFolderRealmsAllowed(userId, ContentHostingService.AUTH_RESOURCE_ALL_GROUPS);
+
+        List<String> hiddenSites = new ArrayList<>();
+        List<String> allGroupsSites = new ArrayList<>();
+        List<String> groupRefs = new ArrayList<>();
+        for (String siteId : siteIds) {
+            String siteRef = siteService.siteReference(siteId);
+            if (securityService.unlock(userId, ContentHostingService.AUTH_RESOURCE_HIDDEN, siteRef)
+                    || hasFolderRealm(hiddenFolders, siteId)) {
+                hiddenSites.add(siteId);
+            }
+            if (securityService.unlock(userId, ContentHostingService.AUTH_RESOURCE_ALL_GROUPS, siteRef)
+                    || hasFolderRealm(allGroupsFolders, siteId)) {
+                allGroupsSites.add(siteId);
+            } else {
+                try {
+                    for (Group group : siteService.getSite(siteId).getGroupsWithMember(userId)) {
+                        groupRefs.add(group.getReference());
+                    }
+                } catch (IdUnusedException e) {
+                    log.debug("Searching missing site: " + siteId);
+                }
+            }
+        }
+        if (hiddenSites.size() == siteIds.size() && allGroupsSites.size() == siteIds.size()) {
+            return null;
+        }
+
+        AndFilterBuilder accessFilter = andFilter();
+        if (hiddenSites.size() < siteIds.size()) {
+            long now = System.currentTimeMillis();
+            OrFilterBuilder available = orFilter(andFilter(
+                    notFilter(termFilter(SearchService.FIELD_ACCESS_HIDDEN, true)),
+                    orFilter(missingFilter(SearchService.FIELD_ACCESS_RELEASE),
+                            rangeFilter(SearchService.FIELD_ACCESS_RELEASE).lte(now).cache(false)),
+                    orFilter(missingFilter(SearchService.FIELD_ACCESS_RETRACT),
+                            rangeFilter(SearchService.FIELD_ACCESS_RETRACT).gt(now).cache(false))),
+                    termFilter(SearchService.FIELD_ACCESS_CREATOR, userId));
+            if (!hiddenSites.isEmpty()) {
+                available.add(termsFilter(SearchService.FIELD_SITEID, hiddenSites.toArray(new String[hiddenSites.size()])));
+            }
+            accessFilter.add(available);
+        }
+        if (allGroupsSites.size() < siteIds.size()) {
+            OrFilterBuilder inGroup = orFilter(missingFilter(SearchService.FIELD_ACCESS_GROUPS),
+                    termFilter(SearchService.FIELD_ACCESS_CREATOR, userId));
+            if (!groupRefs.isEmpty()) {
+                inGroup.add(termsFilter(SearchService.FIELD_ACCESS_GROUPS, groupRefs.toArray(new String[groupRefs.size()])));
+            }
+            if (!allGroupsSites.isEmpty()) {
+                inGroup.add(termsFilter(SearchService.FIELD_SITEID, allGroupsSites.toArray(new String[allGroupsSites.size()])));
+            }
+            accessFilter.add(inGroup);
+        }
+        return accessFilter;
+    }
+
+    /**
+     * @return the ids of the content realms in which the user has the permission, other than site and group realms
+     */
+    private Set<String> getFolderRealmsAllowed(String userId, String function) {
+        Set<String> realms = new HashSet<>();
+        for (String realmId : authzGroupService.getAuthzGroupsIsAllowed(userId, function, null)) {
+            if (realmId.startsWith(ContentHostingService.REFERENCE_ROOT)) {
+                realms.add(realmId);
+            }
+        }
+        return realms;
+    }
+
+    private boolean hasFolderRealm(Set<String> folderRealms, String siteId) {
+        String siteCollection = ContentHostingService.REFERENCE_ROOT + ContentHostingService.COLLECTION_SITE + siteId + "/";
+        for (String realmId : folderRealms) {
+            if (realmId.startsWith(siteCollection)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     @Override
     protected Pair<SearchRequestBuilder,QueryBuilder> completeSearchRequestBuilders(Pair<SearchRequestBuilder,QueryBuilder> builders,
                                                                                     String searchTerms,
@@ -564,6 +692,10 @@ public class SiteElasticSearchIndexBuilder extends BaseElasticSearchIndexBuilder
         this.useSiteFilters = useSiteFilters;
     }
 
+    public void setUseAccessFilters(boolean useAccessFilters) {
+        this.useAccessFilters = useAccessFilters;
+    }
+
     public void setSiteService(SiteService siteService) {
         this.siteService = siteService;
     }
@@ -580,6 +712,10 @@ public class SiteElasticSearchIndexBuilder extends BaseElasticSearchIndexBuilder
         this.userDirectoryService = userDirectoryService;
     }
 
+    public void setAuthzGroupService(AuthzGroupService authzGroupService) {
+        this.authzGroupService = authzGroupService;
+    }
+
     @Override
     public String getEventResourceFilter() {
         return "/";
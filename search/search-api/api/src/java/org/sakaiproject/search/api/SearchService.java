@@ -126,6 +126,35 @@ public interface SearchService extends Diagnosable
 
 	public static final String FIELD_INDEXED = "indexed";
 
+	/*
+	 * Optional access fields, a producer adds them with getCustomProperties so searches can leave out entities the
+	 * user would not be able to read. Entities without them are not restricted.
+	 */
+	/**
+	 * Search Field the references of the groups the entity is restricted to
+	 */
+	public static final String FIELD_ACCESS_GROUPS = "access_groups";
+
+	/**
+	 * Search Field "true" if the entity is hidden from users that cannot see hidden items
+	 */
+	public static final String FIELD_ACCESS_HIDDEN = "access_hidden";
+
+	/**
+	 * Search Field the time in ms the entity is released
+	 */
+	public static final String FIELD_ACCESS_RELEASE = "access_release";
+
+	/**
+	 * Search Field the time in ms the entity is retracted
+	 */
+	public static final String FIELD_ACCESS_RETRACT = "access_retract";
+
+	/**
+	 * Search Field the id of the user who created the entity, who can read it whatever the other fields say
+	 */
+	public static final String FIELD_ACCESS_CREATOR = "access_creator";
+
 	/**
 	 * Perform a search, return results in a list.
 	 * 
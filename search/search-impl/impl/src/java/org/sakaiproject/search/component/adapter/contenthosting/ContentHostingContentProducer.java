@@ -21,19 +21,23 @@
 
 package org.sakaiproject.search.component.adapter.contenthosting;
 
+import java.io.File;
 import java.io.Reader;
 import java.io.StringReader;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.sakaiproject.component.api.ServerConfigurationService;
 import org.sakaiproject.content.api.ContentHostingService;
 import org.sakaiproject.content.api.ContentResource;
+import org.sakaiproject.content.api.GroupAwareEntity.AccessMode;
 import org.sakaiproject.entity.api.EntityManager;
 import org.sakaiproject.entity.api.EntityProducer;
 import org.sakaiproject.entity.api.Reference;
@@ -48,6 +52,7 @@ import org.sakaiproject.search.api.SearchService;
 import org.sakaiproject.search.api.StoredDigestContentProducer;
 import org.sakaiproject.search.model.SearchBuilderItem;
 import org.sakaiproject.site.api.SiteService;
+import org.sakaiproject.time.api.Time;
 
 public class ContentHostingContentProducer implements EntityContentProducer, StoredDigestContentProducer
 {
@@ -99,6 +104,11 @@ public class ContentHostingContentProducer implements EntityContentProducer, Sto
 	private List<String> customProperties = null;
 
 	private ServerConfigurationService serverConfigurationService;
+
+	/**
+	 * text already extracted by the digesters, null if disabled
+	 */
+	private ExtractedTextStore extractedTextStore = null;
 	
 	
 	public ContentHostingContentProducer() {
@@ -155,6 +165,14 @@ public class ContentHostingContentProducer implements EntityContentProducer, Sto
 						.registerFunction(ContentHostingService.EVENT_RESOURCE_REMOVE);
 				searchIndexBuilder.registerEntityContentProducer(this);
 
+				if (serverConfigurationService.getBoolean("search.extractedText.enabled", false))
+				{
+					String dir = serverConfigurationService.getString("search.extractedText.dir",
+							serverConfigurationService.getSakaiHomePath() + "search/extractedText");
+					long maxSize = serverConfigurationService.getInt("search.extractedText.maxSizeMb", 1024) * 1024L * 1024L;
+					extractedTextStore = new ExtractedTextStore(new File(dir), maxSize, digesterSizeLimit * 2L);
+				}
+
 			}
 
 		}
@@ -227,10 +245,27 @@ public class ContentHostingContentProducer implements EntityContentProducer, Sto
 		}
 
 		ContentDigester digester = getDigester(contentResource);
+		String key = getExtractedTextKey(contentResource, digester);
+		if (key != null)
+		{
+			Reader stored = extractedTextStore.getReader(key);
+			if (stored != null)
+			{
+				if (debug)
+				{
+					log.debug("ContentHosting.getContentReader" + ref + ": using the stored text");
+				}
+				return stored;
+			}
+		}
 		Reader reader = null;
 		try
 		{
 			reader = digester.getContentReader(contentResource);
+			if (key != null && reader != null)
+			{
+				reader = extractedTextStore.store(key, reader);
+			}
 		}
 		catch (Exception ex)
 		{
@@ -299,10 +334,27 @@ public class ContentHostingContentProducer implements EntityContentProducer, Sto
 			return "";
 		}
 		ContentDigester digester = getDigester(contentResource);
+		String key = getExtractedTextKey(contentResource, digester);
+		if (key != null)
+		{
+			String stored = extractedTextStore.get(key);
+			if (stored != null)
+			{
+				if (debug)
+				{
+					log.debug("ContentHosting.getContent" + ref + ": using the stored text");
+				}
+				return stored;
+			}
+		}
 		String content = null;
 		try
 		{
 			content = digester.getContent(contentResource);
+			if (key != null)
+			{
+				extractedTextStore.put(key, content);
+			}
 		}
 		catch (Exception ex)
 		{
@@ -345,6 +397,20 @@ public class ContentHostingContentProducer implements EntityContentProducer, Sto
 
 	}
 
+	/**
+	 * Text from the default digester is cheap to get again and not worth storing
+	 *
+	 * @return the key for the stored text or null if it shouldn't be stored
+	 */
+	private String getExtractedTextKey(ContentResource contentResource, ContentDigester digester)
+	{
+		if (extractedTextStore == null || digester == null || digester.equals(defaultDigester))
+		{
+			return null;
+		}
+		return extractedTextStore.getKey(contentResource, digester);
+	}
+
 	public ContentDigester getDigester(ContentResource cr)
 	{
 		
@@ -680,6 +746,7 @@ public class ContentHostingContentProducer implements EntityContentProducer, Sto
 					}
 				}
 			}
+			addAccessProperties(contentResource, cp);
 			return cp;
 		}
 		catch (PermissionException | IdUnusedException | TypeException e)
@@ -689,6 +756,53 @@ public class ContentHostingContentProducer implements EntityContentProducer, Sto
 		return null;
 	}
 
+	/**
+	 * Add the access fields so searches can leave out resources the user cannot see. Only the settings on the
+	 * resource itself are used, those inherited from a folder are not reindexed when the folder changes and are left
+	 * to the check on each hit. Resources opened to extra roles are left unrestricted, and the creator can always
+	 * see their own resources.
+	 */
+	private void addAccessProperties(ContentResource contentResource, Map<String, String[]> cp)
+	{
+		Set<String> roleIds = contentResource.getRoleAccessIds();
+		if (roleIds != null && !roleIds.isEmpty())
+		{
+			return;
+		}
+		String creator = contentResource.getProperties().getProperty(ResourceProperties.PROP_CREATOR);
+		if (creator != null)
+		{
+			cp.put(SearchService.FIELD_ACCESS_CREATOR, new String[] { creator });
+		}
+		if (AccessMode.GROUPED.equals(contentResource.getAccess()))
+		{
+			Collection<?> groups = contentResource.getGroups();
+			if (groups != null && !groups.isEmpty())
+			{
+				List<String> groupRefs = new ArrayList<String>(groups.size());
+				for (Object group : groups)
+				{
+					groupRefs.add(String.valueOf(group));
+				}
+				cp.put(SearchService.FIELD_ACCESS_GROUPS, groupRefs.toArray(new String[0]));
+			}
+		}
+		if (contentResource.isHidden())
+		{
+			cp.put(SearchService.FIELD_ACCESS_HIDDEN, new String[] { Boolean.TRUE.toString() });
+		}
+		Time release = contentResource.getReleaseDate();
+		if (release != null)
+		{
+			cp.put(SearchService.FIELD_ACCESS_RELEASE, new String[] { Long.toString(release.getTime()) });
+		}
+		Time retract = contentResource.getRetractDate();
+		if (retract != null)
+		{
+			cp.put(SearchService.FIELD_ACCESS_RETRACT, new String[] { Long.toString(retract.getTime()) });
+		}
+	}
+
 	public String getCustomRDF(String ref)
 	{
 		return null;
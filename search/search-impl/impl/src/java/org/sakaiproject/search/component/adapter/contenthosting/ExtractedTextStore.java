@@ -0,0 +1,517 @@
+/**********************************************************************************
+ * $URL$
+ * $Id$
+ ***********************************************************************************
+ *
+ * Copyright (c) 2003, 2004, 2005, 2006, 2007, 2008 The Sakai Foundation
+ *
+ * Licensed under the Educational Community License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.opensource.org/licenses/ECL-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ **********************************************************************************/
+
+package org.sakaiproject.search.component.adapter.contenthosting;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sakaiproject.content.api.ContentResource;
+import org.sakaiproject.entity.api.ResourceProperties;
+
+/**
+ * A disk store for the text extracted from content bodies, keyed by the resource, the version of its body and the
+ * digester that did the extraction. Reindexing then only runs the digesters for bodies that have changed. The directory can be on storage shared by all the nodes, writes are to a temp file that is
+ * moved into place so readers on other nodes never see a partial entry.
+ * <p>
+ * Entries are gzipped. A hit touches the entry and once the store goes over its size limit the least recently used
+ * entries are removed.
+ * </p>
+ */
+public class ExtractedTextStore
+{
+
+	private static Logger log = LoggerFactory.getLogger(ExtractedTextStore.class);
+
+	/**
+	 * bump to invalidate every stored entry, eg if the way the text is stored changes
+	 */
+	private static final String STORE_VERSION = "1";
+
+	private static final String SUFFIX = ".txt.gz";
+
+	private static final String TEMP_PREFIX = "extracted-";
+
+	private static final String TEMP_SUFFIX = ".tmp";
+
+	/**
+	 * temp files older than this were left by a write that never finished, eg the node stopped
+	 */
+	private static final long TEMP_MAX_AGE = 60 * 60 * 1000L;
+
+	/**
+	 * number of writes between checks of the size of the store
+	 */
+	private static final int SWEEP_INTERVAL = 200;
+
+	private final File root;
+
+	private final long maxBytes;
+
+	private final long maxEntryChars;
+
+	private final AtomicInteger writesSinceSweep = new AtomicInteger();
+
+	private final AtomicBoolean sweeping = new AtomicBoolean();
+
+	/**
+	 * @param root
+	 *        directory for the store, created if needed
+	 * @param maxBytes
+	 *        size limit for the whole store
+	 * @param maxEntryChars
+	 *        texts longer than this are not stored
+	 */
+	public ExtractedTextStore(File root, long maxBytes, long maxEntryChars)
+	{
+		this.root = root;
+		this.maxBytes = maxBytes;
+		this.maxEntryChars = maxEntryChars;
+		if (!root.isDirectory() && !root.mkdirs())
+		{
+			log.warn("Unable to create the extracted text store at " + root);
+		}
+	}
+
+	/**
+	 * Build the key for a resource body digested by a digester. The body isn't read, it is identified by the resource
+	 * id with its length and modified date, which change whenever the body is revised.
+	 *
+	 * @return the key or null if the resource has no modified date
+	 */
+	public String getKey(ContentResource resource, ContentDigester digester)
+	{
+		ResourceProperties properties = resource.getProperties();
+		String modified = (properties == null) ? null : properties.getProperty(ResourceProperties.PROP_MODIFIED_DATE);
+		if (modified == null)
+		{
+			return null;
+		}
+		return DigestUtils.sha256Hex(digesterVersion(digester) + resource.getId() + '\n' + resource.getContentLength()
+				+ '\n' + modified);
+	}
+
+	/**
+	 * @return the stored text or null if there is none
+	 */
+	public String get(String key)
+	{
+		Reader reader = getReader(key);
+		if (reader == null)
+		{
+			return null;
+		}
+		try
+		{
+			StringBuilder sb = new StringBuilder();
+			char[] buffer = new char[8192];
+			int n;
+			while ((n = reader.read(buffer)) != -1)
+			{
+				sb.append(buffer, 0, n);
+			}
+			return sb.toString();
+		}
+		catch (IOException e)
+		{
+			log.warn("Unable to read extracted text " + key + ", removing it: " + e.getMessage());
+			remove(key);
+			return null;
+		}
+		finally
+		{
+			close(reader);
+		}
+	}
+
+	/**
+	 * @return a reader on the stored text or null if there is none
+	 */
+	public Reader getReader(String key)
+	{
+		File file = file(key);
+		if (!file.isFile())
+		{
+			return null;
+		}
+		try
+		{
+			Reader reader = new BufferedReader(new InputStreamReader(new GZIPInputStream(new FileInputStream(file)),
+					StandardCharsets.UTF_8));
+			// least recently used is on the modification time
+			file.setLastModified(System.currentTimeMillis());
+			return reader;
+		}
+		catch (IOException e)
+		{
+			log.warn("Unable to open extracted text " + key + ", removing it: " + e.getMessage());
+			remove(key);
+			return null;
+		}
+	}
+
+	/**
+	 * Store the text for a key
+	 */
+	public void put(String key, String text)
+	{
+		if (text == null || text.length() > maxEntryChars)
+		{
+			return;
+		}
+		File temp = null;
+		try
+		{
+			temp = newTempFile();
+			try (Writer out = newWriter(temp))
+			{
+				out.write(text);
+			}
+			commit(temp, key);
+			temp = null;
+		}
+		catch (IOException e)
+		{
+			log.warn("Unable to store extracted text " + key + ": " + e.getMessage());
+		}
+		finally
+		{
+			delete(temp);
+		}
+	}
+
+	/**
+	 * Wrap a reader on newly extracted text so the text is stored as it is read. The text is only stored if the
+	 * reader is read to the end before it is closed.
+	 */
+	public Reader store(String key, Reader reader)
+	{
+		try
+		{
+			return new StoringReader(key, reader, newTempFile());
+		}
+		catch (IOException e)
+		{
+			log.warn("Unable to store extracted text " + key + ": " + e.getMessage());
+			return reader;
+		}
+	}
+
+	public void remove(String key)
+	{
+		delete(file(key));
+	}
+
+	private String digesterVersion(ContentDigester digester)
+	{
+		Package p = digester.getClass().getPackage();
+		String version = (p == null) ? null : p.getImplementationVersion();
+		return STORE_VERSION + ':' + digester.getClass().getName() + ':' + (version == null ? "" : version) + '\n';
+	}
+
+	private File file(String key)
+	{
+		return new File(new File(new File(root, key.substring(0, 2)), key.substring(2, 4)), key + SUFFIX);
+	}
+
+	private File newTempFile() throws IOException
+	{
+		return File.createTempFile(TEMP_PREFIX, TEMP_SUFFIX, root);
+	}
+
+	private Writer newWriter(File file) throws IOException
+	{
+		return new OutputStreamWriter(new GZIPOutputStream(new FileOutputStream(file)), StandardCharsets.UTF_8);
+	}
+
+	private void commit(File temp, String key) throws IOException
+	{
+		File target = file(key);
+		File dir = target.getParentFile();
+		if (!dir.isDirectory() && !dir.mkdirs() && !dir.isDirectory())
+		{
+			throw new IOException("Unable to create " + dir);
+		}
+		try
+		{
+			Files.move(temp.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE);
+		}
+		catch (AtomicMoveNotSupportedException e)
+		{
+			Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+		if (writesSinceSweep.incrementAndGet() >= SWEEP_INTERVAL)
+		{
+			writesSinceSweep.set(0);
+			sweep();
+		}
+	}
+
+	/**
+	 * Remove abandoned temp files, then the least recently used entries until the store is back under 90% of its limit
+	 */
+	protected void sweep()
+	{
+		if (!sweeping.compareAndSet(false, true))
+		{
+			return;
+		}
+		try (Stream<Path> paths = Files.walk(root.toPath()))
+		{
+			List<File> entries = new ArrayList<File>();
+			long total = 0;
+			long staleTemp = System.currentTimeMillis() - TEMP_MAX_AGE;
+			for (Path path : (Iterable<Path>) paths::iterator)
+			{
+				File file = path.toFile();
+				if (!file.isFile())
+				{
+					continue;
+				}
+				String name = file.getName();
+				if (name.endsWith(SUFFIX))
+				{
+					entries.add(file);
+					total += file.length();
+				}
+				else if (name.startsWith(TEMP_PREFIX) && name.endsWith(TEMP_SUFFIX) && file.lastModified() < staleTemp)
+				{
+					delete(file);
+				}
+			}
+			if (total <= maxBytes)
+			{
+				return;
+			}
+			entries.sort(Comparator.comparingLong(File::lastModified));
+			long target = maxBytes / 10 * 9;
+			int removed = 0;
+			for (File file : entries)
+			{
+				if (total <= target)
+				{
+					break;
+				}
+				long length = file.length();
+				if (file.delete())
+				{
+					total -= length;
+					removed++;
+				}
+			}
+			log.info("Removed " + removed + " entries from the extracted text store at " + root);
+		}
+		catch (IOException e)
+		{
+			log.warn("Unable to check the size of the extracted text store at " + root + ": " + e.getMessage());
+		}
+		finally
+		{
+			sweeping.set(false);
+		}
+	}
+
+	private static void delete(File file)
+	{
+		if (file != null && file.exists() && !file.delete())
+		{
+			log.debug("Unable to delete " + file);
+		}
+	}
+
+	private static void close(Reader reader)
+	{
+		try
+		{
+			reader.close();
+		}
+		catch (IOException e)
+		{
+			log.debug("Unable to close reader", e);
+		}
+	}
+
+	/**
+	 * Copies the text to a temp file as it is read, moving it into the store on close if the end was reached
+	 */
+	private class StoringReader extends FilterReader
+	{
+		private final String key;
+
+		private File temp;
+
+		private Writer out;
+
+		private long chars = 0;
+
+		private boolean complete = false;
+
+		private final char[] single = new char[1];
+
+		private StoringReader(String key, Reader in, File temp) throws IOException
+		{
+			super(in);
+			this.key = key;
+			this.temp = temp;
+			this.out = newWriter(temp);
+		}
+
+		@Override
+		public int read() throws IOException
+		{
+			int c = super.read();
+			if (c == -1)
+			{
+				complete = true;
+			}
+			else
+			{
+				single[0] = (char) c;
+				copy(single, 0, 1);
+			}
+			return c;
+		}
+
+		@Override
+		public int read(char[] cbuf, int off, int len) throws IOException
+		{
+			int n = super.read(cbuf, off, len);
+			if (n == -1)
+			{
+				complete = true;
+			}
+			else
+			{
+				copy(cbuf, off, n);
+			}
+			return n;
+		}
+
+		@Override
+		public long skip(long n) throws IOException
+		{
+			// the skipped text would be missing from the stored copy
+			abandon();
+			return super.skip(n);
+		}
+
+		@Override
+		public boolean markSupported()
+		{
+			return false;
+		}
+
+		@Override
+		public void close() throws IOException
+		{
+			try
+			{
+				super.close();
+			}
+			finally
+			{
+				if (out != null)
+				{
+					try
+					{
+						out.close();
+						out = null;
+						if (complete)
+						{
+							commit(temp, key);
+							temp = null;
+						}
+					}
+					catch (IOException e)
+					{
+						log.warn("Unable to store extracted text " + key + ": " + e.getMessage());
+					}
+				}
+				abandon();
+			}
+		}
+
+		private void copy(char[] cbuf, int off, int len)
+		{
+			if (out == null)
+			{
+				return;
+			}
+			chars += len;
+			if (chars > maxEntryChars)
+			{
+				abandon();
+				return;
+			}
+			try
+			{
+				out.write(cbuf, off, len);
+			}
+			catch (IOException e)
+			{
+				log.debug("Unable to store extracted text " + key, e);
+				abandon();
+			}
+		}
+
+		private void abandon()
+		{
+			if (out != null)
+			{
+				try
+				{
+					out.close();
+				}
+				catch (IOException e)
+				{
+					// being thrown away
+				}
+				out = null;
+			}
+			delete(temp);
+			temp = null;
+		}
+	}
+}
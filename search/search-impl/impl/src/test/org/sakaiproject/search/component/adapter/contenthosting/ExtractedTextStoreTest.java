@@ -0,0 +1,163 @@
+package org.sakaiproject.search.component.adapter.contenthosting;
+
+import org.easymock.EasyMock;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sakaiproject.content.api.ContentResource;
+import org.sakaiproject.entity.api.ResourceProperties;
+
+import java.io.File;
+import java.io.Reader;
+import java.io.StringReader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Stores, reads back and evicts entries in a temp directory.
+ */
+public class ExtractedTextStoreTest {
+
+    private static final String KEY_A = "aaaa0001";
+    private static final String KEY_B = "bbbb0002";
+    private static final String KEY_C = "cccc0003";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File root;
+
+    private ExtractedTextStore store;
+
+    @Before
+    public void setUp() {
+        root = new File(folder.getRoot(), "store");
+        store = new ExtractedTextStore(root, Long.MAX_VALUE, 1000);
+    }
+
+    private static String text(int length) {
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sb.append((char) ('a' + i % 26));
+        }
+        return sb.toString();
+    }
+
+    private static String readAll(Reader reader) throws Exception {
+        StringBuilder sb = new StringBuilder();
+        int c;
+        while ((c = reader.read()) != -1) {
+            sb.append((char) c);
+        }
+        return sb.toString();
+    }
+
+    private static ContentResource resource(String id, long length, String modified) {
+        ResourceProperties properties = EasyMock.createMock(ResourceProperties.class);
+        EasyMock.expect(properties.getProperty(ResourceProperties.PROP_MODIFIED_DATE)).andStubReturn(modified);
+        ContentResource resource = EasyMock.createMock(ContentResource.class);
+        EasyMock.expect(resource.getId()).andStubReturn(id);
+        EasyMock.expect(resource.getContentLength()).andStubReturn(length);
+        EasyMock.expect(resource.getProperties()).andStubReturn(properties);
+        // the body is never read
+        EasyMock.replay(properties, resource);
+        return resource;
+    }
+
+    private File entry(String key) {
+        return new File(new File(new File(root, key.substring(0, 2)), key.substring(2, 4)), key + ".txt.gz");
+    }
+
+    private File[] tempFiles() {
+        return root.listFiles((dir, name) -> name.endsWith(".tmp"));
+    }
+
+    @Test
+    public void testKeyFollowsRevisions() {
+        ContentDigester digester = new DefaultContentDigester();
+        String key = store.getKey(resource("/group/a/file.pdf", 100, "20180101120000000"), digester);
+        assertEquals(key, store.getKey(resource("/group/a/file.pdf", 100, "20180101120000000"), digester));
+        assertNotEquals(key, store.getKey(resource("/group/a/file.pdf", 100, "20180102120000000"), digester));
+        assertNotEquals(key, store.getKey(resource("/group/a/file.pdf", 101, "20180101120000000"), digester));
+        assertNotEquals(key, store.getKey(resource("/group/b/file.pdf", 100, "20180101120000000"), digester));
+        assertNull(store.getKey(resource("/group/a/file.pdf", 100, null), digester));
+    }
+
+    @Test
+    public void testPutAndGet() {
+        assertNull(store.get(KEY_A));
+        store.put(KEY_A, "Some extracted text");
+        assertEquals("Some extracted text", store.get(KEY_A));
+        store.remove(KEY_A);
+        assertNull(store.get(KEY_A));
+    }
+
+    @Test
+    public void testTooLongNotStored() {
+        store.put(KEY_A, text(1001));
+        assertNull(store.get(KEY_A));
+    }
+
+    @Test
+    public void testStoreWhileReading() throws Exception {
+        Reader reader = store.store(KEY_A, new StringReader("Read a char at a time"));
+        assertEquals("Read a char at a time", readAll(reader));
+        reader.close();
+        assertEquals("Read a char at a time", store.get(KEY_A));
+        assertEquals(0, tempFiles().length);
+    }
+
+    @Test
+    public void testStoreNotReadToTheEnd() throws Exception {
+        Reader reader = store.store(KEY_A, new StringReader("Only partly read"));
+        char[] buffer = new char[4];
+        assertEquals(4, reader.read(buffer));
+        reader.close();
+        assertNull(store.get(KEY_A));
+        assertEquals(0, tempFiles().length);
+    }
+
+    @Test
+    public void testSweepRemovesLeastRecentlyUsed() {
+        String text = text(1000);
+        store.put(KEY_A, text);
+        store.put(KEY_B, text);
+        store.put(KEY_C, text);
+        long size = entry(KEY_A).length();
+        long now = System.currentTimeMillis();
+        assertTrue(entry(KEY_A).setLastModified(now - 30000));
+        assertTrue(entry(KEY_B).setLastModified(now - 20000));
+        assertTrue(entry(KEY_C).setLastModified(now - 10000));
+
+        // a read makes A the most recently used
+        assertEquals(text, store.get(KEY_A));
+
+        // room for two entries, sweeping goes down to 90% of that so two are removed
+        ExtractedTextStore small = new ExtractedTextStore(root, size * 2, 1000);
+        small.sweep();
+        assertTrue(entry(KEY_A).exists());
+        assertFalse(entry(KEY_B).exists());
+        assertFalse(entry(KEY_C).exists());
+    }
+
+    @Test
+    public void testSweepRemovesAbandonedTempFiles() throws Exception {
+        File stale = new File(root, "extracted-1.tmp");
+        File inProgress = new File(root, "extracted-2.tmp");
+        assertTrue(stale.createNewFile());
+        assertTrue(inProgress.createNewFile());
+        assertTrue(stale.setLastModified(System.currentTimeMillis() - 2 * 60 * 60 * 1000L));
+        store.put(KEY_A, "Kept");
+
+        store.sweep();
+        assertFalse(stale.exists());
+        assertTrue(inProgress.exists());
+        assertNotNull(store.get(KEY_A));
+    }
+}
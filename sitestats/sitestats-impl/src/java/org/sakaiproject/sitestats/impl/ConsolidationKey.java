@@ -0,0 +1,76 @@
+/**
+ * $URL$
+ * $Id$
+ *
+ * Copyright (c) 2006-2009 The Sakai Foundation
+ *
+ * Licensed under the Educational Community License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *			   http://www.opensource.org/licenses/ECL-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sakaiproject.sitestats.impl;
+
+import java.util.Date;
+
+/**
+ * Composite key for the event consolidation maps in {@link StatsUpdateManagerImpl}.
+ * Replaces keys built by concatenating the ids with the date's toString() for every event.
+ * Unused parts are left null.
+ */
+final class ConsolidationKey {
+	private final String	part1;
+	private final String	part2;
+	private final String	part3;
+	private final String	part4;
+	private final long		time;
+	private final int		hash;
+
+	ConsolidationKey(String part1, String part2, String part3, String part4, Date date) {
+		this.part1 = part1;
+		this.part2 = part2;
+		this.part3 = part3;
+		this.part4 = part4;
+		// second precision, the same as the date part of the old string keys
+		this.time = date != null ? date.getTime() / 1000 : 0L;
+		int h = hash(part1);
+		h = 31 * h + hash(part2);
+		h = 31 * h + hash(part3);
+		h = 31 * h + hash(part4);
+		h = 31 * h + (int) (time ^ (time >>> 32));
+		this.hash = h;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if(this == o) {
+			return true;
+		}
+		if(!(o instanceof ConsolidationKey)) {
+			return false;
+		}
+		ConsolidationKey k = (ConsolidationKey) o;
+		return hash == k.hash && time == k.time
+				&& same(part1, k.part1) && same(part2, k.part2) && same(part3, k.part3) && same(part4, k.part4);
+	}
+
+	@Override
+	public int hashCode() {
+		return hash;
+	}
+
+	private static int hash(String s) {
+		return s == null ? 0 : s.hashCode();
+	}
+
+	private static boolean same(String s1, String s2) {
+		return s1 == null ? s2 == null : s1.equals(s2);
+	}
+}
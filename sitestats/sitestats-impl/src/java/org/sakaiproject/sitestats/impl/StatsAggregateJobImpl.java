@@ -24,9 +24,18 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.Deque;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -47,6 +56,7 @@ public class StatsAggregateJobImpl implements StatefulJob {
 	// Spring fields
 	private int					maxEventsPerRun		= 0;
 	private int					sqlBlockSize		= 1000;
+	private int					workerThreads		= 2;
 	private long				startEventId		= -1;
 	private long 				lastEventIdInTable	= -1;
 
@@ -64,6 +74,8 @@ public class StatsAggregateJobImpl implements StatefulJob {
 	private boolean				isEventContextSupported = false;
 
 	private final static String LAST_EVENT_ID		= "select max(EVENT_ID) LAST_ID from SAKAI_EVENT";
+	private final static int	MAX_FETCH_SIZE		= 1000;
+	private final static long	PROGRESS_LOG_INTERVAL = 30000;
 	private final static String MYSQL_DEFAULT_COLUMNS  = "EVENT_ID as EVENT_ID,EVENT_DATE as EVENT_DATE,EVENT as EVENT,REF as REF,SESSION_USER as SESSION_USER,e.SESSION_ID as SESSION_ID";
 	private final static String ORACLE_DEFAULT_COLUMNS = "EVENT_ID,EVENT_DATE,EVENT,REF,SESSION_USER,e.SESSION_ID SESSION_ID";
 	private final static String MYSQL_CHECK_FOR_CONTEXT = "show columns from SAKAI_EVENT like 'CONTEXT'";
@@ -72,17 +84,15 @@ public class StatsAggregateJobImpl implements StatefulJob {
 	private final static String ORACLE_CONTEXT_COLUMN  = ",CONTEXT";
 	private String MYSQL_GET_EVENT					= "select " + MYSQL_DEFAULT_COLUMNS + MYSQL_CONTEXT_COLUMN + " " +
 														"from SAKAI_EVENT e join SAKAI_SESSION s on e.SESSION_ID=s.SESSION_ID " +
-														"where EVENT_ID >= ? " +
-														"order by EVENT_ID asc LIMIT ?";
+														"where EVENT_ID >= ? and EVENT_ID < ? " +
+														"order by EVENT_ID asc";
 	
-	// SAK-28967 - this query is very slow, replace it with the one below
-	private String ORACLE_GET_EVENT					= "SELECT * FROM ( " +
-														"SELECT " +
+	// SAK-28967 - bounded EVENT_ID range, so no ROWNUM subquery is needed
+	private String ORACLE_GET_EVENT					= "SELECT " +
 															ORACLE_DEFAULT_COLUMNS + ORACLE_CONTEXT_COLUMN + " " +
 														"from SAKAI_EVENT e join SAKAI_SESSION s on e.SESSION_ID=s.SESSION_ID " +
-														"where EVENT_ID >= ? " +
-														"order by EVENT_ID asc) " +
-														"WHERE ROWNUM <= ?";
+														"where EVENT_ID >= ? and EVENT_ID < ? " +
+														"order by EVENT_ID asc";
 	
 	private String MYSQL_PAST_SITE_EVENTS			= "select " + MYSQL_DEFAULT_COLUMNS + MYSQL_CONTEXT_COLUMN + " " +
 														"from SAKAI_EVENT e join SAKAI_SESSION s on e.SESSION_ID=s.SESSION_ID " +
@@ -210,163 +220,166 @@ public class StatsAggregateJobImpl implements StatefulJob {
 
 	private long getLastEventIdInTable() throws SQLException {
 		if(lastEventIdInTable == -1) {
-			Connection connection = null;
-			Statement st = null;
-			ResultSet rs = null;
 			try{
-				connection = getEventDbConnection();
-				st = connection.createStatement();
-				rs = st.executeQuery(LAST_EVENT_ID);
-				if(rs.next()){
-					lastEventIdInTable = rs.getLong("LAST_ID");
-				}
+				lastEventIdInTable = readLastEventIdInTable();
 			}catch(SQLException e){
 				LOG.error("Unable to retrieve events", e); 
+			}
+		}
+		return lastEventIdInTable;
+	}
+
+	private long readLastEventIdInTable() throws SQLException {
+		long lastId = 0;
+		Connection connection = getEventDbConnection();
+		if(connection == null) {
+			throw new SQLException("Unable to connect to the events database");
+		}
+		Statement st = null;
+		ResultSet rs = null;
+		try{
+			st = connection.createStatement();
+			rs = st.executeQuery(LAST_EVENT_ID);
+			if(rs.next()){
+				lastId = rs.getLong("LAST_ID");
+			}
+		}finally{
+			try{
+				if(rs != null)
+					rs.close();
 			}finally{
 				try{
-					if(rs != null)
-						rs.close();
+					if(st != null)
+						st.close();
 				}finally{
-					try{
-						if(st != null)
-							st.close();
-					}finally{
-						closeEventDbConnection(connection);
-					}
+					closeEventDbConnection(connection);
 				}
 			}
 		}
-		return lastEventIdInTable;
+		return lastId;
 	}
 
 	private String startJob() throws SQLException {
-		List<Event> eventsQueue = new ArrayList<Event>();
 		long processedCounter = 0;
-		long offset = 0;
-		long lastProcessedEventId = 0;
-		long lastProcessedEventIdWithSuccess = 0;
 		long firstEventIdProcessed = -1;
-		long firstEventIdProcessedInBlock = -1;
-		Date lastEventDate = null;
-		Date lastEventDateWithSuccess = null;
+		long lastProcessedEventIdWithSuccess = 0;
+		long coveredEventId = -1;
 		long start = System.currentTimeMillis();
-		boolean sqlError = false;
+		long lastProgressLog = start;
 		String returnMessage = null;
 		
-		Connection connection = getEventDbConnection();
+		// the id range for this run is fixed up front so it always terminates, events
+		// written while the job runs are picked up by the next run
 		long eventIdLowerLimit = getEventIdLowerLimit();
-		PreparedStatement st = null;
-		ResultSet rs = null;
+		long eventIdUpperLimit = readLastEventIdInTable();
+		final String sql = sqlGetEvent;
+		final int workers = Math.max(1, getWorkerThreads());
+		final long chunkSize = Math.max(1, sqlBlockSize);
+		
+		// chunks are read in parallel but collected and checkpointed in EVENT_ID order,
+		// presence events rely on seeing pres.begin before the matching pres.end
+		ExecutorService executor = Executors.newFixedThreadPool(workers, new ThreadFactory() {
+			private final AtomicInteger count = new AtomicInteger();
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "SiteStatsAggregateJob-" + count.incrementAndGet());
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		Deque<Future<EventChunk>> window = new ArrayDeque<Future<EventChunk>>();
+		long nextChunkStart = eventIdLowerLimit;
 		try{
-			st = connection.prepareStatement(sqlGetEvent);
-			rs = null;
-			
-			// Let's make sure we don't end up in a never-ending loop
-			for (int loops = 0; loops < 100; loops++) {
-				long counter = 0;
-
-				// SAK-28967
-				if( offset == 0 ) {
-					offset = eventIdLowerLimit;
+			while(true) {
+				while(window.size() < workers * 2 && nextChunkStart <= eventIdUpperLimit) {
+					final long fromId = nextChunkStart;
+					final long toId = Math.min(fromId + chunkSize, eventIdUpperLimit + 1);
+					window.add(executor.submit(new Callable<EventChunk>() {
+						public EventChunk call() throws Exception {
+							return readEventChunk(sql, fromId, toId);
+						}
+					}));
+					nextChunkStart = toId;
 				}
-				st.setLong( 1, offset );
-				st.setLong( 2, sqlBlockSize );
-				
-				rs = st.executeQuery();
-				
-				while(rs.next()){
-					Date date = null;
-					String event = null;
-					String ref = null;
-					String context = null;
-					String sessionUser = null;
-					String sessionId = null;
-					try{
-						//If an exception is launched, iteration is not aborted but no event is added to event queue
-						date = new Date(rs.getTimestamp("EVENT_DATE").getTime());
-						event = rs.getString("EVENT");
-						ref = rs.getString("REF");
-						sessionUser = rs.getString("SESSION_USER");
-						sessionId = rs.getString("SESSION_ID");
-						if(isEventContextSupported)
-							context = rs.getString("CONTEXT");
-						eventsQueue.add( statsUpdateManager.buildEvent(date, event, ref, context, sessionUser, sessionId) );
-						
-						lastProcessedEventId = rs.getInt("EVENT_ID");
-						lastEventDate = date;
-						if(firstEventIdProcessed == -1)
-							firstEventIdProcessed = jobRun.getStartEventId(); //was: lastProcessedEventId;
-						if(firstEventIdProcessedInBlock == -1)
-							firstEventIdProcessedInBlock = lastProcessedEventId;
-						processedCounter++;
-					}catch(Exception e){
-						if(LOG.isDebugEnabled())
-							LOG.debug("Ignoring "+event+", "+ref+", "+date+", "+sessionUser+", "+sessionId+" due to: "+e.toString());
+				Future<EventChunk> next = window.poll();
+				if(next == null) {
+					break;
+				}
+				EventChunk chunk;
+				try{
+					chunk = next.get();
+				}catch(ExecutionException e){
+					Throwable cause = e.getCause() != null ? e.getCause() : e;
+					if(cause instanceof SQLException) {
+						throw (SQLException) cause;
 					}
-					counter++;
+					throw new Exception(cause.getMessage(), cause);
 				}
-				rs.close();
 				
-				// If we didn't see a single event, time to break out and wrap up this job
-				if (counter < 1) {
-					break;
-				}
-
-				if (firstEventIdProcessedInBlock > 0) {
+				if(!chunk.events.isEmpty()) {
 					// process events
-					boolean processedOk = statsUpdateManager.collectEvents(eventsQueue);
-					eventsQueue.clear();
-					if(processedOk){
-						lastProcessedEventIdWithSuccess = lastProcessedEventId;
-						lastEventDateWithSuccess = lastEventDate;
-						jobRun.setStartEventId(firstEventIdProcessed);
-						jobRun.setEndEventId(lastProcessedEventIdWithSuccess);
-						jobRun.setLastEventDate(lastEventDateWithSuccess);
-						jobRun.setJobEndDate(new Date(System.currentTimeMillis()));
-						saveJobRun(jobRun);
-					}else{
+					boolean processedOk = statsUpdateManager.collectEvents(chunk.events);
+					if(!processedOk){
 						returnMessage = "An error occurred while processing/persisting events to db. Please check your logs, fix possible problems and re-run this job (will start after last successful processed event).";
 						LOG.error(returnMessage);
 						throw new Exception(returnMessage);
 					}
+					if(firstEventIdProcessed == -1)
+						firstEventIdProcessed = jobRun.getStartEventId();
+					processedCounter += chunk.events.size();
+					lastProcessedEventIdWithSuccess = chunk.lastEventId;
+					jobRun.setLastEventDate(chunk.lastEventDate);
 				}
-
-				firstEventIdProcessedInBlock = -1;
+				coveredEventId = chunk.toId - 1;
+				
+				// checkpoint, a crash or failure resumes after the last completed chunk
+				if(firstEventIdProcessed != -1) {
+					jobRun.setStartEventId(firstEventIdProcessed);
+					jobRun.setEndEventId(coveredEventId);
+					jobRun.setJobEndDate(new Date(System.currentTimeMillis()));
+					if(!chunk.events.isEmpty()) {
+						saveJobRun(jobRun);
+					}
+				}
+				
+				long now = System.currentTimeMillis();
+				if(now - lastProgressLog >= PROGRESS_LOG_INTERVAL) {
+					lastProgressLog = now;
+					long total = eventIdUpperLimit - eventIdLowerLimit + 1;
+					long done = coveredEventId - eventIdLowerLimit + 1;
+					LOG.info("Progress: " + processedCounter + " events processed, ids " + eventIdLowerLimit + " - " + coveredEventId + " of " + eventIdUpperLimit
+							+ " (" + (total > 0 ? done * 100 / total : 100) + "%) in " + (now - start) / 1000 + "s");
+				}else if(LOG.isDebugEnabled()) {
+					LOG.debug("Collected " + chunk.events.size() + " events from ids " + chunk.fromId + " - " + (chunk.toId - 1));
+				}
+				
 				if(processedCounter >= getMaxEventsPerRun()) {
 					break;
-				} else {
-					offset += sqlBlockSize;
 				}
 			}
 
 		}catch(SQLException e){
-			sqlError = true;
 			if(returnMessage == null) {
 				returnMessage = "Unable to retrieve events due to: " + e.getMessage();
 				LOG.error("Unable to retrieve events", e);
 			}
+		}catch(InterruptedException e){
+			Thread.currentThread().interrupt();
+			returnMessage = "Interrupted while retrieving events";
+			LOG.warn(returnMessage);
 		}catch(Exception e){
-			sqlError = true;
 			if(returnMessage == null) {
 				returnMessage = "Unable to retrieve events due to: " + e.getMessage(); 
 				LOG.error("Unable to retrieve events due to an unknown cause", e);
 			}
 		}finally{
-			try{
-				if(rs != null)
-					rs.close();
-			}finally{
-				try{
-					if(st != null)
-						st.close();
-				}finally{
-					closeEventDbConnection(connection);
-				}
+			for(Future<EventChunk> f : window) {
+				f.cancel(true);
 			}
+			executor.shutdownNow();
 		}
 		
 		// error occurred
-		if(sqlError) {
+		if(returnMessage != null) {
 			return returnMessage; 
 		}
 		
@@ -374,20 +387,73 @@ public class StatsAggregateJobImpl implements StatefulJob {
 		
 		if(firstEventIdProcessed == -1 && jobRun != null){
 			// no data was processed: do not persist to DB
-//			long eventId = jobRun.getEndEventId();
-//			firstEventIdProcessed = eventId;
-//			lastProcessedEventIdWithSuccess = eventId;
-//			jobRun.setEndEventId(lastProcessedEventId > 0 ? lastProcessedEventId : jobRun.getStartEventId());
-//			jobRun.setLastEventDate(lastEventDate != null ? lastEventDate : null);
-//			jobRun.setJobEndDate(new Date(System.currentTimeMillis()));
 			return "0 events processed in "+processingTime+"s (no entry will be added to SST_JOB_RUN; only events associated with a session are processed)";
 		}else{
+			// also records any trailing chunks with no session events
 			saveJobRun(jobRun);
 		}
 		
 		return processedCounter + " events processed (ids: "+firstEventIdProcessed+" - "+lastProcessedEventIdWithSuccess+") in "+processingTime+"s (only events associated with a session are processed)";
 	}
 
+	/**
+	 * Read the events with EVENT_ID in [fromId, toId), on a connection of its own.
+	 */
+	private EventChunk readEventChunk(String sql, long fromId, long toId) throws SQLException {
+		EventChunk chunk = new EventChunk(fromId, toId);
+		Connection connection = getEventDbConnection();
+		if(connection == null) {
+			throw new SQLException("Unable to connect to the events database");
+		}
+		PreparedStatement st = null;
+		ResultSet rs = null;
+		try{
+			st = connection.prepareStatement(sql);
+			st.setFetchSize(Math.min(sqlBlockSize, MAX_FETCH_SIZE));
+			st.setLong(1, fromId);
+			st.setLong(2, toId);
+			rs = st.executeQuery();
+			
+			while(rs.next()){
+				Date date = null;
+				String event = null;
+				String ref = null;
+				String context = null;
+				String sessionUser = null;
+				String sessionId = null;
+				try{
+					//If an exception is launched, iteration is not aborted but no event is added to event queue
+					date = new Date(rs.getTimestamp("EVENT_DATE").getTime());
+					event = rs.getString("EVENT");
+					ref = rs.getString("REF");
+					sessionUser = rs.getString("SESSION_USER");
+					sessionId = rs.getString("SESSION_ID");
+					if(isEventContextSupported)
+						context = rs.getString("CONTEXT");
+					chunk.events.add( statsUpdateManager.buildEvent(date, event, ref, context, sessionUser, sessionId) );
+					chunk.lastEventId = rs.getLong("EVENT_ID");
+					chunk.lastEventDate = date;
+				}catch(Exception e){
+					if(LOG.isDebugEnabled())
+						LOG.debug("Ignoring "+event+", "+ref+", "+date+", "+sessionUser+", "+sessionId+" due to: "+e.toString());
+				}
+			}
+		}finally{
+			try{
+				if(rs != null)
+					rs.close();
+			}finally{
+				try{
+					if(st != null)
+						st.close();
+				}finally{
+					closeEventDbConnection(connection);
+				}
+			}
+		}
+		return chunk;
+	}
+
 	private long getEventIdLowerLimit() {
 		long start = getStartEventId();
 		long nextEventId = jobRun.getStartEventId();
@@ -410,6 +476,22 @@ public class StatsAggregateJobImpl implements StatefulJob {
 		return ok;
 	}
 	
+	/**
+	 * The events read for one EVENT_ID range. Only events with a session are included.
+	 */
+	private static class EventChunk {
+		private final long			fromId;
+		private final long			toId;
+		private final List<Event>	events			= new ArrayList<Event>();
+		private long				lastEventId		= -1;
+		private Date				lastEventDate	= null;
+
+		private EventChunk(long fromId, long toId) {
+			this.fromId = fromId;
+			this.toId = toId;
+		}
+	}
+	
 	public long collectPastSiteEvents(String siteId, Date initialDate, Date finalDate) {
 		List<Event> eventsQueue = new ArrayList<Event>();
 		Connection connection = getEventDbConnection();
@@ -627,6 +709,14 @@ public class StatsAggregateJobImpl implements StatefulJob {
 		this.sqlBlockSize = sqlBlockSize;
 	}
 
+	public int getWorkerThreads() {
+		return workerThreads;
+	}
+
+	public void setWorkerThreads(int workerThreads) {
+		this.workerThreads = workerThreads;
+	}
+
 	public long getStartEventId() {
 		return startEventId;
 	}
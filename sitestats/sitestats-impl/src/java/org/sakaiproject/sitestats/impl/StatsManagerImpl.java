@@ -116,6 +116,7 @@ public class StatsManagerImpl extends HibernateDaoSupport implements StatsManage
 	private boolean						isEventContextSupported					= false;
 	private boolean						enableReportExport						= true;
 	private boolean						sortUsersByDisplayName					= false;
+	private boolean						enableReportRollups						= true;
 
 	/** Controller fields */
 	private boolean						showAnonymousAccessEvents				= true;
@@ -313,6 +314,14 @@ public class StatsManagerImpl extends HibernateDaoSupport implements StatsManage
 		this.msgs = msgs;
 	}
 	
+	public void setEnableReportRollups(boolean enableReportRollups) {
+		this.enableReportRollups = enableReportRollups;
+	}
+
+	public boolean isEnableReportRollups() {
+		return enableReportRollups;
+	}
+
 	public void setEnableReportExport(boolean enableReportExport) {
 		this.enableReportExport = enableReportExport;
 	}
@@ -1298,6 +1307,7 @@ public class StatsManagerImpl extends HibernateDaoSupport implements StatsManage
 				Q_TYPE_EVENT, totalsBy, siteId, 
 				events, anonymousEvents, showAnonymousAccessEvents, null, null, 
 				iDate, fDate, userIds, inverseUserSelection, sortBy, sortAscending);
+		sqlBuilder.setUseRollups(enableReportRollups);
 		final String hql = sqlBuilder.getHQL();
 		final Map<Integer,Integer> columnMap = sqlBuilder.getHQLColumnMap();
 		
@@ -1521,6 +1531,7 @@ public class StatsManagerImpl extends HibernateDaoSupport implements StatsManage
 				Q_TYPE_EVENT, totalsBy,
 				siteId, events, anonymousEvents, showAnonymousAccessEvents, null, null, 
 				iDate, fDate, userIds, inverseUserSelection, null, true);
+		sqlBuilder.setUseRollups(enableReportRollups);
 		final String hql = sqlBuilder.getHQL();
 		final Map<Integer,Integer> columnMap = sqlBuilder.getHQLColumnMap();
 
@@ -2538,6 +2549,7 @@ if (LOG.isDebugEnabled()) {
 		private boolean					inverseUserSelection;
 		private String					sortBy;
 		private boolean					sortAscending;	
+		private boolean					useRollups			= false;
 		
 		public StatsSqlBuilder(
 				final String dbVendor,
@@ -2612,6 +2624,37 @@ if (LOG.isDebugEnabled()) {
 					sortAscending);
 		}
 		
+		/**
+		 * Allow event queries to be answered from the pre-aggregated tables when they hold
+		 * everything the query asks for.
+		 */
+		public void setUseRollups(boolean useRollups) {
+			this.useRollups = useRollups;
+		}
+		
+		/**
+		 * SST_SITEACTIVITY holds the same counts as SST_EVENTS summed over users (site visits
+		 * excluded), one row per site, day and event instead of one per user as well. Use it for
+		 * event queries with no user selection or grouping, which is what long date range
+		 * reports for a whole site usually are. The rollup has no users or durations, so sorting
+		 * by unique visits or duration still needs SST_EVENTS.
+		 */
+		private boolean isSiteActivityRollup() {
+			return useRollups
+				&& queryType == Q_TYPE_EVENT
+				&& !inverseUserSelection
+				&& userIds == null
+				&& showAnonymousAccessEvents
+				&& events != null
+				&& !events.contains(SITEVISIT_EVENTID)
+				&& !events.contains(SITEVISITEND_EVENTID)
+				&& !totalsBy.contains(T_USER)
+				&& !totalsBy.contains(T_VISITS)
+				&& !totalsBy.contains(T_UNIQUEVISITS)
+				&& !T_UNIQUEVISITS.equals(sortBy)
+				&& !T_DURATION.equals(sortBy);
+		}
+		
 		public String getHQL() {
 			StringBuilder hql = new StringBuilder();
 			hql.append(getSelectClause());
@@ -2758,6 +2801,9 @@ if (LOG.isDebugEnabled()) {
 		
 		private String getFromClause() {
 			if(queryType == Q_TYPE_EVENT) {
+				if(isSiteActivityRollup()) {
+					return "from SiteActivityImpl as s ";
+				}
 				return "from EventStatImpl as s ";
 			}else if(queryType == Q_TYPE_RESOURCE){
 				return "from ResourceStatImpl as s ";
@@ -24,13 +24,14 @@ import java.util.Calendar;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Observable;
 import java.util.Observer;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import org.apache.commons.lang.StringUtils;
 import org.hibernate.Criteria;
@@ -102,23 +103,14 @@ public class StatsUpdateManagerImpl extends HibernateDaoSupport implements Runna
 	private Object							collectThreadSemaphore				= new Object();
 	private boolean							collectThreadRunning				= false;
 
-	/** Collect thread queue maps */
-	private Map<String, EventStat>					eventStatMap			= Collections.synchronizedMap(new HashMap<String, EventStat>());
-	private Map<String, ResourceStat>				resourceStatMap			= Collections.synchronizedMap(new HashMap<String, ResourceStat>());
-	private Map<String, LessonBuilderStat>			lessonBuilderStatMap	= Collections.synchronizedMap(new HashMap<String, LessonBuilderStat>());
-	private Map<String, SiteActivity>				activityMap				= Collections.synchronizedMap(new HashMap<String, SiteActivity>());
-	private Map<String, SiteVisits>					visitsMap				= Collections.synchronizedMap(new HashMap<String, SiteVisits>());
-	private Map<String, SitePresenceConsolidation>	presencesMap			= Collections.synchronizedMap(new HashMap<String, SitePresenceConsolidation>());
-	private Map<UniqueVisitsKey, Integer>			uniqueVisitsMap			= Collections.synchronizedMap(new HashMap<UniqueVisitsKey, Integer>());
-	private Map<String, ServerStat>					serverStatMap			= Collections.synchronizedMap(new HashMap<String, ServerStat>());
-	private Map<String, UserStat>					userStatMap				= Collections.synchronizedMap(new HashMap<String, UserStat>());
+	/** Collect thread queue maps: consolidation writes to the current buffer, the db update swaps it for an empty one */
+	private volatile ConsolidationBuffer	buffer								= new ConsolidationBuffer();
+	private final ReadWriteLock				bufferLock							= new ReentrantReadWriteLock();
 
-	private Map<String, String>				lessonPageCreateEventMap		=  new HashMap<String, String>();
+	private Map<String, String>				lessonPageCreateEventMap		=  new ConcurrentHashMap<String, String>();
 
 	private boolean							initialized							= false;
 	
-	private final ReentrantLock				lock								= new ReentrantLock();
-	
 	/** Metrics */
 	private boolean							isIdle								= true;
 	private long							totalEventsProcessed				= 0;
@@ -637,72 +629,64 @@ public class StatsUpdateManagerImpl extends HibernateDaoSupport implements Runna
 		Date date = getTruncatedDate(dateTime);
 		// update		
 		if(isRegisteredEvent(eventId) && !StatsManager.SITEVISITEND_EVENTID.equals(eventId)){
-			// add to eventStatMap
-			String key = userId+siteId+eventId+date;
-			synchronized(eventStatMap){
-				EventStat e1 = eventStatMap.get(key);
-				if(e1 == null){
-					e1 = new EventStatImpl();
-					e1.setUserId(userId);
-					e1.setSiteId(siteId);
-					e1.setEventId(eventId);
-					e1.setDate(date);
-				}
-				e1.setCount(e1.getCount() + 1);
-				eventStatMap.put(key, e1);
-			}
-			
-			if(!StatsManager.SITEVISIT_EVENTID.equals(eventId)){
-				// add to activityMap
-				String key2 = siteId+date+eventId;
-				synchronized(activityMap){
-					SiteActivity e2 = activityMap.get(key2);
-					if(e2 == null){
-						e2 = new SiteActivityImpl();
-						e2.setSiteId(siteId);
-						e2.setDate(date);
-						e2.setEventId(eventId);
+			ConsolidationBuffer b = acquireBuffer();
+			try{
+				// add to eventStatMap
+				b.eventStatMap.compute(new ConsolidationKey(userId, siteId, eventId, null, date), (k, e1) -> {
+					if(e1 == null){
+						e1 = new EventStatImpl();
+						e1.setUserId(userId);
+						e1.setSiteId(siteId);
+						e1.setEventId(eventId);
+						e1.setDate(date);
 					}
-					e2.setCount(e2.getCount() + 1);
-					activityMap.put(key2, e2);
+					e1.setCount(e1.getCount() + 1);
+					return e1;
+				});
+				
+				if(!StatsManager.SITEVISIT_EVENTID.equals(eventId)){
+					// add to activityMap
+					b.activityMap.compute(new ConsolidationKey(siteId, eventId, null, null, date), (k, e2) -> {
+						if(e2 == null){
+							e2 = new SiteActivityImpl();
+							e2.setSiteId(siteId);
+							e2.setDate(date);
+							e2.setEventId(eventId);
+						}
+						e2.setCount(e2.getCount() + 1);
+						return e2;
+					});
 				}
+			}finally{
+				releaseBuffer();
 			}
 		}	
 
 		if(eventId.startsWith(StatsManager.RESOURCE_EVENTID_PREFIX)){
 			// add to resourceStatMap
-			String resourceAction = null;
+			final String resourceAction = getEventAction(eventId);
+			ConsolidationBuffer b = acquireBuffer();
 			try{
-				resourceAction = eventId.split("\\.")[1];
-			}catch(ArrayIndexOutOfBoundsException ex){
-				resourceAction = eventId;
-			}
-			String key = userId+siteId+resourceRef+resourceAction+date;
-			synchronized(resourceStatMap){
-				ResourceStat e1 = resourceStatMap.get(key);
-				if(e1 == null){
-					e1 = new ResourceStatImpl();
-					e1.setUserId(userId);
-					e1.setSiteId(siteId);
-					e1.setResourceRef(resourceRef);
-					e1.setResourceAction(resourceAction);
-					e1.setDate(date);
-				}
-				e1.setCount(e1.getCount() + 1);
-				resourceStatMap.put(key, e1);
+				b.resourceStatMap.compute(new ConsolidationKey(userId, siteId, resourceRef, resourceAction, date), (k, e1) -> {
+					if(e1 == null){
+						e1 = new ResourceStatImpl();
+						e1.setUserId(userId);
+						e1.setSiteId(siteId);
+						e1.setResourceRef(resourceRef);
+						e1.setResourceAction(resourceAction);
+						e1.setDate(date);
+					}
+					e1.setCount(e1.getCount() + 1);
+					return e1;
+				});
+			}finally{
+				releaseBuffer();
 			}
 		} else if (eventId.startsWith(StatsManager.LESSONS_EVENTID_PREFIX)) {
 			String[] resourceParts = resourceRef.split("/");
 			if (resourceParts.length > 3 && "page".equals(resourceParts[2])) {
 				long pageId = Long.parseLong(resourceParts[3]);
-				String lessonBuilderAction = null;
-				try {
-					lessonBuilderAction = eventId.split("\\.")[1];
-				} catch (ArrayIndexOutOfBoundsException ex){
-					lessonBuilderAction = eventId;
-				}
-
-				String key = userId + siteId + lessonBuilderAction + pageId + date;
+				String lessonBuilderAction = getEventAction(eventId);
 
 				if ("create".equals(lessonBuilderAction)) {
 					// We cache create events so we can ignore read events from page creators
@@ -737,7 +721,7 @@ public class StatsUpdateManagerImpl extends HibernateDaoSupport implements Runna
 
 						List<String> creatorUserIds = getHibernateTemplate().execute(hcb1);
 
-						if (creatorUserIds.size() > 0) {
+						if (creatorUserIds.size() > 0 && creatorUserIds.get(0) != null) {
 							creatorUserId = creatorUserIds.get(0);
 							lessonPageCreateEventMap.put(resourceRef, creatorUserId);
 							if (creatorUserIds.size() > 1) {
@@ -747,99 +731,113 @@ public class StatsUpdateManagerImpl extends HibernateDaoSupport implements Runna
 					}
 
 					if (creatorUserId == null || !creatorUserId.equals(userId)) {
-						addToLessonBuilderStatMap(key, userId, siteId, resourceRef, pageId, lessonBuilderAction, date);
+						addToLessonBuilderStatMap(userId, siteId, resourceRef, pageId, lessonBuilderAction, date);
 					}
 				} else {
-					addToLessonBuilderStatMap(key, userId, siteId, resourceRef, pageId, lessonBuilderAction, date);
+					addToLessonBuilderStatMap(userId, siteId, resourceRef, pageId, lessonBuilderAction, date);
 				}
 			}
 		} else if(StatsManager.SITEVISIT_EVENTID.equals(eventId)){
 			// add to visitsMap
-			String key = siteId+date;
-			lock.lock();
+			ConsolidationBuffer b = acquireBuffer();
 			try{
-				SiteVisits e1 = visitsMap.get(key);
-				if(e1 == null){
-					e1 = new SiteVisitsImpl();
-					e1.setSiteId(siteId);
-					e1.setDate(date);
-				}
-				e1.setTotalVisits(e1.getTotalVisits() + 1);
-				// unique visits are determined when updating to db:
-				//	 --> e1.setTotalUnique(totalUnique);
-				visitsMap.put(key, e1);
+				b.visitsMap.compute(new ConsolidationKey(siteId, null, null, null, date), (k, e1) -> {
+					if(e1 == null){
+						e1 = new SiteVisitsImpl();
+						e1.setSiteId(siteId);
+						e1.setDate(date);
+					}
+					e1.setTotalVisits(e1.getTotalVisits() + 1);
+					// unique visits are determined when updating to db:
+					//	 --> e1.setTotalUnique(totalUnique);
+					return e1;
+				});
 				// place entry on map so we can update unique visits later
 				UniqueVisitsKey keyUniqueVisits = new UniqueVisitsKey(siteId, date);
-				uniqueVisitsMap.put(keyUniqueVisits, Integer.valueOf(1));
+				b.uniqueVisitsMap.put(keyUniqueVisits, Integer.valueOf(1));
 				
 				// site presence started
 				if(M_sm.isEnableSitePresences()) {
-					String pKey = siteId+userId+date;
-					SitePresenceConsolidation spc = presencesMap.get(pKey);
-					if(spc == null) {
-						SitePresence sp = new SitePresenceImpl();
-						sp.setSiteId(siteId);
-						sp.setUserId(userId);
-						sp.setDate(date);
-						spc = new SitePresenceConsolidation(sp);
-					}
-					spc.sitePresence.setLastVisitStartTime(dateTime);
-					presencesMap.put(pKey, spc);					
+					b.presencesMap.compute(new ConsolidationKey(siteId, userId, null, null, date), (k, spc) -> {
+						if(spc == null) {
+							SitePresence sp = new SitePresenceImpl();
+							sp.setSiteId(siteId);
+							sp.setUserId(userId);
+							sp.setDate(date);
+							spc = new SitePresenceConsolidation(sp);
+						}
+						spc.sitePresence.setLastVisitStartTime(dateTime);
+						return spc;
+					});
 				}
 			}finally{
-				lock.unlock();
+				releaseBuffer();
 			}
 			
 		}else if(StatsManager.SITEVISITEND_EVENTID.equals(eventId)){
 			// site presence ended
 			if(M_sm.isEnableSitePresences()) {
-				String pKey = siteId+userId+date;
-				lock.lock();
+				ConsolidationBuffer b = acquireBuffer();
 				try{
-					SitePresenceConsolidation spc = presencesMap.get(pKey);
-					if(spc == null) {
-						SitePresence sp = new SitePresenceImpl();
-						sp.setSiteId(siteId);
-						sp.setUserId(userId);
-						sp.setDate(date);
-						sp.setLastVisitStartTime(null);
-						spc = new SitePresenceConsolidation(sp, dateTime);
-					}
-					if(spc.sitePresence.getLastVisitStartTime() != null) {
-						long existingDuration = spc.sitePresence.getDuration();
-						long start = spc.sitePresence.getLastVisitStartTime().getTime();
-						long thisEventTime = dateTime.getTime();
-						long additionalDuration = thisEventTime - start;
-						if(additionalDuration > 4*60*60*1000) {
-							LOG.warn("A site presence is longer than 4h!: duration="+(additionalDuration/1000/60)+" min (SITE:"+siteId+", USER:"+userId+", DATE:"+date+")");
+					b.presencesMap.compute(new ConsolidationKey(siteId, userId, null, null, date), (k, spc) -> {
+						if(spc == null) {
+							SitePresence sp = new SitePresenceImpl();
+							sp.setSiteId(siteId);
+							sp.setUserId(userId);
+							sp.setDate(date);
+							sp.setLastVisitStartTime(null);
+							spc = new SitePresenceConsolidation(sp, dateTime);
 						}
-						spc.sitePresence.setDuration(existingDuration + additionalDuration);						
-						spc.sitePresence.setLastVisitStartTime(null);	
-					}
-					presencesMap.put(pKey, spc);
+						if(spc.sitePresence.getLastVisitStartTime() != null) {
+							long existingDuration = spc.sitePresence.getDuration();
+							long start = spc.sitePresence.getLastVisitStartTime().getTime();
+							long thisEventTime = dateTime.getTime();
+							long additionalDuration = thisEventTime - start;
+							if(additionalDuration > 4*60*60*1000) {
+								LOG.warn("A site presence is longer than 4h!: duration="+(additionalDuration/1000/60)+" min (SITE:"+siteId+", USER:"+userId+", DATE:"+date+")");
+							}
+							spc.sitePresence.setDuration(existingDuration + additionalDuration);						
+							spc.sitePresence.setLastVisitStartTime(null);	
+						}
+						return spc;
+					});
 				}finally{
-					lock.unlock();
+					releaseBuffer();
 				}
 			}
 		} 
 		
 	}
 
-	private void addToLessonBuilderStatMap(String key, String userId, String siteId, String pageRef, long pageId, String action, Date date) {
+	/** The part of the event id after the first dot, eg 'read' for content.read */
+	private String getEventAction(String eventId) {
+		int start = eventId.indexOf('.');
+		if(start < 0 || start == eventId.length() - 1) {
+			return eventId;
+		}
+		int end = eventId.indexOf('.', start + 1);
+		return end < 0 ? eventId.substring(start + 1) : eventId.substring(start + 1, end);
+	}
 
-		synchronized (lessonBuilderStatMap) {
-			LessonBuilderStat e1 = lessonBuilderStatMap.get(key);
-			if (e1 == null) {
-				e1 = new LessonBuilderStatImpl();
-				e1.setUserId(userId);
-				e1.setSiteId(siteId);
-				e1.setPageRef(pageRef);
-				e1.setPageId(pageId);
-				e1.setPageAction(action);
-				e1.setDate(date);
-			}
-			e1.setCount(e1.getCount() + 1);
-			lessonBuilderStatMap.put(key, e1);
+	private void addToLessonBuilderStatMap(String userId, String siteId, String pageRef, long pageId, String action, Date date) {
+
+		ConsolidationBuffer b = acquireBuffer();
+		try {
+			b.lessonBuilderStatMap.compute(new ConsolidationKey(userId, siteId, action, String.valueOf(pageId), date), (k, e1) -> {
+				if (e1 == null) {
+					e1 = new LessonBuilderStatImpl();
+					e1.setUserId(userId);
+					e1.setSiteId(siteId);
+					e1.setPageRef(pageRef);
+					e1.setPageId(pageId);
+					e1.setPageAction(action);
+					e1.setDate(date);
+				}
+				e1.setCount(e1.getCount() + 1);
+				return e1;
+			});
+		} finally {
+			releaseBuffer();
 		}
 	}
 
@@ -853,16 +851,19 @@ public class StatsUpdateManagerImpl extends HibernateDaoSupport implements Runna
 		Date date = getTruncatedDate(dateTime);
 				
 		// add to serverStatMap
-		String key = eventId+date;
-		synchronized(serverStatMap){
-			ServerStat s = serverStatMap.get(key);
-			if(s == null){
-				s = new ServerStatImpl();
-				s.setEventId(eventId);
-				s.setDate(date);
-			}
-			s.setCount(s.getCount() + 1);
-			serverStatMap.put(key, s);
+		ConsolidationBuffer b = acquireBuffer();
+		try{
+			b.serverStatMap.compute(new ConsolidationKey(eventId, null, null, null, date), (k, s) -> {
+				if(s == null){
+					s = new ServerStatImpl();
+					s.setEventId(eventId);
+					s.setDate(date);
+				}
+				s.setCount(s.getCount() + 1);
+				return s;
+			});
+		}finally{
+			releaseBuffer();
 		}
 		
 	}
@@ -873,16 +874,19 @@ public class StatsUpdateManagerImpl extends HibernateDaoSupport implements Runna
 		Date date = getTruncatedDate(dateTime);
 				
 		// add to userStatMap
-		String key = userId+date;
-		synchronized(userStatMap){
-			UserStat s = userStatMap.get(key);
-			if(s == null){
-				s = new UserStatImpl();
-				s.setUserId(userId);
-				s.setDate(date);
-			}
-			s.setCount(s.getCount() + 1);
-			userStatMap.put(key, s);
+		ConsolidationBuffer b = acquireBuffer();
+		try{
+			b.userStatMap.compute(new ConsolidationKey(userId, null, null, null, date), (k, s) -> {
+				if(s == null){
+					s = new UserStatImpl();
+					s.setUserId(userId);
+					s.setDate(date);
+				}
+				s.setCount(s.getCount() + 1);
+				return s;
+			});
+		}finally{
+			releaseBuffer();
 		}
 		
 	}
@@ -891,106 +895,84 @@ public class StatsUpdateManagerImpl extends HibernateDaoSupport implements Runna
 	// ################################################################
 	// Db update methods
 	// ################################################################	
-	@SuppressWarnings("unchecked")
+	/**
+	 * Get the buffer events are consolidated into. Any number of threads can hold it at once,
+	 * the lock only stops the buffer being swapped out while it is being written to.
+	 * Must be followed by {@link #releaseBuffer()}.
+	 */
+	private ConsolidationBuffer acquireBuffer() {
+		bufferLock.readLock().lock();
+		return buffer;
+	}
+
+	private void releaseBuffer() {
+		bufferLock.readLock().unlock();
+	}
+
+	/** Swap in an empty buffer and return the filled one, which nothing else can write to anymore */
+	private ConsolidationBuffer swapBuffer() {
+		bufferLock.writeLock().lock();
+		try{
+			ConsolidationBuffer filled = buffer;
+			buffer = new ConsolidationBuffer();
+			return filled;
+		}finally{
+			bufferLock.writeLock().unlock();
+		}
+	}
+
 	private synchronized boolean doUpdateConsolidatedEvents() {
 		long startTime = System.currentTimeMillis();
-		if(eventStatMap.size() > 0 || resourceStatMap.size() > 0
-				|| activityMap.size() > 0 || uniqueVisitsMap.size() > 0 
-				|| visitsMap.size() > 0 || presencesMap.size() > 0
-				|| serverStatMap.size() > 0 || userStatMap.size() > 0) {
+		if(!buffer.isEmpty()) {
+			final ConsolidationBuffer b = swapBuffer();
 			Boolean r = getHibernateTemplate().execute(session -> {
                 Transaction tx = null;
                 try{
                     tx = session.beginTransaction();
                     // do: EventStat
-                    if(eventStatMap.size() > 0) {
-                        Collection<EventStat> tmp1 = null;
-                        synchronized(eventStatMap){
-                            tmp1 = eventStatMap.values();
-                            eventStatMap = Collections.synchronizedMap(new HashMap<String, EventStat>());
-                        }
-                        doUpdateEventStatObjects(session, tmp1);
+                    if(b.eventStatMap.size() > 0) {
+                        doUpdateEventStatObjects(session, b.eventStatMap.values());
                     }
 
                     // do: ResourceStat
-                    if(resourceStatMap.size() > 0) {
-                        Collection<ResourceStat> tmp2 = null;
-                        synchronized(resourceStatMap){
-                            tmp2 = resourceStatMap.values();
-                            resourceStatMap = Collections.synchronizedMap(new HashMap<String, ResourceStat>());
-                        }
-                        doUpdateResourceStatObjects(session, tmp2);
+                    if(b.resourceStatMap.size() > 0) {
+                        doUpdateResourceStatObjects(session, b.resourceStatMap.values());
                     }
 
                     // do: Lessons ResourceStat
-                    if (lessonBuilderStatMap.size() > 0) {
-                        Collection<LessonBuilderStat> tmp3 = null;
-                        synchronized (lessonBuilderStatMap) {
-                            tmp3 = lessonBuilderStatMap.values();
-                            lessonBuilderStatMap = Collections.synchronizedMap(new HashMap<String, LessonBuilderStat>());
-                        }
-                        doUpdateLessonBuilderStatObjects(session, tmp3);
+                    if (b.lessonBuilderStatMap.size() > 0) {
+                        doUpdateLessonBuilderStatObjects(session, b.lessonBuilderStatMap.values());
                     }
 
                     // do: SiteActivity
-                    if(activityMap.size() > 0) {
-                        Collection<SiteActivity> tmp3 = null;
-                        synchronized(activityMap){
-                            tmp3 = activityMap.values();
-                            activityMap = Collections.synchronizedMap(new HashMap<String, SiteActivity>());
-                        }
-                        doUpdateSiteActivityObjects(session, tmp3);
+                    if(b.activityMap.size() > 0) {
+                        doUpdateSiteActivityObjects(session, b.activityMap.values());
                     }
 
                     // do: SiteVisits
-                    if(uniqueVisitsMap.size() > 0 || visitsMap.size() > 0) {
+                    if(b.uniqueVisitsMap.size() > 0 || b.visitsMap.size() > 0) {
                         // determine unique visits for event related sites
-                        Map<UniqueVisitsKey, Integer> tmp4;
-                        synchronized(uniqueVisitsMap){
-                            tmp4 = uniqueVisitsMap;
-                            uniqueVisitsMap = Collections.synchronizedMap(new HashMap<UniqueVisitsKey, Integer>());
-                        }
-                        tmp4 = doGetSiteUniqueVisits(session, tmp4);
+                        Map<UniqueVisitsKey, Integer> tmp4 = doGetSiteUniqueVisits(session, b.uniqueVisitsMap);
 
                         // do: SiteVisits
-                        if(visitsMap.size() > 0) {
-                            Collection<SiteVisits> tmp5 = null;
-                            synchronized(visitsMap){
-                                tmp5 = visitsMap.values();
-                                visitsMap = Collections.synchronizedMap(new HashMap<String, SiteVisits>());
-                            }
-                            doUpdateSiteVisitsObjects(session, tmp5, tmp4);
+                        if(b.visitsMap.size() > 0) {
+                            doUpdateSiteVisitsObjects(session, b.visitsMap.values(), tmp4);
                         }
                     }
 
                     // do: SitePresences
-                    if(presencesMap.size() > 0) {
-                        Collection<SitePresenceConsolidation> tmp6 = null;
-                        synchronized(presencesMap){
-                            tmp6 = presencesMap.values();
-                            presencesMap = Collections.synchronizedMap(new HashMap<String, SitePresenceConsolidation>());
-                        }
-                        doUpdateSitePresencesObjects(session, tmp6);
+                    if(b.presencesMap.size() > 0) {
+                        doUpdateSitePresencesObjects(session, b.presencesMap.values());
                     }
 
                     // do: ServerStats
-                    if(serverStatMap.size() > 0) {
-                        Collection<ServerStat> tmp7 = null;
-                        synchronized(serverStatMap){
-                            tmp7 = serverStatMap.values();
-                            serverStatMap = Collections.synchronizedMap(new HashMap<String, ServerStat>());
-                        }
-                        doUpdateServerStatObjects(session, tmp7);
+                    if(b.serverStatMap.size() > 0) {
+                        doUpdateServerStatObjects(session, b.serverStatMap.values());
                     }
 
                     // do: UserStats
-                    if(userStatMap.size() > 0) {
-                        Collection<UserStat> tmp8 = null;
-                        synchronized(userStatMap){
-                            tmp8 = userStatMap.values();
-                            userStatMap = Collections.synchronizedMap(new HashMap<String, UserStat>());
-                        }
-                        doUpdateUserStatObjects(session, tmp8);
+                    if(b.userStatMap.size() > 0) {
+                        doUpdateUserStatObjects(session, b.userStatMap.values());
                     }
 
                     // commit ALL
@@ -1725,6 +1707,25 @@ public class StatsUpdateManagerImpl extends HibernateDaoSupport implements Runna
 		return c.getTime();
 	}
 
+	/** The consolidation maps filled between two db updates */
+	private static class ConsolidationBuffer {
+		final Map<ConsolidationKey, EventStat>					eventStatMap			= new ConcurrentHashMap<>();
+		final Map<ConsolidationKey, ResourceStat>				resourceStatMap			= new ConcurrentHashMap<>();
+		final Map<ConsolidationKey, LessonBuilderStat>			lessonBuilderStatMap	= new ConcurrentHashMap<>();
+		final Map<ConsolidationKey, SiteActivity>				activityMap				= new ConcurrentHashMap<>();
+		final Map<ConsolidationKey, SiteVisits>					visitsMap				= new ConcurrentHashMap<>();
+		final Map<ConsolidationKey, SitePresenceConsolidation>	presencesMap			= new ConcurrentHashMap<>();
+		final Map<UniqueVisitsKey, Integer>						uniqueVisitsMap			= new ConcurrentHashMap<>();
+		final Map<ConsolidationKey, ServerStat>					serverStatMap			= new ConcurrentHashMap<>();
+		final Map<ConsolidationKey, UserStat>					userStatMap				= new ConcurrentHashMap<>();
+
+		boolean isEmpty() {
+			return eventStatMap.isEmpty() && resourceStatMap.isEmpty() && lessonBuilderStatMap.isEmpty()
+					&& activityMap.isEmpty() && uniqueVisitsMap.isEmpty() && visitsMap.isEmpty()
+					&& presencesMap.isEmpty() && serverStatMap.isEmpty() && userStatMap.isEmpty();
+		}
+	}
+
 	private static class UniqueVisitsKey {
 		public String siteId;
 		public Date date;
@@ -1070,6 +1070,12 @@ public class StatsManagerTest extends AbstractTransactionalJUnit4SpringContextTe
 		statsCount = M_sm.getEventStatsRowCount(FakeData.SITE_A_ID, null,
 				null, null, null, false, Arrays.asList(StatsManager.T_UNIQUEVISITS));
 		Assert.assertEquals(1, statsCount);
+		// sort by: uniquevisits (needs the users, so not answered from the site activity rollup)
+		stats = M_sm.getEventStats(FakeData.SITE_A_ID, Arrays.asList(FakeData.EVENT_CONTENTNEW, FakeData.EVENT_CONTENTDEL, FakeData.EVENT_CHATNEW),
+				null, null, null, false, null, 
+				Arrays.asList(StatsManager.T_EVENT), StatsManager.T_UNIQUEVISITS, false, 0);
+		Assert.assertNotNull(stats);
+		Assert.assertEquals(3, stats.size());
 		
 		//System.out.println("Stats: "+stats);
 		//System.out.println("Size: "+stats.size());